@@ -13,4 +13,11 @@ public interface BdfReaderFactory {
 
 	BdfReader createReader(InputStream in, int nestedLimit,
 			int maxBufferSize, boolean canonical);
+
+	/**
+	 * Returns a reader for the given range of the given array. The array
+	 * is read in place, so it must not be modified while the reader is in
+	 * use.
+	 */
+	BdfReader createReader(byte[] b, int off, int len, boolean canonical);
 }
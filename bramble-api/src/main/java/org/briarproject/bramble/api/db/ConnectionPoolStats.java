@@ -0,0 +1,82 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the state of the database's connection pool.
+ */
+@Immutable
+@NotNullByDefault
+public class ConnectionPoolStats {
+
+	private final int poolSize, openConnections, idleConnections;
+	private final long borrowCount, waitCount, totalWaitTime;
+
+	public ConnectionPoolStats(int poolSize, int openConnections,
+			int idleConnections, long borrowCount, long waitCount,
+			long totalWaitTime) {
+		this.poolSize = poolSize;
+		this.openConnections = openConnections;
+		this.idleConnections = idleConnections;
+		this.borrowCount = borrowCount;
+		this.waitCount = waitCount;
+		this.totalWaitTime = totalWaitTime;
+	}
+
+	/**
+	 * Returns the maximum number of connections that may be open at once.
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * Returns the number of connections that are currently open, including
+	 * idle connections.
+	 */
+	public int getOpenConnections() {
+		return openConnections;
+	}
+
+	/**
+	 * Returns the number of open connections that are waiting in the pool
+	 * to be used.
+	 */
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	/**
+	 * Returns the number of connections that are currently being used by
+	 * transactions.
+	 */
+	public int getInUseConnections() {
+		return openConnections - idleConnections;
+	}
+
+	/**
+	 * Returns the number of connections that have been borrowed from the
+	 * pool since the database was opened.
+	 */
+	public long getBorrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * Returns the number of times a transaction had to wait for a connection
+	 * because all connections were in use.
+	 */
+	public long getWaitCount() {
+		return waitCount;
+	}
+
+	/**
+	 * Returns the total time in milliseconds that transactions have spent
+	 * waiting for connections.
+	 */
+	public long getTotalWaitTime() {
+		return totalWaitTime;
+	}
+}
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.api.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.PendingContact;
@@ -28,6 +29,7 @@ import org.briarproject.bramble.api.transport.TransportKeySet;
 import org.briarproject.bramble.api.transport.TransportKeys;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +78,17 @@ public interface DatabaseComponent extends TransactionManager {
 	 */
 	void close() throws DbException;
 
+	/**
+	 * Returns a snapshot of the state of the database's connection pool.
+	 */
+	ConnectionPoolStats getConnectionPoolStats();
+
+	/**
+	 * Returns a snapshot of the time spent in transactions and in each
+	 * database query since the database component was created.
+	 */
+	DatabaseStats getDatabaseStats();
+
 	/**
 	 * Stores a contact associated with the given local and remote pseudonyms,
 	 * and returns an ID for the contact.
@@ -105,6 +118,18 @@ public interface DatabaseComponent extends TransactionManager {
 	void addPendingContact(Transaction txn, PendingContact p, AuthorId local)
 			throws DbException;
 
+	/**
+	 * Records that the state of the given protocol session is stored in the
+	 * metadata of the given message, which must belong to the given group.
+	 * Any message previously recorded for the session is replaced.
+	 * <p/>
+	 * This allows clients to find a session's state without querying the
+	 * metadata of every message in the group. The record is removed when
+	 * the message or the group is removed.
+	 */
+	void addSession(Transaction txn, GroupId g, UniqueId sessionId,
+			MessageId m) throws DbException;
+
 	/**
 	 * Stores a transport.
 	 */
@@ -337,6 +362,19 @@ public interface DatabaseComponent extends TransactionManager {
 	 */
 	Message getMessage(Transaction txn, MessageId m) throws DbException;
 
+	/**
+	 * Returns a stream for reading the body of the message with the given
+	 * ID. Unlike {@link #getMessage(Transaction, MessageId)}, the body is
+	 * not copied, and the stream remains readable after the transaction
+	 * has ended.
+	 * <p/>
+	 * Read-only.
+	 *
+	 * @throws MessageDeletedException if the message has been deleted
+	 */
+	InputStream getMessageBody(Transaction txn, MessageId m)
+			throws DbException;
+
 	/**
 	 * Returns the IDs of all delivered messages in the given group.
 	 * <p/>
@@ -355,6 +393,30 @@ public interface DatabaseComponent extends TransactionManager {
 	Collection<MessageId> getMessageIds(Transaction txn, GroupId g,
 			Metadata query) throws DbException;
 
+	/**
+	 * Returns the IDs and timestamps of up to the given number of delivered
+	 * messages in the given group with timestamps earlier than the given
+	 * timestamp, newest first. Any further messages with the same timestamp
+	 * as the oldest message returned are also included, so that the oldest
+	 * timestamp can be used to fetch the next page without skipping any
+	 * messages.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Long> getMessageIdsBefore(Transaction txn, GroupId g,
+			long before, int limit) throws DbException;
+
+	/**
+	 * Returns the IDs and timestamps of up to the given number of delivered
+	 * messages in the given group with timestamps later than the given
+	 * timestamp, oldest first. Any further messages with the same timestamp
+	 * as the newest message returned are also included.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Long> getMessageIdsAfter(Transaction txn, GroupId g,
+			long after, int limit) throws DbException;
+
 	/**
 	 * Returns the IDs of all messages received from the given contact that
 	 * need to be acknowledged.
@@ -579,6 +641,17 @@ public interface DatabaseComponent extends TransactionManager {
 	Collection<PendingContact> getPendingContacts(Transaction txn)
 			throws DbException;
 
+	/**
+	 * Returns the ID of the message that stores the state of the given
+	 * protocol session, or null if no such session has been recorded with
+	 * {@link #addSession(Transaction, GroupId, UniqueId, MessageId)}.
+	 * <p/>
+	 * Read-only.
+	 */
+	@Nullable
+	MessageId getSessionMessageId(Transaction txn, GroupId g,
+			UniqueId sessionId) throws DbException;
+
 	/**
 	 * Returns all settings in the given namespace.
 	 * <p/>
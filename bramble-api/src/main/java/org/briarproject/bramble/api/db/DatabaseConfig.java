@@ -26,4 +26,18 @@ public interface DatabaseConfig {
 	 */
 	@Nullable
 	KeyStrengthener getKeyStrengthener();
+
+	/**
+	 * Returns the maximum number of connections the database may have open
+	 * at once. This limits the number of read-only transactions that can run
+	 * in parallel. Must be at least 1.
+	 */
+	int getConnectionPoolSize();
+
+	/**
+	 * Returns true if the latency of each database query should be recorded.
+	 * This slows down every query, so it should only be enabled for
+	 * debugging. Transaction statistics are recorded either way.
+	 */
+	boolean isQueryProfilingEnabled();
 }
@@ -14,17 +14,55 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
  * Annotation for injecting the executor for database tasks. Also used for
  * annotating methods that should run on the database executor.
  * <p>
- * The contract of this executor is that tasks are run in the order they're
- * submitted, tasks are not run concurrently, and submitting a task will never
- * block. Tasks must not run indefinitely. Tasks submitted during shutdown are
- * discarded.
+ * The executor has a {@link Lane lane} for each kind of task, and the lane
+ * can be chosen when injecting the executor. The default is the
+ * {@link Lane#INTERACTIVE interactive} lane.
+ * <p>
+ * The contract of this executor is that tasks submitted to the same lane are
+ * run in the order they're submitted, tasks are not run concurrently, and
+ * submitting a task to the interactive lane will never block. Tasks submitted
+ * to different lanes are not necessarily run in the order they're submitted,
+ * so tasks that depend on each other's order must be submitted to the same
+ * lane. Submitting a task to another lane may block if that lane has been
+ * configured with a bounded queue, unless the task is submitted from the
+ * database executor or the {@link
+ * org.briarproject.bramble.api.event.EventExecutor event executor}. Tasks
+ * must not run indefinitely. Tasks submitted during shutdown are discarded.
  * <p>
  * It is not mandatory to use this executor for database tasks. The database
  * can be accessed from any thread, but this executor's guarantee that tasks
- * are run in the order they're submitted may be useful in some cases.
+ * in the same lane are run in the order they're submitted may be useful in
+ * some cases.
  */
 @Qualifier
 @Target({FIELD, METHOD, PARAMETER})
 @Retention(RUNTIME)
 public @interface DatabaseExecutor {
+
+	Lane value() default Lane.INTERACTIVE;
+
+	/**
+	 * The lanes of the database executor, from highest to lowest priority.
+	 * When tasks are waiting in more than one lane, the next task is usually
+	 * taken from the highest-priority lane, but tasks in lower-priority
+	 * lanes are not starved.
+	 */
+	enum Lane {
+
+		/**
+		 * Tasks that someone is waiting for, such as loading data for the UI.
+		 */
+		INTERACTIVE,
+
+		/**
+		 * Tasks that handle records sent or received by sync sessions.
+		 */
+		SYNC,
+
+		/**
+		 * Tasks that can be delayed without anyone noticing, such as
+		 * validation and cleanup.
+		 */
+		BACKGROUND
+	}
 }
@@ -0,0 +1,14 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+@NotNullByDefault
+public interface DatabaseExecutorMonitor {
+
+	/**
+	 * Returns a snapshot of the state of the given lane of the
+	 * {@link DatabaseExecutor}.
+	 */
+	DatabaseExecutorStats getStats(Lane lane);
+}
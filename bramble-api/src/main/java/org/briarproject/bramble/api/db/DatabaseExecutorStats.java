@@ -0,0 +1,84 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the state of one {@link Lane lane} of the
+ * {@link DatabaseExecutor}.
+ */
+@Immutable
+@NotNullByDefault
+public class DatabaseExecutorStats {
+
+	private final Lane lane;
+	private final int capacity, queuedTasks, peakQueuedTasks;
+	private final long blockedSubmissions;
+	private final LatencyStats waitTime, runTime;
+
+	public DatabaseExecutorStats(Lane lane, int capacity, int queuedTasks,
+			int peakQueuedTasks, long blockedSubmissions,
+			LatencyStats waitTime, LatencyStats runTime) {
+		this.lane = lane;
+		this.capacity = capacity;
+		this.queuedTasks = queuedTasks;
+		this.peakQueuedTasks = peakQueuedTasks;
+		this.blockedSubmissions = blockedSubmissions;
+		this.waitTime = waitTime;
+		this.runTime = runTime;
+	}
+
+	public Lane getLane() {
+		return lane;
+	}
+
+	/**
+	 * Returns the maximum number of tasks that can wait in the lane before
+	 * submitting a task blocks, or zero if the lane is unbounded. Tasks
+	 * submitted from the database executor or the event executor never
+	 * block, so the number of waiting tasks may exceed the capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of tasks that are currently waiting in the lane.
+	 */
+	public int getQueuedTasks() {
+		return queuedTasks;
+	}
+
+	/**
+	 * Returns the largest number of tasks that have waited in the lane at
+	 * the same time.
+	 */
+	public int getPeakQueuedTasks() {
+		return peakQueuedTasks;
+	}
+
+	/**
+	 * Returns the number of times submitting a task blocked because the
+	 * lane was full.
+	 */
+	public long getBlockedSubmissions() {
+		return blockedSubmissions;
+	}
+
+	/**
+	 * Returns the times tasks in the lane waited before they started
+	 * running, in microseconds.
+	 */
+	public LatencyStats getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * Returns the times tasks in the lane took to run, in microseconds.
+	 */
+	public LatencyStats getRunTime() {
+		return runTime;
+	}
+}
@@ -0,0 +1,45 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.concurrent.Immutable;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A snapshot of the database's performance statistics.
+ */
+@Immutable
+@NotNullByDefault
+public class DatabaseStats {
+
+	private final Map<String, LatencyStats> queryStats;
+	private final TransactionStats readOnly, readWrite;
+
+	public DatabaseStats(Map<String, LatencyStats> queryStats,
+			TransactionStats readOnly, TransactionStats readWrite) {
+		this.queryStats = unmodifiableMap(new TreeMap<>(queryStats));
+		this.readOnly = readOnly;
+		this.readWrite = readWrite;
+	}
+
+	/**
+	 * Returns the statistics for each method of the database implementation
+	 * that has been called, keyed by the method's name and parameter types
+	 * and sorted by key.
+	 */
+	public Map<String, LatencyStats> getQueryStats() {
+		return queryStats;
+	}
+
+	public TransactionStats getReadOnlyTransactionStats() {
+		return readOnly;
+	}
+
+	public TransactionStats getReadWriteTransactionStats() {
+		return readWrite;
+	}
+}
@@ -0,0 +1,81 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the latencies recorded for a database operation. All times
+ * are in microseconds.
+ */
+@Immutable
+@NotNullByDefault
+public class LatencyStats {
+
+	/**
+	 * The number of buckets in each latency histogram. Bucket 0 counts
+	 * latencies of less than one microsecond, bucket i counts latencies of
+	 * at least 2^(i-1) and less than 2^i microseconds, and the last bucket
+	 * also counts all longer latencies.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 26;
+
+	private final long count, totalTime, maxTime, rows;
+	private final long[] histogram;
+
+	public LatencyStats(long count, long totalTime, long maxTime, long rows,
+			long[] histogram) {
+		if (histogram.length != HISTOGRAM_BUCKETS)
+			throw new IllegalArgumentException();
+		this.count = count;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+		this.rows = rows;
+		this.histogram = histogram.clone();
+	}
+
+	/**
+	 * Returns the number of times the operation was performed.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the total time spent performing the operation.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * Returns the longest time taken to perform the operation.
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns the mean time taken to perform the operation, or zero if it
+	 * hasn't been performed.
+	 */
+	public long getMeanTime() {
+		return count == 0 ? 0 : totalTime / count;
+	}
+
+	/**
+	 * Returns the total number of rows returned by the operation, if it
+	 * returns a collection or map, or zero otherwise.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the latency histogram, with {@link #HISTOGRAM_BUCKETS}
+	 * buckets.
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+}
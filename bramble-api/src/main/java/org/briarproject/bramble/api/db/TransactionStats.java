@@ -0,0 +1,63 @@
+package org.briarproject.bramble.api.db;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the statistics recorded for either read-only or read-write
+ * transactions.
+ */
+@Immutable
+@NotNullByDefault
+public class TransactionStats {
+
+	private final boolean readOnly;
+	private final long commitCount, abortCount;
+	private final LatencyStats lockWait, lockHold;
+
+	public TransactionStats(boolean readOnly, long commitCount,
+			long abortCount, LatencyStats lockWait, LatencyStats lockHold) {
+		this.readOnly = readOnly;
+		this.commitCount = commitCount;
+		this.abortCount = abortCount;
+		this.lockWait = lockWait;
+		this.lockHold = lockHold;
+	}
+
+	/**
+	 * Returns true if these statistics are for read-only transactions.
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Returns the number of transactions that have been committed.
+	 */
+	public long getCommitCount() {
+		return commitCount;
+	}
+
+	/**
+	 * Returns the number of transactions that have been aborted.
+	 */
+	public long getAbortCount() {
+		return abortCount;
+	}
+
+	/**
+	 * Returns the time transactions spent waiting for the database lock.
+	 */
+	public LatencyStats getLockWaitStats() {
+		return lockWait;
+	}
+
+	/**
+	 * Returns the time transactions held the database lock, which is the
+	 * duration of each transaction.
+	 */
+	public LatencyStats getLockHoldStats() {
+		return lockHold;
+	}
+}
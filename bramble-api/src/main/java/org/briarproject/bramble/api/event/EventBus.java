@@ -2,6 +2,8 @@ package org.briarproject.bramble.api.event;
 
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.util.concurrent.Executor;
+
 @NotNullByDefault
 public interface EventBus {
 
@@ -11,15 +13,43 @@ public interface EventBus {
 	void addListener(EventListener l);
 
 	/**
-	 * Removes a listener.
+	 * Adds a listener to be notified when events of the given class, or any
+	 * of its subclasses, occur. The listener is not notified of other events.
+	 * <p>
+	 * A listener may be added for more than one class.
+	 */
+	void addListener(Class<? extends Event> eventClass, EventListener l);
+
+	/**
+	 * Adds a listener to be notified when events of the given class, or any
+	 * of its subclasses, occur. The listener is notified on the given
+	 * executor instead of the {@link EventExecutor}, in the order the events
+	 * were broadcast, so a slow listener does not delay other listeners.
+	 * <p>
+	 * At most {@code maxQueuedEvents} events are queued for the listener.
+	 * Events that are broadcast while the queue is full are not delivered to
+	 * the listener.
+	 */
+	void addListener(Class<? extends Event> eventClass, EventListener l,
+			Executor executor, int maxQueuedEvents);
+
+	/**
+	 * Removes a listener. If the listener was added more than once, only
+	 * the earliest registration is removed.
 	 */
 	void removeListener(EventListener l);
 
 	/**
-	 * Asynchronously notifies all listeners of an event. Listeners are
-	 * notified on the {@link EventExecutor}.
+	 * Asynchronously notifies all interested listeners of an event. Listeners
+	 * are notified on the {@link EventExecutor} unless they were added with
+	 * their own executors.
 	 * <p>
 	 * This method can safely be called while holding a lock.
 	 */
 	void broadcast(Event e);
+
+	/**
+	 * Returns a snapshot of the event bus's dispatch statistics.
+	 */
+	EventBusStats getStats();
 }
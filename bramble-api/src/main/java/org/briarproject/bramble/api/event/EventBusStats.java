@@ -0,0 +1,75 @@
+package org.briarproject.bramble.api.event;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the state of the {@link EventBus}.
+ */
+@Immutable
+@NotNullByDefault
+public class EventBusStats {
+
+	private final long broadcastCount, droppedCount;
+	private final long totalDispatchLatency, maxDispatchLatency;
+	private final int queuedEvents, queuedListenerEvents;
+
+	public EventBusStats(long broadcastCount, long droppedCount,
+			long totalDispatchLatency, long maxDispatchLatency,
+			int queuedEvents, int queuedListenerEvents) {
+		this.broadcastCount = broadcastCount;
+		this.droppedCount = droppedCount;
+		this.totalDispatchLatency = totalDispatchLatency;
+		this.maxDispatchLatency = maxDispatchLatency;
+		this.queuedEvents = queuedEvents;
+		this.queuedListenerEvents = queuedListenerEvents;
+	}
+
+	/**
+	 * Returns the number of events that have been broadcast.
+	 */
+	public long getBroadcastCount() {
+		return broadcastCount;
+	}
+
+	/**
+	 * Returns the number of events that were not delivered to a listener
+	 * because the listener's queue was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Returns the total time in milliseconds between events being broadcast
+	 * and being dispatched on the {@link EventExecutor}.
+	 */
+	public long getTotalDispatchLatency() {
+		return totalDispatchLatency;
+	}
+
+	/**
+	 * Returns the longest time in milliseconds between an event being
+	 * broadcast and being dispatched on the {@link EventExecutor}.
+	 */
+	public long getMaxDispatchLatency() {
+		return maxDispatchLatency;
+	}
+
+	/**
+	 * Returns the number of events that have been broadcast but not yet
+	 * dispatched on the {@link EventExecutor}.
+	 */
+	public int getQueuedEvents() {
+		return queuedEvents;
+	}
+
+	/**
+	 * Returns the number of events that are waiting to be delivered to
+	 * listeners with their own executors.
+	 */
+	public int getQueuedListenerEvents() {
+		return queuedListenerEvents;
+	}
+}
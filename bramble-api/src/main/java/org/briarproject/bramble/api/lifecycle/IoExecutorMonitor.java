@@ -0,0 +1,12 @@
+package org.briarproject.bramble.api.lifecycle;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+@NotNullByDefault
+public interface IoExecutorMonitor {
+
+	/**
+	 * Returns a snapshot of the state of the {@link IoExecutor}.
+	 */
+	IoExecutorStats getStats();
+}
@@ -0,0 +1,63 @@
+package org.briarproject.bramble.api.lifecycle;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the state of the {@link IoExecutor}.
+ */
+@Immutable
+@NotNullByDefault
+public class IoExecutorStats {
+
+	private final boolean virtualThreads;
+	private final int threadCount, activeTasks, peakActiveTasks;
+	private final long completedTasks;
+
+	public IoExecutorStats(boolean virtualThreads, int threadCount,
+			int activeTasks, int peakActiveTasks, long completedTasks) {
+		this.virtualThreads = virtualThreads;
+		this.threadCount = threadCount;
+		this.activeTasks = activeTasks;
+		this.peakActiveTasks = peakActiveTasks;
+		this.completedTasks = completedTasks;
+	}
+
+	/**
+	 * Returns true if the executor runs each task on its own virtual thread,
+	 * or false if it uses a pool of platform threads.
+	 */
+	public boolean usesVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Returns the number of threads that currently belong to the executor,
+	 * including idle platform threads that are kept for reuse.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Returns the number of tasks that are currently running.
+	 */
+	public int getActiveTasks() {
+		return activeTasks;
+	}
+
+	/**
+	 * Returns the largest number of tasks that have run at the same time.
+	 */
+	public int getPeakActiveTasks() {
+		return peakActiveTasks;
+	}
+
+	/**
+	 * Returns the number of tasks that have finished running.
+	 */
+	public long getCompletedTasks() {
+		return completedTasks;
+	}
+}
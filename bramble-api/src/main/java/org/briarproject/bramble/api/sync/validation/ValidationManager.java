@@ -28,4 +28,20 @@ public interface ValidationManager {
 	 */
 	void registerIncomingMessageHook(ClientId c, int majorVersion,
 			IncomingMessageHook hook);
+
+	/**
+	 * Returns the number of messages that are waiting to be validated or to
+	 * have their validation results stored.
+	 */
+	int getValidationBacklog();
+
+	/**
+	 * Returns the number of messages that have been validated since startup.
+	 */
+	long getValidatedMessageCount();
+
+	/**
+	 * Returns the number of messages that have been delivered since startup.
+	 */
+	long getDeliveredMessageCount();
 }
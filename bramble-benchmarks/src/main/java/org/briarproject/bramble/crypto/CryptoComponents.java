@@ -0,0 +1,15 @@
+package org.briarproject.bramble.crypto;
+
+import org.briarproject.bramble.api.crypto.CryptoComponent;
+import org.briarproject.bramble.test.TestSecureRandomProvider;
+
+/**
+ * Gives benchmarks in other packages access to the crypto component without
+ * going through Dagger.
+ */
+public class CryptoComponents {
+
+	public static CryptoComponent createCryptoComponent() {
+		return new CryptoComponentImpl(new TestSecureRandomProvider(), null);
+	}
+}
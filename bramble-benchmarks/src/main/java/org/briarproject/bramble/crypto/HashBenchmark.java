@@ -0,0 +1,95 @@
+package org.briarproject.bramble.crypto;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.briarproject.bramble.api.crypto.CryptoComponent;
+import org.briarproject.bramble.util.ByteUtils;
+import org.briarproject.bramble.util.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.briarproject.bramble.api.UniqueId.LENGTH;
+import static org.briarproject.bramble.api.sync.Message.FORMAT_VERSION;
+import static org.briarproject.bramble.api.sync.MessageId.BLOCK_LABEL;
+import static org.briarproject.bramble.api.sync.MessageId.ID_LABEL;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.util.ByteUtils.INT_32_BYTES;
+import static org.briarproject.bramble.util.ByteUtils.INT_64_BYTES;
+
+/**
+ * Compares {@link CryptoComponentImpl#hash(String, byte[]...)}, which
+ * reuses a digest on each thread, with the previous implementation, which
+ * allocated a new digest for every hash. Each operation calculates a message
+ * ID in the same way as the message factory, for a message with the given
+ * body length. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	private static final byte[] FORMAT_VERSION_BYTES =
+			new byte[] {FORMAT_VERSION};
+
+	@Param({"100", "32768"})
+	public int bodyLength;
+
+	@Param({"allocating", "reused"})
+	public String implementation;
+
+	private final CryptoComponent crypto =
+			CryptoComponents.createCryptoComponent();
+	private final byte[] groupId = getRandomBytes(LENGTH);
+	private final byte[] timeBytes = new byte[INT_64_BYTES];
+
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+		body = getRandomBytes(bodyLength);
+		ByteUtils.writeUint64(System.currentTimeMillis(), timeBytes, 0);
+	}
+
+	@Benchmark
+	public byte[] getMessageId() {
+		byte[] rootHash = hash(BLOCK_LABEL, FORMAT_VERSION_BYTES, body);
+		return hash(ID_LABEL, FORMAT_VERSION_BYTES, groupId, timeBytes,
+				rootHash);
+	}
+
+	private byte[] hash(String label, byte[]... inputs) {
+		if (implementation.equals("allocating"))
+			return hashWithNewDigest(label, inputs);
+		return crypto.hash(label, inputs);
+	}
+
+	private byte[] hashWithNewDigest(String label, byte[]... inputs) {
+		byte[] labelBytes = StringUtils.toUtf8(label);
+		Digest digest = new Blake2bDigest(256);
+		byte[] length = new byte[INT_32_BYTES];
+		ByteUtils.writeUint32(labelBytes.length, length, 0);
+		digest.update(length, 0, length.length);
+		digest.update(labelBytes, 0, labelBytes.length);
+		for (byte[] input : inputs) {
+			ByteUtils.writeUint32(input.length, length, 0);
+			digest.update(length, 0, length.length);
+			digest.update(input, 0, input.length);
+		}
+		byte[] output = new byte[digest.getDigestSize()];
+		digest.doFinal(output, 0);
+		return output;
+	}
+}
@@ -0,0 +1,91 @@
+package org.briarproject.bramble.crypto;
+
+import org.briarproject.bramble.api.crypto.SecretKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.briarproject.bramble.api.transport.TransportConstants.MAX_PAYLOAD_LENGTH;
+import static org.briarproject.bramble.api.transport.TransportConstants.STREAM_HEADER_NONCE_LENGTH;
+import static org.briarproject.bramble.api.transport.TransportConstants.TAG_LENGTH;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getSecretKey;
+
+/**
+ * Measures the throughput of stream encryption and decryption with
+ * full-size frames. Each operation processes {@link #FRAMES} frames, so
+ * multiplying the score by {@link #STREAM_BYTES} gives bytes per second on a
+ * single core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamCryptoBenchmark {
+
+	private static final int FRAMES = 64;
+	private static final int STREAM_BYTES = FRAMES * MAX_PAYLOAD_LENGTH;
+
+	private final byte[] payload = getRandomBytes(MAX_PAYLOAD_LENGTH);
+	private final byte[] readBuffer = new byte[MAX_PAYLOAD_LENGTH];
+	private final byte[] tag = getRandomBytes(TAG_LENGTH);
+	private final byte[] streamHeaderNonce =
+			getRandomBytes(STREAM_HEADER_NONCE_LENGTH);
+	private final SecretKey streamHeaderKey = getSecretKey();
+	private final SecretKey frameKey = getSecretKey();
+	private final AuthenticatedCipher cipher =
+			new XSalsa20Poly1305AuthenticatedCipher();
+
+	private ByteArrayOutputStream out;
+	private byte[] ciphertext;
+
+	@Setup
+	public void setUp() throws IOException {
+		out = new ByteArrayOutputStream(STREAM_BYTES * 2);
+		encryptStream();
+		ciphertext = out.toByteArray();
+	}
+
+	@Benchmark
+	public int encrypt() throws IOException {
+		return encryptStream();
+	}
+
+	@Benchmark
+	public int decrypt() throws IOException {
+		// Skip the tag, which is read by the caller in production
+		ByteArrayInputStream in = new ByteArrayInputStream(ciphertext,
+				TAG_LENGTH, ciphertext.length - TAG_LENGTH);
+		StreamDecrypterImpl decrypter = new StreamDecrypterImpl(in, cipher,
+				0, streamHeaderKey);
+		int total = 0;
+		int read;
+		while ((read = decrypter.readFrame(readBuffer)) != -1) total += read;
+		return total;
+	}
+
+	private int encryptStream() throws IOException {
+		out.reset();
+		StreamEncrypterImpl encrypter = new StreamEncrypterImpl(out, cipher,
+				0, tag, streamHeaderNonce, streamHeaderKey, frameKey);
+		for (int i = 0; i < FRAMES; i++) {
+			encrypter.writeFrame(payload, payload.length, 0, i == FRAMES - 1);
+		}
+		encrypter.flush();
+		return out.size();
+	}
+}
@@ -0,0 +1,79 @@
+package org.briarproject.bramble.data;
+
+import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.briarproject.bramble.api.data.BdfReader.DEFAULT_MAX_BUFFER_SIZE;
+import static org.briarproject.bramble.api.data.BdfReader.DEFAULT_NESTED_LIMIT;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.briarproject.bramble.util.StringUtils.getRandomString;
+
+/**
+ * Measures encoding and decoding of a BDF list shaped like a typical client
+ * message: a few IDs, a timestamp, some text and a metadata dictionary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BdfBenchmark {
+
+	/**
+	 * The length of the message text in characters.
+	 */
+	@Param({"100", "10000"})
+	public int textLength;
+
+	private BdfList list;
+	private byte[] encoded;
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setUp() throws IOException {
+		BdfDictionary meta = new BdfDictionary();
+		meta.put("timestamp", System.currentTimeMillis());
+		meta.put("read", true);
+		meta.put("local", false);
+		meta.put("contactId", 123L);
+		meta.put("parent", getRandomId());
+		list = BdfList.of(0L, getRandomId(), getRandomId(),
+				System.currentTimeMillis(), getRandomString(textLength),
+				BdfList.of(getRandomBytes(32), getRandomBytes(64)), meta);
+		out = new ByteArrayOutputStream();
+		new BdfWriterImpl(out).writeList(list);
+		encoded = out.toByteArray();
+	}
+
+	@Benchmark
+	public int encode() throws IOException {
+		out.reset();
+		new BdfWriterImpl(out).writeList(list);
+		return out.size();
+	}
+
+	@Benchmark
+	public BdfList decode() throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream(encoded);
+		return new BdfReaderImpl(in, DEFAULT_NESTED_LIMIT,
+				DEFAULT_MAX_BUFFER_SIZE, true).readList();
+	}
+}
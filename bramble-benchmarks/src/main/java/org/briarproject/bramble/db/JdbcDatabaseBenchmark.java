@@ -0,0 +1,226 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.Metadata;
+import org.briarproject.bramble.api.identity.Identity;
+import org.briarproject.bramble.api.identity.LocalAuthor;
+import org.briarproject.bramble.api.sync.ClientId;
+import org.briarproject.bramble.api.sync.Group;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.Message;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.validation.MessageState;
+import org.briarproject.bramble.system.SystemClock;
+import org.briarproject.bramble.test.TestDatabaseConfig;
+import org.briarproject.bramble.test.TestMessageFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.logging.Level.OFF;
+import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
+import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
+import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_LENGTH;
+import static org.briarproject.bramble.api.sync.validation.MessageState.DELIVERED;
+import static org.briarproject.bramble.test.TestUtils.deleteTestDirectory;
+import static org.briarproject.bramble.test.TestUtils.getAuthor;
+import static org.briarproject.bramble.test.TestUtils.getClientId;
+import static org.briarproject.bramble.test.TestUtils.getGroup;
+import static org.briarproject.bramble.test.TestUtils.getIdentity;
+import static org.briarproject.bramble.test.TestUtils.getMessage;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getSecretKey;
+import static org.briarproject.bramble.test.TestUtils.getTestDirectory;
+
+/**
+ * Measures the most frequently used {@link JdbcDatabase} queries against an
+ * H2 database populated with the given number of contacts and messages.
+ * Each benchmark runs one query in its own transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcDatabaseBenchmark {
+
+	/**
+	 * How many groups to create for each contact. Briar has seven.
+	 */
+	private static final int GROUPS_PER_CONTACT = 7;
+	private static final int METADATA_KEYS_PER_MESSAGE = 5;
+	private static final int METADATA_VALUE_LENGTH = 20;
+	private static final String[] METADATA_KEYS =
+			{"timestamp", "read", "local", "parent", "author"};
+
+	// All our transports use a maximum latency of 30 seconds
+	private static final int MAX_LATENCY = 30 * 1000;
+
+	private static final int BATCH_CAPACITY =
+			(RECORD_HEADER_BYTES + MAX_MESSAGE_LENGTH) * 2;
+
+	@Param({"20", "200"})
+	public int contacts;
+
+	@Param({"20", "200"})
+	public int messagesPerGroup;
+
+	private final File testDir = getTestDirectory();
+	private final Random random = new Random();
+	private final List<ContactId> contactIds = new ArrayList<>();
+	private final List<GroupId> groupIds = new ArrayList<>();
+	private final List<MessageId> messageIds = new ArrayList<>();
+
+	private Database<Connection> db;
+
+	@Setup
+	public void setUp() throws DbException {
+		// Disable logging
+		Logger.getLogger("").setLevel(OFF);
+		deleteTestDirectory(testDir);
+		db = new H2Database(new TestDatabaseConfig(testDir),
+				new TestMessageFactory(), new SystemClock());
+		db.open(getSecretKey(), null);
+		populateDatabase();
+	}
+
+	@TearDown
+	public void tearDown() throws DbException {
+		db.close();
+		deleteTestDirectory(testDir);
+	}
+
+	@Benchmark
+	public boolean containsVisibleMessage() throws DbException {
+		Connection txn = db.startTransaction();
+		boolean result = db.containsVisibleMessage(txn,
+				pickRandom(contactIds), pickRandom(messageIds));
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	@Benchmark
+	public Collection<MessageId> getMessageIdsWithQuery()
+			throws DbException {
+		Metadata query = new Metadata();
+		query.put(METADATA_KEYS[1], new byte[] {1});
+		Connection txn = db.startTransaction();
+		Collection<MessageId> result =
+				db.getMessageIds(txn, pickRandom(groupIds), query);
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	@Benchmark
+	public Map<MessageId, Metadata> getMessageMetadataForGroup()
+			throws DbException {
+		Connection txn = db.startTransaction();
+		Map<MessageId, Metadata> result =
+				db.getMessageMetadata(txn, pickRandom(groupIds));
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	@Benchmark
+	public Collection<MessageId> getMessagesToOffer() throws DbException {
+		Connection txn = db.startTransaction();
+		Collection<MessageId> result = db.getMessagesToOffer(txn,
+				pickRandom(contactIds), MAX_MESSAGE_IDS, MAX_LATENCY);
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	@Benchmark
+	public Collection<MessageId> getMessagesToSend() throws DbException {
+		Connection txn = db.startTransaction();
+		Collection<MessageId> result = db.getMessagesToSend(txn,
+				pickRandom(contactIds), BATCH_CAPACITY, MAX_LATENCY);
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	@Benchmark
+	public Collection<MessageId> getMessagesToAck() throws DbException {
+		Connection txn = db.startTransaction();
+		Collection<MessageId> result = db.getMessagesToAck(txn,
+				pickRandom(contactIds), MAX_MESSAGE_IDS);
+		db.commitTransaction(txn);
+		return result;
+	}
+
+	private <T> T pickRandom(List<T> list) {
+		return list.get(random.nextInt(list.size()));
+	}
+
+	private void populateDatabase() throws DbException {
+		Identity identity = getIdentity();
+		LocalAuthor localAuthor = identity.getLocalAuthor();
+		List<ClientId> clientIds = new ArrayList<>();
+		for (int i = 0; i < GROUPS_PER_CONTACT; i++)
+			clientIds.add(getClientId());
+		Connection txn = db.startTransaction();
+		db.addIdentity(txn, identity);
+		for (int i = 0; i < contacts; i++) {
+			ContactId c = db.addContact(txn, getAuthor(), localAuthor.getId(),
+					null, true);
+			contactIds.add(c);
+			for (int j = 0; j < GROUPS_PER_CONTACT; j++) {
+				Group g = getGroup(clientIds.get(j), 123);
+				groupIds.add(g.getId());
+				db.addGroup(txn, g);
+				db.addGroupVisibility(txn, c, g.getId(), true);
+				for (int k = 0; k < messagesPerGroup; k++) {
+					Message m = getMessage(g.getId());
+					messageIds.add(m.getId());
+					boolean local = random.nextBoolean();
+					MessageState state = local ? DELIVERED :
+							MessageState.fromValue(random.nextInt(4));
+					db.addMessage(txn, m, state, true, false,
+							local ? null : c);
+					if (!local && random.nextBoolean())
+						db.raiseAckFlag(txn, c, m.getId());
+					db.mergeMessageMetadata(txn, m.getId(), getMetadata());
+				}
+			}
+			// Commit periodically to keep the transaction size reasonable
+			db.commitTransaction(txn);
+			txn = db.startTransaction();
+		}
+		db.commitTransaction(txn);
+	}
+
+	private Metadata getMetadata() {
+		Metadata meta = new Metadata();
+		for (int i = 0; i < METADATA_KEYS_PER_MESSAGE; i++) {
+			if (i == 1) {
+				meta.put(METADATA_KEYS[i],
+						new byte[] {(byte) random.nextInt(2)});
+			} else {
+				meta.put(METADATA_KEYS[i],
+						getRandomBytes(METADATA_VALUE_LENGTH));
+			}
+		}
+		return meta;
+	}
+}
@@ -0,0 +1,19 @@
+package org.briarproject.bramble.record;
+
+import org.briarproject.bramble.api.record.RecordReaderFactory;
+import org.briarproject.bramble.api.record.RecordWriterFactory;
+
+/**
+ * Gives benchmarks in other packages access to the record reader and writer
+ * implementations without going through Dagger.
+ */
+public class RecordFactories {
+
+	public static RecordReaderFactory createRecordReaderFactory() {
+		return new RecordReaderFactoryImpl();
+	}
+
+	public static RecordWriterFactory createRecordWriterFactory() {
+		return new RecordWriterFactoryImpl();
+	}
+}
@@ -0,0 +1,115 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.record.RecordReaderFactory;
+import org.briarproject.bramble.api.record.RecordWriterFactory;
+import org.briarproject.bramble.api.sync.Ack;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.Message;
+import org.briarproject.bramble.api.sync.MessageFactory;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.Offer;
+import org.briarproject.bramble.crypto.CryptoComponents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
+import static org.briarproject.bramble.record.RecordFactories.createRecordReaderFactory;
+import static org.briarproject.bramble.record.RecordFactories.createRecordWriterFactory;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+
+/**
+ * Measures writing and reading a batch of sync records: an ack, an offer and
+ * the given number of messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncRecordBenchmark {
+
+	@Param({"10", "100"})
+	public int messages;
+
+	@Param({"1000"})
+	public int messageBodyLength;
+
+	private final RecordReaderFactory recordReaderFactory =
+			createRecordReaderFactory();
+	private final RecordWriterFactory recordWriterFactory =
+			createRecordWriterFactory();
+
+	private MessageFactory messageFactory;
+	private Ack ack;
+	private Offer offer;
+	private List<Message> batch;
+	private ByteArrayOutputStream out;
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		messageFactory = new MessageFactoryImpl(
+				CryptoComponents.createCryptoComponent());
+		List<MessageId> ids = new ArrayList<>(MAX_MESSAGE_IDS);
+		for (int i = 0; i < MAX_MESSAGE_IDS; i++)
+			ids.add(new MessageId(getRandomId()));
+		ack = new Ack(ids);
+		offer = new Offer(ids);
+		GroupId g = new GroupId(getRandomId());
+		batch = new ArrayList<>(messages);
+		for (int i = 0; i < messages; i++) {
+			batch.add(messageFactory.createMessage(g,
+					System.currentTimeMillis(),
+					getRandomBytes(messageBodyLength)));
+		}
+		out = new ByteArrayOutputStream();
+		write();
+		encoded = out.toByteArray();
+	}
+
+	@Benchmark
+	public long write() throws IOException {
+		out.reset();
+		SyncRecordWriterImpl writer = new SyncRecordWriterImpl(messageFactory,
+				recordWriterFactory.createRecordWriter(out));
+		writer.writeAck(ack);
+		writer.writeOffer(offer);
+		for (Message m : batch) writer.writeMessage(m);
+		writer.flush();
+		return writer.getBytesWritten();
+	}
+
+	@Benchmark
+	public int read() throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream(encoded);
+		SyncRecordReaderImpl reader = new SyncRecordReaderImpl(messageFactory,
+				recordReaderFactory.createRecordReader(in));
+		int records = 0;
+		while (!reader.eof()) {
+			if (reader.hasAck()) reader.readAck();
+			else if (reader.hasOffer()) reader.readOffer();
+			else if (reader.hasMessage()) reader.readMessage();
+			else throw new AssertionError();
+			records++;
+		}
+		return records;
+	}
+}
@@ -0,0 +1,64 @@
+package org.briarproject.bramble.transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.briarproject.bramble.api.transport.TransportConstants.REORDERING_WINDOW_SIZE;
+import static org.briarproject.bramble.api.transport.TransportConstants.TAG_LENGTH;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+
+/**
+ * Measures incoming tag lookups for a transport with the given number of
+ * contacts. Each contact has a reordering window of tags for each of three
+ * time periods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagTableBenchmark {
+
+	@Param({"100", "5000"})
+	public int contacts;
+
+	private final Random random = new Random();
+	private final TagTable<Object> table = new TagTable<>();
+
+	private byte[][] tags;
+	private byte[] unknownTag;
+
+	@Setup
+	public void setUp() {
+		tags = new byte[contacts * 3 * REORDERING_WINDOW_SIZE][];
+		Object value = new Object();
+		for (int i = 0; i < tags.length; i++) {
+			tags[i] = getRandomBytes(TAG_LENGTH);
+			table.put(tags[i], value);
+		}
+		unknownTag = getRandomBytes(TAG_LENGTH);
+	}
+
+	@Benchmark
+	public Object lookUpKnownTag() {
+		return table.get(tags[random.nextInt(tags.length)]);
+	}
+
+	@Benchmark
+	public Object lookUpUnknownTag() {
+		return table.get(unknownTag);
+	}
+}
@@ -38,6 +38,7 @@ import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.db.DatabaseComponent.NO_CLEANUP_DEADLINE;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.BACKGROUND;
 import static org.briarproject.bramble.util.LogUtils.logException;
 
 @ThreadSafe
@@ -59,7 +60,7 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 	private final Set<CleanupTask> pending = new HashSet<>();
 
 	@Inject
-	CleanupManagerImpl(@DatabaseExecutor Executor dbExecutor,
+	CleanupManagerImpl(@DatabaseExecutor(BACKGROUND) Executor dbExecutor,
 			DatabaseComponent db, TaskScheduler taskScheduler, Clock clock) {
 		this.dbExecutor = dbExecutor;
 		this.db = db;
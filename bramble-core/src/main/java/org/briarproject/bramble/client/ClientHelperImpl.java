@@ -38,7 +38,6 @@ import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.util.Base32;
 import org.briarproject.nullsafety.NotNullByDefault;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -290,8 +289,7 @@ class ClientHelperImpl implements ClientHelper {
 	@Override
 	public BdfDictionary toDictionary(byte[] b, int off, int len)
 			throws FormatException {
-		ByteArrayInputStream in = new ByteArrayInputStream(b, off, len);
-		BdfReader reader = bdfReaderFactory.createReader(in);
+		BdfReader reader = bdfReaderFactory.createReader(b, off, len, true);
 		try {
 			BdfDictionary dictionary = reader.readDictionary();
 			if (!reader.eof()) throw new FormatException();
@@ -324,8 +322,8 @@ class ClientHelperImpl implements ClientHelper {
 
 	private BdfList toList(byte[] b, int off, int len, boolean canonical)
 			throws FormatException {
-		ByteArrayInputStream in = new ByteArrayInputStream(b, off, len);
-		BdfReader reader = bdfReaderFactory.createReader(in, canonical);
+		BdfReader reader =
+				bdfReaderFactory.createReader(b, off, len, canonical);
 		try {
 			BdfList list = reader.readList();
 			if (!reader.eof()) throw new FormatException();
@@ -66,6 +66,7 @@ class CryptoComponentImpl implements CryptoComponent {
 	private static final byte PBKDF_FORMAT_SCRYPT_STRENGTHENED = 1;
 	private static final byte ONION_HS_PROTOCOL_VERSION = 3;
 	private static final int ONION_CHECKSUM_BYTES = 2;
+	private static final int PUBLIC_KEY_CACHE_CAPACITY = 1000;
 
 	private final SecureRandom secureRandom;
 	private final PasswordBasedKdf passwordBasedKdf;
@@ -73,6 +74,18 @@ class CryptoComponentImpl implements CryptoComponent {
 	private final KeyPairGenerator signatureKeyPairGenerator;
 	private final KeyParser agreementKeyParser, signatureKeyParser;
 	private final MessageEncrypter messageEncrypter;
+	private final EdPublicKeyCache publicKeyCache =
+			new EdPublicKeyCache(PUBLIC_KEY_CACHE_CAPACITY);
+	/**
+	 * Each thread reuses an unkeyed digest for hashing, rather than
+	 * allocating a new digest and its buffers for every hash.
+	 */
+	private final ThreadLocal<Digest> hashDigest = new ThreadLocal<Digest>() {
+		@Override
+		protected Digest initialValue() {
+			return new Blake2bDigest(256);
+		}
+	};
 
 	@Inject
 	CryptoComponentImpl(SecureRandomProvider secureRandomProvider,
@@ -296,8 +309,8 @@ class CryptoComponentImpl implements CryptoComponent {
 			throws GeneralSecurityException {
 		if (!publicKey.getKeyType().equals(KEY_TYPE_SIGNATURE))
 			throw new IllegalArgumentException();
-		Signature sig = new EdSignature();
-		sig.initVerify(publicKey);
+		EdSignature sig = new EdSignature();
+		sig.initVerify(publicKeyCache.get(publicKey));
 		updateSignature(sig, label, signed);
 		return sig.verify(signature);
 	}
@@ -316,17 +329,11 @@ class CryptoComponentImpl implements CryptoComponent {
 
 	@Override
 	public byte[] hash(String label, byte[]... inputs) {
-		byte[] labelBytes = StringUtils.toUtf8(label);
-		Digest digest = new Blake2bDigest(256);
-		byte[] length = new byte[INT_32_BYTES];
-		ByteUtils.writeUint32(labelBytes.length, length, 0);
-		digest.update(length, 0, length.length);
-		digest.update(labelBytes, 0, labelBytes.length);
-		for (byte[] input : inputs) {
-			ByteUtils.writeUint32(input.length, length, 0);
-			digest.update(length, 0, length.length);
-			digest.update(input, 0, input.length);
-		}
+		// Reset the digest in case an earlier call failed before doFinal()
+		// could reset it
+		Digest digest = hashDigest.get();
+		digest.reset();
+		updateDigest(digest, label, inputs);
 		byte[] output = new byte[digest.getDigestSize()];
 		digest.doFinal(output, 0);
 		return output;
@@ -334,22 +341,35 @@ class CryptoComponentImpl implements CryptoComponent {
 
 	@Override
 	public byte[] mac(String label, SecretKey macKey, byte[]... inputs) {
-		byte[] labelBytes = StringUtils.toUtf8(label);
 		Digest mac = new Blake2bDigest(macKey.getBytes(), 32, null, null);
-		byte[] length = new byte[INT_32_BYTES];
-		ByteUtils.writeUint32(labelBytes.length, length, 0);
-		mac.update(length, 0, length.length);
-		mac.update(labelBytes, 0, labelBytes.length);
-		for (byte[] input : inputs) {
-			ByteUtils.writeUint32(input.length, length, 0);
-			mac.update(length, 0, length.length);
-			mac.update(input, 0, input.length);
-		}
+		updateDigest(mac, label, inputs);
 		byte[] output = new byte[mac.getDigestSize()];
 		mac.doFinal(output, 0);
 		return output;
 	}
 
+	private void updateDigest(Digest digest, String label, byte[]... inputs) {
+		byte[] labelBytes = StringUtils.toUtf8(label);
+		updateLength(digest, labelBytes.length);
+		digest.update(labelBytes, 0, labelBytes.length);
+		for (byte[] input : inputs) {
+			updateLength(digest, input.length);
+			digest.update(input, 0, input.length);
+		}
+	}
+
+	/**
+	 * Updates the digest with the given length as a 32-bit unsigned
+	 * integer, in the same byte order as
+	 * {@link ByteUtils#writeUint32(long, byte[], int)}.
+	 */
+	private void updateLength(Digest digest, int length) {
+		digest.update((byte) (length >> 24));
+		digest.update((byte) (length >> 16));
+		digest.update((byte) (length >> 8));
+		digest.update((byte) length);
+	}
+
 	@Override
 	public boolean verifyMac(byte[] mac, String label, SecretKey macKey,
 			byte[]... inputs) {
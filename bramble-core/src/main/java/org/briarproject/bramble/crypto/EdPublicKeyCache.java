@@ -0,0 +1,59 @@
+package org.briarproject.bramble.crypto;
+
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+
+import org.briarproject.bramble.api.Bytes;
+import org.briarproject.bramble.api.crypto.PublicKey;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded, least recently used cache of parsed signature public keys, so
+ * that verifying many signatures by the same author, as when syncing a
+ * forum or blog, only decodes the author's key once.
+ */
+@ThreadSafe
+@NotNullByDefault
+class EdPublicKeyCache {
+
+	private final int capacity;
+
+	@GuardedBy("this")
+	private final Map<Bytes, EdDSAPublicKey> cache;
+
+	EdPublicKeyCache(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException();
+		this.capacity = capacity;
+		cache = new LinkedHashMap<Bytes, EdDSAPublicKey>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Entry<Bytes, EdDSAPublicKey> e) {
+				return size() > EdPublicKeyCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the parsed form of the given key, parsing it if it isn't
+	 * cached.
+	 */
+	EdDSAPublicKey get(PublicKey k) {
+		Bytes encoded = new Bytes(k.getEncoded());
+		synchronized (this) {
+			EdDSAPublicKey parsed = cache.get(encoded);
+			if (parsed != null) return parsed;
+		}
+		// Parse the key without holding the lock
+		EdDSAPublicKey parsed = EdSignature.parsePublicKey(k);
+		synchronized (this) {
+			cache.put(encoded, parsed);
+		}
+		return parsed;
+	}
+}
@@ -49,11 +49,15 @@ class EdSignature implements Signature {
 
 	@Override
 	public void initVerify(PublicKey k) throws GeneralSecurityException {
-		if (!k.getKeyType().equals(KEY_TYPE_SIGNATURE))
-			throw new IllegalArgumentException();
-		EdDSAPublicKey publicKey = new EdDSAPublicKey(
-				new EdDSAPublicKeySpec(k.getEncoded(), CURVE_SPEC));
-		signature.initVerify(publicKey);
+		initVerify(parsePublicKey(k));
+	}
+
+	/**
+	 * Initialises the signature for verification with a key that has
+	 * already been parsed by {@link #parsePublicKey(PublicKey)}.
+	 */
+	void initVerify(EdDSAPublicKey k) throws GeneralSecurityException {
+		signature.initVerify(k);
 	}
 
 	@Override
@@ -81,4 +85,15 @@ class EdSignature implements Signature {
 	public boolean verify(byte[] sig) throws GeneralSecurityException {
 		return signature.verify(sig);
 	}
+
+	/**
+	 * Decodes the curve point of the given public key. This is the most
+	 * expensive part of initialising a signature for verification.
+	 */
+	static EdDSAPublicKey parsePublicKey(PublicKey k) {
+		if (!k.getKeyType().equals(KEY_TYPE_SIGNATURE))
+			throw new IllegalArgumentException();
+		return new EdDSAPublicKey(
+				new EdDSAPublicKeySpec(k.getEncoded(), CURVE_SPEC));
+	}
 }
@@ -12,6 +12,7 @@ import java.security.GeneralSecurityException;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import static java.util.Arrays.fill;
 import static org.briarproject.bramble.api.transport.TransportConstants.FRAME_HEADER_LENGTH;
 import static org.briarproject.bramble.api.transport.TransportConstants.FRAME_HEADER_PLAINTEXT_LENGTH;
 import static org.briarproject.bramble.api.transport.TransportConstants.FRAME_NONCE_LENGTH;
@@ -40,7 +41,7 @@ class StreamEncrypterImpl implements StreamEncrypter {
 	private final byte[] framePlaintext, frameCiphertext;
 
 	private long frameNumber;
-	private boolean writeTag, writeStreamHeader;
+	private boolean writeStreamHeader;
 
 	StreamEncrypterImpl(OutputStream out, AuthenticatedCipher cipher,
 			long streamNumber, @Nullable byte[] tag, byte[] streamHeaderNonce,
@@ -57,7 +58,6 @@ class StreamEncrypterImpl implements StreamEncrypter {
 		framePlaintext = new byte[MAX_PAYLOAD_LENGTH];
 		frameCiphertext = new byte[MAX_FRAME_LENGTH];
 		frameNumber = 0;
-		writeTag = (tag != null);
 		writeStreamHeader = true;
 	}
 
@@ -70,9 +70,7 @@ class StreamEncrypterImpl implements StreamEncrypter {
 			throw new IllegalArgumentException();
 		// Don't allow the frame counter to wrap
 		if (frameNumber < 0) throw new IOException();
-		// Write the tag if required
-		if (writeTag) writeTag();
-		// Write the stream header if required
+		// Write the tag and stream header if required
 		if (writeStreamHeader) writeStreamHeader();
 		// Encode the frame header
 		FrameEncoder.encodeHeader(frameHeader, finalFrame, payloadLength,
@@ -87,15 +85,20 @@ class StreamEncrypterImpl implements StreamEncrypter {
 		} catch (GeneralSecurityException badCipher) {
 			throw new RuntimeException(badCipher);
 		}
-		// Combine the payload and padding
-		System.arraycopy(payload, 0, framePlaintext, 0, payloadLength);
-		for (int i = 0; i < paddingLength; i++)
-			framePlaintext[payloadLength + i] = 0;
+		// If there's padding, combine the payload and padding. Otherwise the
+		// payload can be encrypted without copying it
+		byte[] plaintext = payload;
+		if (paddingLength > 0) {
+			System.arraycopy(payload, 0, framePlaintext, 0, payloadLength);
+			fill(framePlaintext, payloadLength,
+					payloadLength + paddingLength, (byte) 0);
+			plaintext = framePlaintext;
+		}
 		// Encrypt and authenticate the payload and padding
 		FrameEncoder.encodeNonce(frameNonce, frameNumber, false);
 		try {
 			cipher.init(true, frameKey, frameNonce);
-			int encrypted = cipher.process(framePlaintext, 0,
+			int encrypted = cipher.process(plaintext, 0,
 					payloadLength + paddingLength, frameCiphertext,
 					FRAME_HEADER_LENGTH);
 			if (encrypted != payloadLength + paddingLength + MAC_LENGTH)
@@ -109,12 +112,6 @@ class StreamEncrypterImpl implements StreamEncrypter {
 		frameNumber++;
 	}
 
-	private void writeTag() throws IOException {
-		if (tag == null) throw new IllegalStateException();
-		out.write(tag, 0, tag.length);
-		writeTag = false;
-	}
-
 	private void writeStreamHeader() throws IOException {
 		// The header contains the protocol version, stream number and frame key
 		byte[] streamHeaderPlaintext = new byte[STREAM_HEADER_PLAINTEXT_LENGTH];
@@ -123,15 +120,20 @@ class StreamEncrypterImpl implements StreamEncrypter {
 				INT_16_BYTES);
 		System.arraycopy(frameKey.getBytes(), 0, streamHeaderPlaintext,
 				INT_16_BYTES + INT_64_BYTES, SecretKey.LENGTH);
-		byte[] streamHeaderCiphertext = new byte[STREAM_HEADER_LENGTH];
-		System.arraycopy(streamHeaderNonce, 0, streamHeaderCiphertext, 0,
-				STREAM_HEADER_NONCE_LENGTH);
+		// If the tag is required, write it in the same call as the header
+		int tagLength = tag == null ? 0 : tag.length;
+		byte[] streamHeaderCiphertext =
+				new byte[tagLength + STREAM_HEADER_LENGTH];
+		if (tag != null)
+			System.arraycopy(tag, 0, streamHeaderCiphertext, 0, tagLength);
+		System.arraycopy(streamHeaderNonce, 0, streamHeaderCiphertext,
+				tagLength, STREAM_HEADER_NONCE_LENGTH);
 		// Encrypt and authenticate the stream header key
 		try {
 			cipher.init(true, streamHeaderKey, streamHeaderNonce);
 			int encrypted = cipher.process(streamHeaderPlaintext, 0,
 					STREAM_HEADER_PLAINTEXT_LENGTH, streamHeaderCiphertext,
-					STREAM_HEADER_NONCE_LENGTH);
+					tagLength + STREAM_HEADER_NONCE_LENGTH);
 			if (encrypted != STREAM_HEADER_PLAINTEXT_LENGTH + MAC_LENGTH)
 				throw new RuntimeException();
 		} catch (GeneralSecurityException badCipher) {
@@ -143,9 +145,7 @@ class StreamEncrypterImpl implements StreamEncrypter {
 
 	@Override
 	public void flush() throws IOException {
-		// Write the tag if required
-		if (writeTag) writeTag();
-		// Write the stream header if required
+		// Write the tag and stream header if required
 		if (writeStreamHeader) writeStreamHeader();
 		out.flush();
 	}
@@ -38,12 +38,17 @@ class XSalsa20Poly1305AuthenticatedCipher implements AuthenticatedCipher {
 
 	private final XSalsa20Engine xSalsa20Engine;
 	private final Poly1305 poly1305;
+	// Reused between calls to avoid allocating buffers for every message
+	private final byte[] zero, subKey, mac;
 
 	private boolean encrypting;
 
 	XSalsa20Poly1305AuthenticatedCipher() {
 		xSalsa20Engine = new XSalsa20Engine();
 		poly1305 = new Poly1305();
+		zero = new byte[SUBKEY_LENGTH];
+		subKey = new byte[SUBKEY_LENGTH];
+		mac = new byte[MAC_LENGTH];
 	}
 
 	@Override
@@ -66,8 +71,6 @@ class XSalsa20Poly1305AuthenticatedCipher implements AuthenticatedCipher {
 			throw new GeneralSecurityException("Invalid MAC");
 		try {
 			// Generate the Poly1305 subkey from an empty array
-			byte[] zero = new byte[SUBKEY_LENGTH];
-			byte[] subKey = new byte[SUBKEY_LENGTH];
 			xSalsa20Engine.processBytes(zero, 0, SUBKEY_LENGTH, subKey, 0);
 
 			// Clamp the subkey
@@ -79,7 +82,6 @@ class XSalsa20Poly1305AuthenticatedCipher implements AuthenticatedCipher {
 
 			// If we are decrypting, verify the MAC
 			if (!encrypting) {
-				byte[] mac = new byte[MAC_LENGTH];
 				poly1305.update(input, inputOff + MAC_LENGTH, len - MAC_LENGTH);
 				poly1305.doFinal(mac, 0);
 				// Constant-time comparison
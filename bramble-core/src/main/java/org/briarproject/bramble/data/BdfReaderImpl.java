@@ -9,6 +9,7 @@ import org.briarproject.nullsafety.NotNullByDefault;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import static org.briarproject.bramble.api.data.BdfDictionary.NULL_VALUE;
@@ -31,19 +32,35 @@ import static org.briarproject.bramble.data.Types.STRING_8;
 import static org.briarproject.bramble.data.Types.TRUE;
 import static org.briarproject.bramble.util.StringUtils.fromUtf8;
 
+/**
+ * A {@link BdfReader} that reads from an {@link InputStream} or, without
+ * copying, from a byte array.
+ */
 @NotThreadSafe
 @NotNullByDefault
 final class BdfReaderImpl implements BdfReader {
 
 	private static final byte[] EMPTY_BUFFER = new byte[0];
 
+	/**
+	 * The stream to read from, or null if reading from a byte array.
+	 */
+	@Nullable
 	private final InputStream in;
 	private final int nestedLimit, maxBufferSize;
 	private final boolean canonical;
 
 	private boolean hasLookahead = false, eof = false;
 	private byte next;
-	private byte[] buf = new byte[8];
+	/**
+	 * When reading from a stream, each value is read into this buffer
+	 * starting at offset zero. When reading from a byte array, this is the
+	 * array and {@link #bufOffset} is the offset of the last value read.
+	 */
+	private byte[] buf;
+	private int bufOffset = 0;
+	// The current position and end of the array, if reading from an array
+	private int pos, end;
 
 	BdfReaderImpl(InputStream in, int nestedLimit, int maxBufferSize,
 			boolean canonical) {
@@ -51,22 +68,50 @@ final class BdfReaderImpl implements BdfReader {
 		this.nestedLimit = nestedLimit;
 		this.maxBufferSize = maxBufferSize;
 		this.canonical = canonical;
+		buf = new byte[8];
+	}
+
+	BdfReaderImpl(byte[] b, int off, int len, int nestedLimit,
+			int maxBufferSize, boolean canonical) {
+		if (off < 0 || len < 0 || off > b.length - len)
+			throw new IllegalArgumentException();
+		in = null;
+		this.nestedLimit = nestedLimit;
+		this.maxBufferSize = maxBufferSize;
+		this.canonical = canonical;
+		buf = b;
+		pos = off;
+		end = off + len;
 	}
 
 	private void readLookahead() throws IOException {
 		if (eof) return;
 		if (hasLookahead) throw new IllegalStateException();
 		// Read a lookahead byte
-		int i = in.read();
-		if (i == -1) {
-			eof = true;
-			return;
+		if (in == null) {
+			if (pos == end) {
+				eof = true;
+				return;
+			}
+			next = buf[pos++];
+		} else {
+			int i = in.read();
+			if (i == -1) {
+				eof = true;
+				return;
+			}
+			next = (byte) i;
 		}
-		next = (byte) i;
 		hasLookahead = true;
 	}
 
 	private void readIntoBuffer(byte[] b, int length) throws IOException {
+		if (in == null) {
+			if (end - pos < length) throw new FormatException();
+			System.arraycopy(buf, pos, b, 0, length);
+			pos += length;
+			return;
+		}
 		int offset = 0;
 		while (offset < length) {
 			int read = in.read(b, offset, length - offset);
@@ -75,12 +120,27 @@ final class BdfReaderImpl implements BdfReader {
 		}
 	}
 
+	/**
+	 * Makes the next {@code length} bytes available in {@link #buf},
+	 * starting at {@link #bufOffset}.
+	 */
 	private void readIntoBuffer(int length) throws IOException {
+		if (in == null) {
+			if (end - pos < length) throw new FormatException();
+			bufOffset = pos;
+			pos += length;
+			return;
+		}
 		if (buf.length < length) buf = new byte[length];
 		readIntoBuffer(buf, length);
 	}
 
 	private void skip(int length) throws IOException {
+		if (in == null) {
+			if (end - pos < length) throw new FormatException();
+			pos += length;
+			return;
+		}
 		while (length > 0) {
 			int read = in.read(buf, 0, Math.min(length, buf.length));
 			if (read == -1) throw new FormatException();
@@ -123,7 +183,7 @@ final class BdfReaderImpl implements BdfReader {
 
 	@Override
 	public void close() throws IOException {
-		in.close();
+		if (in != null) in.close();
 	}
 
 	@Override
@@ -186,12 +246,13 @@ final class BdfReaderImpl implements BdfReader {
 
 	private int readInt8() throws IOException {
 		readIntoBuffer(1);
-		return buf[0];
+		return buf[bufOffset];
 	}
 
 	private short readInt16() throws IOException {
 		readIntoBuffer(2);
-		short value = (short) (((buf[0] & 0xFF) << 8) + (buf[1] & 0xFF));
+		short value = (short) (((buf[bufOffset] & 0xFF) << 8)
+				+ (buf[bufOffset + 1] & 0xFF));
 		if (canonical && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
 			// Value could have been encoded as an INT_8
 			throw new FormatException();
@@ -202,7 +263,8 @@ final class BdfReaderImpl implements BdfReader {
 	private int readInt32() throws IOException {
 		readIntoBuffer(4);
 		int value = 0;
-		for (int i = 0; i < 4; i++) value |= (buf[i] & 0xFF) << (24 - i * 8);
+		for (int i = 0; i < 4; i++)
+			value |= (buf[bufOffset + i] & 0xFF) << (24 - i * 8);
 		if (canonical && value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
 			// Value could have been encoded as an INT_16
 			throw new FormatException();
@@ -213,7 +275,8 @@ final class BdfReaderImpl implements BdfReader {
 	private long readInt64() throws IOException {
 		readIntoBuffer(8);
 		long value = 0;
-		for (int i = 0; i < 8; i++) value |= (buf[i] & 0xFFL) << (56 - i * 8);
+		for (int i = 0; i < 8; i++)
+			value |= (buf[bufOffset + i] & 0xFFL) << (56 - i * 8);
 		if (canonical && value >= Integer.MIN_VALUE &&
 				value <= Integer.MAX_VALUE) {
 			// Value could have been encoded as an INT_32
@@ -270,7 +333,8 @@ final class BdfReaderImpl implements BdfReader {
 		hasLookahead = false;
 		readIntoBuffer(8);
 		long value = 0;
-		for (int i = 0; i < 8; i++) value |= (buf[i] & 0xFFL) << (56 - i * 8);
+		for (int i = 0; i < 8; i++)
+			value |= (buf[bufOffset + i] & 0xFFL) << (56 - i * 8);
 		return Double.longBitsToDouble(value);
 	}
 
@@ -296,7 +360,7 @@ final class BdfReaderImpl implements BdfReader {
 		if (length < 0 || length > maxBufferSize) throw new FormatException();
 		if (length == 0) return "";
 		readIntoBuffer(length);
-		return fromUtf8(buf, 0, length);
+		return fromUtf8(buf, bufOffset, length);
 	}
 
 	private int readStringLength() throws IOException {
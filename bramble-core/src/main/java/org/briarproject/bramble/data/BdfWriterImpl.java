@@ -43,6 +43,9 @@ import static org.briarproject.bramble.util.StringUtils.UTF_8;
 final class BdfWriterImpl implements BdfWriter {
 
 	private final OutputStream out;
+	// Holds a type and a value of up to eight bytes, so they can be written
+	// to the output stream with a single call
+	private final byte[] buf = new byte[9];
 
 	BdfWriterImpl(OutputStream out) {
 		this.out = out;
@@ -72,61 +75,55 @@ final class BdfWriterImpl implements BdfWriter {
 	@Override
 	public void writeLong(long i) throws IOException {
 		if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
-			out.write(INT_8);
-			out.write((byte) i);
+			writeInt8(INT_8, (byte) i);
 		} else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
-			out.write(INT_16);
-			writeInt16((short) i);
+			writeInt16(INT_16, (short) i);
 		} else if (i >= Integer.MIN_VALUE && i <= Integer.MAX_VALUE) {
-			out.write(INT_32);
-			writeInt32((int) i);
+			writeInt32(INT_32, (int) i);
 		} else {
-			out.write(INT_64);
-			writeInt64(i);
+			writeInt64(INT_64, i);
 		}
 	}
 
-	private void writeInt16(short i) throws IOException {
-		out.write((byte) (i >> 8));
-		out.write((byte) ((i << 8) >> 8));
+	private void writeInt8(byte type, byte i) throws IOException {
+		buf[0] = type;
+		buf[1] = i;
+		out.write(buf, 0, 2);
 	}
 
-	private void writeInt32(int i) throws IOException {
-		out.write((byte) (i >> 24));
-		out.write((byte) ((i << 8) >> 24));
-		out.write((byte) ((i << 16) >> 24));
-		out.write((byte) ((i << 24) >> 24));
+	private void writeInt16(byte type, short i) throws IOException {
+		buf[0] = type;
+		buf[1] = (byte) (i >> 8);
+		buf[2] = (byte) i;
+		out.write(buf, 0, 3);
 	}
 
-	private void writeInt64(long i) throws IOException {
-		out.write((byte) (i >> 56));
-		out.write((byte) ((i << 8) >> 56));
-		out.write((byte) ((i << 16) >> 56));
-		out.write((byte) ((i << 24) >> 56));
-		out.write((byte) ((i << 32) >> 56));
-		out.write((byte) ((i << 40) >> 56));
-		out.write((byte) ((i << 48) >> 56));
-		out.write((byte) ((i << 56) >> 56));
+	private void writeInt32(byte type, int i) throws IOException {
+		buf[0] = type;
+		for (int j = 0; j < 4; j++) buf[j + 1] = (byte) (i >> (24 - j * 8));
+		out.write(buf, 0, 5);
+	}
+
+	private void writeInt64(byte type, long i) throws IOException {
+		buf[0] = type;
+		for (int j = 0; j < 8; j++) buf[j + 1] = (byte) (i >> (56 - j * 8));
+		out.write(buf, 0, 9);
 	}
 
 	@Override
 	public void writeDouble(double d) throws IOException {
-		out.write(FLOAT_64);
-		writeInt64(Double.doubleToRawLongBits(d));
+		writeInt64(FLOAT_64, Double.doubleToRawLongBits(d));
 	}
 
 	@Override
 	public void writeString(String s) throws IOException {
 		byte[] b = s.getBytes(UTF_8);
 		if (b.length <= Byte.MAX_VALUE) {
-			out.write(STRING_8);
-			out.write((byte) b.length);
+			writeInt8(STRING_8, (byte) b.length);
 		} else if (b.length <= Short.MAX_VALUE) {
-			out.write(STRING_16);
-			writeInt16((short) b.length);
+			writeInt16(STRING_16, (short) b.length);
 		} else {
-			out.write(STRING_32);
-			writeInt32(b.length);
+			writeInt32(STRING_32, b.length);
 		}
 		out.write(b);
 	}
@@ -134,14 +131,11 @@ final class BdfWriterImpl implements BdfWriter {
 	@Override
 	public void writeRaw(byte[] b) throws IOException {
 		if (b.length <= Byte.MAX_VALUE) {
-			out.write(RAW_8);
-			out.write((byte) b.length);
+			writeInt8(RAW_8, (byte) b.length);
 		} else if (b.length <= Short.MAX_VALUE) {
-			out.write(RAW_16);
-			writeInt16((short) b.length);
+			writeInt16(RAW_16, (short) b.length);
 		} else {
-			out.write(RAW_32);
-			writeInt32(b.length);
+			writeInt32(RAW_32, b.length);
 		}
 		out.write(b);
 	}
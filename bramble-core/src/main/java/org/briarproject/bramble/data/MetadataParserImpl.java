@@ -8,7 +8,6 @@ import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.Metadata;
 import org.briarproject.nullsafety.NotNullByDefault;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Map.Entry;
 
@@ -47,8 +46,7 @@ class MetadataParserImpl implements MetadataParser {
 	}
 
 	private Object parseValue(byte[] b) throws IOException {
-		ByteArrayInputStream in = new ByteArrayInputStream(b);
-		BdfReader reader = bdfReaderFactory.createReader(in);
+		BdfReader reader = bdfReaderFactory.createReader(b, 0, b.length, true);
 		Object o = parseObject(reader);
 		if (!reader.eof()) throw new FormatException();
 		return o;
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.PendingContact;
@@ -7,6 +8,7 @@ import org.briarproject.bramble.api.contact.PendingContactId;
 import org.briarproject.bramble.api.crypto.PrivateKey;
 import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.crypto.SecretKey;
+import org.briarproject.bramble.api.db.ConnectionPoolStats;
 import org.briarproject.bramble.api.db.DataTooNewException;
 import org.briarproject.bramble.api.db.DataTooOldException;
 import org.briarproject.bramble.api.db.DatabaseComponent;
@@ -32,6 +34,7 @@ import org.briarproject.bramble.api.transport.TransportKeySet;
 import org.briarproject.bramble.api.transport.TransportKeys;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -92,6 +95,11 @@ interface Database<T> {
 	 */
 	void commitTransaction(T txn) throws DbException;
 
+	/**
+	 * Returns a snapshot of the state of the connection pool.
+	 */
+	ConnectionPoolStats getConnectionPoolStats();
+
 	/**
 	 * Stores a contact associated with the given local and remote pseudonyms,
 	 * and returns an ID for the contact.
@@ -142,6 +150,13 @@ interface Database<T> {
 	 */
 	void addPendingContact(T txn, PendingContact p) throws DbException;
 
+	/**
+	 * Records that the state of the given protocol session is stored in the
+	 * metadata of the given message, which must belong to the given group.
+	 */
+	void addSession(T txn, GroupId g, UniqueId sessionId, MessageId m)
+			throws DbException;
+
 	/**
 	 * Stores a transport.
 	 */
@@ -386,6 +401,16 @@ interface Database<T> {
 	 */
 	Message getMessage(T txn, MessageId m) throws DbException;
 
+	/**
+	 * Returns a stream for reading the body of the message with the given
+	 * ID. The stream remains readable after the transaction has ended.
+	 * <p/>
+	 * Read-only.
+	 *
+	 * @throws MessageDeletedException if the message has been deleted
+	 */
+	InputStream getMessageBody(T txn, MessageId m) throws DbException;
+
 	/**
 	 * Returns the IDs and states of all dependencies of the given message.
 	 * For missing dependencies and dependencies in other groups, the state
@@ -423,6 +448,30 @@ interface Database<T> {
 	Collection<MessageId> getMessageIds(T txn, GroupId g, Metadata query)
 			throws DbException;
 
+	/**
+	 * Returns the IDs and timestamps of up to the given number of delivered
+	 * messages in the given group with timestamps earlier than the given
+	 * timestamp, newest first. Any further messages with the same timestamp
+	 * as the oldest message returned are also included, so that the oldest
+	 * timestamp can be used to fetch the next page without skipping any
+	 * messages.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Long> getMessageIdsBefore(T txn, GroupId g, long before,
+			int limit) throws DbException;
+
+	/**
+	 * Returns the IDs and timestamps of up to the given number of delivered
+	 * messages in the given group with timestamps later than the given
+	 * timestamp, oldest first. Any further messages with the same timestamp
+	 * as the newest message returned are also included.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Long> getMessageIdsAfter(T txn, GroupId g, long after,
+			int limit) throws DbException;
+
 	/**
 	 * Returns the length of the given message in bytes, including the
 	 * message header.
@@ -634,6 +683,16 @@ interface Database<T> {
 	Collection<MessageId> getRequestedMessagesToSend(T txn, ContactId c,
 			long capacity, long maxLatency) throws DbException;
 
+	/**
+	 * Returns the ID of the message that stores the state of the given
+	 * protocol session, or null if no such session has been recorded.
+	 * <p/>
+	 * Read-only.
+	 */
+	@Nullable
+	MessageId getSessionMessageId(T txn, GroupId g, UniqueId sessionId)
+			throws DbException;
+
 	/**
 	 * Returns all settings in the given namespace.
 	 * <p/>
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.cleanup.event.CleanupTimerStartedEvent;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
@@ -16,8 +17,10 @@ import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.crypto.SecretKey;
 import org.briarproject.bramble.api.db.CommitAction;
 import org.briarproject.bramble.api.db.CommitAction.Visitor;
+import org.briarproject.bramble.api.db.ConnectionPoolStats;
 import org.briarproject.bramble.api.db.ContactExistsException;
 import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DatabaseStats;
 import org.briarproject.bramble.api.db.DbCallable;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.DbRunnable;
@@ -73,6 +76,7 @@ import org.briarproject.bramble.api.transport.TransportKeySet;
 import org.briarproject.bramble.api.transport.TransportKeys;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -102,6 +106,11 @@ import static org.briarproject.bramble.util.LogUtils.now;
 @NotNullByDefault
 class DatabaseComponentImpl<T> implements DatabaseComponent {
 
+	/**
+	 * The maximum number of protocol sessions to cache.
+	 */
+	private static final int SESSION_CACHE_CAPACITY = 1000;
+
 	private static final Logger LOG =
 			getLogger(DatabaseComponentImpl.class.getName());
 
@@ -110,20 +119,24 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 	private final EventBus eventBus;
 	private final Executor eventExecutor;
 	private final ShutdownManager shutdownManager;
+	private final DatabaseProfiler profiler;
 	private final AtomicBoolean closed = new AtomicBoolean(false);
 	private final ReentrantReadWriteLock lock =
 			new ReentrantReadWriteLock(true);
 	private final Visitor visitor = new CommitActionVisitor();
+	private final SessionCache sessionCache =
+			new SessionCache(SESSION_CACHE_CAPACITY);
 
 	@Inject
 	DatabaseComponentImpl(Database<T> db, Class<T> txnClass, EventBus eventBus,
 			@EventExecutor Executor eventExecutor,
-			ShutdownManager shutdownManager) {
+			ShutdownManager shutdownManager, DatabaseProfiler profiler) {
 		this.db = db;
 		this.txnClass = txnClass;
 		this.eventBus = eventBus;
 		this.eventExecutor = eventExecutor;
 		this.shutdownManager = shutdownManager;
+		this.profiler = profiler;
 	}
 
 	@Override
@@ -146,12 +159,22 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		db.close();
 	}
 
+	@Override
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return db.getConnectionPoolStats();
+	}
+
+	@Override
+	public DatabaseStats getDatabaseStats() {
+		return profiler.getStats();
+	}
+
 	@Override
 	public Transaction startTransaction(boolean readOnly) throws DbException {
 		// Don't allow reentrant locking
 		if (lock.getReadHoldCount() > 0) throw new IllegalStateException();
 		if (lock.getWriteHoldCount() > 0) throw new IllegalStateException();
-		long start = now();
+		long start = now(), startNanos = System.nanoTime();
 		if (readOnly) {
 			lock.readLock().lock();
 			logDuration(LOG, "Waiting for read lock", start);
@@ -159,8 +182,11 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 			lock.writeLock().lock();
 			logDuration(LOG, "Waiting for write lock", start);
 		}
+		long waitNanos = System.nanoTime() - startNanos;
 		try {
-			return new Transaction(db.startTransaction(), readOnly);
+			Transaction txn = new Transaction(db.startTransaction(), readOnly);
+			profiler.lockAcquired(readOnly, waitNanos);
+			return txn;
 		} catch (DbException | RuntimeException e) {
 			if (readOnly) lock.readLock().unlock();
 			else lock.writeLock().unlock();
@@ -173,7 +199,13 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		T txn = txnClass.cast(transaction.unbox());
 		if (transaction.isCommitted()) throw new IllegalStateException();
 		transaction.setCommitted();
-		db.commitTransaction(txn);
+		try {
+			db.commitTransaction(txn);
+		} catch (DbException | RuntimeException e) {
+			// The cache may hold changes that weren't committed
+			if (!transaction.isReadOnly()) sessionCache.clear();
+			throw e;
+		}
 	}
 
 	@Override
@@ -184,11 +216,15 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 				for (CommitAction a : transaction.getActions())
 					a.accept(visitor);
 			} else {
+				// The cache may hold changes that are being rolled back
+				if (!transaction.isReadOnly()) sessionCache.clear();
 				db.abortTransaction(txn);
 			}
 		} finally {
 			if (transaction.isReadOnly()) lock.readLock().unlock();
 			else lock.writeLock().unlock();
+			profiler.lockReleased(transaction.isReadOnly(),
+					transaction.isCommitted());
 		}
 	}
 
@@ -313,6 +349,21 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		transaction.attach(new PendingContactAddedEvent(p));
 	}
 
+	@Override
+	public void addSession(Transaction transaction, GroupId g,
+			UniqueId sessionId, MessageId m) throws DbException {
+		if (transaction.isReadOnly()) throw new IllegalArgumentException();
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		if (!db.containsMessage(txn, m))
+			throw new NoSuchMessageException();
+		if (!db.getGroupId(txn, m).equals(g))
+			throw new IllegalArgumentException();
+		db.addSession(txn, g, sessionId, m);
+		sessionCache.put(g, sessionId, m);
+	}
+
 	@Override
 	public void addTransport(Transaction transaction, TransportId t,
 			long maxLatency) throws DbException {
@@ -614,6 +665,15 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getMessage(txn, m);
 	}
 
+	@Override
+	public InputStream getMessageBody(Transaction transaction, MessageId m)
+			throws DbException {
+		T txn = unbox(transaction);
+		if (!db.containsMessage(txn, m))
+			throw new NoSuchMessageException();
+		return db.getMessageBody(txn, m);
+	}
+
 	@Override
 	public Collection<MessageId> getMessageIds(Transaction transaction,
 			GroupId g) throws DbException {
@@ -632,6 +692,26 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getMessageIds(txn, g, query);
 	}
 
+	@Override
+	public Map<MessageId, Long> getMessageIdsBefore(Transaction transaction,
+			GroupId g, long before, int limit) throws DbException {
+		if (limit < 1) throw new IllegalArgumentException();
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		return db.getMessageIdsBefore(txn, g, before, limit);
+	}
+
+	@Override
+	public Map<MessageId, Long> getMessageIdsAfter(Transaction transaction,
+			GroupId g, long after, int limit) throws DbException {
+		if (limit < 1) throw new IllegalArgumentException();
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		return db.getMessageIdsAfter(txn, g, after, limit);
+	}
+
 	@Override
 	public Collection<MessageId> getMessagesToAck(Transaction transaction,
 			ContactId c) throws DbException {
@@ -852,6 +932,20 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getPendingContacts(txn);
 	}
 
+	@Nullable
+	@Override
+	public MessageId getSessionMessageId(Transaction transaction, GroupId g,
+			UniqueId sessionId) throws DbException {
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		MessageId cached = sessionCache.get(g, sessionId);
+		if (cached != null) return cached;
+		MessageId m = db.getSessionMessageId(txn, g, sessionId);
+		if (m != null) sessionCache.put(g, sessionId, m);
+		return m;
+	}
+
 	@Override
 	public Settings getSettings(Transaction transaction, String namespace)
 			throws DbException {
@@ -1040,6 +1134,7 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		Collection<ContactId> affected =
 				db.getGroupVisibility(txn, id).keySet();
 		db.removeGroup(txn, id);
+		sessionCache.removeGroup(id);
 		transaction.attach(new GroupRemovedEvent(g));
 		transaction.attach(new GroupVisibilityUpdatedEvent(INVISIBLE,
 				affected));
@@ -1065,6 +1160,7 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 			throw new NoSuchMessageException();
 		// TODO: Don't allow messages with dependents to be removed
 		db.removeMessage(txn, m);
+		sessionCache.removeMessage(m);
 	}
 
 	@Override
@@ -1084,6 +1180,7 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		if (transaction.isReadOnly()) throw new IllegalArgumentException();
 		T txn = unbox(transaction);
 		db.removeTemporaryMessages(txn);
+		sessionCache.clear();
 	}
 
 	@Override
@@ -0,0 +1,209 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane;
+import org.briarproject.bramble.api.db.DatabaseExecutorMonitor;
+import org.briarproject.bramble.api.db.DatabaseExecutorStats;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Runs the tasks submitted to each {@link Lane lane} of the
+ * {@link org.briarproject.bramble.api.db.DatabaseExecutor DatabaseExecutor}
+ * on a single-threaded executor.
+ * <p>
+ * Each task is added to its lane's queue, and a placeholder is submitted to
+ * the underlying executor. When a placeholder runs, it takes the next task
+ * from the highest-priority lane that has any waiting tasks. To prevent
+ * starvation, after {@link #fairness} consecutive tasks have been taken from
+ * higher-priority lanes while a lower-priority lane was waiting, the next
+ * task is taken from whichever lane's oldest task has waited longest.
+ * <p>
+ * Submitting a task to a full lane blocks until there's space in the lane,
+ * unless the task is submitted from the database executor or the event
+ * thread, in which case the task is queued without blocking.
+ */
+@ThreadSafe
+@NotNullByDefault
+class DatabaseExecutorImpl implements DatabaseExecutorMonitor {
+
+	/**
+	 * How long in milliseconds a blocked submission waits before checking
+	 * whether the executor has been shut down.
+	 */
+	private static final long BLOCKED_CHECK_INTERVAL = 1000;
+
+	private static final Lane[] LANES = Lane.values();
+
+	private final ExecutorService delegate;
+	private final int fairness;
+	private final LaneQueue[] queues;
+
+	private final Object lock = new Object();
+	@GuardedBy("lock")
+	private int consecutive = 0;
+
+	@Nullable
+	private volatile Thread executorThread = null, eventThread = null;
+
+	/**
+	 * @param delegate A single-threaded executor.
+	 * @param eventExecutor The executor on which events are delivered.
+	 * Tasks submitted from its thread never block.
+	 * @param fairness The number of consecutive tasks that can be taken from
+	 * higher-priority lanes while a lower-priority lane is waiting, or zero
+	 * to always take tasks from the highest-priority lane.
+	 * @param capacities The capacity of each lane, in the order of
+	 * {@link Lane#values()}, or zero for an unbounded lane.
+	 */
+	DatabaseExecutorImpl(ExecutorService delegate, Executor eventExecutor,
+			int fairness, int[] capacities) {
+		if (fairness < 0 || capacities.length != LANES.length)
+			throw new IllegalArgumentException();
+		this.delegate = delegate;
+		this.fairness = fairness;
+		queues = new LaneQueue[LANES.length];
+		for (int i = 0; i < LANES.length; i++) {
+			if (capacities[i] < 0) throw new IllegalArgumentException();
+			queues[i] = new LaneQueue(capacities[i]);
+		}
+		eventExecutor.execute(() -> eventThread = Thread.currentThread());
+	}
+
+	Executor getExecutor(Lane lane) {
+		return r -> execute(lane, r);
+	}
+
+	private void execute(Lane lane, Runnable r) {
+		LaneQueue q = queues[lane.ordinal()];
+		synchronized (lock) {
+			// Tasks submitted from the executor itself never block, as
+			// there would be nothing to empty the queue. Tasks submitted
+			// from the event thread never block, as that would hold up
+			// event delivery. These tasks are queued even if the lane is
+			// full
+			if (q.capacity > 0 && canBlock()) {
+				if (q.tasks.size() >= q.capacity) q.blockedSubmissions++;
+				while (q.tasks.size() >= q.capacity
+						&& !delegate.isShutdown()) {
+					try {
+						lock.wait(BLOCKED_CHECK_INTERVAL);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			q.tasks.add(new QueuedTask(r, System.nanoTime()));
+			q.peakQueuedTasks = Math.max(q.peakQueuedTasks, q.tasks.size());
+		}
+		try {
+			delegate.execute(this::runNextTask);
+		} catch (RejectedExecutionException e) {
+			// Discard tasks that are submitted during shutdown
+			if (!delegate.isShutdown()) throw e;
+		}
+	}
+
+	private boolean canBlock() {
+		Thread current = Thread.currentThread();
+		return current != executorThread && current != eventThread;
+	}
+
+	private void runNextTask() {
+		LaneQueue q;
+		QueuedTask task;
+		synchronized (lock) {
+			q = chooseQueue();
+			// There's a placeholder for every task, so this can't be null
+			task = q.tasks.remove();
+			// Wake any producers that are waiting for space in the lane
+			if (q.capacity > 0) lock.notifyAll();
+		}
+		executorThread = Thread.currentThread();
+		long start = System.nanoTime();
+		q.waitTime.record(NANOSECONDS.toMicros(start - task.submitted), 0);
+		try {
+			task.runnable.run();
+		} finally {
+			q.runTime.record(
+					NANOSECONDS.toMicros(System.nanoTime() - start), 0);
+		}
+	}
+
+	@GuardedBy("lock")
+	private LaneQueue chooseQueue() {
+		LaneQueue first = null, oldest = null;
+		boolean lowerWaiting = false;
+		for (LaneQueue q : queues) {
+			QueuedTask head = q.tasks.peek();
+			if (head == null) continue;
+			if (first == null) first = q;
+			else lowerWaiting = true;
+			if (oldest == null
+					|| head.submitted - oldest.tasks.element().submitted < 0) {
+				oldest = q;
+			}
+		}
+		if (first == null || oldest == null) throw new AssertionError();
+		if (!lowerWaiting) {
+			consecutive = 0;
+			return first;
+		}
+		if (fairness > 0 && consecutive >= fairness && oldest != first) {
+			consecutive = 0;
+			return oldest;
+		}
+		consecutive++;
+		return first;
+	}
+
+	@Override
+	public DatabaseExecutorStats getStats(Lane lane) {
+		LaneQueue q = queues[lane.ordinal()];
+		synchronized (lock) {
+			return new DatabaseExecutorStats(lane, q.capacity,
+					q.tasks.size(), q.peakQueuedTasks, q.blockedSubmissions,
+					q.waitTime.getStats(), q.runTime.getStats());
+		}
+	}
+
+	@NotNullByDefault
+	private static class QueuedTask {
+
+		private final Runnable runnable;
+		private final long submitted; // System.nanoTime()
+
+		private QueuedTask(Runnable runnable, long submitted) {
+			this.runnable = runnable;
+			this.submitted = submitted;
+		}
+	}
+
+	@NotNullByDefault
+	private static class LaneQueue {
+
+		private final int capacity;
+		private final Queue<QueuedTask> tasks = new LinkedList<>();
+		private final LatencyRecorder waitTime = new LatencyRecorder();
+		private final LatencyRecorder runTime = new LatencyRecorder();
+
+		// Guarded by the executor's lock
+		private int peakQueuedTasks = 0;
+		private long blockedSubmissions = 0;
+
+		private LaneQueue(int capacity) {
+			this.capacity = capacity;
+		}
+	}
+}
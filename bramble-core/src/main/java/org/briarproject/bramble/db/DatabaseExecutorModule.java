@@ -2,6 +2,9 @@ package org.briarproject.bramble.db;
 
 import org.briarproject.bramble.TimeLoggingExecutor;
 import org.briarproject.bramble.api.db.DatabaseExecutor;
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane;
+import org.briarproject.bramble.api.db.DatabaseExecutorMonitor;
+import org.briarproject.bramble.api.event.EventExecutor;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 
 import java.util.concurrent.BlockingQueue;
@@ -18,11 +21,35 @@ import javax.inject.Singleton;
 import dagger.Module;
 import dagger.Provides;
 
+import static java.lang.Integer.getInteger;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.BACKGROUND;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.INTERACTIVE;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.SYNC;
 
 @Module
 public class DatabaseExecutorModule {
 
+	/**
+	 * System property for the number of consecutive tasks that can be taken
+	 * from higher-priority lanes while a lower-priority lane is waiting, or
+	 * zero for strict priority.
+	 */
+	public static final String FAIRNESS_PROPERTY =
+			"org.briarproject.bramble.dbExecutorFairness";
+
+	/**
+	 * System properties for the capacities of the sync and background
+	 * lanes. The lanes are unbounded by default. The interactive lane is
+	 * always unbounded.
+	 */
+	public static final String SYNC_CAPACITY_PROPERTY =
+			"org.briarproject.bramble.dbExecutorSyncCapacity";
+	public static final String BACKGROUND_CAPACITY_PROPERTY =
+			"org.briarproject.bramble.dbExecutorBackgroundCapacity";
+
+	private static final int DEFAULT_FAIRNESS = 8;
+
 	public static class EagerSingletons {
 		@Inject
 		@DatabaseExecutor
@@ -47,11 +74,44 @@ public class DatabaseExecutorModule {
 		return databaseExecutor;
 	}
 
+	@Provides
+	@Singleton
+	DatabaseExecutorImpl provideDatabaseExecutorImpl(
+			@DatabaseExecutor ExecutorService dbExecutor,
+			@EventExecutor Executor eventExecutor) {
+		int[] capacities = new int[Lane.values().length];
+		capacities[SYNC.ordinal()] = getInteger(SYNC_CAPACITY_PROPERTY, 0);
+		capacities[BACKGROUND.ordinal()] =
+				getInteger(BACKGROUND_CAPACITY_PROPERTY, 0);
+		return new DatabaseExecutorImpl(dbExecutor, eventExecutor,
+				getInteger(FAIRNESS_PROPERTY, DEFAULT_FAIRNESS), capacities);
+	}
+
 	@Provides
 	@Singleton
 	@DatabaseExecutor
-	Executor provideDatabaseExecutor(
-			@DatabaseExecutor ExecutorService dbExecutor) {
+	Executor provideDatabaseExecutor(DatabaseExecutorImpl dbExecutor) {
+		return dbExecutor.getExecutor(INTERACTIVE);
+	}
+
+	@Provides
+	@Singleton
+	@DatabaseExecutor(SYNC)
+	Executor provideSyncDatabaseExecutor(DatabaseExecutorImpl dbExecutor) {
+		return dbExecutor.getExecutor(SYNC);
+	}
+
+	@Provides
+	@Singleton
+	@DatabaseExecutor(BACKGROUND)
+	Executor provideBackgroundDatabaseExecutor(
+			DatabaseExecutorImpl dbExecutor) {
+		return dbExecutor.getExecutor(BACKGROUND);
+	}
+
+	@Provides
+	DatabaseExecutorMonitor provideDatabaseExecutorMonitor(
+			DatabaseExecutorImpl dbExecutor) {
 		return dbExecutor;
 	}
 }
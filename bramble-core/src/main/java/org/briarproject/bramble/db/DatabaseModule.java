@@ -20,20 +20,28 @@ import dagger.Provides;
 @Module
 public class DatabaseModule {
 
+	@Provides
+	@Singleton
+	DatabaseProfiler provideDatabaseProfiler() {
+		return new DatabaseProfiler();
+	}
+
 	@Provides
 	@Singleton
 	Database<Connection> provideDatabase(DatabaseConfig config,
-			MessageFactory messageFactory, Clock clock) {
-		return new H2Database(config, messageFactory, clock);
+			MessageFactory messageFactory, Clock clock,
+			DatabaseProfiler profiler) {
+		Database<Connection> db = new H2Database(config, messageFactory, clock);
+		return config.isQueryProfilingEnabled() ? profiler.profile(db) : db;
 	}
 
 	@Provides
 	@Singleton
 	DatabaseComponent provideDatabaseComponent(Database<Connection> db,
 			EventBus eventBus, @EventExecutor Executor eventExecutor,
-			ShutdownManager shutdownManager) {
+			ShutdownManager shutdownManager, DatabaseProfiler profiler) {
 		return new DatabaseComponentImpl<>(db, Connection.class, eventBus,
-				eventExecutor, shutdownManager);
+				eventExecutor, shutdownManager, profiler);
 	}
 
 	@Provides
@@ -0,0 +1,168 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.DatabaseStats;
+import org.briarproject.bramble.api.db.LatencyStats;
+import org.briarproject.bramble.api.db.TransactionStats;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Records the latency of each {@link Database} method and the time spent
+ * waiting for and holding the database lock.
+ */
+@ThreadSafe
+@NotNullByDefault
+class DatabaseProfiler {
+
+	private final ConcurrentMap<Method, LatencyRecorder> queries =
+			new ConcurrentHashMap<>();
+	private final TransactionRecorder readOnly = new TransactionRecorder();
+	private final TransactionRecorder readWrite = new TransactionRecorder();
+	/**
+	 * The time at which the current thread acquired the database lock.
+	 * Transactions start and end on the same thread because the lock is
+	 * held by the thread.
+	 */
+	private final ThreadLocal<Long> lockAcquired = new ThreadLocal<>();
+
+	/**
+	 * Returns a view of the given database that records the latency of
+	 * each method call.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Database<T> profile(Database<T> db) {
+		return (Database<T>) Proxy.newProxyInstance(
+				Database.class.getClassLoader(),
+				new Class<?>[] {Database.class},
+				(proxy, method, args) -> invoke(db, method, args));
+	}
+
+	@Nullable
+	private Object invoke(Database<?> db, Method method,
+			@Nullable Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return invokeUnprofiled(db, method, args);
+		long start = System.nanoTime();
+		Object result = null;
+		try {
+			result = method.invoke(db, args);
+			return result;
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			long micros = NANOSECONDS.toMicros(System.nanoTime() - start);
+			getRecorder(method).record(micros, countRows(result));
+		}
+	}
+
+	@Nullable
+	private Object invokeUnprofiled(Database<?> db, Method method,
+			@Nullable Object[] args) throws Throwable {
+		try {
+			return method.invoke(db, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private LatencyRecorder getRecorder(Method method) {
+		LatencyRecorder recorder = queries.get(method);
+		if (recorder == null) {
+			LatencyRecorder created = new LatencyRecorder();
+			recorder = queries.putIfAbsent(method, created);
+			if (recorder == null) recorder = created;
+		}
+		return recorder;
+	}
+
+	private int countRows(@Nullable Object result) {
+		if (result instanceof Collection) return ((Collection<?>) result).size();
+		if (result instanceof Map) return ((Map<?, ?>) result).size();
+		return 0;
+	}
+
+	/**
+	 * Records that the current thread acquired the database lock after
+	 * waiting for the given number of nanoseconds.
+	 */
+	void lockAcquired(boolean readOnly, long waitNanos) {
+		getTransactionRecorder(readOnly).lockWait.record(
+				NANOSECONDS.toMicros(waitNanos), 0);
+		lockAcquired.set(System.nanoTime());
+	}
+
+	/**
+	 * Records that the current thread released the database lock at the
+	 * end of a transaction.
+	 */
+	void lockReleased(boolean readOnly, boolean committed) {
+		Long acquired = lockAcquired.get();
+		if (acquired == null) return;
+		lockAcquired.remove();
+		TransactionRecorder recorder = getTransactionRecorder(readOnly);
+		recorder.lockHold.record(
+				NANOSECONDS.toMicros(System.nanoTime() - acquired), 0);
+		if (committed) recorder.commits.incrementAndGet();
+		else recorder.aborts.incrementAndGet();
+	}
+
+	private TransactionRecorder getTransactionRecorder(boolean readOnly) {
+		return readOnly ? this.readOnly : readWrite;
+	}
+
+	DatabaseStats getStats() {
+		Map<String, LatencyStats> queryStats = new HashMap<>();
+		for (Entry<Method, LatencyRecorder> e : queries.entrySet()) {
+			queryStats.put(getName(e.getKey()), e.getValue().getStats());
+		}
+		return new DatabaseStats(queryStats, readOnly.getStats(true),
+				readWrite.getStats(false));
+	}
+
+	/**
+	 * Returns the name of the given method followed by the types of its
+	 * parameters, omitting the transaction, so overloaded methods can be
+	 * told apart.
+	 */
+	private String getName(Method method) {
+		StringBuilder sb = new StringBuilder(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		// The transaction's type is erased to Object
+		int first = types.length > 0 && types[0] == Object.class ? 1 : 0;
+		for (int i = first; i < types.length; i++) {
+			if (i > first) sb.append(", ");
+			sb.append(types[i].getSimpleName());
+		}
+		return sb.append(')').toString();
+	}
+
+	@ThreadSafe
+	@NotNullByDefault
+	private static class TransactionRecorder {
+
+		private final AtomicLong commits = new AtomicLong(0);
+		private final AtomicLong aborts = new AtomicLong(0);
+		private final LatencyRecorder lockWait = new LatencyRecorder();
+		private final LatencyRecorder lockHold = new LatencyRecorder();
+
+		private TransactionStats getStats(boolean readOnly) {
+			return new TransactionStats(readOnly, commits.get(), aborts.get(),
+					lockWait.getStats(), lockHold.getStats());
+		}
+	}
+}
@@ -44,6 +44,14 @@ class H2Database extends JdbcDatabase {
 	private static final DatabaseTypes dbTypes = new DatabaseTypes(HASH_TYPE,
 			SECRET_TYPE, BINARY_TYPE, COUNTER_TYPE, STRING_TYPE);
 
+	/**
+	 * The number of parsed statements H2 caches per connection, keyed by
+	 * SQL. The default of 8 is much smaller than the number of statements
+	 * used on hot paths, so most statements would be parsed again every
+	 * time they were prepared.
+	 */
+	private static final int QUERY_CACHE_SIZE = 256;
+
 	private final DatabaseConfig config;
 	private final String url;
 
@@ -53,12 +61,12 @@ class H2Database extends JdbcDatabase {
 	@Inject
 	H2Database(DatabaseConfig config, MessageFactory messageFactory,
 			Clock clock) {
-		super(dbTypes, messageFactory, clock);
+		super(dbTypes, messageFactory, clock, config.getConnectionPoolSize());
 		this.config = config;
 		File dir = config.getDatabaseDirectory();
 		String path = new File(dir, "db").getAbsolutePath();
 		url = "jdbc:h2:split:" + path + ";CIPHER=AES;MULTI_THREADED=1"
-				+ ";WRITE_DELAY=0";
+				+ ";WRITE_DELAY=0;QUERY_CACHE_SIZE=" + QUERY_CACHE_SIZE;
 	}
 
 	@Override
@@ -53,7 +53,7 @@ class HyperSqlDatabase extends JdbcDatabase {
 	@Inject
 	HyperSqlDatabase(DatabaseConfig config, MessageFactory messageFactory,
 			Clock clock) {
-		super(dbTypes, messageFactory, clock);
+		super(dbTypes, messageFactory, clock, config.getConnectionPoolSize());
 		this.config = config;
 		File dir = config.getDatabaseDirectory();
 		String path = new File(dir, "db").getAbsolutePath();
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.PendingContact;
@@ -11,6 +12,7 @@ import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.crypto.SecretKey;
 import org.briarproject.bramble.api.crypto.SignaturePrivateKey;
 import org.briarproject.bramble.api.crypto.SignaturePublicKey;
+import org.briarproject.bramble.api.db.ConnectionPoolStats;
 import org.briarproject.bramble.api.db.DataTooNewException;
 import org.briarproject.bramble.api.db.DataTooOldException;
 import org.briarproject.bramble.api.db.DbClosedException;
@@ -41,6 +43,8 @@ import org.briarproject.bramble.api.transport.TransportKeySet;
 import org.briarproject.bramble.api.transport.TransportKeys;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -51,6 +55,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -101,12 +106,7 @@ import static org.briarproject.bramble.util.LogUtils.now;
 abstract class JdbcDatabase implements Database<Connection> {
 
 	// Package access for testing
-	static final int CODE_SCHEMA_VERSION = 50;
-
-	/**
-	 * The maximum number of idle connections to keep open.
-	 */
-	private static final int MAX_CONNECTION_POOL_SIZE = 1;
+	static final int CODE_SCHEMA_VERSION = 51;
 
 	// Time period offsets for incoming transport keys
 	private static final int OFFSET_PREV = -1;
@@ -268,6 +268,19 @@ abstract class JdbcDatabase implements Database<Connection> {
 					+ " REFERENCES groups (groupId)"
 					+ " ON DELETE CASCADE)";
 
+	private static final String CREATE_SESSIONS =
+			"CREATE TABLE sessions"
+					+ " (groupId _HASH NOT NULL,"
+					+ " sessionId _HASH NOT NULL,"
+					+ " messageId _HASH NOT NULL,"
+					+ " PRIMARY KEY (groupId, sessionId),"
+					+ " FOREIGN KEY (groupId)"
+					+ " REFERENCES groups (groupId)"
+					+ " ON DELETE CASCADE,"
+					+ " FOREIGN KEY (messageId)"
+					+ " REFERENCES messages (messageId)"
+					+ " ON DELETE CASCADE)";
+
 	private static final String CREATE_TRANSPORTS =
 			"CREATE TABLE transports"
 					+ " (transportId _STRING NOT NULL,"
@@ -358,12 +371,17 @@ abstract class JdbcDatabase implements Database<Connection> {
 			"CREATE INDEX IF NOT EXISTS messagesByCleanupDeadline"
 					+ " ON messages (cleanupDeadline)";
 
+	private static final String INDEX_MESSAGES_BY_GROUP_ID_TIMESTAMP =
+			"CREATE INDEX IF NOT EXISTS messagesByGroupIdTimestamp"
+					+ " ON messages (groupId, timestamp)";
+
 	private static final Logger LOG =
 			getLogger(JdbcDatabase.class.getName());
 
 	private final MessageFactory messageFactory;
 	private final Clock clock;
 	private final DatabaseTypes dbTypes;
+	private final int connectionPoolSize;
 
 	private final Lock connectionsLock = new ReentrantLock();
 	private final Condition connectionsChanged = connectionsLock.newCondition();
@@ -375,6 +393,8 @@ abstract class JdbcDatabase implements Database<Connection> {
 	private int openConnections = 0;
 	@GuardedBy("connectionsLock")
 	private boolean closed = false;
+	@GuardedBy("connectionsLock")
+	private long borrowCount = 0, waitCount = 0, totalWaitTime = 0;
 
 	private volatile boolean wasDirtyOnInitialisation = false;
 
@@ -386,10 +406,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 	protected abstract void compactAndClose() throws DbException;
 
 	JdbcDatabase(DatabaseTypes databaseTypes, MessageFactory messageFactory,
-			Clock clock) {
+			Clock clock, int connectionPoolSize) {
+		if (connectionPoolSize < 1) throw new IllegalArgumentException();
 		this.dbTypes = databaseTypes;
 		this.messageFactory = messageFactory;
 		this.clock = clock;
+		this.connectionPoolSize = connectionPoolSize;
 	}
 
 	protected void open(String driverClass, boolean reopen,
@@ -499,7 +521,8 @@ abstract class JdbcDatabase implements Database<Connection> {
 				new Migration46_47(dbTypes),
 				new Migration47_48(),
 				new Migration48_49(),
-				new Migration49_50()
+				new Migration49_50(),
+				new Migration50_51(dbTypes)
 		);
 	}
 
@@ -541,6 +564,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_MESSAGE_DEPENDENCIES));
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_OFFERS));
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_STATUSES));
+			s.executeUpdate(dbTypes.replaceTypes(CREATE_SESSIONS));
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_TRANSPORTS));
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_PENDING_CONTACTS));
 			s.executeUpdate(dbTypes.replaceTypes(CREATE_OUTGOING_KEYS));
@@ -564,6 +588,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 			s.executeUpdate(INDEX_STATUSES_BY_CONTACT_ID_TIMESTAMP);
 			s.executeUpdate(INDEX_STATUSES_BY_CONTACT_ID_TX_COUNT_TIMESTAMP);
 			s.executeUpdate(INDEX_MESSAGES_BY_CLEANUP_DEADLINE);
+			s.executeUpdate(INDEX_MESSAGES_BY_GROUP_ID_TIMESTAMP);
 			s.close();
 		} catch (SQLException e) {
 			tryToClose(s, LOG, WARNING);
@@ -574,35 +599,63 @@ abstract class JdbcDatabase implements Database<Connection> {
 	@Override
 	public Connection startTransaction() throws DbException {
 		Connection txn;
+		long start = now();
+		boolean waited = false;
 		connectionsLock.lock();
 		try {
-			if (closed) throw new DbClosedException();
-			txn = connectionPool.poll();
+			// Wait for an idle connection, or for permission to open a new
+			// connection if there are fewer than the maximum open
+			while (true) {
+				if (closed) throw new DbClosedException();
+				txn = connectionPool.poll();
+				if (txn != null || openConnections < connectionPoolSize) break;
+				waited = true;
+				try {
+					connectionsChanged.await();
+				} catch (InterruptedException e) {
+					LOG.warning("Interrupted while waiting for connection");
+					Thread.currentThread().interrupt();
+					throw new DbException(e);
+				}
+			}
+			// Reserve a slot for the new connection while it's being opened
+			if (txn == null) openConnections++;
+			borrowCount++;
+			if (waited) {
+				waitCount++;
+				totalWaitTime += now() - start;
+			}
 			logConnectionCounts();
 		} finally {
 			connectionsLock.unlock();
 		}
-		try {
-			if (txn == null) {
+		if (waited) logDuration(LOG, "Waiting for connection", start);
+		if (txn == null) {
+			try {
 				// Open a new connection
 				txn = createConnection();
 				txn.setAutoCommit(false);
-				connectionsLock.lock();
-				try {
-					// The DB may have been closed since the check above
-					if (closed) {
-						tryToClose(txn, LOG, WARNING);
-						throw new DbClosedException();
-					}
-					openConnections++;
+			} catch (SQLException e) {
+				if (txn != null) tryToClose(txn, LOG, WARNING);
+				releaseConnectionSlot();
+				throw new DbException(e);
+			} catch (DbException e) {
+				releaseConnectionSlot();
+				throw e;
+			}
+			connectionsLock.lock();
+			try {
+				// The DB may have been closed while the connection was opened
+				if (closed) {
+					tryToClose(txn, LOG, WARNING);
+					openConnections--;
 					logConnectionCounts();
 					connectionsChanged.signalAll();
-				} finally {
-					connectionsLock.unlock();
+					throw new DbClosedException();
 				}
+			} finally {
+				connectionsLock.unlock();
 			}
-		} catch (SQLException e) {
-			throw new DbException(e);
 		}
 		return txn;
 	}
@@ -615,6 +668,29 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	private void releaseConnectionSlot() {
+		connectionsLock.lock();
+		try {
+			openConnections--;
+			logConnectionCounts();
+			connectionsChanged.signalAll();
+		} finally {
+			connectionsLock.unlock();
+		}
+	}
+
+	@Override
+	public ConnectionPoolStats getConnectionPoolStats() {
+		connectionsLock.lock();
+		try {
+			return new ConnectionPoolStats(connectionPoolSize, openConnections,
+					connectionPool.size(), borrowCount, waitCount,
+					totalWaitTime);
+		} finally {
+			connectionsLock.unlock();
+		}
+	}
+
 	@Override
 	public void abortTransaction(Connection txn) {
 		// The transaction may have been aborted due to an earlier exception,
@@ -629,14 +705,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 
 	private void closeConnection(Connection txn) {
 		tryToClose(txn, LOG, WARNING);
-		connectionsLock.lock();
-		try {
-			openConnections--;
-			logConnectionCounts();
-			connectionsChanged.signalAll();
-		} finally {
-			connectionsLock.unlock();
-		}
+		releaseConnectionSlot();
 	}
 
 	@Override
@@ -657,7 +726,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 		boolean shouldClose;
 		connectionsLock.lock();
 		try {
-			shouldClose = connectionPool.size() >= MAX_CONNECTION_POOL_SIZE;
+			shouldClose = connectionPool.size() >= connectionPoolSize;
 			if (shouldClose) openConnections--;
 			else connectionPool.add(txn);
 			logConnectionCounts();
@@ -787,9 +856,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 
 	private void addStatus(Connection txn, ContactId c, GroupId g,
 			boolean groupShared) throws DbException {
-		PreparedStatement ps = null;
+		PreparedStatement ps = null, ps1 = null;
 		ResultSet rs = null;
 		try {
+			// Messages offered by the contact will be marked as seen
+			Set<MessageId> offered = getOfferedMessages(txn, c, g);
+			List<MessageId> removed = new ArrayList<>();
 			String sql = "SELECT messageId, timestamp, state, shared,"
 					+ " length, raw IS NULL"
 					+ " FROM messages"
@@ -797,6 +869,8 @@ abstract class JdbcDatabase implements Database<Connection> {
 			ps = txn.prepareStatement(sql);
 			ps.setBytes(1, g.getBytes());
 			rs = ps.executeQuery();
+			ps1 = prepareAddStatus(txn);
+			int rows = 0;
 			while (rs.next()) {
 				MessageId id = new MessageId(rs.getBytes(1));
 				long timestamp = rs.getLong(2);
@@ -804,12 +878,42 @@ abstract class JdbcDatabase implements Database<Connection> {
 				boolean messageShared = rs.getBoolean(4);
 				int length = rs.getInt(5);
 				boolean deleted = rs.getBoolean(6);
-				boolean seen = removeOfferedMessage(txn, c, id);
-				addStatus(txn, id, c, g, timestamp, length, state, groupShared,
-						messageShared, deleted, seen);
+				boolean seen = offered.contains(id);
+				if (seen) removed.add(id);
+				addStatusToBatch(ps1, id, c, g, timestamp, length, state,
+						groupShared, messageShared, deleted, seen);
+				rows++;
 			}
 			rs.close();
 			ps.close();
+			executeAddStatusBatch(ps1, rows);
+			if (!removed.isEmpty()) removeOfferedMessages(txn, c, removed);
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			tryToClose(ps1, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
+	private Set<MessageId> getOfferedMessages(Connection txn, ContactId c,
+			GroupId g) throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT o.messageId FROM offers AS o"
+					+ " JOIN messages AS m"
+					+ " ON o.messageId = m.messageId"
+					+ " WHERE o.contactId = ? AND m.groupId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setInt(1, c.getInt());
+			ps.setBytes(2, g.getBytes());
+			rs = ps.executeQuery();
+			Set<MessageId> ids = new HashSet<>();
+			while (rs.next()) ids.add(new MessageId(rs.getBytes(1)));
+			rs.close();
+			ps.close();
+			return ids;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
 			tryToClose(ps, LOG, WARNING);
@@ -871,12 +975,18 @@ abstract class JdbcDatabase implements Database<Connection> {
 			// Create a status row for each contact that can see the group
 			Map<ContactId, Boolean> visibility =
 					getGroupVisibility(txn, m.getGroupId());
-			for (Entry<ContactId, Boolean> e : visibility.entrySet()) {
-				ContactId c = e.getKey();
-				boolean offered = removeOfferedMessage(txn, c, m.getId());
-				boolean seen = offered || c.equals(sender);
-				addStatus(txn, m.getId(), c, m.getGroupId(), m.getTimestamp(),
-						raw.length, state, e.getValue(), shared, false, seen);
+			if (!visibility.isEmpty()) {
+				Set<ContactId> offered =
+						removeOfferedMessage(txn, m.getId(), visibility.keySet());
+				ps = prepareAddStatus(txn);
+				for (Entry<ContactId, Boolean> e : visibility.entrySet()) {
+					ContactId c = e.getKey();
+					boolean seen = offered.contains(c) || c.equals(sender);
+					addStatusToBatch(ps, m.getId(), c, m.getGroupId(),
+							m.getTimestamp(), raw.length, state, e.getValue(),
+							shared, false, seen);
+				}
+				executeAddStatusBatch(ps, visibility.size());
 			}
 			// Update denormalised column in messageDependencies if dependency
 			// is in same group as dependent
@@ -926,37 +1036,48 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
-	private void addStatus(Connection txn, MessageId m, ContactId c, GroupId g,
-			long timestamp, int length, MessageState state, boolean groupShared,
-			boolean messageShared, boolean deleted, boolean seen)
-			throws DbException {
-		PreparedStatement ps = null;
-		try {
-			String sql = "INSERT INTO statuses (messageId, contactId, groupId,"
-					+ " timestamp, length, state, groupShared, messageShared,"
-					+ " deleted, ack, seen, requested, expiry, txCount,"
-					+ " maxLatency)"
-					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, 0, 0,"
-					+ " NULL)";
-			ps = txn.prepareStatement(sql);
-			ps.setBytes(1, m.getBytes());
-			ps.setInt(2, c.getInt());
-			ps.setBytes(3, g.getBytes());
-			ps.setLong(4, timestamp);
-			ps.setInt(5, length);
-			ps.setInt(6, state.getValue());
-			ps.setBoolean(7, groupShared);
-			ps.setBoolean(8, messageShared);
-			ps.setBoolean(9, deleted);
-			ps.setBoolean(10, seen);
-			ps.setBoolean(11, seen);
-			int affected = ps.executeUpdate();
+	/**
+	 * Prepares a statement for inserting status rows in a batch with
+	 * {@link #addStatusToBatch} and {@link #executeAddStatusBatch}, so that
+	 * fanning a message out to many contacts, or a group out to a new
+	 * contact, costs a single round trip.
+	 */
+	private PreparedStatement prepareAddStatus(Connection txn)
+			throws SQLException {
+		String sql = "INSERT INTO statuses (messageId, contactId, groupId,"
+				+ " timestamp, length, state, groupShared, messageShared,"
+				+ " deleted, ack, seen, requested, expiry, txCount,"
+				+ " maxLatency)"
+				+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, 0, 0,"
+				+ " NULL)";
+		return txn.prepareStatement(sql);
+	}
+
+	private void addStatusToBatch(PreparedStatement ps, MessageId m,
+			ContactId c, GroupId g, long timestamp, int length,
+			MessageState state, boolean groupShared, boolean messageShared,
+			boolean deleted, boolean seen) throws SQLException {
+		ps.setBytes(1, m.getBytes());
+		ps.setInt(2, c.getInt());
+		ps.setBytes(3, g.getBytes());
+		ps.setLong(4, timestamp);
+		ps.setInt(5, length);
+		ps.setInt(6, state.getValue());
+		ps.setBoolean(7, groupShared);
+		ps.setBoolean(8, messageShared);
+		ps.setBoolean(9, deleted);
+		ps.setBoolean(10, seen);
+		ps.setBoolean(11, seen);
+		ps.addBatch();
+	}
+
+	private void executeAddStatusBatch(PreparedStatement ps, int rows)
+			throws SQLException, DbStateException {
+		int[] batchAffected = ps.executeBatch();
+		if (batchAffected.length != rows) throw new DbStateException();
+		for (int affected : batchAffected)
 			if (affected != 1) throw new DbStateException();
-			ps.close();
-		} catch (SQLException e) {
-			tryToClose(ps, LOG, WARNING);
-			throw new DbException(e);
-		}
+		ps.close();
 	}
 
 	@Override
@@ -1024,6 +1145,36 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public void addSession(Connection txn, GroupId g, UniqueId sessionId,
+			MessageId m) throws DbException {
+		PreparedStatement ps = null;
+		try {
+			String sql = "UPDATE sessions SET messageId = ?"
+					+ " WHERE groupId = ? AND sessionId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, m.getBytes());
+			ps.setBytes(2, g.getBytes());
+			ps.setBytes(3, sessionId.getBytes());
+			int affected = ps.executeUpdate();
+			if (affected < 0 || affected > 1) throw new DbStateException();
+			ps.close();
+			if (affected == 1) return;
+			sql = "INSERT INTO sessions (groupId, sessionId, messageId)"
+					+ " VALUES (?, ?, ?)";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			ps.setBytes(2, sessionId.getBytes());
+			ps.setBytes(3, m.getBytes());
+			affected = ps.executeUpdate();
+			if (affected != 1) throw new DbStateException();
+			ps.close();
+		} catch (SQLException e) {
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public void addTransport(Connection txn, TransportId t, long maxLatency)
 			throws DbException {
@@ -1890,6 +2041,33 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public InputStream getMessageBody(Connection txn, MessageId m)
+			throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT raw FROM messages WHERE messageId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, m.getBytes());
+			rs = ps.executeQuery();
+			if (!rs.next()) throw new DbStateException();
+			byte[] raw = rs.getBytes(1);
+			if (rs.next()) throw new DbStateException();
+			rs.close();
+			ps.close();
+			if (raw == null) throw new MessageDeletedException();
+			if (raw.length <= MESSAGE_HEADER_LENGTH) throw new AssertionError();
+			// Wrap the raw message rather than copying the body out of it
+			return new ByteArrayInputStream(raw, MESSAGE_HEADER_LENGTH,
+					raw.length - MESSAGE_HEADER_LENGTH);
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Collection<MessageId> getMessageIds(Connection txn, GroupId g)
 			throws DbException {
@@ -1914,6 +2092,67 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public Map<MessageId, Long> getMessageIdsBefore(Connection txn, GroupId g,
+			long before, int limit) throws DbException {
+		return getMessageIdsByTimestamp(txn, g, before, limit, true);
+	}
+
+	@Override
+	public Map<MessageId, Long> getMessageIdsAfter(Connection txn, GroupId g,
+			long after, int limit) throws DbException {
+		return getMessageIdsByTimestamp(txn, g, after, limit, false);
+	}
+
+	private Map<MessageId, Long> getMessageIdsByTimestamp(Connection txn,
+			GroupId g, long timestamp, int limit, boolean before)
+			throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT messageId, timestamp FROM messages"
+					+ " WHERE groupId = ? AND state = ?"
+					+ (before ? " AND timestamp < ?" : " AND timestamp > ?")
+					+ (before ? " ORDER BY timestamp DESC" :
+					" ORDER BY timestamp")
+					+ " LIMIT ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			ps.setInt(2, DELIVERED.getValue());
+			ps.setLong(3, timestamp);
+			ps.setInt(4, limit);
+			rs = ps.executeQuery();
+			Map<MessageId, Long> ids = new LinkedHashMap<>();
+			long last = 0;
+			while (rs.next()) {
+				last = rs.getLong(2);
+				ids.put(new MessageId(rs.getBytes(1)), last);
+			}
+			rs.close();
+			ps.close();
+			if (ids.size() < limit) return ids;
+			// Include any other messages that share the last timestamp
+			sql = "SELECT messageId FROM messages"
+					+ " WHERE groupId = ? AND state = ? AND timestamp = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			ps.setInt(2, DELIVERED.getValue());
+			ps.setLong(3, last);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				MessageId m = new MessageId(rs.getBytes(1));
+				if (!ids.containsKey(m)) ids.put(m, last);
+			}
+			rs.close();
+			ps.close();
+			return ids;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Collection<MessageId> getMessageIds(Connection txn, GroupId g,
 			Metadata query) throws DbException {
@@ -1922,28 +2161,14 @@ abstract class JdbcDatabase implements Database<Connection> {
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
-			// Retrieve the message IDs for each query term and intersect
-			Set<MessageId> intersection = null;
-			String sql = "SELECT messageId FROM messageMetadata"
-					+ " WHERE groupId = ? AND state = ?"
-					+ " AND metaKey = ? AND value = ?";
-			for (Entry<String, byte[]> e : query.entrySet()) {
-				ps = txn.prepareStatement(sql);
-				ps.setBytes(1, g.getBytes());
-				ps.setInt(2, DELIVERED.getValue());
-				ps.setString(3, e.getKey());
-				ps.setBytes(4, e.getValue());
-				rs = ps.executeQuery();
-				Set<MessageId> ids = new HashSet<>();
-				while (rs.next()) ids.add(new MessageId(rs.getBytes(1)));
-				rs.close();
-				ps.close();
-				if (intersection == null) intersection = ids;
-				else intersection.retainAll(ids);
-				// Return early if there are no matches
-				if (intersection.isEmpty()) return Collections.emptySet();
-			}
-			return intersection;
+			ps = txn.prepareStatement(getMetadataQuerySql(query.size()));
+			setMetadataQueryParameters(ps, 1, g, query);
+			rs = ps.executeQuery();
+			List<MessageId> ids = new ArrayList<>();
+			while (rs.next()) ids.add(new MessageId(rs.getBytes(1)));
+			rs.close();
+			ps.close();
+			return ids;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
 			tryToClose(ps, LOG, WARNING);
@@ -2012,13 +2237,89 @@ abstract class JdbcDatabase implements Database<Connection> {
 	@Override
 	public Map<MessageId, Metadata> getMessageMetadata(Connection txn,
 			GroupId g, Metadata query) throws DbException {
-		// Retrieve the matching message IDs
-		Collection<MessageId> matches = getMessageIds(txn, g, query);
-		if (matches.isEmpty()) return Collections.emptyMap();
-		// Retrieve the metadata for each match
-		Map<MessageId, Metadata> all = new HashMap<>(matches.size());
-		for (MessageId m : matches) all.put(m, getMessageMetadata(txn, m));
-		return all;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql;
+			if (query.isEmpty()) {
+				// Include delivered messages that don't have any metadata
+				sql = "SELECT m.messageId, metaKey, value"
+						+ " FROM messages AS m"
+						+ " LEFT OUTER JOIN messageMetadata AS md"
+						+ " ON m.messageId = md.messageId"
+						+ " WHERE m.groupId = ? AND m.state = ?";
+				ps = txn.prepareStatement(sql);
+				ps.setBytes(1, g.getBytes());
+				ps.setInt(2, DELIVERED.getValue());
+			} else {
+				// Retrieve the metadata for all the matching messages at once
+				sql = "SELECT messageId, metaKey, value"
+						+ " FROM messageMetadata"
+						+ " WHERE groupId = ? AND state = ?"
+						+ " AND messageId IN ("
+						+ getMetadataQuerySql(query.size()) + ")";
+				ps = txn.prepareStatement(sql);
+				ps.setBytes(1, g.getBytes());
+				ps.setInt(2, DELIVERED.getValue());
+				setMetadataQueryParameters(ps, 3, g, query);
+			}
+			rs = ps.executeQuery();
+			Map<MessageId, Metadata> all = new HashMap<>();
+			while (rs.next()) {
+				MessageId messageId = new MessageId(rs.getBytes(1));
+				Metadata metadata = all.get(messageId);
+				if (metadata == null) {
+					metadata = new Metadata();
+					all.put(messageId, metadata);
+				}
+				String key = rs.getString(2);
+				if (key != null) metadata.put(key, rs.getBytes(3));
+			}
+			rs.close();
+			ps.close();
+			return all;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Returns an SQL query that selects the IDs of the delivered messages in
+	 * a group whose metadata matches all the terms of a metadata query. A
+	 * message matches if it has a metadata row for every term, which is
+	 * checked by counting the matching rows for each message.
+	 * <p/>
+	 * The query takes the group ID, the message state, a key and value for
+	 * each term, and the number of terms as parameters.
+	 */
+	private String getMetadataQuerySql(int terms) {
+		if (terms == 0) throw new IllegalArgumentException();
+		StringBuilder sb = new StringBuilder();
+		sb.append("SELECT messageId FROM messageMetadata")
+				.append(" WHERE groupId = ? AND state = ? AND (");
+		for (int i = 0; i < terms; i++) {
+			if (i > 0) sb.append(" OR ");
+			sb.append("(metaKey = ? AND value = ?)");
+		}
+		sb.append(") GROUP BY messageId HAVING COUNT (*) = ?");
+		return sb.toString();
+	}
+
+	/**
+	 * Sets the parameters of a query returned by
+	 * {@link #getMetadataQuerySql(int)}, starting at the given index.
+	 */
+	private void setMetadataQueryParameters(PreparedStatement ps, int index,
+			GroupId g, Metadata query) throws SQLException {
+		ps.setBytes(index++, g.getBytes());
+		ps.setInt(index++, DELIVERED.getValue());
+		for (Entry<String, byte[]> e : query.entrySet()) {
+			ps.setString(index++, e.getKey());
+			ps.setBytes(index++, e.getValue());
+		}
+		ps.setInt(index, query.size());
 	}
 
 	@Override
@@ -2672,6 +2973,32 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	@Nullable
+	public MessageId getSessionMessageId(Connection txn, GroupId g,
+			UniqueId sessionId) throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT messageId FROM sessions"
+					+ " WHERE groupId = ? AND sessionId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			ps.setBytes(2, sessionId.getBytes());
+			rs = ps.executeQuery();
+			MessageId m = null;
+			if (rs.next()) m = new MessageId(rs.getBytes(1));
+			if (rs.next()) throw new DbStateException();
+			rs.close();
+			ps.close();
+			return m;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Settings getSettings(Connection txn, String namespace)
 			throws DbException {
@@ -3245,20 +3572,43 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
-	private boolean removeOfferedMessage(Connection txn, ContactId c,
-			MessageId m) throws DbException {
+	/**
+	 * Removes any offers of the given message from the given contacts and
+	 * returns the contacts that had offered it.
+	 */
+	private Set<ContactId> removeOfferedMessage(Connection txn, MessageId m,
+			Collection<ContactId> contacts) throws DbException {
 		PreparedStatement ps = null;
+		ResultSet rs = null;
 		try {
-			String sql = "DELETE FROM offers"
-					+ " WHERE contactId = ? AND messageId = ?";
+			String sql = "SELECT contactId FROM offers WHERE messageId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, m.getBytes());
+			rs = ps.executeQuery();
+			Set<ContactId> offered = new HashSet<>();
+			while (rs.next()) {
+				ContactId c = new ContactId(rs.getInt(1));
+				if (contacts.contains(c)) offered.add(c);
+			}
+			rs.close();
+			ps.close();
+			if (offered.isEmpty()) return offered;
+			sql = "DELETE FROM offers WHERE contactId = ? AND messageId = ?";
 			ps = txn.prepareStatement(sql);
-			ps.setInt(1, c.getInt());
 			ps.setBytes(2, m.getBytes());
-			int affected = ps.executeUpdate();
-			if (affected < 0 || affected > 1) throw new DbStateException();
+			for (ContactId c : offered) {
+				ps.setInt(1, c.getInt());
+				ps.addBatch();
+			}
+			int[] batchAffected = ps.executeBatch();
+			if (batchAffected.length != offered.size())
+				throw new DbStateException();
+			for (int rows : batchAffected)
+				if (rows != 1) throw new DbStateException();
 			ps.close();
-			return affected == 1;
+			return offered;
 		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
 			tryToClose(ps, LOG, WARNING);
 			throw new DbException(e);
 		}
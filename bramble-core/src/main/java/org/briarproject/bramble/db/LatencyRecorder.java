@@ -0,0 +1,52 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.LatencyStats;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.min;
+import static org.briarproject.bramble.api.db.LatencyStats.HISTOGRAM_BUCKETS;
+
+@ThreadSafe
+@NotNullByDefault
+class LatencyRecorder {
+
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong totalTime = new AtomicLong(0);
+	private final AtomicLong maxTime = new AtomicLong(0);
+	private final AtomicLong rows = new AtomicLong(0);
+	private final AtomicLongArray histogram =
+			new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+	/**
+	 * Records a latency in microseconds and the number of rows returned.
+	 */
+	void record(long micros, int rowCount) {
+		count.incrementAndGet();
+		totalTime.addAndGet(micros);
+		long max = maxTime.get();
+		while (micros > max && !maxTime.compareAndSet(max, micros)) {
+			max = maxTime.get();
+		}
+		if (rowCount > 0) rows.addAndGet(rowCount);
+		histogram.incrementAndGet(getBucket(micros));
+	}
+
+	LatencyStats getStats() {
+		long[] buckets = new long[HISTOGRAM_BUCKETS];
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+			buckets[i] = histogram.get(i);
+		return new LatencyStats(count.get(), totalTime.get(), maxTime.get(),
+				rows.get(), buckets);
+	}
+
+	static int getBucket(long micros) {
+		if (micros <= 0) return 0;
+		return min(HISTOGRAM_BUCKETS - 1, 64 - numberOfLeadingZeros(micros));
+	}
+}
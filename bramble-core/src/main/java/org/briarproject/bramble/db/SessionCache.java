@@ -0,0 +1,139 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.UniqueId;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded, least recently used cache of the messages that store the state
+ * of protocol sessions.
+ * <p>
+ * The cache is written through by write transactions, which have exclusive
+ * access to the database, so it may contain changes that haven't been
+ * committed yet. The caller must {@link #clear() clear} the cache if a write
+ * transaction is aborted.
+ */
+@ThreadSafe
+@NotNullByDefault
+class SessionCache {
+
+	private final int capacity;
+
+	@GuardedBy("this")
+	private final Map<Key, MessageId> cache;
+
+	/**
+	 * The sessions stored in each cached message.
+	 */
+	@GuardedBy("this")
+	private final Map<MessageId, Set<Key>> messageIndex = new HashMap<>();
+
+	SessionCache(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException();
+		this.capacity = capacity;
+		cache = new LinkedHashMap<Key, MessageId>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Entry<Key, MessageId> e) {
+				if (size() <= SessionCache.this.capacity) return false;
+				removeFromIndex(e.getKey(), e.getValue());
+				return true;
+			}
+		};
+	}
+
+	@Nullable
+	synchronized MessageId get(GroupId g, UniqueId sessionId) {
+		return cache.get(new Key(g, sessionId));
+	}
+
+	synchronized void put(GroupId g, UniqueId sessionId, MessageId m) {
+		Key k = new Key(g, sessionId);
+		MessageId old = cache.put(k, m);
+		if (old != null) removeFromIndex(k, old);
+		Set<Key> keys = messageIndex.get(m);
+		if (keys == null) {
+			keys = new HashSet<>();
+			messageIndex.put(m, keys);
+		}
+		keys.add(k);
+	}
+
+	/**
+	 * Removes any sessions that are stored in the given message.
+	 */
+	synchronized void removeMessage(MessageId m) {
+		Set<Key> keys = messageIndex.remove(m);
+		if (keys != null) for (Key k : keys) cache.remove(k);
+	}
+
+	/**
+	 * Removes any sessions that belong to the given group.
+	 */
+	synchronized void removeGroup(GroupId g) {
+		Iterator<Entry<Key, MessageId>> it = cache.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<Key, MessageId> e = it.next();
+			if (e.getKey().groupId.equals(g)) {
+				removeFromIndex(e.getKey(), e.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	synchronized void clear() {
+		cache.clear();
+		messageIndex.clear();
+	}
+
+	@GuardedBy("this")
+	private void removeFromIndex(Key k, MessageId m) {
+		Set<Key> keys = messageIndex.get(m);
+		if (keys != null && keys.remove(k) && keys.isEmpty()) {
+			messageIndex.remove(m);
+		}
+	}
+
+	// Package access for testing
+	synchronized int getIndexedMessageCount() {
+		return messageIndex.size();
+	}
+
+	@Immutable
+	@NotNullByDefault
+	private static class Key {
+
+		private final GroupId groupId;
+		private final UniqueId sessionId;
+
+		private Key(GroupId groupId, UniqueId sessionId) {
+			this.groupId = groupId;
+			this.sessionId = sessionId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return groupId.equals(k.groupId) && sessionId.equals(k.sessionId);
+		}
+
+		@Override
+		public int hashCode() {
+			return groupId.hashCode() ^ sessionId.hashCode();
+		}
+	}
+}
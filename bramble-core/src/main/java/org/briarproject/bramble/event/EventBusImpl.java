@@ -2,25 +2,59 @@ package org.briarproject.bramble.event;
 
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
+import org.briarproject.bramble.api.event.EventBusStats;
 import org.briarproject.bramble.api.event.EventExecutor;
 import org.briarproject.bramble.api.event.EventListener;
 import org.briarproject.nullsafety.NotNullByDefault;
 
-import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Collections.unmodifiableList;
+import static java.util.logging.Level.WARNING;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.LogUtils.now;
+
 @ThreadSafe
 @NotNullByDefault
 class EventBusImpl implements EventBus {
 
-	private final Collection<EventListener> listeners =
-			new CopyOnWriteArrayList<>();
+	private static final Logger LOG = getLogger(EventBusImpl.class.getName());
+
 	private final Executor eventExecutor;
 
+	private final Object lock = new Object();
+	@GuardedBy("lock")
+	private final List<Registration> registrations = new ArrayList<>();
+	/**
+	 * The registrations that are interested in each concrete event class,
+	 * in the order they were added. Entries are computed on demand and
+	 * cleared whenever a listener is added or removed.
+	 */
+	private final Map<Class<?>, List<Registration>> index =
+			new ConcurrentHashMap<>();
+
+	private final AtomicLong broadcastCount = new AtomicLong(0);
+	private final AtomicLong droppedCount = new AtomicLong(0);
+	private final AtomicLong totalDispatchLatency = new AtomicLong(0);
+	private final AtomicLong maxDispatchLatency = new AtomicLong(0);
+	private final AtomicInteger queuedEvents = new AtomicInteger(0);
+	private final AtomicInteger queuedListenerEvents = new AtomicInteger(0);
+
 	@Inject
 	EventBusImpl(@EventExecutor Executor eventExecutor) {
 		this.eventExecutor = eventExecutor;
@@ -28,18 +62,176 @@ class EventBusImpl implements EventBus {
 
 	@Override
 	public void addListener(EventListener l) {
-		listeners.add(l);
+		addRegistration(new Registration(Event.class, l, null));
+	}
+
+	@Override
+	public void addListener(Class<? extends Event> eventClass,
+			EventListener l) {
+		addRegistration(new Registration(eventClass, l, null));
+	}
+
+	@Override
+	public void addListener(Class<? extends Event> eventClass,
+			EventListener l, Executor executor, int maxQueuedEvents) {
+		if (maxQueuedEvents < 1) throw new IllegalArgumentException();
+		ListenerQueue queue = new ListenerQueue(executor, maxQueuedEvents);
+		addRegistration(new Registration(eventClass, l, queue));
+	}
+
+	private void addRegistration(Registration r) {
+		synchronized (lock) {
+			registrations.add(r);
+			index.clear();
+		}
 	}
 
 	@Override
 	public void removeListener(EventListener l) {
-		listeners.remove(l);
+		synchronized (lock) {
+			Iterator<Registration> it = registrations.iterator();
+			while (it.hasNext()) {
+				Registration r = it.next();
+				if (r.listener == l) {
+					r.removed = true;
+					it.remove();
+					index.clear();
+					return;
+				}
+			}
+		}
 	}
 
 	@Override
 	public void broadcast(Event e) {
+		long broadcast = now();
+		broadcastCount.incrementAndGet();
+		queuedEvents.incrementAndGet();
 		eventExecutor.execute(() -> {
-			for (EventListener l : listeners) l.eventOccurred(e);
+			queuedEvents.decrementAndGet();
+			recordDispatchLatency(now() - broadcast);
+			for (Registration r : getRegistrations(e.getClass())) {
+				if (r.queue == null) r.listener.eventOccurred(e);
+				else r.queue.add(r, e);
+			}
 		});
 	}
+
+	@Override
+	public EventBusStats getStats() {
+		return new EventBusStats(broadcastCount.get(), droppedCount.get(),
+				totalDispatchLatency.get(), maxDispatchLatency.get(),
+				queuedEvents.get(), queuedListenerEvents.get());
+	}
+
+	private void recordDispatchLatency(long latency) {
+		totalDispatchLatency.addAndGet(latency);
+		long max = maxDispatchLatency.get();
+		while (latency > max
+				&& !maxDispatchLatency.compareAndSet(max, latency)) {
+			max = maxDispatchLatency.get();
+		}
+	}
+
+	private List<Registration> getRegistrations(Class<?> eventClass) {
+		List<Registration> interested = index.get(eventClass);
+		if (interested != null) return interested;
+		synchronized (lock) {
+			interested = index.get(eventClass);
+			if (interested == null) {
+				List<Registration> list = new ArrayList<>();
+				for (Registration r : registrations) {
+					if (r.eventClass.isAssignableFrom(eventClass)) list.add(r);
+				}
+				interested = unmodifiableList(list);
+				index.put(eventClass, interested);
+			}
+			return interested;
+		}
+	}
+
+	@NotNullByDefault
+	private static class Registration {
+
+		private final Class<? extends Event> eventClass;
+		private final EventListener listener;
+		@Nullable
+		private final ListenerQueue queue;
+
+		private volatile boolean removed = false;
+
+		private Registration(Class<? extends Event> eventClass,
+				EventListener listener, @Nullable ListenerQueue queue) {
+			this.eventClass = eventClass;
+			this.listener = listener;
+			this.queue = queue;
+		}
+	}
+
+	/**
+	 * Delivers events to a listener on the listener's own executor, in the
+	 * order the events were broadcast.
+	 */
+	@ThreadSafe
+	@NotNullByDefault
+	private class ListenerQueue {
+
+		private final Executor executor;
+		private final int maxQueuedEvents;
+
+		private final Object queueLock = new Object();
+		@GuardedBy("queueLock")
+		private final Queue<Event> queue = new LinkedList<>();
+		@GuardedBy("queueLock")
+		private boolean scheduled = false;
+
+		private ListenerQueue(Executor executor, int maxQueuedEvents) {
+			this.executor = executor;
+			this.maxQueuedEvents = maxQueuedEvents;
+		}
+
+		@EventExecutor
+		private void add(Registration r, Event e) {
+			boolean schedule;
+			synchronized (queueLock) {
+				if (queue.size() >= maxQueuedEvents) {
+					droppedCount.incrementAndGet();
+					if (LOG.isLoggable(WARNING)) {
+						LOG.warning("Queue full, dropping "
+								+ e.getClass().getSimpleName() + " for "
+								+ r.listener.getClass().getName());
+					}
+					return;
+				}
+				queue.add(e);
+				queuedListenerEvents.incrementAndGet();
+				schedule = !scheduled;
+				scheduled = true;
+			}
+			if (schedule) executor.execute(() -> deliverNext(r));
+		}
+
+		private void deliverNext(Registration r) {
+			Event e;
+			synchronized (queueLock) {
+				e = queue.poll();
+			}
+			if (e == null) throw new AssertionError();
+			queuedListenerEvents.decrementAndGet();
+			try {
+				if (!r.removed) r.listener.eventOccurred(e);
+			} finally {
+				scheduleNext(r);
+			}
+		}
+
+		private void scheduleNext(Registration r) {
+			boolean schedule;
+			synchronized (queueLock) {
+				schedule = !queue.isEmpty();
+				if (!schedule) scheduled = false;
+			}
+			if (schedule) executor.execute(() -> deliverNext(r));
+		}
+	}
 }
@@ -1,17 +1,23 @@
 package org.briarproject.bramble.lifecycle;
 
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
+import org.briarproject.bramble.api.lifecycle.IoExecutorMonitor;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.lifecycle.ShutdownManager;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -19,10 +25,25 @@ import dagger.Module;
 import dagger.Provides;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.WARNING;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.LogUtils.logException;
 
 @Module
 public class LifecycleModule {
 
+	private static final Logger LOG =
+			getLogger(LifecycleModule.class.getName());
+
+	/**
+	 * If this system property is set to "true" and the JVM supports virtual
+	 * threads (Java 21 or later), each {@link IoExecutor} task runs on its
+	 * own virtual thread instead of holding a platform thread from a pool.
+	 * This allows a large number of connections to be held open cheaply.
+	 */
+	public static final String VIRTUAL_THREADS_PROPERTY =
+			"org.briarproject.bramble.virtualThreads";
+
 	public static class EagerSingletons {
 		@Inject
 		@IoExecutor
@@ -44,18 +65,61 @@ public class LifecycleModule {
 
 	@Provides
 	@Singleton
-	@IoExecutor
-	Executor provideIoExecutor(LifecycleManager lifecycleManager,
-			ThreadFactory threadFactory) {
-		// The thread pool is unbounded, so use direct handoff
-		BlockingQueue<Runnable> queue = new SynchronousQueue<>();
-		// Discard tasks that are submitted during shutdown
-		RejectedExecutionHandler policy =
-				new ThreadPoolExecutor.DiscardPolicy();
-		// Create threads as required and keep them in the pool for 60 seconds
-		ExecutorService ioExecutor = new ThreadPoolExecutor(0,
-				Integer.MAX_VALUE, 60, SECONDS, queue, threadFactory, policy);
+	MonitoredIoExecutor provideMonitoredIoExecutor(
+			LifecycleManager lifecycleManager, ThreadFactory threadFactory) {
+		ExecutorService ioExecutor = null;
+		if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+			ioExecutor = createVirtualThreadExecutor();
+		}
+		boolean virtualThreads = ioExecutor != null;
+		if (virtualThreads) {
+			LOG.info("Using virtual threads for IO tasks");
+		} else {
+			// The thread pool is unbounded, so use direct handoff
+			BlockingQueue<Runnable> queue = new SynchronousQueue<>();
+			// Discard tasks that are submitted during shutdown
+			RejectedExecutionHandler policy =
+					new ThreadPoolExecutor.DiscardPolicy();
+			// Create threads as required and keep them in the pool for 60
+			// seconds
+			ioExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60,
+					SECONDS, queue, threadFactory, policy);
+		}
 		lifecycleManager.registerForShutdown(ioExecutor);
+		return new MonitoredIoExecutor(ioExecutor, virtualThreads);
+	}
+
+	@Provides
+	@Singleton
+	@IoExecutor
+	Executor provideIoExecutor(MonitoredIoExecutor ioExecutor) {
 		return ioExecutor;
 	}
+
+	@Provides
+	@Singleton
+	IoExecutorMonitor provideIoExecutorMonitor(
+			MonitoredIoExecutor ioExecutor) {
+		return ioExecutor;
+	}
+
+	/**
+	 * Returns an executor that runs each task on a new virtual thread, or
+	 * null if the JVM doesn't support virtual threads. Reflection is used so
+	 * that this code can still be compiled and run on Java 8 and Android.
+	 */
+	@Nullable
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			Method m = Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (NoSuchMethodException e) {
+			LOG.warning("Virtual threads are not supported by this JVM");
+			return null;
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			logException(LOG, WARNING, e);
+			return null;
+		}
+	}
 }
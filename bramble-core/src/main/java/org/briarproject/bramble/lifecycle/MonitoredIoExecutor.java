@@ -0,0 +1,70 @@
+package org.briarproject.bramble.lifecycle;
+
+import org.briarproject.bramble.api.lifecycle.IoExecutorMonitor;
+import org.briarproject.bramble.api.lifecycle.IoExecutorStats;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Wraps the executor that runs {@link
+ * org.briarproject.bramble.api.lifecycle.IoExecutor IoExecutor} tasks and
+ * keeps track of how many tasks are running.
+ */
+@ThreadSafe
+@NotNullByDefault
+class MonitoredIoExecutor implements Executor, IoExecutorMonitor {
+
+	private final ExecutorService delegate;
+	private final boolean virtualThreads;
+
+	private final AtomicInteger activeTasks = new AtomicInteger(0);
+	private final AtomicInteger peakActiveTasks = new AtomicInteger(0);
+	private final AtomicLong completedTasks = new AtomicLong(0);
+
+	MonitoredIoExecutor(ExecutorService delegate, boolean virtualThreads) {
+		this.delegate = delegate;
+		this.virtualThreads = virtualThreads;
+	}
+
+	@Override
+	public void execute(Runnable r) {
+		try {
+			delegate.execute(() -> run(r));
+		} catch (RejectedExecutionException e) {
+			// Discard tasks that are submitted during shutdown
+			if (!delegate.isShutdown()) throw e;
+		}
+	}
+
+	private void run(Runnable r) {
+		int active = activeTasks.incrementAndGet();
+		int peak = peakActiveTasks.get();
+		while (active > peak && !peakActiveTasks.compareAndSet(peak, active)) {
+			peak = peakActiveTasks.get();
+		}
+		try {
+			r.run();
+		} finally {
+			activeTasks.decrementAndGet();
+			completedTasks.incrementAndGet();
+		}
+	}
+
+	@Override
+	public IoExecutorStats getStats() {
+		int active = activeTasks.get();
+		// Each virtual thread runs a single task
+		int threads = delegate instanceof ThreadPoolExecutor ?
+				((ThreadPoolExecutor) delegate).getPoolSize() : active;
+		return new IoExecutorStats(virtualThreads, threads, active,
+				peakActiveTasks.get(), completedTasks.get());
+	}
+}
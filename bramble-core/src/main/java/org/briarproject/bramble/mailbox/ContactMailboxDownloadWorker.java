@@ -27,9 +27,11 @@ class ContactMailboxDownloadWorker extends MailboxDownloadWorker {
 			MailboxApiCaller mailboxApiCaller,
 			MailboxApi mailboxApi,
 			MailboxFileManager mailboxFileManager,
-			MailboxProperties mailboxProperties) {
+			MailboxProperties mailboxProperties,
+			int maxConcurrentDownloads) {
 		super(connectivityChecker, torReachabilityMonitor, mailboxApiCaller,
-				mailboxApi, mailboxFileManager, mailboxProperties);
+				mailboxApi, mailboxFileManager, mailboxProperties,
+				maxConcurrentDownloads);
 		if (mailboxProperties.isOwner()) throw new IllegalArgumentException();
 	}
 
@@ -59,7 +61,7 @@ class ContactMailboxDownloadWorker extends MailboxDownloadWorker {
 			for (MailboxFile file : files) {
 				queue.add(new FolderFile(folderId, file.name));
 			}
-			downloadNextFile(queue);
+			downloadFiles(queue);
 		}
 	}
 }
@@ -12,6 +12,7 @@ import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -100,18 +101,21 @@ interface MailboxApi {
 			throws IOException, ApiException, TolerableFailureException;
 
 	/**
-	 * Used by owner and contacts to retrieve a file.
+	 * Used by owner and contacts to retrieve a file without writing it to
+	 * disk.
 	 * <p>
 	 * Returns 200 OK if successful with the files' raw bytes
 	 * in the response body.
 	 *
-	 * @param file the empty file the response bytes will be written into.
+	 * @return a stream of the response bytes, which the caller must close.
+	 * Reading from the stream may throw an IOException if the connection
+	 * fails while the file is being downloaded.
 	 * @throws TolerableFailureException if response code is 404 (folder does
 	 * not exist, client is not authorised to download from folder, or file
 	 * does not exist)
 	 */
-	void getFile(MailboxProperties properties, MailboxFolderId folderId,
-			MailboxFileId fileId, File file)
+	InputStream getFile(MailboxProperties properties, MailboxFolderId folderId,
+			MailboxFileId fileId)
 			throws IOException, ApiException, TolerableFailureException;
 
 	/**
@@ -18,8 +18,8 @@ import org.briarproject.bramble.api.mailbox.MailboxVersion;
 import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -37,7 +37,6 @@ import static com.fasterxml.jackson.databind.MapperFeature.BLOCK_UNSAFE_POLYMORP
 import static java.util.Collections.sort;
 import static java.util.Objects.requireNonNull;
 import static okhttp3.internal.Util.EMPTY_REQUEST;
-import static org.briarproject.bramble.util.IoUtils.copyAndClose;
 
 @NotNullByDefault
 class MailboxApiImpl implements MailboxApi {
@@ -255,8 +254,8 @@ class MailboxApiImpl implements MailboxApi {
 	}
 
 	@Override
-	public void getFile(MailboxProperties properties, MailboxFolderId folderId,
-			MailboxFileId fileId, File file)
+	public InputStream getFile(MailboxProperties properties,
+			MailboxFolderId folderId, MailboxFileId fileId)
 			throws IOException, ApiException, TolerableFailureException {
 		String path = "/files/" + folderId + "/" + fileId;
 		Response response = sendGetRequest(properties, path);
@@ -265,8 +264,7 @@ class MailboxApiImpl implements MailboxApi {
 
 		ResponseBody body = response.body();
 		if (body == null) throw new ApiException();
-		FileOutputStream outputStream = new FileOutputStream(file);
-		copyAndClose(body.byteStream(), outputStream);
+		return body.byteStream();
 	}
 
 	@Override
@@ -21,4 +21,10 @@ interface MailboxConfig {
 	 */
 	long getTorReachabilityPeriod();
 
+	/**
+	 * The maximum number of files a download worker will download and
+	 * delete concurrently.
+	 */
+	int getMaxConcurrentDownloads();
+
 }
@@ -27,4 +27,9 @@ class MailboxConfigImpl implements MailboxConfig {
 	public long getTorReachabilityPeriod() {
 		return TorReachabilityMonitor.REACHABILITY_PERIOD_MS;
 	}
+
+	@Override
+	public int getMaxConcurrentDownloads() {
+		return MailboxDownloadWorker.MAX_CONCURRENT_DOWNLOADS;
+	}
 }
@@ -10,8 +10,13 @@ import org.briarproject.bramble.mailbox.MailboxApi.TolerableFailureException;
 import org.briarproject.bramble.mailbox.TorReachabilityMonitor.TorReachabilityObserver;
 import org.briarproject.nullsafety.NotNullByDefault;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.logging.Logger;
 
@@ -19,7 +24,10 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.lang.Math.max;
+import static java.util.logging.Level.INFO;
 import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 @ThreadSafe
 @NotNullByDefault
@@ -51,12 +59,19 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 	protected static final Logger LOG =
 			getLogger(MailboxDownloadWorker.class.getName());
 
+	/**
+	 * The default maximum number of files that will be downloaded and
+	 * deleted concurrently.
+	 */
+	static final int MAX_CONCURRENT_DOWNLOADS = 4;
+
 	private final ConnectivityChecker connectivityChecker;
 	private final TorReachabilityMonitor torReachabilityMonitor;
 	protected final MailboxApiCaller mailboxApiCaller;
 	protected final MailboxApi mailboxApi;
 	private final MailboxFileManager mailboxFileManager;
 	protected final MailboxProperties mailboxProperties;
+	private final int maxConcurrentDownloads;
 	protected final Object lock = new Object();
 
 	@GuardedBy("lock")
@@ -66,6 +81,26 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 	@Nullable
 	protected Cancellable apiCall = null;
 
+	/**
+	 * The files that are waiting to be downloaded.
+	 */
+	@GuardedBy("lock")
+	private final Queue<FolderFile> downloadQueue = new LinkedList<>();
+
+	/**
+	 * The API calls for the files that are currently being downloaded or
+	 * deleted. At most {@link #maxConcurrentDownloads} files are in
+	 * progress at any time.
+	 */
+	@GuardedBy("lock")
+	private final Map<FolderFile, Cancellable> fileCalls = new HashMap<>();
+
+	@GuardedBy("lock")
+	private long downloadStarted = 0, bytesDownloaded = 0;
+
+	@GuardedBy("lock")
+	private int filesDownloaded = 0;
+
 	/**
 	 * Creates the API call that starts the worker's download cycle.
 	 */
@@ -77,13 +112,16 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 			MailboxApiCaller mailboxApiCaller,
 			MailboxApi mailboxApi,
 			MailboxFileManager mailboxFileManager,
-			MailboxProperties mailboxProperties) {
+			MailboxProperties mailboxProperties,
+			int maxConcurrentDownloads) {
+		if (maxConcurrentDownloads < 1) throw new IllegalArgumentException();
 		this.connectivityChecker = connectivityChecker;
 		this.torReachabilityMonitor = torReachabilityMonitor;
 		this.mailboxApiCaller = mailboxApiCaller;
 		this.mailboxApi = mailboxApi;
 		this.mailboxFileManager = mailboxFileManager;
 		this.mailboxProperties = mailboxProperties;
+		this.maxConcurrentDownloads = maxConcurrentDownloads;
 	}
 
 	@Override
@@ -108,12 +146,17 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 	public void destroy() {
 		LOG.info("Destroyed");
 		Cancellable apiCall;
+		List<Cancellable> fileCalls;
 		synchronized (lock) {
 			state = State.DESTROYED;
 			apiCall = this.apiCall;
 			this.apiCall = null;
+			fileCalls = new ArrayList<>(this.fileCalls.values());
+			this.fileCalls.clear();
+			downloadQueue.clear();
 		}
 		if (apiCall != null) apiCall.cancel();
+		for (Cancellable fileCall : fileCalls) fileCall.cancel();
 		connectivityChecker.removeObserver(this);
 		torReachabilityMonitor.removeObserver(this);
 	}
@@ -156,60 +199,99 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 		}
 	}
 
-	void downloadNextFile(Queue<FolderFile> queue) {
+	/**
+	 * Downloads and deletes the given files, keeping up to
+	 * {@link #maxConcurrentDownloads} files in progress so that downloading
+	 * one file overlaps with handling and deleting others. When all the
+	 * files have been downloaded and deleted, checks for files again.
+	 */
+	void downloadFiles(Queue<FolderFile> queue) {
 		synchronized (lock) {
 			if (state == State.DESTROYED) return;
-			if (queue.isEmpty()) {
-				// Check for files again, as new files may have arrived while
-				// we were downloading
-				apiCall = mailboxApiCaller.retryWithBackoff(
-						createApiCallForDownloadCycle());
-			} else {
-				FolderFile file = queue.remove();
-				apiCall = mailboxApiCaller.retryWithBackoff(
-						new SimpleApiCall(() ->
-								apiCallDownloadFile(file, queue)));
-			}
+			downloadQueue.addAll(queue);
+			downloadStarted = now();
+			bytesDownloaded = 0;
+			filesDownloaded = 0;
+			startDownloads();
 		}
 	}
 
-	private void apiCallDownloadFile(FolderFile file, Queue<FolderFile> queue)
+	@GuardedBy("lock")
+	private void startDownloads() {
+		while (fileCalls.size() < maxConcurrentDownloads
+				&& !downloadQueue.isEmpty()) {
+			FolderFile file = downloadQueue.remove();
+			fileCalls.put(file, mailboxApiCaller.retryWithBackoff(
+					new SimpleApiCall(() -> apiCallDownloadFile(file))));
+		}
+		if (LOG.isLoggable(INFO)) {
+			LOG.info(fileCalls.size() + " files in progress, "
+					+ downloadQueue.size() + " queued");
+		}
+		if (fileCalls.isEmpty()) {
+			logDownloadStats();
+			// Check for files again, as new files may have arrived while
+			// we were downloading
+			apiCall = mailboxApiCaller.retryWithBackoff(
+					createApiCallForDownloadCycle());
+		}
+	}
+
+	@GuardedBy("lock")
+	private void logDownloadStats() {
+		if (LOG.isLoggable(INFO)) {
+			long duration = now() - downloadStarted;
+			long bytesPerSecond = bytesDownloaded * 1000 / max(1, duration);
+			LOG.info("Downloaded " + filesDownloaded + " files, "
+					+ bytesDownloaded + " bytes in " + duration + " ms ("
+					+ bytesPerSecond + " bytes/s)");
+		}
+	}
+
+	private void onFileFinished(FolderFile file) {
+		synchronized (lock) {
+			if (state == State.DESTROYED) return;
+			fileCalls.remove(file);
+			startDownloads();
+		}
+	}
+
+	private void apiCallDownloadFile(FolderFile file)
 			throws IOException, ApiException {
 		synchronized (lock) {
 			if (state == State.DESTROYED) return;
 		}
 		LOG.info("Downloading file");
-		File tempFile = mailboxFileManager.createTempFileForDownload();
+		InputStream in;
 		try {
-			mailboxApi.getFile(mailboxProperties, file.folderId, file.fileId,
-					tempFile);
-		} catch (IOException | ApiException e) {
-			if (!tempFile.delete()) {
-				LOG.warning("Failed to delete temporary file");
-			}
-			throw e;
+			in = mailboxApi.getFile(mailboxProperties, file.folderId,
+					file.fileId);
 		} catch (TolerableFailureException e) {
 			// File not found - continue to the next file
 			LOG.warning("File does not exist");
-			if (!tempFile.delete()) {
-				LOG.warning("Failed to delete temporary file");
-			}
-			downloadNextFile(queue);
+			onFileFinished(file);
 			return;
 		}
-		mailboxFileManager.handleDownloadedFile(tempFile);
-		deleteFile(file, queue);
+		// The file is read as it's downloaded. It's only deleted from the
+		// mailbox after it's been read, so if the download fails or we
+		// crash before then, it will be downloaded again
+		long length = mailboxFileManager.handleDownloadedStream(in);
+		synchronized (lock) {
+			bytesDownloaded += length;
+			filesDownloaded++;
+		}
+		deleteFile(file);
 	}
 
-	private void deleteFile(FolderFile file, Queue<FolderFile> queue) {
+	private void deleteFile(FolderFile file) {
 		synchronized (lock) {
 			if (state == State.DESTROYED) return;
-			apiCall = mailboxApiCaller.retryWithBackoff(
-					new SimpleApiCall(() -> apiCallDeleteFile(file, queue)));
+			fileCalls.put(file, mailboxApiCaller.retryWithBackoff(
+					new SimpleApiCall(() -> apiCallDeleteFile(file))));
 		}
 	}
 
-	private void apiCallDeleteFile(FolderFile file, Queue<FolderFile> queue)
+	private void apiCallDeleteFile(FolderFile file)
 			throws IOException, ApiException {
 		synchronized (lock) {
 			if (state == State.DESTROYED) return;
@@ -221,7 +303,7 @@ abstract class MailboxDownloadWorker implements MailboxWorker,
 			// File not found - continue to the next file
 			LOG.warning("File does not exist");
 		}
-		downloadNextFile(queue);
+		onFileFinished(file);
 	}
 
 	@Override
@@ -6,6 +6,7 @@ import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -13,11 +14,6 @@ import javax.annotation.concurrent.ThreadSafe;
 @NotNullByDefault
 interface MailboxFileManager {
 
-	/**
-	 * Creates an empty file for storing a download.
-	 */
-	File createTempFileForDownload() throws IOException;
-
 	/**
 	 * Creates a file to be uploaded to the given contact and writes any
 	 * waiting data to the file. The IDs of any messages sent or acked will
@@ -27,8 +23,19 @@ interface MailboxFileManager {
 			OutgoingSessionRecord sessionRecord) throws IOException;
 
 	/**
-	 * Handles a file that has been downloaded. The file should be created
-	 * with {@link #createTempFileForDownload()}.
+	 * Handles a downloaded file that was left in the download directory at
+	 * the last shutdown.
 	 */
 	void handleDownloadedFile(File f);
+
+	/**
+	 * Reads and handles a file as it's being downloaded, without writing it
+	 * to disk, and returns the number of bytes read. The stream is closed
+	 * when the file has been handled.
+	 *
+	 * @throws IOException if the download failed or the app is shutting
+	 * down before the file could be handled. The file should then be left
+	 * on the mailbox so it can be downloaded again
+	 */
+	long handleDownloadedStream(InputStream in) throws IOException;
 }
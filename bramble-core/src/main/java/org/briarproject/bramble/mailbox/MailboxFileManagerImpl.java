@@ -18,6 +18,7 @@ import org.briarproject.bramble.api.sync.OutgoingSessionRecord;
 import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,12 +31,14 @@ import java.util.logging.Logger;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.lifecycle.LifecycleManager.LifecycleState.RUNNING;
 import static org.briarproject.bramble.api.mailbox.MailboxConstants.ID;
 import static org.briarproject.bramble.api.plugin.file.FileConstants.PROP_PATH;
 import static org.briarproject.bramble.util.IoUtils.delete;
+import static org.briarproject.bramble.util.IoUtils.tryToClose;
 import static org.briarproject.bramble.util.LogUtils.logException;
 import static org.briarproject.nullsafety.NullSafety.requireNonNull;
 
@@ -50,6 +53,12 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 	static final String DOWNLOAD_DIR_NAME = "downloads";
 	static final String UPLOAD_DIR_NAME = "uploads";
 
+	/**
+	 * How often to check whether the app is shutting down while waiting for
+	 * a downloaded stream to be handled.
+	 */
+	static final long DISPOSAL_CHECK_INTERVAL_MS = 1000;
+
 	private final Executor ioExecutor;
 	private final PluginManager pluginManager;
 	private final ConnectionManager connectionManager;
@@ -73,15 +82,10 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 		this.eventBus = eventBus;
 	}
 
-	@Override
-	public File createTempFileForDownload() throws IOException {
-		return createTempFile(DOWNLOAD_DIR_NAME);
-	}
-
 	@Override
 	public File createAndWriteTempFileForUpload(ContactId contactId,
 			OutgoingSessionRecord sessionRecord) throws IOException {
-		File f = createTempFile(UPLOAD_DIR_NAME);
+		File f = createTempFile();
 		// We shouldn't reach this point until the plugin has been started
 		SimplexPlugin plugin =
 				(SimplexPlugin) requireNonNull(pluginManager.getPlugin(ID));
@@ -104,14 +108,14 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 		return f;
 	}
 
-	private File createTempFile(String dirName) throws IOException {
+	private File createTempFile() throws IOException {
 		// Wait for orphaned files to be handled before creating new files
 		try {
 			orphanLatch.await();
 		} catch (InterruptedException e) {
 			throw new IOException(e);
 		}
-		File dir = createDirectoryIfNeeded(dirName);
+		File dir = createDirectoryIfNeeded(UPLOAD_DIR_NAME);
 		return File.createTempFile("mailbox", ".tmp", dir);
 	}
 
@@ -143,6 +147,16 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 				exception -> isHandlingComplete(exception, true));
 	}
 
+	@Override
+	public long handleDownloadedStream(InputStream in) throws IOException {
+		MailboxStreamReader reader = new MailboxStreamReader(in);
+		LOG.info("Reading downloaded stream");
+		connectionManager.manageIncomingConnection(ID, reader,
+				exception -> reader.isHandlingComplete(exception, true));
+		if (!reader.awaitDisposal()) throw new IOException();
+		return reader.in.bytesRead;
+	}
+
 	private boolean isHandlingComplete(boolean exception, boolean recognised) {
 		// If we've successfully read the file then we're done
 		if (!exception && recognised) return true;
@@ -218,6 +232,104 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 		}
 	}
 
+	/**
+	 * Reads a file as it's being downloaded. If the download fails, the tag
+	 * isn't marked as recognised, so the file can be downloaded and read
+	 * again.
+	 */
+	private class MailboxStreamReader implements TransportConnectionReader {
+
+		private final DownloadInputStream in;
+		private final BlockingQueue<Boolean> disposalResult =
+				new ArrayBlockingQueue<>(1);
+
+		private MailboxStreamReader(InputStream in) {
+			this.in = new DownloadInputStream(in);
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return in;
+		}
+
+		@Override
+		public void dispose(boolean exception, boolean recognised) {
+			tryToClose(in, LOG, WARNING);
+			disposalResult.add(isHandlingComplete(exception, recognised));
+		}
+
+		private boolean isHandlingComplete(boolean exception,
+				boolean recognised) {
+			if (in.failed) return false;
+			return MailboxFileManagerImpl.this.isHandlingComplete(exception,
+					recognised);
+		}
+
+		/**
+		 * Waits for the reader to be disposed and returns true if the file
+		 * has been handled. Returns false if the app starts shutting down
+		 * before the reader is disposed, in which case the stream is closed
+		 * so the file can be downloaded again at the next startup.
+		 */
+		private boolean awaitDisposal() {
+			try {
+				while (true) {
+					Boolean handled = disposalResult.poll(
+							DISPOSAL_CHECK_INTERVAL_MS, MILLISECONDS);
+					if (handled != null) return handled;
+					if (lifecycleManager.getLifecycleState().isAfter(RUNNING)) {
+						LOG.info("Shutting down while waiting for disposal");
+						tryToClose(in, LOG, WARNING);
+						return false;
+					}
+				}
+			} catch (InterruptedException e) {
+				LOG.info("Interrupted while waiting for disposal");
+				tryToClose(in, LOG, WARNING);
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Counts the bytes read from a download and records whether reading
+	 * from the download failed, as opposed to the data being invalid.
+	 */
+	private static class DownloadInputStream extends FilterInputStream {
+
+		private volatile long bytesRead = 0;
+		private volatile boolean failed = false;
+
+		private DownloadInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				int read = super.read();
+				if (read != -1) bytesRead++;
+				return read;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int read = super.read(b, off, len);
+				if (read != -1) bytesRead += read;
+				return read;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+	}
+
 	private static class MailboxFileWriter
 			implements TransportConnectionWriter {
 
@@ -264,6 +376,7 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 				return disposalResult.take();
 			} catch (InterruptedException e) {
 				LOG.info("Interrupted while waiting for disposal");
+				Thread.currentThread().interrupt();
 				return true;
 			}
 		}
@@ -31,6 +31,7 @@ class MailboxWorkerFactoryImpl implements MailboxWorkerFactory {
 	private final MailboxApi mailboxApi;
 	private final MailboxFileManager mailboxFileManager;
 	private final MailboxUpdateManager mailboxUpdateManager;
+	private final MailboxConfig mailboxConfig;
 
 	@Inject
 	MailboxWorkerFactoryImpl(@IoExecutor Executor ioExecutor,
@@ -42,7 +43,8 @@ class MailboxWorkerFactoryImpl implements MailboxWorkerFactory {
 			MailboxApiCaller mailboxApiCaller,
 			MailboxApi mailboxApi,
 			MailboxFileManager mailboxFileManager,
-			MailboxUpdateManager mailboxUpdateManager) {
+			MailboxUpdateManager mailboxUpdateManager,
+			MailboxConfig mailboxConfig) {
 		this.ioExecutor = ioExecutor;
 		this.db = db;
 		this.clock = clock;
@@ -53,6 +55,7 @@ class MailboxWorkerFactoryImpl implements MailboxWorkerFactory {
 		this.mailboxApi = mailboxApi;
 		this.mailboxFileManager = mailboxFileManager;
 		this.mailboxUpdateManager = mailboxUpdateManager;
+		this.mailboxConfig = mailboxConfig;
 	}
 
 	@Override
@@ -75,7 +78,8 @@ class MailboxWorkerFactoryImpl implements MailboxWorkerFactory {
 			MailboxProperties properties) {
 		return new ContactMailboxDownloadWorker(connectivityChecker,
 				reachabilityMonitor, mailboxApiCaller, mailboxApi,
-				mailboxFileManager, properties);
+				mailboxFileManager, properties,
+				mailboxConfig.getMaxConcurrentDownloads());
 	}
 
 	@Override
@@ -85,7 +89,8 @@ class MailboxWorkerFactoryImpl implements MailboxWorkerFactory {
 			MailboxProperties properties) {
 		return new OwnMailboxDownloadWorker(connectivityChecker,
 				reachabilityMonitor, mailboxApiCaller, mailboxApi,
-				mailboxFileManager, properties);
+				mailboxFileManager, properties,
+				mailboxConfig.getMaxConcurrentDownloads());
 	}
 
 	@Override
@@ -0,0 +1,90 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Chooses the capacity of the batches generated by an outgoing sync session.
+ * <p>
+ * Larger batches mean fewer round-trips between the DB and the output
+ * stream, but each round-trip blocks the DB for longer. The capacity grows
+ * towards the amount of data the transport can write in
+ * {@link #targetWriteTime} milliseconds, and shrinks whenever generating a
+ * batch takes longer than {@link #maxGenerationTime} milliseconds.
+ */
+@ThreadSafe
+@NotNullByDefault
+class BatchSizer {
+
+	/**
+	 * The weight given to each new throughput measurement.
+	 */
+	private static final double ALPHA = 0.25;
+
+	private final int minCapacity, maxCapacity;
+	private final long targetWriteTime, maxGenerationTime;
+
+	private final Object lock = new Object();
+	@GuardedBy("lock")
+	private int capacity, dbLimit;
+	@GuardedBy("lock")
+	private double throughput = 0; // Bytes per millisecond
+
+	BatchSizer(int minCapacity, int maxCapacity, long targetWriteTime,
+			long maxGenerationTime) {
+		if (minCapacity < 1 || maxCapacity < minCapacity)
+			throw new IllegalArgumentException();
+		this.minCapacity = minCapacity;
+		this.maxCapacity = maxCapacity;
+		this.targetWriteTime = targetWriteTime;
+		this.maxGenerationTime = maxGenerationTime;
+		capacity = minCapacity;
+		dbLimit = maxCapacity;
+	}
+
+	int getCapacity() {
+		synchronized (lock) {
+			return capacity;
+		}
+	}
+
+	/**
+	 * Records that generating a batch took the given number of
+	 * milliseconds.
+	 */
+	void onBatchGenerated(long duration) {
+		synchronized (lock) {
+			if (duration > maxGenerationTime) {
+				dbLimit = max(minCapacity, capacity / 2);
+			} else if (duration * 2 < maxGenerationTime) {
+				dbLimit = min(maxCapacity, dbLimit * 2);
+			}
+			updateCapacity();
+		}
+	}
+
+	/**
+	 * Records that writing a batch of the given length in bytes took the
+	 * given number of milliseconds.
+	 */
+	void onBatchWritten(long length, long duration) {
+		synchronized (lock) {
+			double latest = (double) length / max(1, duration);
+			if (throughput == 0) throughput = latest;
+			else throughput = ALPHA * latest + (1 - ALPHA) * throughput;
+			updateCapacity();
+		}
+	}
+
+	@GuardedBy("lock")
+	private void updateCapacity() {
+		double target = throughput * targetWriteTime;
+		int linkLimit = (int) min(maxCapacity, max(minCapacity, target));
+		capacity = min(linkLimit, dbLimit);
+	}
+}
@@ -38,6 +38,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
@@ -56,6 +57,7 @@ import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_LENGTH;
 import static org.briarproject.bramble.api.sync.SyncConstants.SUPPORTED_VERSIONS;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * An outgoing {@link SyncSession} suitable for duplex transports. The session
@@ -81,10 +83,31 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 	 * + {@link SyncConstants#MAX_MESSAGE_LENGTH} to ensure that maximum-size
 	 * messages can be selected for transmission. Larger batches will mean
 	 * fewer round-trips between the DB and the output stream, but each
-	 * round-trip will block the DB for longer.
+	 * round-trip will block the DB for longer, so the capacity is adjusted
+	 * by a {@link BatchSizer} within these bounds.
 	 */
-	private static final int BATCH_CAPACITY =
+	private static final int MIN_BATCH_CAPACITY =
 			(RECORD_HEADER_BYTES + MAX_MESSAGE_LENGTH) * 2;
+	private static final int MAX_BATCH_CAPACITY = MIN_BATCH_CAPACITY * 16;
+
+	/**
+	 * How long it should take to write a batch to the transport. While one
+	 * batch is being written, the next one is generated.
+	 */
+	private static final long TARGET_BATCH_WRITE_TIME_MS = 500;
+
+	/**
+	 * If generating a batch takes longer than this, the batch capacity is
+	 * reduced so that other DB tasks aren't delayed.
+	 */
+	private static final long MAX_BATCH_GENERATION_TIME_MS = 200;
+
+	/**
+	 * The maximum number of generated batches waiting to be written. When
+	 * the stream writer falls behind, no more batches are generated until
+	 * it catches up.
+	 */
+	private static final int MAX_QUEUED_BATCHES = 2;
 
 	private final DatabaseComponent db;
 	private final Executor dbExecutor;
@@ -98,12 +121,14 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 	@Nullable
 	private final Priority priority;
 	private final BlockingQueue<ThrowingRunnable<IOException>> writerTasks;
+	private final BatchSizer batchSizer;
 
 	private final AtomicBoolean generateAckQueued = new AtomicBoolean(false);
 	private final AtomicBoolean generateBatchQueued = new AtomicBoolean(false);
 	private final AtomicBoolean generateOfferQueued = new AtomicBoolean(false);
 	private final AtomicBoolean generateRequestQueued =
 			new AtomicBoolean(false);
+	private final AtomicInteger queuedBatches = new AtomicInteger(0);
 	private final AtomicLong nextSendTime = new AtomicLong(Long.MAX_VALUE);
 
 	private volatile boolean interrupted = false;
@@ -125,6 +150,8 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		this.recordWriter = recordWriter;
 		this.priority = priority;
 		writerTasks = new LinkedBlockingQueue<>();
+		batchSizer = new BatchSizer(MIN_BATCH_CAPACITY, MAX_BATCH_CAPACITY,
+				TARGET_BATCH_WRITE_TIME_MS, MAX_BATCH_GENERATION_TIME_MS);
 	}
 
 	@IoExecutor
@@ -203,6 +230,8 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 	}
 
 	private void generateBatch() {
+		// The next batch will be generated when a queued batch is written
+		if (queuedBatches.get() >= MAX_QUEUED_BATCHES) return;
 		if (generateBatchQueued.compareAndSet(false, true))
 			dbExecutor.execute(new GenerateBatch());
 	}
@@ -315,18 +344,26 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 			if (!generateBatchQueued.getAndSet(false))
 				throw new AssertionError();
 			try {
+				int capacity = batchSizer.getCapacity();
+				long start = now();
 				Collection<Message> b =
 						db.transactionWithNullableResult(false, txn -> {
 							Collection<Message> batch =
 									db.generateRequestedBatch(txn, contactId,
-											BATCH_CAPACITY, maxLatency);
+											capacity, maxLatency);
 							setNextSendTime(db.getNextSendTime(txn, contactId,
 									maxLatency));
 							return batch;
 						});
+				batchSizer.onBatchGenerated(now() - start);
 				if (LOG.isLoggable(INFO))
 					LOG.info("Generated batch: " + (b != null));
-				if (b != null) writerTasks.add(new WriteBatch(b));
+				if (b != null) {
+					queuedBatches.incrementAndGet();
+					writerTasks.add(new WriteBatch(b));
+					// Generate the next batch while this one is written
+					generateBatch();
+				}
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -345,8 +382,14 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		@IoExecutor
 		@Override
 		public void run() throws IOException {
+			queuedBatches.decrementAndGet();
 			if (interrupted) return;
-			for (Message m : batch) recordWriter.writeMessage(m);
+			long start = now(), length = 0;
+			for (Message m : batch) {
+				recordWriter.writeMessage(m);
+				length += RECORD_HEADER_BYTES + m.getRawLength();
+			}
+			batchSizer.onBatchWritten(length, now() - start);
 			LOG.info("Sent batch");
 			generateBatch();
 		}
@@ -6,6 +6,7 @@ import org.briarproject.bramble.api.contact.event.ContactRemovedEvent;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.DbRunnable;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventListener;
@@ -19,23 +20,29 @@ import org.briarproject.bramble.api.sync.PriorityHandler;
 import org.briarproject.bramble.api.sync.Request;
 import org.briarproject.bramble.api.sync.SyncRecordReader;
 import org.briarproject.bramble.api.sync.SyncSession;
-import org.briarproject.bramble.api.sync.Versions;
 import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.lifecycle.LifecycleManager.LifecycleState.STOPPING;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
- * An incoming {@link SyncSession}.
+ * An incoming {@link SyncSession}. Records are handled on the DB executor,
+ * and records that arrive while the executor is busy are handled together
+ * in a single transaction.
  */
 @ThreadSafe
 @NotNullByDefault
@@ -44,6 +51,17 @@ class IncomingSession implements SyncSession, EventListener {
 	private static final Logger LOG =
 			getLogger(IncomingSession.class.getName());
 
+	/**
+	 * The maximum number of records to handle in a single transaction.
+	 */
+	static final int MAX_BATCH_SIZE = 100;
+
+	/**
+	 * The time in milliseconds after which a transaction is committed,
+	 * even if more records are waiting to be handled.
+	 */
+	static final long MAX_BATCH_DURATION = 500;
+
 	private final DatabaseComponent db;
 	private final Executor dbExecutor;
 	private final EventBus eventBus;
@@ -51,6 +69,13 @@ class IncomingSession implements SyncSession, EventListener {
 	private final SyncRecordReader recordReader;
 	private final PriorityHandler priorityHandler;
 
+	private final Object lock = new Object();
+	// Records waiting to be handled on the DB executor, in order of arrival
+	@GuardedBy("lock")
+	private final Queue<DbRunnable<DbException>> queue = new LinkedList<>();
+	@GuardedBy("lock")
+	private boolean scheduled = false;
+
 	private volatile boolean interrupted = false;
 
 	IncomingSession(DatabaseComponent db, Executor dbExecutor,
@@ -77,19 +102,20 @@ class IncomingSession implements SyncSession, EventListener {
 				}
 				if (recordReader.hasAck()) {
 					Ack a = recordReader.readAck();
-					dbExecutor.execute(new ReceiveAck(a));
+					receive(txn -> db.receiveAck(txn, contactId, a));
 				} else if (recordReader.hasMessage()) {
 					Message m = recordReader.readMessage();
-					dbExecutor.execute(new ReceiveMessage(m));
+					receive(txn -> db.receiveMessage(txn, contactId, m));
 				} else if (recordReader.hasOffer()) {
 					Offer o = recordReader.readOffer();
-					dbExecutor.execute(new ReceiveOffer(o));
+					receive(txn -> db.receiveOffer(txn, contactId, o));
 				} else if (recordReader.hasRequest()) {
 					Request r = recordReader.readRequest();
-					dbExecutor.execute(new ReceiveRequest(r));
+					receive(txn -> db.receiveRequest(txn, contactId, r));
 				} else if (recordReader.hasVersions()) {
-					Versions v = recordReader.readVersions();
-					dbExecutor.execute(new ReceiveVersions(v));
+					List<Byte> v =
+							recordReader.readVersions().getSupportedVersions();
+					receive(txn -> db.setSyncVersions(txn, contactId, v));
 				} else if (recordReader.hasPriority()) {
 					Priority p = recordReader.readPriority();
 					priorityHandler.handle(p);
@@ -120,83 +146,53 @@ class IncomingSession implements SyncSession, EventListener {
 		}
 	}
 
-	private class ReceiveAck implements Runnable {
-
-		private final Ack ack;
-
-		private ReceiveAck(Ack ack) {
-			this.ack = ack;
-		}
-
-		@DatabaseExecutor
-		@Override
-		public void run() {
-			try {
-				db.transaction(false, txn ->
-						db.receiveAck(txn, contactId, ack));
-			} catch (DbException e) {
-				logException(LOG, WARNING, e);
-				interrupt();
-			}
+	private void receive(DbRunnable<DbException> task) {
+		boolean schedule;
+		synchronized (lock) {
+			queue.add(task);
+			schedule = !scheduled;
+			scheduled = true;
 		}
+		if (schedule) dbExecutor.execute(this::receiveBatch);
 	}
 
-	private class ReceiveMessage implements Runnable {
-
-		private final Message message;
-
-		private ReceiveMessage(Message message) {
-			this.message = message;
-		}
-
-		@DatabaseExecutor
-		@Override
-		public void run() {
-			try {
-				db.transaction(false, txn ->
-						db.receiveMessage(txn, contactId, message));
-			} catch (DbException e) {
-				logException(LOG, WARNING, e);
-				interrupt();
-			}
-		}
-	}
-
-	private class ReceiveOffer implements Runnable {
-
-		private final Offer offer;
-
-		private ReceiveOffer(Offer offer) {
-			this.offer = offer;
-		}
-
-		@DatabaseExecutor
-		@Override
-		public void run() {
-			try {
-				db.transaction(false, txn ->
-						db.receiveOffer(txn, contactId, offer));
-			} catch (DbException e) {
-				logException(LOG, WARNING, e);
-				interrupt();
-			}
+	/**
+	 * Handles the oldest queued records in a single transaction, so the
+	 * events for the whole batch are broadcast when it commits. If the
+	 * transaction fails, the records are handled again individually, so
+	 * only the records that fail by themselves are lost.
+	 */
+	@DatabaseExecutor
+	private void receiveBatch() {
+		List<DbRunnable<DbException>> batch = new ArrayList<>();
+		try {
+			db.transaction(false, txn -> {
+				long start = now();
+				for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+					DbRunnable<DbException> task;
+					synchronized (lock) {
+						task = queue.poll();
+					}
+					if (task == null) break;
+					batch.add(task);
+					task.run(txn);
+					if (now() - start >= MAX_BATCH_DURATION) break;
+				}
+			});
+		} catch (DbException e) {
+			logException(LOG, WARNING, e);
+			// The batch was rolled back
+			receiveIndividually(batch);
+		} finally {
+			scheduleNextBatch();
 		}
 	}
 
-	private class ReceiveRequest implements Runnable {
-
-		private final Request request;
-
-		private ReceiveRequest(Request request) {
-			this.request = request;
-		}
-
-		@DatabaseExecutor
-		@Override
-		public void run() {
+	@DatabaseExecutor
+	private void receiveIndividually(List<DbRunnable<DbException>> batch) {
+		for (DbRunnable<DbException> task : batch) {
 			try {
-				db.transaction(false, txn ->
-						db.receiveRequest(txn, contactId, request));
+				db.transaction(false, task);
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -204,25 +200,12 @@ class IncomingSession implements SyncSession, EventListener {
 		}
 	}
 
-	private class ReceiveVersions implements Runnable {
-
-		private final Versions versions;
-
-		private ReceiveVersions(Versions versions) {
-			this.versions = versions;
-		}
-
-		@DatabaseExecutor
-		@Override
-		public void run() {
-			try {
-				List<Byte> supported = versions.getSupportedVersions();
-				db.transaction(false,
-						txn -> db.setSyncVersions(txn, contactId, supported));
-			} catch (DbException e) {
-				logException(LOG, WARNING, e);
-				interrupt();
-			}
+	private void scheduleNextBatch() {
+		boolean schedule;
+		synchronized (lock) {
+			schedule = !queue.isEmpty();
+			if (!schedule) scheduled = false;
 		}
+		if (schedule) dbExecutor.execute(this::receiveBatch);
 	}
 }
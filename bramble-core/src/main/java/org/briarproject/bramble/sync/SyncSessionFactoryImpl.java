@@ -26,6 +26,7 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
 
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.SYNC;
 import static org.briarproject.bramble.api.mailbox.MailboxConstants.MAX_FILE_PAYLOAD_BYTES;
 
 @Immutable
@@ -41,7 +42,7 @@ class SyncSessionFactoryImpl implements SyncSessionFactory {
 
 	@Inject
 	SyncSessionFactoryImpl(DatabaseComponent db,
-			@DatabaseExecutor Executor dbExecutor, EventBus eventBus,
+			@DatabaseExecutor(SYNC) Executor dbExecutor, EventBus eventBus,
 			Clock clock, SyncRecordReaderFactory recordReaderFactory,
 			SyncRecordWriterFactory recordWriterFactory) {
 		this.db = db;
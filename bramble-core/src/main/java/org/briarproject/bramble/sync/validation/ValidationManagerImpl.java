@@ -13,6 +13,7 @@ import org.briarproject.bramble.api.event.EventListener;
 import org.briarproject.bramble.api.lifecycle.Service;
 import org.briarproject.bramble.api.sync.ClientId;
 import org.briarproject.bramble.api.sync.Group;
+import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.InvalidMessageException;
 import org.briarproject.bramble.api.sync.Message;
 import org.briarproject.bramble.api.sync.MessageContext;
@@ -26,21 +27,29 @@ import org.briarproject.bramble.api.sync.validation.ValidationManager;
 import org.briarproject.bramble.api.versioning.ClientMajorVersion;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
-import javax.inject.Inject;
 
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.BACKGROUND;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_DO_NOT_SHARE;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_SHARE;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.DEFER;
@@ -48,7 +57,9 @@ import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.D
 import static org.briarproject.bramble.api.sync.validation.MessageState.DELIVERED;
 import static org.briarproject.bramble.api.sync.validation.MessageState.INVALID;
 import static org.briarproject.bramble.api.sync.validation.MessageState.PENDING;
+import static org.briarproject.bramble.util.LogUtils.logDuration;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 @ThreadSafe
 @NotNullByDefault
@@ -62,15 +73,33 @@ class ValidationManagerImpl implements ValidationManager, Service,
 	private final Executor dbExecutor, validationExecutor;
 	private final Map<ClientMajorVersion, MessageValidator> validators;
 	private final Map<ClientMajorVersion, IncomingMessageHook> hooks;
+	private final int maxBatchSize;
 	private final AtomicBoolean used = new AtomicBoolean(false);
+	private final AtomicInteger backlog = new AtomicInteger(0);
+	private final AtomicLong validated = new AtomicLong(0);
+	private final AtomicLong delivered = new AtomicLong(0);
+
+	private final Object lock = new Object();
+	@GuardedBy("lock")
+	private final Queue<Message> toLoad = new LinkedList<>();
+	@GuardedBy("lock")
+	private final Queue<ValidationResult> toStore = new LinkedList<>();
+	@GuardedBy("lock")
+	private boolean loadTaskScheduled = false, storeTaskScheduled = false;
 
-	@Inject
+	/**
+	 * @param maxBatchSize the maximum number of messages to load, store or
+	 * deliver in a single transaction
+	 */
 	ValidationManagerImpl(DatabaseComponent db,
-			@DatabaseExecutor Executor dbExecutor,
-			@ValidationExecutor Executor validationExecutor) {
+			@DatabaseExecutor(BACKGROUND) Executor dbExecutor,
+			@ValidationExecutor Executor validationExecutor,
+			int maxBatchSize) {
+		if (maxBatchSize < 1) throw new IllegalArgumentException();
 		this.db = db;
 		this.dbExecutor = dbExecutor;
 		this.validationExecutor = validationExecutor;
+		this.maxBatchSize = maxBatchSize;
 		validators = new ConcurrentHashMap<>();
 		hooks = new ConcurrentHashMap<>();
 	}
@@ -99,6 +128,21 @@ class ValidationManagerImpl implements ValidationManager, Service,
 		hooks.put(new ClientMajorVersion(c, majorVersion), hook);
 	}
 
+	@Override
+	public int getValidationBacklog() {
+		return backlog.get();
+	}
+
+	@Override
+	public long getValidatedMessageCount() {
+		return validated.get();
+	}
+
+	@Override
+	public long getDeliveredMessageCount() {
+		return delivered.get();
+	}
+
 	private void validateOutstandingMessagesAsync() {
 		dbExecutor.execute(this::validateOutstandingMessages);
 	}
@@ -108,37 +152,66 @@ class ValidationManagerImpl implements ValidationManager, Service,
 		try {
 			Queue<MessageId> unvalidated = new LinkedList<>(
 					db.transactionWithResult(true, db::getMessagesToValidate));
-			validateNextMessageAsync(unvalidated);
+			backlog.addAndGet(unvalidated.size());
+			validateNextBatchAsync(unvalidated);
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
 		}
 	}
 
-	private void validateNextMessageAsync(Queue<MessageId> unvalidated) {
+	private void validateNextBatchAsync(Queue<MessageId> unvalidated) {
 		if (unvalidated.isEmpty()) return;
-		dbExecutor.execute(() -> validateNextMessage(unvalidated));
+		dbExecutor.execute(() -> validateNextBatch(unvalidated));
 	}
 
 	@DatabaseExecutor
-	private void validateNextMessage(Queue<MessageId> unvalidated) {
+	private void validateNextBatch(Queue<MessageId> unvalidated) {
+		List<MessageId> polled = new ArrayList<>();
 		try {
-			Pair<Message, Group> mg = db.transactionWithResult(true, txn -> {
-				MessageId id = unvalidated.poll();
-				if (id == null) throw new AssertionError();
-				Message m = db.getMessage(txn, id);
-				Group g = db.getGroup(txn, m.getGroupId());
-				return new Pair<>(m, g);
-			});
-			validateMessageAsync(mg.getFirst(), mg.getSecond());
-			validateNextMessageAsync(unvalidated);
+			List<Pair<Message, Group>> batch =
+					db.transactionWithResult(true, txn -> {
+						List<Pair<Message, Group>> loaded = new ArrayList<>();
+						for (int i = 0; i < maxBatchSize; i++) {
+							MessageId id = unvalidated.poll();
+							if (id == null) break;
+							polled.add(id);
+							Pair<Message, Group> mg = loadMessage(txn, id);
+							if (mg != null) loaded.add(mg);
+						}
+						return loaded;
+					});
+			// Messages that were removed won't be validated
+			backlog.addAndGet(batch.size() - polled.size());
+			for (Pair<Message, Group> mg : batch) {
+				validateMessageAsync(mg.getFirst(), mg.getSecond());
+			}
+			validateNextBatchAsync(unvalidated);
+		} catch (DbException e) {
+			logException(LOG, WARNING, e);
+			// Neither the polled messages nor the rest of the queue will be
+			// validated until the next startup
+			backlog.addAndGet(-(polled.size() + unvalidated.size()));
+		}
+	}
+
+	/**
+	 * Loads the given message and its group, or returns null if either has
+	 * been removed.
+	 */
+	@Nullable
+	@DatabaseExecutor
+	private Pair<Message, Group> loadMessage(Transaction txn, MessageId id)
+			throws DbException {
+		try {
+			Message m = db.getMessage(txn, id);
+			Group g = db.getGroup(txn, m.getGroupId());
+			return new Pair<>(m, g);
 		} catch (NoSuchMessageException e) {
 			LOG.info("Message removed before validation");
-			validateNextMessageAsync(unvalidated);
+			return null;
 		} catch (NoSuchGroupException e) {
 			LOG.info("Group removed before validation");
-			validateNextMessageAsync(unvalidated);
-		} catch (DbException e) {
-			logException(LOG, WARNING, e);
+			return null;
 		}
 	}
 
@@ -151,76 +224,91 @@ class ValidationManagerImpl implements ValidationManager, Service,
 		try {
 			Queue<MessageId> pending = new LinkedList<>(
 					db.transactionWithResult(true, db::getPendingMessages));
-			deliverNextPendingMessageAsync(pending);
+			deliverNextPendingBatchAsync(pending);
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
 		}
 	}
 
-	private void deliverNextPendingMessageAsync(Queue<MessageId> pending) {
+	private void deliverNextPendingBatchAsync(Queue<MessageId> pending) {
 		if (pending.isEmpty()) return;
-		dbExecutor.execute(() -> deliverNextPendingMessage(pending));
+		dbExecutor.execute(() -> deliverNextPendingBatch(pending));
 	}
 
+	/**
+	 * Delivers pending messages from the given queue in a single
+	 * transaction. Dependents that become ready for delivery are added to
+	 * the queue and may be delivered in the same transaction.
+	 */
 	@DatabaseExecutor
-	private void deliverNextPendingMessage(Queue<MessageId> pending) {
+	private void deliverNextPendingBatch(Queue<MessageId> pending) {
 		try {
 			Queue<MessageId> toShare = new LinkedList<>();
 			Queue<MessageId> invalidate = new LinkedList<>();
 			db.transaction(false, txn -> {
-				boolean anyInvalid = false, allDelivered = true;
-				MessageId id = pending.poll();
-				if (id == null) throw new AssertionError();
-				// Check if message is still pending
-				if (db.getMessageState(txn, id) == PENDING) {
-					// Check if dependencies are valid and delivered
-					Map<MessageId, MessageState> states =
-							db.getMessageDependencies(txn, id);
-					for (Entry<MessageId, MessageState> e : states.entrySet()) {
-						if (e.getValue() == INVALID) anyInvalid = true;
-						if (e.getValue() != DELIVERED) allDelivered = false;
-					}
-					if (anyInvalid) {
-						invalidateMessage(txn, id);
-						addDependentsToInvalidate(txn, id, invalidate);
-					} else if (allDelivered) {
-						Message m = db.getMessage(txn, id);
-						Group g = db.getGroup(txn, m.getGroupId());
-						ClientId c = g.getClientId();
-						int majorVersion = g.getMajorVersion();
-						Metadata meta =
-								db.getMessageMetadataForValidator(txn, id);
-						DeliveryAction action =
-								deliverMessage(txn, m, c, majorVersion, meta);
-						if (action == REJECT) {
-							invalidateMessage(txn, id);
-							addDependentsToInvalidate(txn, id, invalidate);
-						} else if (action == ACCEPT_SHARE) {
-							db.setMessageState(txn, m.getId(), DELIVERED);
-							addPendingDependents(txn, id, pending);
-							db.setMessageShared(txn, id);
-							toShare.addAll(states.keySet());
-						} else if (action == ACCEPT_DO_NOT_SHARE) {
-							db.setMessageState(txn, m.getId(), DELIVERED);
-							addPendingDependents(txn, id, pending);
-						}
+				for (int i = 0; i < maxBatchSize; i++) {
+					MessageId id = pending.poll();
+					if (id == null) break;
+					try {
+						deliverPendingMessage(txn, id, pending, toShare,
+								invalidate);
+					} catch (NoSuchMessageException e) {
+						LOG.info("Message removed before delivery");
+					} catch (NoSuchGroupException e) {
+						LOG.info("Group removed before delivery");
 					}
 				}
 			});
 			if (!invalidate.isEmpty()) invalidateNextMessageAsync(invalidate);
 			if (!toShare.isEmpty()) shareNextMessageAsync(toShare);
-			deliverNextPendingMessageAsync(pending);
-		} catch (NoSuchMessageException e) {
-			LOG.info("Message removed before delivery");
-			deliverNextPendingMessageAsync(pending);
-		} catch (NoSuchGroupException e) {
-			LOG.info("Group removed before delivery");
-			deliverNextPendingMessageAsync(pending);
+			deliverNextPendingBatchAsync(pending);
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
 		}
 	}
 
+	@DatabaseExecutor
+	private void deliverPendingMessage(Transaction txn, MessageId id,
+			Queue<MessageId> pending, Queue<MessageId> toShare,
+			Queue<MessageId> invalidate) throws DbException {
+		boolean anyInvalid = false, allDelivered = true;
+		// Check if message is still pending
+		if (db.getMessageState(txn, id) != PENDING) return;
+		// Check if dependencies are valid and delivered
+		Map<MessageId, MessageState> states =
+				db.getMessageDependencies(txn, id);
+		for (Entry<MessageId, MessageState> e : states.entrySet()) {
+			if (e.getValue() == INVALID) anyInvalid = true;
+			if (e.getValue() != DELIVERED) allDelivered = false;
+		}
+		if (anyInvalid) {
+			invalidateMessage(txn, id);
+			addDependentsToInvalidate(txn, id, invalidate);
+		} else if (allDelivered) {
+			Message m = db.getMessage(txn, id);
+			Group g = db.getGroup(txn, m.getGroupId());
+			ClientId c = g.getClientId();
+			int majorVersion = g.getMajorVersion();
+			Metadata meta = db.getMessageMetadataForValidator(txn, id);
+			DeliveryAction action =
+					deliverMessage(txn, m, c, majorVersion, meta);
+			if (action == REJECT) {
+				invalidateMessage(txn, id);
+				addDependentsToInvalidate(txn, id, invalidate);
+			} else if (action == ACCEPT_SHARE) {
+				db.setMessageState(txn, m.getId(), DELIVERED);
+				delivered.incrementAndGet();
+				addPendingDependents(txn, id, pending);
+				db.setMessageShared(txn, id);
+				toShare.addAll(states.keySet());
+			} else if (action == ACCEPT_DO_NOT_SHARE) {
+				db.setMessageState(txn, m.getId(), DELIVERED);
+				delivered.incrementAndGet();
+				addPendingDependents(txn, id, pending);
+			}
+		}
+	}
+
 	private void validateMessageAsync(Message m, Group g) {
 		validationExecutor.execute(() -> validateMessage(m, g));
 	}
@@ -232,90 +320,140 @@ class ValidationManagerImpl implements ValidationManager, Service,
 		MessageValidator v = validators.get(cv);
 		if (v == null) {
 			if (LOG.isLoggable(WARNING)) LOG.warning("No validator for " + cv);
+			backlog.decrementAndGet();
 		} else {
 			if (LOG.isLoggable(INFO)) {
 				LOG.info("Validating message for " + cv.getClientId());
 			}
+			MessageContext context;
 			try {
-				MessageContext context = v.validateMessage(m, g);
-				storeMessageContextAsync(m, g.getClientId(),
-						g.getMajorVersion(), context);
+				context = v.validateMessage(m, g);
 			} catch (InvalidMessageException e) {
 				logException(LOG, INFO, e);
-				Queue<MessageId> invalidate = new LinkedList<>();
-				invalidate.add(m.getId());
-				invalidateNextMessageAsync(invalidate);
+				context = null;
 			}
+			validated.incrementAndGet();
+			storeValidationResultAsync(new ValidationResult(m,
+					g.getClientId(), g.getMajorVersion(), context));
 		}
 	}
 
-	private void storeMessageContextAsync(Message m, ClientId c,
-			int majorVersion, MessageContext result) {
-		dbExecutor.execute(() ->
-				storeMessageContext(m, c, majorVersion, result));
+	/**
+	 * Queues a validation result to be stored. Results that arrive while
+	 * earlier results are waiting to be stored are stored together.
+	 */
+	private void storeValidationResultAsync(ValidationResult result) {
+		boolean schedule;
+		synchronized (lock) {
+			toStore.add(result);
+			schedule = !storeTaskScheduled;
+			storeTaskScheduled = true;
+		}
+		if (schedule) dbExecutor.execute(this::storeValidationResults);
 	}
 
 	@DatabaseExecutor
-	private void storeMessageContext(Message m, ClientId c, int majorVersion,
-			MessageContext context) {
+	private void storeValidationResults() {
+		List<ValidationResult> batch = new ArrayList<>();
+		boolean more;
+		synchronized (lock) {
+			while (batch.size() < maxBatchSize && !toStore.isEmpty()) {
+				batch.add(toStore.poll());
+			}
+			more = !toStore.isEmpty();
+			if (!more) storeTaskScheduled = false;
+		}
 		try {
-			MessageId id = m.getId();
 			Queue<MessageId> invalidate = new LinkedList<>();
 			Queue<MessageId> pending = new LinkedList<>();
 			Queue<MessageId> toShare = new LinkedList<>();
+			long start = now();
 			db.transaction(false, txn -> {
-				boolean anyInvalid = false, allDelivered = true;
-				// Check if message has any dependencies
-				Collection<MessageId> dependencies = context.getDependencies();
-				if (!dependencies.isEmpty()) {
-					db.addMessageDependencies(txn, m, dependencies);
-					// Check if dependencies are valid and delivered
-					Map<MessageId, MessageState> states =
-							db.getMessageDependencies(txn, id);
-					for (Entry<MessageId, MessageState> e : states.entrySet()) {
-						if (e.getValue() == INVALID) anyInvalid = true;
-						if (e.getValue() != DELIVERED) allDelivered = false;
-					}
-				}
-				if (anyInvalid) {
-					if (db.getMessageState(txn, id) != INVALID) {
-						invalidateMessage(txn, id);
-						addDependentsToInvalidate(txn, id, invalidate);
-					}
-				} else {
-					Metadata meta = context.getMetadata();
-					db.mergeMessageMetadata(txn, id, meta);
-					if (allDelivered) {
-						DeliveryAction action =
-								deliverMessage(txn, m, c, majorVersion, meta);
-						if (action == REJECT) {
-							invalidateMessage(txn, id);
-							addDependentsToInvalidate(txn, id, invalidate);
-						} else if (action == DEFER) {
-							db.setMessageState(txn, id, PENDING);
-						} else if (action == ACCEPT_SHARE) {
-							db.setMessageState(txn, id, DELIVERED);
-							addPendingDependents(txn, id, pending);
-							db.setMessageShared(txn, id);
-							toShare.addAll(dependencies);
-						} else if (action == ACCEPT_DO_NOT_SHARE) {
-							db.setMessageState(txn, id, DELIVERED);
-							addPendingDependents(txn, id, pending);
-						}
-					} else {
-						db.setMessageState(txn, id, PENDING);
+				for (ValidationResult result : batch) {
+					try {
+						storeValidationResult(txn, result, invalidate,
+								pending, toShare);
+					} catch (NoSuchMessageException e) {
+						LOG.info("Message removed during validation");
+					} catch (NoSuchGroupException e) {
+						LOG.info("Group removed during validation");
 					}
 				}
 			});
+			if (LOG.isLoggable(INFO)) {
+				logDuration(LOG, "Storing " + batch.size()
+						+ " validation results", start);
+			}
 			if (!invalidate.isEmpty()) invalidateNextMessageAsync(invalidate);
-			if (!pending.isEmpty()) deliverNextPendingMessageAsync(pending);
+			if (!pending.isEmpty()) deliverNextPendingBatchAsync(pending);
 			if (!toShare.isEmpty()) shareNextMessageAsync(toShare);
-		} catch (NoSuchMessageException e) {
-			LOG.info("Message removed during validation");
-		} catch (NoSuchGroupException e) {
-			LOG.info("Group removed during validation");
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
+		} finally {
+			backlog.addAndGet(-batch.size());
+		}
+		if (more) dbExecutor.execute(this::storeValidationResults);
+	}
+
+	@DatabaseExecutor
+	private void storeValidationResult(Transaction txn,
+			ValidationResult result, Queue<MessageId> invalidate,
+			Queue<MessageId> pending, Queue<MessageId> toShare)
+			throws DbException {
+		Message m = result.message;
+		MessageId id = m.getId();
+		MessageContext context = result.context;
+		if (context == null) {
+			// The message is invalid
+			if (db.getMessageState(txn, id) != INVALID) {
+				invalidateMessage(txn, id);
+				addDependentsToInvalidate(txn, id, invalidate);
+			}
+			return;
+		}
+		boolean anyInvalid = false, allDelivered = true;
+		// Check if message has any dependencies
+		Collection<MessageId> dependencies = context.getDependencies();
+		if (!dependencies.isEmpty()) {
+			db.addMessageDependencies(txn, m, dependencies);
+			// Check if dependencies are valid and delivered
+			Map<MessageId, MessageState> states =
+					db.getMessageDependencies(txn, id);
+			for (Entry<MessageId, MessageState> e : states.entrySet()) {
+				if (e.getValue() == INVALID) anyInvalid = true;
+				if (e.getValue() != DELIVERED) allDelivered = false;
+			}
+		}
+		if (anyInvalid) {
+			if (db.getMessageState(txn, id) != INVALID) {
+				invalidateMessage(txn, id);
+				addDependentsToInvalidate(txn, id, invalidate);
+			}
+		} else {
+			Metadata meta = context.getMetadata();
+			db.mergeMessageMetadata(txn, id, meta);
+			if (allDelivered) {
+				DeliveryAction action = deliverMessage(txn, m,
+						result.clientId, result.majorVersion, meta);
+				if (action == REJECT) {
+					invalidateMessage(txn, id);
+					addDependentsToInvalidate(txn, id, invalidate);
+				} else if (action == DEFER) {
+					db.setMessageState(txn, id, PENDING);
+				} else if (action == ACCEPT_SHARE) {
+					db.setMessageState(txn, id, DELIVERED);
+					delivered.incrementAndGet();
+					addPendingDependents(txn, id, pending);
+					db.setMessageShared(txn, id);
+					toShare.addAll(dependencies);
+				} else if (action == ACCEPT_DO_NOT_SHARE) {
+					db.setMessageState(txn, id, DELIVERED);
+					delivered.incrementAndGet();
+					addPendingDependents(txn, id, pending);
+				}
+			} else {
+				db.setMessageState(txn, id, PENDING);
+			}
 		}
 	}
 
@@ -448,20 +586,80 @@ class ValidationManagerImpl implements ValidationManager, Service,
 		}
 	}
 
+	/**
+	 * Queues an incoming message to have its group loaded. Messages that
+	 * arrive while earlier messages are waiting have their groups loaded
+	 * together.
+	 */
 	private void loadGroupAndValidateAsync(Message m) {
-		dbExecutor.execute(() -> loadGroupAndValidate(m));
+		backlog.incrementAndGet();
+		boolean schedule;
+		synchronized (lock) {
+			toLoad.add(m);
+			schedule = !loadTaskScheduled;
+			loadTaskScheduled = true;
+		}
+		if (schedule) dbExecutor.execute(this::loadGroupsAndValidate);
 	}
 
 	@DatabaseExecutor
-	private void loadGroupAndValidate(Message m) {
+	private void loadGroupsAndValidate() {
+		List<Message> batch = new ArrayList<>();
+		boolean more;
+		synchronized (lock) {
+			while (batch.size() < maxBatchSize && !toLoad.isEmpty()) {
+				batch.add(toLoad.poll());
+			}
+			more = !toLoad.isEmpty();
+			if (!more) loadTaskScheduled = false;
+		}
 		try {
-			Group g = db.transactionWithResult(true, txn ->
-					db.getGroup(txn, m.getGroupId()));
-			validateMessageAsync(m, g);
-		} catch (NoSuchGroupException e) {
-			LOG.info("Group removed before validation");
+			Map<GroupId, Group> groups = db.transactionWithResult(true,
+					txn -> {
+						Map<GroupId, Group> loaded = new HashMap<>();
+						for (Message m : batch) {
+							GroupId g = m.getGroupId();
+							if (loaded.containsKey(g)) continue;
+							try {
+								loaded.put(g, db.getGroup(txn, g));
+							} catch (NoSuchGroupException e) {
+								LOG.info("Group removed before validation");
+							}
+						}
+						return loaded;
+					});
+			for (Message m : batch) {
+				Group g = groups.get(m.getGroupId());
+				if (g == null) backlog.decrementAndGet();
+				else validateMessageAsync(m, g);
+			}
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
+			backlog.addAndGet(-batch.size());
+		}
+		if (more) dbExecutor.execute(this::loadGroupsAndValidate);
+	}
+
+	@Immutable
+	@NotNullByDefault
+	private static class ValidationResult {
+
+		private final Message message;
+		private final ClientId clientId;
+		private final int majorVersion;
+		/**
+		 * The context returned by the validator, or null if the message is
+		 * invalid.
+		 */
+		@Nullable
+		private final MessageContext context;
+
+		private ValidationResult(Message message, ClientId clientId,
+				int majorVersion, @Nullable MessageContext context) {
+			this.message = message;
+			this.clientId = clientId;
+			this.majorVersion = majorVersion;
+			this.context = context;
 		}
 	}
 }
@@ -2,8 +2,11 @@ package org.briarproject.bramble.sync.validation;
 
 import org.briarproject.bramble.PoliteExecutor;
 import org.briarproject.bramble.api.crypto.CryptoExecutor;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
+import org.briarproject.bramble.api.sync.event.MessageAddedEvent;
 import org.briarproject.bramble.api.sync.validation.ValidationManager;
 
 import java.util.concurrent.Executor;
@@ -14,6 +17,8 @@ import javax.inject.Singleton;
 import dagger.Module;
 import dagger.Provides;
 
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.BACKGROUND;
+
 @Module
 public class ValidationModule {
 
@@ -32,13 +37,23 @@ public class ValidationModule {
 	private static final int MAX_CONCURRENT_VALIDATION_TASKS =
 			Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
 
+	/**
+	 * The maximum number of messages to load, store or deliver in a single
+	 * database transaction.
+	 */
+	private static final int MAX_MESSAGES_PER_BATCH = 32;
+
 	@Provides
 	@Singleton
 	ValidationManager provideValidationManager(
 			LifecycleManager lifecycleManager, EventBus eventBus,
-			ValidationManagerImpl validationManager) {
+			DatabaseComponent db,
+			@DatabaseExecutor(BACKGROUND) Executor dbExecutor,
+			@ValidationExecutor Executor validationExecutor) {
+		ValidationManagerImpl validationManager = new ValidationManagerImpl(
+				db, dbExecutor, validationExecutor, MAX_MESSAGES_PER_BATCH);
 		lifecycleManager.registerService(validationManager);
-		eventBus.addListener(validationManager);
+		eventBus.addListener(MessageAddedEvent.class, validationManager);
 		return validationManager;
 	}
 
@@ -2,30 +2,35 @@ package org.briarproject.bramble.transport;
 
 import org.briarproject.nullsafety.NotNullByDefault;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 import javax.annotation.concurrent.NotThreadSafe;
 
 import static org.briarproject.bramble.util.ByteUtils.MAX_32_BIT_UNSIGNED;
 
+/**
+ * A window of stream numbers, tracking which numbers have been seen. The
+ * window is stored as a bitset, with the lowest stream number in the
+ * lowest bit of the first word.
+ */
 @NotThreadSafe
 @NotNullByDefault
 class ReorderingWindow {
 
+	private static final long[] EMPTY = new long[0];
+
+	private final int size;
+	private final long[] words;
 	private long base;
-	private boolean[] seen;
 
 	ReorderingWindow(long base, byte[] bitmap) {
 		if (base < 0) throw new IllegalArgumentException();
 		if (base > MAX_32_BIT_UNSIGNED + 1)
 			throw new IllegalArgumentException();
 		this.base = base;
-		seen = new boolean[bitmap.length * 8];
+		size = bitmap.length * 8;
+		words = new long[(size + 63) / 64];
 		for (int i = 0; i < bitmap.length; i++) {
 			for (int j = 0; j < 8; j++) {
-				if ((bitmap[i] & (128 >> j)) != 0) seen[i * 8 + j] = true;
+				if ((bitmap[i] & (128 >> j)) != 0) setBit(i * 8 + j);
 			}
 		}
 	}
@@ -35,68 +40,96 @@ class ReorderingWindow {
 	}
 
 	byte[] getBitmap() {
-		byte[] bitmap = new byte[seen.length / 8];
+		byte[] bitmap = new byte[size / 8];
 		for (int i = 0; i < bitmap.length; i++) {
 			for (int j = 0; j < 8; j++) {
-				if (seen[i * 8 + j]) bitmap[i] |= 128 >> j;
+				if (isSeen(i * 8 + j)) bitmap[i] |= 128 >> j;
 			}
 		}
 		return bitmap;
 	}
 
-	List<Long> getUnseen() {
-		List<Long> unseen = new ArrayList<>(seen.length);
-		for (int i = 0; i < seen.length; i++)
-			if (!seen[i]) unseen.add(base + i);
+	long[] getUnseen() {
+		long[] unseen = new long[size - countSeen()];
+		int n = 0;
+		for (int i = 0; i < size; i++) if (!isSeen(i)) unseen[n++] = base + i;
 		return unseen;
 	}
 
 	Change setSeen(long index) {
 		if (index < base) throw new IllegalArgumentException();
-		if (index >= base + seen.length) throw new IllegalArgumentException();
+		if (index >= base + size) throw new IllegalArgumentException();
 		if (index > MAX_32_BIT_UNSIGNED) throw new IllegalArgumentException();
 		int offset = (int) (index - base);
-		if (seen[offset]) throw new IllegalArgumentException();
-		seen[offset] = true;
+		if (isSeen(offset)) throw new IllegalArgumentException();
+		setBit(offset);
 		// Rule 1: Slide until all elements above the midpoint are unseen
-		int slide = Math.max(0, offset + 1 - seen.length / 2);
+		int slide = Math.max(0, offset + 1 - size / 2);
 		// Rule 2: Slide until the lowest element is unseen
-		while (seen[slide]) slide++;
+		while (isSeen(slide)) slide++;
 		// If the window doesn't need to slide, return
-		if (slide == 0) {
-			List<Long> added = Collections.emptyList();
-			List<Long> removed = Collections.singletonList(index);
-			return new Change(added, removed);
-		}
+		if (slide == 0) return new Change(EMPTY, new long[] {index});
 		// Record the elements that will be added and removed
-		List<Long> added = new ArrayList<>(slide);
-		List<Long> removed = new ArrayList<>(slide);
+		int unseen = 0;
+		for (int i = 0; i < slide; i++) if (!isSeen(i)) unseen++;
+		long[] added = new long[slide];
+		long[] removed = new long[unseen + 1];
+		int n = 0;
 		for (int i = 0; i < slide; i++) {
-			if (!seen[i]) removed.add(base + i);
-			added.add(base + seen.length + i);
+			if (!isSeen(i)) removed[n++] = base + i;
+			added[i] = base + size + i;
 		}
-		removed.add(index);
+		removed[n] = index;
 		// Update the window
 		base += slide;
-		for (int i = 0; i + slide < seen.length; i++) seen[i] = seen[i + slide];
-		for (int i = seen.length - slide; i < seen.length; i++) seen[i] = false;
+		shiftDown(slide);
 		return new Change(added, removed);
 	}
 
+	private boolean isSeen(int offset) {
+		return (words[offset >>> 6] & (1L << offset)) != 0;
+	}
+
+	private void setBit(int offset) {
+		words[offset >>> 6] |= 1L << offset;
+	}
+
+	private int countSeen() {
+		int count = 0;
+		for (long word : words) count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Discards the lowest {@code slide} bits of the window and fills the
+	 * top of the window with unseen elements. Bits above the end of the
+	 * window are always clear, so shifting them down clears the top.
+	 */
+	private void shiftDown(int slide) {
+		int wordShift = slide >>> 6, bitShift = slide & 63;
+		for (int i = 0; i < words.length; i++) {
+			int src = i + wordShift;
+			long low = src < words.length ? words[src] >>> bitShift : 0;
+			long high = bitShift != 0 && src + 1 < words.length ?
+					words[src + 1] << (64 - bitShift) : 0;
+			words[i] = low | high;
+		}
+	}
+
 	static class Change {
 
-		private final List<Long> added, removed;
+		private final long[] added, removed;
 
-		Change(List<Long> added, List<Long> removed) {
+		Change(long[] added, long[] removed) {
 			this.added = added;
 			this.removed = removed;
 		}
 
-		List<Long> getAdded() {
+		long[] getAdded() {
 			return added;
 		}
 
-		List<Long> getRemoved() {
+		long[] getRemoved() {
 			return removed;
 		}
 	}
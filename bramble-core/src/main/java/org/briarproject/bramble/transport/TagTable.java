@@ -0,0 +1,168 @@
+package org.briarproject.bramble.transport;
+
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static org.briarproject.bramble.api.transport.TransportConstants.TAG_LENGTH;
+
+/**
+ * A hash table mapping tags to values, using open addressing with linear
+ * probing. The tags are stored in a single byte array, so looking up a tag
+ * doesn't allocate any objects.
+ * <p>
+ * Tags are pseudo-random, so the first four bytes of each tag are used as
+ * its hash code.
+ */
+@NotThreadSafe
+@NotNullByDefault
+class TagTable<V> {
+
+	private static final int MIN_CAPACITY = 64;
+
+	private byte[] tags;
+	private Object[] values;
+	private int size = 0;
+
+	TagTable() {
+		tags = new byte[MIN_CAPACITY * TAG_LENGTH];
+		values = new Object[MIN_CAPACITY];
+	}
+
+	int size() {
+		return size;
+	}
+
+	@Nullable
+	V get(byte[] tag) {
+		int slot = find(tag);
+		return slot == -1 ? null : getValue(slot);
+	}
+
+	/**
+	 * Maps the given tag to the given value, replacing any existing value.
+	 * The tag is copied, so the caller may reuse the array.
+	 */
+	void put(byte[] tag, V value) {
+		if (tag.length != TAG_LENGTH) throw new IllegalArgumentException();
+		int slot = find(tag);
+		if (slot != -1) {
+			values[slot] = value;
+			return;
+		}
+		// Keep the load factor at or below 0.5
+		if ((size + 1) * 2 > values.length) resize(values.length * 2);
+		insert(tag, 0, value);
+		size++;
+	}
+
+	@Nullable
+	V remove(byte[] tag) {
+		int slot = find(tag);
+		if (slot == -1) return null;
+		V value = getValue(slot);
+		removeSlot(slot);
+		size--;
+		return value;
+	}
+
+	/**
+	 * Removes all values that match the given filter.
+	 */
+	void removeIf(Filter<V> filter) {
+		boolean removed = false;
+		for (int slot = 0; slot < values.length; slot++) {
+			if (values[slot] != null && filter.matches(getValue(slot))) {
+				values[slot] = null;
+				size--;
+				removed = true;
+			}
+		}
+		// Removing values breaks probe sequences, so rebuild the table
+		if (removed) resize(values.length);
+	}
+
+	void clear() {
+		tags = new byte[MIN_CAPACITY * TAG_LENGTH];
+		values = new Object[MIN_CAPACITY];
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V getValue(int slot) {
+		return (V) values[slot];
+	}
+
+	private int getHomeSlot(byte[] b, int off) {
+		int hash = ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+				| ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+		return hash & (values.length - 1);
+	}
+
+	private int find(byte[] tag) {
+		if (tag.length != TAG_LENGTH) return -1;
+		int mask = values.length - 1;
+		for (int slot = getHomeSlot(tag, 0); values[slot] != null;
+				slot = (slot + 1) & mask) {
+			if (tagEquals(slot, tag)) return slot;
+		}
+		return -1;
+	}
+
+	private boolean tagEquals(int slot, byte[] tag) {
+		int off = slot * TAG_LENGTH;
+		for (int i = 0; i < TAG_LENGTH; i++) {
+			if (tags[off + i] != tag[i]) return false;
+		}
+		return true;
+	}
+
+	private void insert(byte[] src, int srcOff, Object value) {
+		int mask = values.length - 1;
+		int slot = getHomeSlot(src, srcOff);
+		while (values[slot] != null) slot = (slot + 1) & mask;
+		System.arraycopy(src, srcOff, tags, slot * TAG_LENGTH, TAG_LENGTH);
+		values[slot] = value;
+	}
+
+	/**
+	 * Removes the entry in the given slot and shifts any following entries
+	 * in the same probe sequence back to fill the gap.
+	 */
+	private void removeSlot(int slot) {
+		int mask = values.length - 1;
+		int gap = slot;
+		for (int next = (gap + 1) & mask; values[next] != null;
+				next = (next + 1) & mask) {
+			int home = getHomeSlot(tags, next * TAG_LENGTH);
+			// Move the entry if its home slot isn't cyclically in (gap, next]
+			boolean inRange = gap <= next ?
+					gap < home && home <= next :
+					gap < home || home <= next;
+			if (!inRange) {
+				System.arraycopy(tags, next * TAG_LENGTH, tags,
+						gap * TAG_LENGTH, TAG_LENGTH);
+				values[gap] = values[next];
+				gap = next;
+			}
+		}
+		values[gap] = null;
+	}
+
+	private void resize(int capacity) {
+		byte[] oldTags = tags;
+		Object[] oldValues = values;
+		tags = new byte[capacity * TAG_LENGTH];
+		values = new Object[capacity];
+		for (int slot = 0; slot < oldValues.length; slot++) {
+			if (oldValues[slot] != null)
+				insert(oldTags, slot * TAG_LENGTH, oldValues[slot]);
+		}
+	}
+
+	interface Filter<V> {
+
+		boolean matches(V value);
+	}
+}
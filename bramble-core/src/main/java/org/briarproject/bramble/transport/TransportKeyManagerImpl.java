@@ -1,6 +1,5 @@
 package org.briarproject.bramble.transport;
 
-import org.briarproject.bramble.api.Bytes;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.PendingContactId;
 import org.briarproject.bramble.api.crypto.SecretKey;
@@ -64,7 +63,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 	@GuardedBy("lock")
 	private final Map<KeySetId, MutableTransportKeySet> keys = new HashMap<>();
 	@GuardedBy("lock")
-	private final Map<Bytes, TagContext> inContexts = new HashMap<>();
+	private final TagTable<TagContext> inContexts = new TagTable<>();
 	@GuardedBy("lock")
 	private final Map<ContactId, MutableTransportKeySet>
 			contactOutContexts = new HashMap<>();
@@ -168,7 +167,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 			byte[] tag = new byte[TAG_LENGTH];
 			transportCrypto.encodeTag(tag, inKeys.getTagKey(), PROTOCOL_VERSION,
 					streamNumber);
-			inContexts.put(new Bytes(tag), tagCtx);
+			inContexts.put(tag, tagCtx);
 		}
 	}
 
@@ -297,13 +296,11 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 		lock.lock();
 		try {
 			// Remove mutable state for the contact
-			Iterator<TagContext> it = inContexts.values().iterator();
-			while (it.hasNext())
-				if (c.equals(it.next().contactId)) it.remove();
+			inContexts.removeIf(tagCtx -> c.equals(tagCtx.contactId));
 			contactOutContexts.remove(c);
-			Iterator<MutableTransportKeySet> it1 = keys.values().iterator();
-			while (it1.hasNext())
-				if (c.equals(it1.next().getContactId())) it1.remove();
+			Iterator<MutableTransportKeySet> it = keys.values().iterator();
+			while (it.hasNext())
+				if (c.equals(it.next().getContactId())) it.remove();
 		} finally {
 			lock.unlock();
 		}
@@ -314,13 +311,11 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 		lock.lock();
 		try {
 			// Remove mutable state for the pending contact
-			Iterator<TagContext> it = inContexts.values().iterator();
-			while (it.hasNext())
-				if (p.equals(it.next().pendingContactId)) it.remove();
+			inContexts.removeIf(tagCtx -> p.equals(tagCtx.pendingContactId));
 			pendingContactOutContexts.remove(p);
-			Iterator<MutableTransportKeySet> it1 = keys.values().iterator();
-			while (it1.hasNext())
-				if (p.equals(it1.next().getPendingContactId())) it1.remove();
+			Iterator<MutableTransportKeySet> it = keys.values().iterator();
+			while (it.hasNext())
+				if (p.equals(it.next().getPendingContactId())) it.remove();
 		} finally {
 			lock.unlock();
 		}
@@ -416,7 +411,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 	@Nullable
 	private StreamContext streamContextFromTag(byte[] tag) {
 		// Look up the incoming keys for the tag
-		TagContext tagCtx = inContexts.get(new Bytes(tag));
+		TagContext tagCtx = inContexts.get(tag);
 		if (tagCtx == null) return null;
 		MutableIncomingKeys inKeys = tagCtx.inKeys;
 		// Create a stream context
@@ -429,7 +424,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 	@Override
 	public void markTagAsRecognised(Transaction txn, byte[] tag)
 			throws DbException {
-		TagContext tagCtx = inContexts.remove(new Bytes(tag));
+		TagContext tagCtx = inContexts.remove(tag);
 		if (tagCtx == null) return;
 		MutableIncomingKeys inKeys = tagCtx.inKeys;
 		// Update the reordering window
@@ -443,7 +438,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 			TagContext tagCtx1 = new TagContext(tagCtx.keySetId,
 					tagCtx.contactId, tagCtx.pendingContactId, inKeys,
 					streamNumber, tagCtx.handshakeMode);
-			inContexts.put(new Bytes(addTag), tagCtx1);
+			inContexts.put(addTag, tagCtx1);
 		}
 		// Remove tags for any stream numbers removed from the window
 		for (long streamNumber : change.getRemoved()) {
@@ -451,7 +446,7 @@ class TransportKeyManagerImpl implements TransportKeyManager {
 			byte[] removeTag = new byte[TAG_LENGTH];
 			transportCrypto.encodeTag(removeTag, inKeys.getTagKey(),
 					PROTOCOL_VERSION, streamNumber);
-			inContexts.remove(new Bytes(removeTag));
+			inContexts.remove(removeTag);
 		}
 		// Write the window back to the DB
 		db.setReorderingWindow(txn, tagCtx.keySetId, transportId,
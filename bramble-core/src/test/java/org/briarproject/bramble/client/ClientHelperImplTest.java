@@ -35,7 +35,6 @@ import org.jmock.Expectations;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -546,7 +545,8 @@ public class ClientHelperImplTest extends BrambleMockTestCase {
 
 		context.checking(new Expectations() {{
 			oneOf(bdfReaderFactory)
-					.createReader(with(any(InputStream.class)), with(true));
+					.createReader(with(any(byte[].class)), with(any(int.class)),
+							with(any(int.class)), with(true));
 			will(returnValue(bdfReader));
 			oneOf(bdfReader).readList();
 			will(returnValue(list));
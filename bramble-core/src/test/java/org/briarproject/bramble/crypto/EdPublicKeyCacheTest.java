@@ -0,0 +1,51 @@
+package org.briarproject.bramble.crypto;
+
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+
+import org.briarproject.bramble.api.crypto.CryptoComponent;
+import org.briarproject.bramble.api.crypto.PublicKey;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.TestSecureRandomProvider;
+import org.junit.Test;
+
+import static org.briarproject.bramble.test.TestUtils.getAgreementPublicKey;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class EdPublicKeyCacheTest extends BrambleTestCase {
+
+	private final CryptoComponent crypto =
+			new CryptoComponentImpl(new TestSecureRandomProvider(), null);
+	private final PublicKey publicKey =
+			crypto.generateSignatureKeyPair().getPublic();
+	private final PublicKey publicKey1 =
+			crypto.generateSignatureKeyPair().getPublic();
+
+	@Test
+	public void testKeyIsOnlyParsedOnce() {
+		EdPublicKeyCache cache = new EdPublicKeyCache(10);
+		EdDSAPublicKey parsed = cache.get(publicKey);
+		assertArrayEquals(publicKey.getEncoded(), parsed.getAbyte());
+		assertSame(parsed, cache.get(publicKey));
+		assertNotSame(parsed, cache.get(publicKey1));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedKeyIsEvicted() {
+		PublicKey publicKey2 = crypto.generateSignatureKeyPair().getPublic();
+		EdPublicKeyCache cache = new EdPublicKeyCache(2);
+		EdDSAPublicKey parsed = cache.get(publicKey);
+		EdDSAPublicKey parsed1 = cache.get(publicKey1);
+		// Use the first key so the second is least recently used
+		assertSame(parsed, cache.get(publicKey));
+		cache.get(publicKey2);
+		assertSame(parsed, cache.get(publicKey));
+		assertNotSame(parsed1, cache.get(publicKey1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAgreementKeyIsRejected() {
+		new EdPublicKeyCache(10).get(getAgreementPublicKey());
+	}
+}
@@ -1,16 +1,25 @@
 package org.briarproject.bramble.crypto;
 
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
 import org.briarproject.bramble.api.crypto.CryptoComponent;
 import org.briarproject.bramble.test.BrambleTestCase;
 import org.briarproject.bramble.test.TestSecureRandomProvider;
 import org.briarproject.bramble.test.TestUtils;
+import org.briarproject.bramble.util.ByteUtils;
 import org.briarproject.bramble.util.StringUtils;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.briarproject.bramble.util.ByteUtils.INT_32_BYTES;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 public class HashTest extends BrambleTestCase {
 
@@ -48,4 +57,49 @@ public class HashTest extends BrambleTestCase {
 		assertFalse(Arrays.equals(hash1, hash2));
 	}
 
+	@Test
+	public void testHashMatchesLengthPrefixedInputs() {
+		Digest digest = new Blake2bDigest(256);
+		byte[] labelBytes = StringUtils.toUtf8(label);
+		for (byte[] b : new byte[][] {labelBytes, inputBytes, inputBytes1,
+				inputBytes2}) {
+			byte[] length = new byte[INT_32_BYTES];
+			ByteUtils.writeUint32(b.length, length, 0);
+			digest.update(length, 0, length.length);
+			digest.update(b, 0, b.length);
+		}
+		byte[] expected = new byte[digest.getDigestSize()];
+		digest.doFinal(expected, 0);
+		// Hash something else first, so the reused digest has been used
+		crypto.hash(label, inputBytes2);
+		assertArrayEquals(expected,
+				crypto.hash(label, inputBytes, inputBytes1, inputBytes2));
+	}
+
+	@Test
+	public void testFailedHashDoesNotAffectNextHash() {
+		byte[] hash = crypto.hash(label, inputBytes, inputBytes1);
+		// Fail after the reused digest has been updated with some inputs
+		try {
+			//noinspection ConstantConditions
+			crypto.hash(label, inputBytes, null);
+			fail();
+		} catch (NullPointerException expected) {
+			// Expected
+		}
+		assertArrayEquals(hash, crypto.hash(label, inputBytes, inputBytes1));
+	}
+
+	@Test
+	public void testHashesOnDifferentThreadsAreIdentical() throws Exception {
+		byte[] hash = crypto.hash(label, inputBytes, inputBytes1);
+		ExecutorService executor = newSingleThreadExecutor();
+		try {
+			Future<byte[]> f = executor.submit(() ->
+					crypto.hash(label, inputBytes, inputBytes1));
+			assertArrayEquals(hash, f.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
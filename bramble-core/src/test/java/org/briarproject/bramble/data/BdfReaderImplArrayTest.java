@@ -0,0 +1,23 @@
+package org.briarproject.bramble.data;
+
+import static org.briarproject.bramble.data.BdfReaderImpl.DEFAULT_NESTED_LIMIT;
+
+/**
+ * Runs the {@link BdfReaderImplTest} tests against a reader that reads from
+ * a byte array. The contents are surrounded by padding to check that the
+ * reader stays within the given range.
+ */
+public class BdfReaderImplArrayTest extends BdfReaderImplTest {
+
+	private static final int PADDING = 3;
+
+	@Override
+	BdfReaderImpl createReader(byte[] b, int maxBufferSize) {
+		byte[] padded = new byte[b.length + PADDING * 2];
+		// Fill the padding with END bytes, which would close any open list
+		for (int i = 0; i < padded.length; i++) padded[i] = Types.END;
+		System.arraycopy(b, 0, padded, PADDING, b.length);
+		return new BdfReaderImpl(padded, PADDING, b.length,
+				DEFAULT_NESTED_LIMIT, maxBufferSize, true);
+	}
+}
@@ -681,7 +681,12 @@ public class BdfReaderImplTest extends BrambleTestCase {
 
 	private void setContents(String hex, int maxBufferSize)
 			throws FormatException {
-		ByteArrayInputStream in = new ByteArrayInputStream(fromHexString(hex));
-		r = new BdfReaderImpl(in, DEFAULT_NESTED_LIMIT, maxBufferSize, true);
+		r = createReader(fromHexString(hex), maxBufferSize);
+	}
+
+	BdfReaderImpl createReader(byte[] b, int maxBufferSize) {
+		ByteArrayInputStream in = new ByteArrayInputStream(b);
+		return new BdfReaderImpl(in, DEFAULT_NESTED_LIMIT, maxBufferSize,
+				true);
 	}
 }
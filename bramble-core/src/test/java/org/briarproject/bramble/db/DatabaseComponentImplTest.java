@@ -1,5 +1,6 @@
 package org.briarproject.bramble.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.cleanup.event.CleanupTimerStartedEvent;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
@@ -11,6 +12,7 @@ import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.crypto.SecretKey;
 import org.briarproject.bramble.api.db.ContactExistsException;
 import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.Metadata;
 import org.briarproject.bramble.api.db.NoSuchContactException;
 import org.briarproject.bramble.api.db.NoSuchGroupException;
@@ -18,6 +20,8 @@ import org.briarproject.bramble.api.db.NoSuchIdentityException;
 import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.NoSuchPendingContactException;
 import org.briarproject.bramble.api.db.NoSuchTransportException;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.db.TransactionStats;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.identity.Author;
@@ -162,7 +166,7 @@ public class DatabaseComponentImplTest extends BrambleMockTestCase {
 			EventBus eventBus, Executor eventExecutor,
 			ShutdownManager shutdownManager) {
 		return new DatabaseComponentImpl<>(database, Object.class, eventBus,
-				eventExecutor, shutdownManager);
+				eventExecutor, shutdownManager, new DatabaseProfiler());
 	}
 
 	@Test
@@ -699,11 +703,11 @@ public class DatabaseComponentImplTest extends BrambleMockTestCase {
 			throws Exception {
 		context.checking(new Expectations() {{
 			// Check whether the message is in the DB (which it's not)
-			exactly(16).of(database).startTransaction();
+			exactly(17).of(database).startTransaction();
 			will(returnValue(txn));
-			exactly(16).of(database).containsMessage(txn, messageId);
+			exactly(17).of(database).containsMessage(txn, messageId);
 			will(returnValue(false));
-			exactly(16).of(database).abortTransaction(txn);
+			exactly(17).of(database).abortTransaction(txn);
 			// Allow other checks to pass
 			allowing(database).containsContact(txn, contactId);
 			will(returnValue(true));
@@ -743,6 +747,14 @@ public class DatabaseComponentImplTest extends BrambleMockTestCase {
 			// Expected
 		}
 
+		try {
+			db.transaction(true, transaction ->
+					db.getMessageBody(transaction, messageId));
+			fail();
+		} catch (NoSuchMessageException expected) {
+			// Expected
+		}
+
 		try {
 			db.transaction(true, transaction ->
 					db.getMessageMetadata(transaction, messageId));
@@ -1750,6 +1762,125 @@ public class DatabaseComponentImplTest extends BrambleMockTestCase {
 		});
 	}
 
+	@Test
+	public void testSessionsAreCached() throws Exception {
+		UniqueId sessionId = new UniqueId(getRandomId());
+		context.checking(new Expectations() {{
+			exactly(3).of(database).startTransaction();
+			will(returnValue(txn));
+			// getSessionMessageId() - not cached
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			oneOf(database).getSessionMessageId(txn, groupId, sessionId);
+			will(returnValue(messageId));
+			// getSessionMessageId() again - cached
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			// removeMessage()
+			oneOf(database).containsMessage(txn, messageId);
+			will(returnValue(true));
+			oneOf(database).removeMessage(txn, messageId);
+			// getSessionMessageId() - no longer cached
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			oneOf(database).getSessionMessageId(txn, groupId, sessionId);
+			will(returnValue(null));
+			exactly(3).of(database).commitTransaction(txn);
+		}});
+		DatabaseComponent db = createDatabaseComponent(database, eventBus,
+				eventExecutor, shutdownManager);
+
+		db.transaction(true, transaction -> {
+			assertEquals(messageId,
+					db.getSessionMessageId(transaction, groupId, sessionId));
+			assertEquals(messageId,
+					db.getSessionMessageId(transaction, groupId, sessionId));
+		});
+		db.transaction(false, transaction ->
+				db.removeMessage(transaction, messageId));
+		db.transaction(true, transaction ->
+				assertNull(db.getSessionMessageId(transaction, groupId,
+						sessionId)));
+	}
+
+	@Test
+	public void testSessionCacheIsClearedWhenTransactionIsAborted()
+			throws Exception {
+		UniqueId sessionId = new UniqueId(getRandomId());
+		context.checking(new Expectations() {{
+			exactly(2).of(database).startTransaction();
+			will(returnValue(txn));
+			// addSession()
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			oneOf(database).containsMessage(txn, messageId);
+			will(returnValue(true));
+			oneOf(database).getGroupId(txn, messageId);
+			will(returnValue(groupId));
+			oneOf(database).addSession(txn, groupId, sessionId, messageId);
+			// getSessionMessageId() - cached
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			// The transaction is aborted
+			oneOf(database).abortTransaction(txn);
+			// getSessionMessageId() - the aborted change isn't cached
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			oneOf(database).getSessionMessageId(txn, groupId, sessionId);
+			will(returnValue(null));
+			oneOf(database).commitTransaction(txn);
+		}});
+		DatabaseComponent db = createDatabaseComponent(database, eventBus,
+				eventExecutor, shutdownManager);
+
+		Transaction transaction = db.startTransaction(false);
+		try {
+			db.addSession(transaction, groupId, sessionId, messageId);
+			assertEquals(messageId,
+					db.getSessionMessageId(transaction, groupId, sessionId));
+		} finally {
+			db.endTransaction(transaction);
+		}
+		db.transaction(true, transaction1 ->
+				assertNull(db.getSessionMessageId(transaction1, groupId,
+						sessionId)));
+	}
+
+	@Test
+	public void testCachedSessionIsNotReturnedIfGroupIsMissing()
+			throws Exception {
+		UniqueId sessionId = new UniqueId(getRandomId());
+		context.checking(new Expectations() {{
+			oneOf(database).startTransaction();
+			will(returnValue(txn));
+			// addSession()
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+			oneOf(database).containsMessage(txn, messageId);
+			will(returnValue(true));
+			oneOf(database).getGroupId(txn, messageId);
+			will(returnValue(groupId));
+			oneOf(database).addSession(txn, groupId, sessionId, messageId);
+			// getSessionMessageId() - the session is cached, but the group
+			// is missing
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(false));
+			oneOf(database).abortTransaction(txn);
+		}});
+		DatabaseComponent db = createDatabaseComponent(database, eventBus,
+				eventExecutor, shutdownManager);
+
+		try {
+			db.transaction(false, transaction -> {
+				db.addSession(transaction, groupId, sessionId, messageId);
+				db.getSessionMessageId(transaction, groupId, sessionId);
+			});
+			fail();
+		} catch (NoSuchGroupException expected) {
+			// Expected
+		}
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void testCannotStartReadTransactionDuringReadTransaction()
 			throws Exception {
@@ -1954,6 +2085,39 @@ public class DatabaseComponentImplTest extends BrambleMockTestCase {
 		});
 	}
 
+	@Test
+	public void testFailedTransactionStartIsNotProfiled() throws Exception {
+		context.checking(new Expectations() {{
+			oneOf(database).startTransaction();
+			will(throwException(new DbException()));
+			oneOf(database).startTransaction();
+			will(returnValue(txn));
+			oneOf(database).commitTransaction(txn);
+		}});
+		DatabaseComponent db = createDatabaseComponent(database, eventBus,
+				eventExecutor, shutdownManager);
+
+		try {
+			db.transaction(false, transaction -> {
+			});
+			fail();
+		} catch (DbException expected) {
+			// Expected
+		}
+		TransactionStats stats =
+				db.getDatabaseStats().getReadWriteTransactionStats();
+		assertEquals(0, stats.getLockWaitStats().getCount());
+
+		// The next transaction should be recorded normally
+		db.transaction(false, transaction -> {
+		});
+		stats = db.getDatabaseStats().getReadWriteTransactionStats();
+		assertEquals(1, stats.getLockWaitStats().getCount());
+		assertEquals(1, stats.getLockHoldStats().getCount());
+		assertEquals(1, stats.getCommitCount());
+		assertEquals(0, stats.getAbortCount());
+	}
+
 	private static class TestEvent extends Event {
 	}
 }
@@ -0,0 +1,158 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.DatabaseExecutorStats;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.BACKGROUND;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.INTERACTIVE;
+import static org.briarproject.bramble.api.db.DatabaseExecutor.Lane.SYNC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseExecutorImplTest extends BrambleTestCase {
+
+	private final ExecutorService delegate =
+			Executors.newSingleThreadExecutor();
+	private final ExecutorService eventExecutor =
+			Executors.newSingleThreadExecutor();
+	private final List<String> ran = new CopyOnWriteArrayList<>();
+	private final CountDownLatch blocking = new CountDownLatch(1);
+	private final CountDownLatch blocker = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		blocker.countDown();
+		delegate.shutdownNow();
+		eventExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testTasksAreRunInPriorityOrder() throws Exception {
+		DatabaseExecutorImpl executor = new DatabaseExecutorImpl(delegate,
+				eventExecutor, 0, new int[3]);
+		// Keep the executor busy while the other tasks are submitted
+		startBlocking(executor);
+		executor.getExecutor(BACKGROUND).execute(() -> ran.add("b1"));
+		executor.getExecutor(SYNC).execute(() -> ran.add("s1"));
+		executor.getExecutor(INTERACTIVE).execute(() -> ran.add("i1"));
+		executor.getExecutor(SYNC).execute(() -> ran.add("s2"));
+		executor.getExecutor(INTERACTIVE).execute(() -> ran.add("i2"));
+		assertEquals(2, executor.getStats(INTERACTIVE).getQueuedTasks());
+
+		blocker.countDown();
+		awaitTasks(executor);
+		assertEquals(asList("i1", "i2", "s1", "s2", "b1"), ran);
+
+		DatabaseExecutorStats stats = executor.getStats(SYNC);
+		assertEquals(SYNC, stats.getLane());
+		assertEquals(0, stats.getQueuedTasks());
+		assertEquals(2, stats.getPeakQueuedTasks());
+		assertEquals(2, stats.getWaitTime().getCount());
+		assertEquals(2, stats.getRunTime().getCount());
+	}
+
+	@Test
+	public void testLowerPriorityTasksAreNotStarved() throws Exception {
+		DatabaseExecutorImpl executor = new DatabaseExecutorImpl(delegate,
+				eventExecutor, 2, new int[3]);
+		startBlocking(executor);
+		executor.getExecutor(BACKGROUND).execute(() -> ran.add("b1"));
+		executor.getExecutor(BACKGROUND).execute(() -> ran.add("b2"));
+		for (int i = 1; i <= 5; i++) {
+			String name = "i" + i;
+			executor.getExecutor(INTERACTIVE).execute(() -> ran.add(name));
+		}
+
+		blocker.countDown();
+		awaitTasks(executor);
+		// After two interactive tasks, the oldest background task gets a turn
+		assertEquals(asList("i1", "i2", "b1", "i3", "i4", "b2", "i5"), ran);
+	}
+
+	@Test
+	public void testSubmittingToFullLaneBlocks() throws Exception {
+		int[] capacities = new int[3];
+		capacities[BACKGROUND.ordinal()] = 1;
+		DatabaseExecutorImpl executor = new DatabaseExecutorImpl(delegate,
+				eventExecutor, 0, capacities);
+		startBlocking(executor);
+		executor.getExecutor(BACKGROUND).execute(() -> ran.add("b1"));
+
+		// Submitting another background task should block
+		CountDownLatch submitted = new CountDownLatch(1);
+		new Thread(() -> {
+			executor.getExecutor(BACKGROUND).execute(() -> ran.add("b2"));
+			submitted.countDown();
+		}).start();
+		assertFalse(submitted.await(500, MILLISECONDS));
+		assertEquals(1, executor.getStats(BACKGROUND).getBlockedSubmissions());
+		// Submitting to an unbounded lane shouldn't block
+		executor.getExecutor(INTERACTIVE).execute(() -> ran.add("i1"));
+
+		// When the executor starts running tasks, the submission unblocks
+		blocker.countDown();
+		assertTrue(submitted.await(10, SECONDS));
+		awaitTasks(executor);
+		assertEquals(asList("i1", "b1", "b2"), ran);
+		assertEquals(1, executor.getStats(BACKGROUND).getPeakQueuedTasks());
+	}
+
+	@Test
+	public void testSubmittingToFullLaneFromEventThreadDoesNotBlock()
+			throws Exception {
+		int[] capacities = new int[3];
+		capacities[BACKGROUND.ordinal()] = 1;
+		DatabaseExecutorImpl executor = new DatabaseExecutorImpl(delegate,
+				eventExecutor, 0, capacities);
+		startBlocking(executor);
+		executor.getExecutor(BACKGROUND).execute(() -> ran.add("b1"));
+
+		// Submitting another background task from the event thread should
+		// queue the task without blocking
+		CountDownLatch submitted = new CountDownLatch(1);
+		eventExecutor.execute(() -> {
+			executor.getExecutor(BACKGROUND).execute(() -> ran.add("b2"));
+			submitted.countDown();
+		});
+		assertTrue(submitted.await(10, SECONDS));
+		assertEquals(0, executor.getStats(BACKGROUND).getBlockedSubmissions());
+		assertEquals(2, executor.getStats(BACKGROUND).getQueuedTasks());
+
+		blocker.countDown();
+		awaitTasks(executor);
+		assertEquals(asList("b1", "b2"), ran);
+	}
+
+	private void startBlocking(DatabaseExecutorImpl executor)
+			throws Exception {
+		executor.getExecutor(INTERACTIVE).execute(this::block);
+		assertTrue(blocking.await(10, SECONDS));
+	}
+
+	private void block() {
+		blocking.countDown();
+		try {
+			assertTrue(blocker.await(10, SECONDS));
+		} catch (InterruptedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void awaitTasks(DatabaseExecutorImpl executor) throws Exception {
+		CountDownLatch done = new CountDownLatch(1);
+		executor.getExecutor(BACKGROUND).execute(done::countDown);
+		assertTrue(done.await(10, SECONDS));
+	}
+}
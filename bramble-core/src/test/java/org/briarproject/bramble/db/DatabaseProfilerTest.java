@@ -0,0 +1,125 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.DatabaseStats;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.LatencyStats;
+import org.briarproject.bramble.api.db.TransactionStats;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.jmock.Expectations;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.briarproject.bramble.api.db.LatencyStats.HISTOGRAM_BUCKETS;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DatabaseProfilerTest extends BrambleMockTestCase {
+
+	@SuppressWarnings("unchecked")
+	private final Database<Object> database = context.mock(Database.class);
+
+	private final Object txn = new Object();
+	private final GroupId groupId = new GroupId(getRandomId());
+	private final MessageId messageId = new MessageId(getRandomId());
+	private final MessageId messageId1 = new MessageId(getRandomId());
+
+	private final DatabaseProfiler profiler = new DatabaseProfiler();
+	private final Database<Object> db = profiler.profile(database);
+
+	@Test
+	public void testRecordsCallsAndRows() throws Exception {
+		context.checking(new Expectations() {{
+			exactly(2).of(database).getMessageIds(txn, groupId);
+			will(returnValue(asList(messageId, messageId1)));
+			oneOf(database).containsGroup(txn, groupId);
+			will(returnValue(true));
+		}});
+
+		assertEquals(asList(messageId, messageId1),
+				db.getMessageIds(txn, groupId));
+		assertEquals(asList(messageId, messageId1),
+				db.getMessageIds(txn, groupId));
+		assertTrue(db.containsGroup(txn, groupId));
+
+		Map<String, LatencyStats> queries =
+				profiler.getStats().getQueryStats();
+		assertEquals(2, queries.size());
+		LatencyStats getMessageIds = queries.get("getMessageIds(GroupId)");
+		assertEquals(2, getMessageIds.getCount());
+		assertEquals(4, getMessageIds.getRows());
+		assertEquals(2, sum(getMessageIds.getHistogram()));
+		LatencyStats containsGroup = queries.get("containsGroup(GroupId)");
+		assertEquals(1, containsGroup.getCount());
+		assertEquals(0, containsGroup.getRows());
+	}
+
+	@Test
+	public void testExceptionsArePassedThrough() throws Exception {
+		DbException expected = new DbException();
+		context.checking(new Expectations() {{
+			oneOf(database).containsGroup(txn, groupId);
+			will(throwException(expected));
+		}});
+
+		try {
+			db.containsGroup(txn, groupId);
+			fail();
+		} catch (DbException e) {
+			assertSame(expected, e);
+		}
+		// The failed call should still be recorded
+		assertEquals(1, profiler.getStats().getQueryStats()
+				.get("containsGroup(GroupId)").getCount());
+	}
+
+	@Test
+	public void testRecordsTransactions() {
+		profiler.lockAcquired(true, 1000);
+		profiler.lockReleased(true, true);
+		profiler.lockAcquired(false, 2000);
+		profiler.lockReleased(false, false);
+		profiler.lockAcquired(false, 3000);
+		profiler.lockReleased(false, true);
+
+		DatabaseStats stats = profiler.getStats();
+		TransactionStats readOnly = stats.getReadOnlyTransactionStats();
+		assertTrue(readOnly.isReadOnly());
+		assertEquals(1, readOnly.getCommitCount());
+		assertEquals(0, readOnly.getAbortCount());
+		assertEquals(1, readOnly.getLockWaitStats().getCount());
+		assertEquals(1, readOnly.getLockWaitStats().getTotalTime());
+		assertEquals(1, readOnly.getLockHoldStats().getCount());
+		TransactionStats readWrite = stats.getReadWriteTransactionStats();
+		assertFalse(readWrite.isReadOnly());
+		assertEquals(1, readWrite.getCommitCount());
+		assertEquals(1, readWrite.getAbortCount());
+		assertEquals(5, readWrite.getLockWaitStats().getTotalTime());
+		assertEquals(3, readWrite.getLockWaitStats().getMaxTime());
+		assertEquals(2, readWrite.getLockHoldStats().getCount());
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		assertEquals(0, LatencyRecorder.getBucket(0));
+		assertEquals(1, LatencyRecorder.getBucket(1));
+		assertEquals(2, LatencyRecorder.getBucket(2));
+		assertEquals(2, LatencyRecorder.getBucket(3));
+		assertEquals(3, LatencyRecorder.getBucket(4));
+		assertEquals(HISTOGRAM_BUCKETS - 1,
+				LatencyRecorder.getBucket(Long.MAX_VALUE));
+	}
+
+	private long sum(long[] histogram) {
+		long sum = 0;
+		for (long count : histogram) sum += count;
+		return sum;
+	}
+}
@@ -1,11 +1,13 @@
 package org.briarproject.bramble.db;
 
+import org.briarproject.bramble.api.UniqueId;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.PendingContact;
 import org.briarproject.bramble.api.crypto.PrivateKey;
 import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.crypto.SecretKey;
+import org.briarproject.bramble.api.db.ConnectionPoolStats;
 import org.briarproject.bramble.api.db.DatabaseConfig;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.MessageDeletedException;
@@ -39,7 +41,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
@@ -47,6 +51,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -57,8 +62,10 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.briarproject.bramble.api.db.DatabaseComponent.NO_CLEANUP_DEADLINE;
 import static org.briarproject.bramble.api.db.DatabaseComponent.TIMER_NOT_STARTED;
@@ -85,6 +92,7 @@ import static org.briarproject.bramble.test.TestUtils.getRandomId;
 import static org.briarproject.bramble.test.TestUtils.getSecretKey;
 import static org.briarproject.bramble.test.TestUtils.getTestDirectory;
 import static org.briarproject.bramble.test.TestUtils.getTransportId;
+import static org.briarproject.bramble.util.IoUtils.copyAndClose;
 import static org.briarproject.bramble.util.StringUtils.getRandomString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -519,6 +527,58 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		assertFalse(error.get());
 	}
 
+	@Test
+	public void testConnectionPoolLimitsOpenConnections() throws Exception {
+		CountDownLatch waiting = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean error = new AtomicBoolean(false);
+		Database<Connection> db = open(false);
+		int poolSize = db.getConnectionPoolStats().getPoolSize();
+
+		// Start as many transactions as the pool allows
+		List<Connection> txns = new ArrayList<>();
+		for (int i = 0; i < poolSize; i++) txns.add(db.startTransaction());
+		ConnectionPoolStats stats = db.getConnectionPoolStats();
+		assertEquals(poolSize, stats.getOpenConnections());
+		assertEquals(0, stats.getIdleConnections());
+		assertEquals(poolSize, stats.getInUseConnections());
+		assertEquals(0, stats.getWaitCount());
+		// In another thread, start one more transaction
+		Thread t = new Thread(() -> {
+			try {
+				waiting.countDown();
+				Connection txn = db.startTransaction();
+				started.countDown();
+				db.commitTransaction(txn);
+			} catch (Exception e) {
+				error.set(true);
+			}
+		});
+		t.start();
+		waiting.await();
+		// The other thread should wait for a connection
+		assertFalse(started.await(100, MILLISECONDS));
+		// Commit one of the transactions to return its connection to the pool
+		db.commitTransaction(txns.remove(0));
+		// The other thread should now be able to start its transaction
+		assertTrue(started.await(5, SECONDS));
+		t.join();
+		assertFalse(error.get());
+		for (Connection txn : txns) db.commitTransaction(txn);
+
+		// All the connections should be idle
+		stats = db.getConnectionPoolStats();
+		assertEquals(poolSize, stats.getOpenConnections());
+		assertEquals(poolSize, stats.getIdleConnections());
+		assertEquals(0, stats.getInUseConnections());
+		assertEquals(1, stats.getWaitCount());
+		assertTrue(stats.getTotalWaitTime() >= 100);
+		// One transaction was started by open(), then all the others
+		assertEquals(poolSize + 2, stats.getBorrowCount());
+
+		db.close();
+	}
+
 	@Test
 	public void testUpdateSettings() throws Exception {
 		Database<Connection> db = open(false);
@@ -1212,6 +1272,54 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testStatusesForOfferedMessages() throws Exception {
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add three contacts and a group shared with the first two
+		db.addIdentity(txn, identity);
+		ContactId contactId1 = db.addContact(txn, getAuthor(),
+				localAuthor.getId(), null, true);
+		ContactId contactId2 = db.addContact(txn, getAuthor(),
+				localAuthor.getId(), null, true);
+		ContactId contactId3 = db.addContact(txn, getAuthor(),
+				localAuthor.getId(), null, true);
+		db.addGroup(txn, group);
+		db.addGroupVisibility(txn, contactId1, groupId, true);
+		db.addGroupVisibility(txn, contactId2, groupId, true);
+
+		// The first and third contacts offer the message
+		db.addOfferedMessage(txn, contactId1, messageId);
+		db.addOfferedMessage(txn, contactId3, messageId);
+
+		// Add the message, received from the second contact
+		db.addMessage(txn, message, DELIVERED, true, false, contactId2);
+
+		// The message should have been seen by the first two contacts and
+		// the first contact's offer should have been removed
+		MessageStatus status = db.getMessageStatus(txn, contactId1, messageId);
+		assertNotNull(status);
+		assertTrue(status.isSeen());
+		status = db.getMessageStatus(txn, contactId2, messageId);
+		assertNotNull(status);
+		assertTrue(status.isSeen());
+		assertNull(db.getMessageStatus(txn, contactId3, messageId));
+		assertEquals(0, db.countOfferedMessages(txn, contactId1));
+		assertEquals(1, db.countOfferedMessages(txn, contactId3));
+
+		// Share the group with the third contact - the message should be
+		// seen and the offer should be removed
+		db.addGroupVisibility(txn, contactId3, groupId, false);
+		status = db.getMessageStatus(txn, contactId3, messageId);
+		assertNotNull(status);
+		assertTrue(status.isSeen());
+		assertEquals(0, db.countOfferedMessages(txn, contactId3));
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testGroupMetadata() throws Exception {
 		Database<Connection> db = open(false);
@@ -1483,6 +1591,46 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testEmptyMetadataQueryIncludesMessagesWithoutMetadata()
+			throws Exception {
+		Message message1 = getMessage(groupId);
+		MessageId messageId1 = message1.getId();
+
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and two messages, one of which has metadata
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, true, false, null);
+		db.addMessage(txn, message1, DELIVERED, true, false, null);
+		Metadata metadata = new Metadata();
+		metadata.put("foo", new byte[] {'b', 'a', 'r'});
+		db.mergeMessageMetadata(txn, messageId, metadata);
+
+		// An empty query should match both messages
+		Map<MessageId, Metadata> all =
+				db.getMessageMetadata(txn, groupId, new Metadata());
+		assertEquals(2, all.size());
+		assertMetadataEquals(metadata, all.get(messageId));
+		assertTrue(all.get(messageId1).isEmpty());
+		Collection<MessageId> ids =
+				db.getMessageIds(txn, groupId, new Metadata());
+		assertEquals(2, ids.size());
+		assertTrue(ids.contains(messageId));
+		assertTrue(ids.contains(messageId1));
+
+		// A non-empty query should only match the message with metadata
+		all = db.getMessageMetadata(txn, groupId, metadata);
+		assertEquals(1, all.size());
+		assertMetadataEquals(metadata, all.get(messageId));
+		ids = db.getMessageIds(txn, groupId, metadata);
+		assertEquals(singletonList(messageId), ids);
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testMetadataQueriesOnlyForDeliveredMessages() throws Exception {
 		Message message1 = getMessage(groupId);
@@ -1767,6 +1915,55 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testGetMessageIdsByTimestamp() throws Exception {
+		Message message1 = getMessage(groupId, 123, 1);
+		Message message2 = getMessage(groupId, 123, 2);
+		Message message3 = getMessage(groupId, 123, 2);
+		Message message4 = getMessage(groupId, 123, 3);
+		Message message5 = getMessage(groupId, 123, 4);
+
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and some messages, one of which isn't delivered
+		db.addGroup(txn, group);
+		db.addMessage(txn, message1, DELIVERED, true, false, contactId);
+		db.addMessage(txn, message2, DELIVERED, true, false, contactId);
+		db.addMessage(txn, message3, DELIVERED, true, false, contactId);
+		db.addMessage(txn, message4, DELIVERED, true, false, contactId);
+		db.addMessage(txn, message5, PENDING, true, false, contactId);
+
+		// Pages before a timestamp are newest first
+		assertEquals(singletonMap(message4.getId(), 3L),
+				db.getMessageIdsBefore(txn, groupId, Long.MAX_VALUE, 1));
+		List<MessageId> result = new ArrayList<>(
+				db.getMessageIdsBefore(txn, groupId, 5, 10).keySet());
+		assertEquals(4, result.size());
+		assertEquals(message4.getId(), result.get(0));
+		assertEquals(message1.getId(), result.get(3));
+		assertEquals(singletonMap(message1.getId(), 1L),
+				db.getMessageIdsBefore(txn, groupId, 2, 10));
+		assertEquals(emptyMap(), db.getMessageIdsBefore(txn, groupId, 1, 10));
+
+		// Pages after a timestamp are oldest first
+		assertEquals(singletonMap(message1.getId(), 1L),
+				db.getMessageIdsAfter(txn, groupId, 0, 1));
+		assertEquals(singletonMap(message4.getId(), 3L),
+				db.getMessageIdsAfter(txn, groupId, 2, 10));
+		assertEquals(emptyMap(), db.getMessageIdsAfter(txn, groupId, 3, 10));
+
+		// A page that ends with a tie includes the whole tie
+		Map<MessageId, Long> tie = new HashMap<>();
+		tie.put(message2.getId(), 2L);
+		tie.put(message3.getId(), 2L);
+		assertEquals(tie, db.getMessageIdsBefore(txn, groupId, 3, 1));
+		assertEquals(tie, db.getMessageIdsAfter(txn, groupId, 1, 1));
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testGetMessageStatus() throws Exception {
 		Database<Connection> db = open(false);
@@ -1951,6 +2148,38 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testGetMessageBody() throws Exception {
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and a message
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, true, false, null);
+
+		// Get the body and finish the transaction before reading it
+		InputStream in = db.getMessageBody(txn, messageId);
+		db.commitTransaction(txn);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copyAndClose(in, out);
+		assertArrayEquals(message.getBody(), out.toByteArray());
+
+		// Delete the message
+		txn = db.startTransaction();
+		db.deleteMessage(txn, messageId);
+
+		// Requesting the body should throw an exception
+		try {
+			db.getMessageBody(txn, messageId);
+			fail();
+		} catch (MessageDeletedException expected) {
+			// Expected
+		}
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testSetContactAlias() throws Exception {
 		Database<Connection> db = open(false);
@@ -2335,6 +2564,52 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testSessions() throws Exception {
+		UniqueId sessionId = new UniqueId(getRandomId());
+		UniqueId sessionId1 = new UniqueId(getRandomId());
+		Message message1 = getMessage(groupId);
+		MessageId messageId1 = message1.getId();
+
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and two messages
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, false, false, null);
+		db.addMessage(txn, message1, DELIVERED, false, false, null);
+
+		// No sessions have been recorded yet
+		assertNull(db.getSessionMessageId(txn, groupId, sessionId));
+
+		// Record a session in each message
+		db.addSession(txn, groupId, sessionId, messageId);
+		db.addSession(txn, groupId, sessionId1, messageId1);
+		assertEquals(messageId, db.getSessionMessageId(txn, groupId,
+				sessionId));
+		assertEquals(messageId1, db.getSessionMessageId(txn, groupId,
+				sessionId1));
+
+		// Move the first session to the second message
+		db.addSession(txn, groupId, sessionId, messageId1);
+		assertEquals(messageId1, db.getSessionMessageId(txn, groupId,
+				sessionId));
+
+		// Removing the message should remove both sessions
+		db.removeMessage(txn, messageId1);
+		assertNull(db.getSessionMessageId(txn, groupId, sessionId));
+		assertNull(db.getSessionMessageId(txn, groupId, sessionId1));
+
+		// Removing the group should remove the remaining session
+		db.addSession(txn, groupId, sessionId, messageId);
+		db.removeGroup(txn, groupId);
+		db.addGroup(txn, group);
+		assertNull(db.getSessionMessageId(txn, groupId, sessionId));
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testSyncVersions() throws Exception {
 		Database<Connection> db = open(false);
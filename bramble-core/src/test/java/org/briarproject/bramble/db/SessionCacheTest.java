@@ -0,0 +1,81 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.UniqueId;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionCacheTest extends BrambleTestCase {
+
+	private final GroupId groupId = new GroupId(getRandomId());
+	private final GroupId groupId1 = new GroupId(getRandomId());
+	private final UniqueId sessionId = new UniqueId(getRandomId());
+	private final UniqueId sessionId1 = new UniqueId(getRandomId());
+	private final MessageId messageId = new MessageId(getRandomId());
+	private final MessageId messageId1 = new MessageId(getRandomId());
+
+	@Test
+	public void testLeastRecentlyUsedSessionIsEvicted() {
+		SessionCache cache = new SessionCache(2);
+		cache.put(groupId, sessionId, messageId);
+		cache.put(groupId, sessionId1, messageId1);
+		// Use the first session so the second is least recently used
+		assertEquals(messageId, cache.get(groupId, sessionId));
+		cache.put(groupId1, sessionId, messageId1);
+		assertEquals(messageId, cache.get(groupId, sessionId));
+		assertNull(cache.get(groupId, sessionId1));
+		assertEquals(messageId1, cache.get(groupId1, sessionId));
+	}
+
+	@Test
+	public void testRemovingMessageRemovesSessions() {
+		SessionCache cache = new SessionCache(10);
+		cache.put(groupId, sessionId, messageId);
+		cache.put(groupId, sessionId1, messageId);
+		cache.put(groupId1, sessionId, messageId1);
+		cache.removeMessage(messageId);
+		assertNull(cache.get(groupId, sessionId));
+		assertNull(cache.get(groupId, sessionId1));
+		assertEquals(messageId1, cache.get(groupId1, sessionId));
+	}
+
+	@Test
+	public void testRemovingGroupRemovesSessions() {
+		SessionCache cache = new SessionCache(10);
+		cache.put(groupId, sessionId, messageId);
+		cache.put(groupId1, sessionId, messageId1);
+		cache.removeGroup(groupId);
+		assertNull(cache.get(groupId, sessionId));
+		assertEquals(messageId1, cache.get(groupId1, sessionId));
+	}
+
+	@Test
+	public void testReplacingSessionMessageUpdatesIndex() {
+		SessionCache cache = new SessionCache(10);
+		cache.put(groupId, sessionId, messageId);
+		cache.put(groupId, sessionId, messageId1);
+		assertEquals(1, cache.getIndexedMessageCount());
+		// Removing the old message shouldn't remove the session
+		cache.removeMessage(messageId);
+		assertEquals(messageId1, cache.get(groupId, sessionId));
+		cache.removeMessage(messageId1);
+		assertNull(cache.get(groupId, sessionId));
+		assertEquals(0, cache.getIndexedMessageCount());
+	}
+
+	@Test
+	public void testEvictedSessionsAreRemovedFromIndex() {
+		SessionCache cache = new SessionCache(1);
+		cache.put(groupId, sessionId, messageId);
+		cache.put(groupId, sessionId1, messageId1);
+		assertNull(cache.get(groupId, sessionId));
+		assertEquals(1, cache.getIndexedMessageCount());
+		cache.removeGroup(groupId);
+		assertEquals(0, cache.getIndexedMessageCount());
+	}
+}
@@ -0,0 +1,125 @@
+package org.briarproject.bramble.event;
+
+import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.event.EventBusStats;
+import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.ImmediateExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+public class EventBusImplTest extends BrambleTestCase {
+
+	private final EventBusImpl eventBus =
+			new EventBusImpl(new ImmediateExecutor());
+
+	@Test
+	public void testListenersAreNotifiedOfAllEvents() {
+		List<Event> received = new ArrayList<>();
+		eventBus.addListener(received::add);
+		Event a = new TestEvent(), b = new OtherTestEvent();
+		eventBus.broadcast(a);
+		eventBus.broadcast(b);
+		assertEquals(asList(a, b), received);
+	}
+
+	@Test
+	public void testListenersAreOnlyNotifiedOfEventsOfInterest() {
+		List<Event> received = new ArrayList<>();
+		eventBus.addListener(TestEvent.class, received::add);
+		Event a = new TestEvent(), b = new OtherTestEvent();
+		Event c = new TestEventSubclass();
+		eventBus.broadcast(a);
+		eventBus.broadcast(b);
+		eventBus.broadcast(c);
+		// Events of subclasses should be delivered
+		assertEquals(asList(a, c), received);
+	}
+
+	@Test
+	public void testRemovedListenersAreNotNotified() {
+		List<Event> received = new ArrayList<>();
+		ListListener listener = new ListListener(received);
+		eventBus.addListener(TestEvent.class, listener);
+		Event a = new TestEvent();
+		eventBus.broadcast(a);
+		eventBus.removeListener(listener);
+		eventBus.broadcast(new TestEvent());
+		assertEquals(singletonList(a), received);
+	}
+
+	@Test
+	public void testRemovingListenerRemovesOneRegistration() {
+		List<Event> received = new ArrayList<>();
+		ListListener listener = new ListListener(received);
+		eventBus.addListener(TestEvent.class, listener);
+		eventBus.addListener(OtherTestEvent.class, listener);
+		// Removing the listener should only remove the first registration
+		eventBus.removeListener(listener);
+		Event a = new TestEvent(), b = new OtherTestEvent();
+		eventBus.broadcast(a);
+		eventBus.broadcast(b);
+		assertEquals(singletonList(b), received);
+		// Removing the listener again should remove the second registration
+		eventBus.removeListener(listener);
+		eventBus.broadcast(new OtherTestEvent());
+		assertEquals(singletonList(b), received);
+	}
+
+	@Test
+	public void testListenerExecutorQueueIsBounded() {
+		Queue<Runnable> tasks = new LinkedList<>();
+		Executor listenerExecutor = tasks::add;
+		List<Event> received = new ArrayList<>();
+		eventBus.addListener(TestEvent.class, received::add,
+				listenerExecutor, 2);
+		Event a = new TestEvent(), b = new TestEvent(), c = new TestEvent();
+		eventBus.broadcast(a);
+		eventBus.broadcast(b);
+		// The queue is full, so the third event should be dropped
+		eventBus.broadcast(c);
+		assertEquals(emptyList(), received);
+		EventBusStats stats = eventBus.getStats();
+		assertEquals(3, stats.getBroadcastCount());
+		assertEquals(1, stats.getDroppedCount());
+		assertEquals(0, stats.getQueuedEvents());
+		assertEquals(2, stats.getQueuedListenerEvents());
+		// Run the listener's tasks - the events should arrive in order
+		while (!tasks.isEmpty()) tasks.poll().run();
+		assertEquals(asList(a, b), received);
+		assertEquals(0, eventBus.getStats().getQueuedListenerEvents());
+	}
+
+	private static class TestEvent extends Event {
+	}
+
+	private static class TestEventSubclass extends TestEvent {
+	}
+
+	private static class OtherTestEvent extends Event {
+	}
+
+	private static class ListListener implements EventListener {
+
+		private final List<Event> events;
+
+		private ListListener(List<Event> events) {
+			this.events = events;
+		}
+
+		@Override
+		public void eventOccurred(Event e) {
+			events.add(e);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package org.briarproject.bramble.lifecycle;
+
+import org.briarproject.bramble.api.lifecycle.IoExecutorStats;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MonitoredIoExecutorTest extends BrambleTestCase {
+
+	private final ExecutorService delegate = Executors.newCachedThreadPool();
+	private final MonitoredIoExecutor executor =
+			new MonitoredIoExecutor(delegate, false);
+
+	@After
+	public void tearDown() {
+		delegate.shutdownNow();
+	}
+
+	@Test
+	public void testCountsActiveAndCompletedTasks() throws Exception {
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(2);
+		for (int i = 0; i < 2; i++) {
+			executor.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				finished.countDown();
+			});
+		}
+		assertTrue(started.await(10, SECONDS));
+
+		IoExecutorStats stats = executor.getStats();
+		assertFalse(stats.usesVirtualThreads());
+		assertEquals(2, stats.getThreadCount());
+		assertEquals(2, stats.getActiveTasks());
+		assertEquals(2, stats.getPeakActiveTasks());
+		assertEquals(0, stats.getCompletedTasks());
+
+		release.countDown();
+		assertTrue(finished.await(10, SECONDS));
+		// Wait for the tasks to return from run()
+		delegate.shutdown();
+		assertTrue(delegate.awaitTermination(10, SECONDS));
+
+		stats = executor.getStats();
+		assertEquals(0, stats.getActiveTasks());
+		assertEquals(2, stats.getPeakActiveTasks());
+		assertEquals(2, stats.getCompletedTasks());
+	}
+
+	@Test
+	public void testDiscardsTasksAfterShutdown() {
+		delegate.shutdown();
+		executor.execute(() -> {
+			throw new AssertionError();
+		});
+		assertEquals(0, executor.getStats().getCompletedTasks());
+	}
+}
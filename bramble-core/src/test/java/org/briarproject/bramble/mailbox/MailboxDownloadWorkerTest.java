@@ -10,17 +10,14 @@ import org.briarproject.bramble.test.BrambleMockTestCase;
 import org.briarproject.bramble.test.CaptureArgumentAction;
 import org.jmock.Expectations;
 import org.jmock.lib.action.DoAllAction;
-import org.junit.After;
-import org.junit.Before;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Arrays.asList;
-import static org.briarproject.bramble.test.TestUtils.deleteTestDirectory;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
-import static org.briarproject.bramble.test.TestUtils.getTestDirectory;
 
 abstract class MailboxDownloadWorkerTest<W extends MailboxDownloadWorker>
 		extends BrambleMockTestCase {
@@ -43,22 +40,10 @@ abstract class MailboxDownloadWorkerTest<W extends MailboxDownloadWorker>
 			new MailboxFile(new MailboxFileId(getRandomId()), now);
 	final List<MailboxFile> files = asList(file1, file2);
 
-	private File testDir, tempFile;
+	private final InputStream in = new ByteArrayInputStream(new byte[0]);
 	MailboxProperties mailboxProperties;
 	W worker;
 
-	@Before
-	public void setUp() {
-		testDir = getTestDirectory();
-		tempFile = new File(testDir, "temp");
-	}
-
-	@After
-	public void tearDown() {
-		deleteTestDirectory(testDir);
-	}
-
-
 	void expectStartConnectivityCheck() {
 		context.checking(new Expectations() {{
 			oneOf(connectivityChecker).checkConnectivity(
@@ -96,11 +81,10 @@ abstract class MailboxDownloadWorkerTest<W extends MailboxDownloadWorker>
 			MailboxFile file)
 			throws Exception {
 		context.checking(new Expectations() {{
-			oneOf(mailboxFileManager).createTempFileForDownload();
-			will(returnValue(tempFile));
-			oneOf(mailboxApi).getFile(mailboxProperties, folderId, file.name,
-					tempFile);
-			oneOf(mailboxFileManager).handleDownloadedFile(tempFile);
+			oneOf(mailboxApi).getFile(mailboxProperties, folderId, file.name);
+			will(returnValue(in));
+			oneOf(mailboxFileManager).handleDownloadedStream(in);
+			will(returnValue(0L));
 		}});
 	}
 
@@ -23,9 +23,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.briarproject.bramble.api.lifecycle.LifecycleManager.LifecycleState.RUNNING;
@@ -119,7 +122,7 @@ public class MailboxFileManagerImplTest extends BrambleMockTestCase {
 		expectCheckForOrphans();
 		manager.eventOccurred(new TransportActiveEvent(ID));
 
-		File f = manager.createTempFileForDownload();
+		File f = createDownloadedFile();
 		AtomicReference<TransportConnectionReader> reader =
 				new AtomicReference<>(null);
 		AtomicReference<TagController> controller = new AtomicReference<>(null);
@@ -248,12 +251,89 @@ public class MailboxFileManagerImplTest extends BrambleMockTestCase {
 		assertTrue(f.exists());
 	}
 
+	@Test
+	public void testReturnsLengthIfDownloadedStreamIsRead() throws Exception {
+		InputStream in = new ByteArrayInputStream(new byte[123]);
+		expectReadDownloadedStream(false, new AtomicReference<>(null));
+
+		assertEquals(123, manager.handleDownloadedStream(in));
+	}
+
+	@Test
+	public void testReturnsIfDownloadedStreamIsInvalid() throws Exception {
+		InputStream in = new ByteArrayInputStream(new byte[123]);
+		AtomicReference<TagController> controller = new AtomicReference<>(null);
+		expectReadDownloadedStream(true, controller);
+		context.checking(new Expectations() {{
+			exactly(2).of(lifecycleManager).getLifecycleState();
+			will(returnValue(RUNNING));
+		}});
+
+		assertEquals(123, manager.handleDownloadedStream(in));
+		// The tag should be marked as recognised
+		assertTrue(controller.get().shouldMarkTagAsRecognised(true));
+	}
+
+	@Test
+	public void testThrowsExceptionIfDownloadFails() throws Exception {
+		InputStream in = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException();
+			}
+		};
+		AtomicReference<TagController> controller = new AtomicReference<>(null);
+		expectReadDownloadedStream(true, controller);
+
+		try {
+			manager.handleDownloadedStream(in);
+			fail();
+		} catch (IOException expected) {
+			// Expected
+		}
+		// The tag should not be marked as recognised, so the file can be
+		// downloaded and read again
+		assertFalse(controller.get().shouldMarkTagAsRecognised(true));
+	}
+
+	@Test
+	public void testThrowsExceptionIfShuttingDownWhileStreamIsRead()
+			throws Exception {
+		AtomicBoolean closed = new AtomicBoolean(false);
+		InputStream in = new ByteArrayInputStream(new byte[123]) {
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		};
+
+		// The session never disposes of the reader, but the app starts
+		// shutting down
+		context.checking(new Expectations() {{
+			oneOf(connectionManager).manageIncomingConnection(with(ID),
+					with(any(TransportConnectionReader.class)),
+					with(any(TagController.class)));
+			oneOf(lifecycleManager).getLifecycleState();
+			will(returnValue(STOPPING));
+		}});
+
+		try {
+			manager.handleDownloadedStream(in);
+			fail();
+		} catch (IOException expected) {
+			// Expected
+		}
+		// The stream should have been closed, so the file can be downloaded
+		// again at the next startup
+		assertTrue(closed.get());
+	}
+
 	private void testDeletesDownloadedFile(boolean recognised,
 			LifecycleState state, boolean fileExists) throws Exception {
 		expectCheckForOrphans();
 		manager.eventOccurred(new TransportActiveEvent(ID));
 
-		File f = manager.createTempFileForDownload();
+		File f = createDownloadedFile();
 		AtomicReference<TransportConnectionReader> reader =
 				new AtomicReference<>(null);
 		AtomicReference<TagController> controller = new AtomicReference<>(null);
@@ -271,6 +351,13 @@ public class MailboxFileManagerImplTest extends BrambleMockTestCase {
 		assertEquals(fileExists, f.exists());
 	}
 
+	private File createDownloadedFile() throws IOException {
+		File downloadDir = new File(mailboxDir, DOWNLOAD_DIR_NAME);
+		//noinspection ResultOfMethodCallIgnored
+		downloadDir.mkdirs();
+		return File.createTempFile("mailbox", ".tmp", downloadDir);
+	}
+
 	private void expectCheckForOrphans() {
 		context.checking(new Expectations() {{
 			oneOf(ioExecutor).execute(with(any(Runnable.class)));
@@ -301,4 +388,41 @@ public class MailboxFileManagerImplTest extends BrambleMockTestCase {
 			));
 		}});
 	}
+
+	private void expectReadDownloadedStream(boolean exception,
+			AtomicReference<TagController> controller) {
+		context.checking(new Expectations() {{
+			oneOf(connectionManager).manageIncomingConnection(with(ID),
+					with(any(TransportConnectionReader.class)),
+					with(any(TagController.class)));
+			// The stream is read. We need to use an action for this, as
+			// handleDownloadedStream() waits for it to happen before
+			// returning
+			will(new DoAllAction(
+					new CaptureArgumentAction<>(controller,
+							TagController.class, 2),
+					new ConsumeArgumentAction<>(TransportConnectionReader.class,
+							1, reader -> {
+						try {
+							readFully(reader.getInputStream());
+						} catch (IOException e) {
+							// The download failed
+						}
+						try {
+							reader.dispose(exception, true);
+						} catch (IOException e) {
+							fail();
+						}
+					})
+			));
+		}});
+	}
+
+	private void readFully(InputStream in) throws IOException {
+		byte[] buf = new byte[100];
+		//noinspection StatementWithEmptyBody
+		while (in.read(buf) != -1) {
+			// Discard the data
+		}
+	}
 }
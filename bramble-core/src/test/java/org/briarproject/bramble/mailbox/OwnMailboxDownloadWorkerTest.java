@@ -37,12 +37,7 @@ public class OwnMailboxDownloadWorkerTest
 		mailboxProperties = getMailboxProperties(true, CLIENT_SUPPORTS);
 		worker = new OwnMailboxDownloadWorker(connectivityChecker,
 				torReachabilityMonitor, mailboxApiCaller, mailboxApi,
-				mailboxFileManager, mailboxProperties);
-	}
-
-	@Override
-	public void setUp() {
-		super.setUp();
+				mailboxFileManager, mailboxProperties, 1);
 	}
 
 	@Test
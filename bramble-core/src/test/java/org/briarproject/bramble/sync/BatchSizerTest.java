@@ -0,0 +1,62 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchSizerTest extends BrambleTestCase {
+
+	private static final int MIN_CAPACITY = 1000;
+	private static final int MAX_CAPACITY = 16_000;
+	private static final long TARGET_WRITE_TIME = 100;
+	private static final long MAX_GENERATION_TIME = 50;
+
+	private final BatchSizer sizer = new BatchSizer(MIN_CAPACITY,
+			MAX_CAPACITY, TARGET_WRITE_TIME, MAX_GENERATION_TIME);
+
+	@Test
+	public void testStartsAtMinimumCapacity() {
+		assertEquals(MIN_CAPACITY, sizer.getCapacity());
+	}
+
+	@Test
+	public void testCapacityFollowsThroughput() {
+		// 40 bytes per ms should fill the target write time with 4,000 bytes
+		sizer.onBatchWritten(4000, 100);
+		assertEquals(4000, sizer.getCapacity());
+		// A slow link shouldn't reduce the capacity below the minimum
+		for (int i = 0; i < 20; i++) sizer.onBatchWritten(10, 100);
+		assertEquals(MIN_CAPACITY, sizer.getCapacity());
+		// A fast link shouldn't increase the capacity above the maximum
+		for (int i = 0; i < 20; i++) sizer.onBatchWritten(1_000_000, 10);
+		assertEquals(MAX_CAPACITY, sizer.getCapacity());
+	}
+
+	@Test
+	public void testSlowGenerationReducesCapacity() {
+		sizer.onBatchWritten(1_000_000, 10);
+		assertEquals(MAX_CAPACITY, sizer.getCapacity());
+		// Each slow generation halves the capacity
+		sizer.onBatchGenerated(MAX_GENERATION_TIME + 1);
+		assertEquals(MAX_CAPACITY / 2, sizer.getCapacity());
+		sizer.onBatchGenerated(MAX_GENERATION_TIME + 1);
+		assertEquals(MAX_CAPACITY / 4, sizer.getCapacity());
+		// A generation that's neither slow nor fast leaves it unchanged
+		sizer.onBatchGenerated(MAX_GENERATION_TIME);
+		assertEquals(MAX_CAPACITY / 4, sizer.getCapacity());
+		// Each fast generation doubles it again
+		sizer.onBatchGenerated(0);
+		assertEquals(MAX_CAPACITY / 2, sizer.getCapacity());
+		sizer.onBatchGenerated(0);
+		sizer.onBatchGenerated(0);
+		assertEquals(MAX_CAPACITY, sizer.getCapacity());
+	}
+
+	@Test
+	public void testCapacityDoesNotFallBelowMinimum() {
+		for (int i = 0; i < 20; i++)
+			sizer.onBatchGenerated(MAX_GENERATION_TIME + 1);
+		assertEquals(MIN_CAPACITY, sizer.getCapacity());
+	}
+}
@@ -0,0 +1,193 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.event.EventBus;
+import org.briarproject.bramble.api.sync.Ack;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.Message;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.PriorityHandler;
+import org.briarproject.bramble.api.sync.SyncRecordReader;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.DbExpectations;
+import org.jmock.Expectations;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static java.util.Collections.singletonList;
+import static org.briarproject.bramble.sync.IncomingSession.MAX_BATCH_SIZE;
+import static org.briarproject.bramble.test.TestUtils.getContactId;
+import static org.briarproject.bramble.test.TestUtils.getMessage;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.junit.Assert.assertEquals;
+
+public class IncomingSessionTest extends BrambleMockTestCase {
+
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
+	private final EventBus eventBus = context.mock(EventBus.class);
+	private final SyncRecordReader recordReader =
+			context.mock(SyncRecordReader.class);
+	private final PriorityHandler priorityHandler =
+			context.mock(PriorityHandler.class);
+
+	private final ContactId contactId = getContactId();
+	private final GroupId groupId = new GroupId(getRandomId());
+	private final Message message = getMessage(groupId);
+	private final Message message1 = getMessage(groupId);
+	private final Ack ack =
+			new Ack(singletonList(new MessageId(getRandomId())));
+
+	// Tasks submitted to the DB executor are run by the test
+	private final List<Runnable> dbTasks = new ArrayList<>();
+	private final Executor dbExecutor = dbTasks::add;
+
+	private final IncomingSession session = new IncomingSession(db,
+			dbExecutor, eventBus, contactId, recordReader, priorityHandler);
+
+	@Test
+	public void testQueuedRecordsAreReceivedInOneTransaction()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(eventBus).addListener(session);
+			// Read two messages and an ack
+			exactly(3).of(recordReader).eof();
+			will(returnValue(false));
+			oneOf(recordReader).eof();
+			will(returnValue(true));
+			exactly(2).of(recordReader).hasAck();
+			will(returnValue(false));
+			oneOf(recordReader).hasAck();
+			will(returnValue(true));
+			exactly(2).of(recordReader).hasMessage();
+			will(returnValue(true));
+			oneOf(recordReader).readMessage();
+			will(returnValue(message));
+			oneOf(recordReader).readMessage();
+			will(returnValue(message1));
+			oneOf(recordReader).readAck();
+			will(returnValue(ack));
+			oneOf(eventBus).removeListener(session);
+		}});
+
+		session.run();
+
+		// The records should be handled by a single task
+		assertEquals(1, dbTasks.size());
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).transaction(with(false), withDbRunnable(txn));
+			oneOf(db).receiveMessage(txn, contactId, message);
+			oneOf(db).receiveMessage(txn, contactId, message1);
+			oneOf(db).receiveAck(txn, contactId, ack);
+		}});
+
+		dbTasks.remove(0).run();
+
+		// No more tasks should have been scheduled
+		assertEquals(0, dbTasks.size());
+	}
+
+	@Test
+	public void testBatchSizeIsLimited() throws Exception {
+		Transaction txn = new Transaction(null, false);
+		Transaction txn1 = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(eventBus).addListener(session);
+			// Read one more message than fits in a batch
+			exactly(MAX_BATCH_SIZE + 1).of(recordReader).eof();
+			will(returnValue(false));
+			oneOf(recordReader).eof();
+			will(returnValue(true));
+			allowing(recordReader).hasAck();
+			will(returnValue(false));
+			allowing(recordReader).hasMessage();
+			will(returnValue(true));
+			allowing(recordReader).readMessage();
+			will(returnValue(message));
+			oneOf(eventBus).removeListener(session);
+		}});
+
+		session.run();
+
+		assertEquals(1, dbTasks.size());
+
+		// The first batch should be full
+		context.checking(new DbExpectations() {{
+			oneOf(db).transaction(with(false), withDbRunnable(txn));
+			exactly(MAX_BATCH_SIZE).of(db)
+					.receiveMessage(txn, contactId, message);
+		}});
+
+		dbTasks.remove(0).run();
+
+		// Another task should have been scheduled for the remaining message
+		assertEquals(1, dbTasks.size());
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).transaction(with(false), withDbRunnable(txn1));
+			oneOf(db).receiveMessage(txn1, contactId, message);
+		}});
+
+		dbTasks.remove(0).run();
+
+		assertEquals(0, dbTasks.size());
+	}
+
+	@Test
+	public void testRecordsAreReceivedIndividuallyIfBatchFails()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+		Transaction txn1 = new Transaction(null, false);
+		Transaction txn2 = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(eventBus).addListener(session);
+			// Read two messages
+			exactly(2).of(recordReader).eof();
+			will(returnValue(false));
+			oneOf(recordReader).eof();
+			will(returnValue(true));
+			exactly(2).of(recordReader).hasAck();
+			will(returnValue(false));
+			exactly(2).of(recordReader).hasMessage();
+			will(returnValue(true));
+			oneOf(recordReader).readMessage();
+			will(returnValue(message));
+			oneOf(recordReader).readMessage();
+			will(returnValue(message1));
+			oneOf(eventBus).removeListener(session);
+		}});
+
+		session.run();
+
+		assertEquals(1, dbTasks.size());
+
+		context.checking(new DbExpectations() {{
+			// The second message can't be received, so the batch fails
+			oneOf(db).transaction(with(false), withDbRunnable(txn));
+			oneOf(db).receiveMessage(txn, contactId, message);
+			oneOf(db).receiveMessage(txn, contactId, message1);
+			will(throwException(new DbException()));
+			// The first message should be received by itself
+			oneOf(db).transaction(with(false), withDbRunnable(txn1));
+			oneOf(db).receiveMessage(txn1, contactId, message);
+			// The second message should fail again by itself
+			oneOf(db).transaction(with(false), withDbRunnable(txn2));
+			oneOf(db).receiveMessage(txn2, contactId, message1);
+			will(throwException(new DbException()));
+		}});
+
+		dbTasks.remove(0).run();
+
+		assertEquals(0, dbTasks.size());
+	}
+}
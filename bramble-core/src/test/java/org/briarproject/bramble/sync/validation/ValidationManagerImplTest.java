@@ -23,7 +23,9 @@ import org.briarproject.bramble.test.ImmediateExecutor;
 import org.junit.Test;
 
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Executor;
 
 import static java.util.Arrays.asList;
@@ -41,9 +43,12 @@ import static org.briarproject.bramble.test.TestUtils.getContactId;
 import static org.briarproject.bramble.test.TestUtils.getGroup;
 import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.junit.Assert.assertEquals;
 
 public class ValidationManagerImplTest extends BrambleMockTestCase {
 
+	private static final int MAX_BATCH_SIZE = 10;
+
 	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
 	private final MessageValidator validator =
 			context.mock(MessageValidator.class);
@@ -70,7 +75,8 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			new MessageContext(metadata, singletonList(messageId1));
 
 	private final ValidationManagerImpl vm =
-			new ValidationManagerImpl(db, dbExecutor, validationExecutor);
+			new ValidationManagerImpl(db, dbExecutor, validationExecutor,
+					MAX_BATCH_SIZE);
 
 	public ValidationManagerImplTest() {
 		vm.registerMessageValidator(clientId, majorVersion, validator);
@@ -91,18 +97,21 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 	public void testMessagesAreValidatedAtStartup() throws Exception {
 		Transaction txn = new Transaction(null, true);
 		Transaction txn1 = new Transaction(null, false);
-		Transaction txn2 = new Transaction(null, true);
-		Transaction txn3 = new Transaction(null, false);
+		Transaction txn2 = new Transaction(null, false);
 
 		expectGetMessagesToValidate(messageId, messageId1);
 
 		context.checking(new DbExpectations() {{
-			// Load the first raw message and group
+			// Load both raw messages and their groups
 			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
 			oneOf(db).getMessage(txn, messageId);
 			will(returnValue(message));
 			oneOf(db).getGroup(txn, groupId);
 			will(returnValue(group));
+			oneOf(db).getMessage(txn, messageId1);
+			will(returnValue(message1));
+			oneOf(db).getGroup(txn, groupId);
+			will(returnValue(group));
 			// Validate the first message: valid
 			oneOf(validator).validateMessage(message, group);
 			will(returnValue(validResult));
@@ -116,24 +125,18 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			// Get any pending dependents
 			oneOf(db).getMessageDependents(txn1, messageId);
 			will(returnValue(emptyMap()));
-			// Load the second raw message and group
-			oneOf(db).transactionWithResult(with(true), withDbCallable(txn2));
-			oneOf(db).getMessage(txn2, messageId1);
-			will(returnValue(message1));
-			oneOf(db).getGroup(txn2, groupId);
-			will(returnValue(group));
 			// Validate the second message: invalid
 			oneOf(validator).validateMessage(message1, group);
 			will(throwException(new InvalidMessageException()));
 			// Store the validation result for the second message
-			oneOf(db).transaction(with(false), withDbRunnable(txn3));
-			oneOf(db).getMessageState(txn3, messageId1);
+			oneOf(db).transaction(with(false), withDbRunnable(txn2));
+			oneOf(db).getMessageState(txn2, messageId1);
 			will(returnValue(UNKNOWN));
-			oneOf(db).setMessageState(txn3, messageId1, INVALID);
-			oneOf(db).deleteMessage(txn3, messageId1);
-			oneOf(db).deleteMessageMetadata(txn3, messageId1);
+			oneOf(db).setMessageState(txn2, messageId1, INVALID);
+			oneOf(db).deleteMessage(txn2, messageId1);
+			oneOf(db).deleteMessageMetadata(txn2, messageId1);
 			// Recursively invalidate any dependents
-			oneOf(db).getMessageDependents(txn3, messageId1);
+			oneOf(db).getMessageDependents(txn2, messageId1);
 			will(returnValue(emptyMap()));
 		}});
 
@@ -141,12 +144,15 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 		expectGetMessagesToShare();
 
 		vm.startService();
+
+		assertEquals(0, vm.getValidationBacklog());
+		assertEquals(2, vm.getValidatedMessageCount());
+		assertEquals(1, vm.getDeliveredMessageCount());
 	}
 
 	@Test
 	public void testPendingMessagesAreDeliveredAtStartup() throws Exception {
 		Transaction txn = new Transaction(null, false);
-		Transaction txn1 = new Transaction(null, false);
 
 		expectGetMessagesToValidate();
 		expectGetPendingMessages(messageId);
@@ -172,25 +178,25 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			// Get any pending dependents
 			oneOf(db).getMessageDependents(txn, messageId);
 			will(returnValue(singletonMap(messageId2, PENDING)));
-			// Check whether the dependent is ready to deliver
-			oneOf(db).transaction(with(false), withDbRunnable(txn1));
-			oneOf(db).getMessageState(txn1, messageId2);
+			// Check whether the dependent is ready to deliver in the same
+			// transaction
+			oneOf(db).getMessageState(txn, messageId2);
 			will(returnValue(PENDING));
-			oneOf(db).getMessageDependencies(txn1, messageId2);
+			oneOf(db).getMessageDependencies(txn, messageId2);
 			will(returnValue(singletonMap(messageId1, DELIVERED)));
 			// Get the dependent and its metadata to deliver
-			oneOf(db).getMessage(txn1, messageId2);
+			oneOf(db).getMessage(txn, messageId2);
 			will(returnValue(message2));
-			oneOf(db).getGroup(txn1, groupId);
+			oneOf(db).getGroup(txn, groupId);
 			will(returnValue(group));
-			oneOf(db).getMessageMetadataForValidator(txn1, messageId2);
+			oneOf(db).getMessageMetadataForValidator(txn, messageId2);
 			will(returnValue(metadata));
 			// Deliver the dependent
-			oneOf(hook).incomingMessage(txn1, message2, metadata);
+			oneOf(hook).incomingMessage(txn, message2, metadata);
 			will(returnValue(ACCEPT_DO_NOT_SHARE));
-			oneOf(db).setMessageState(txn1, messageId2, DELIVERED);
+			oneOf(db).setMessageState(txn, messageId2, DELIVERED);
 			// Get any pending dependents
-			oneOf(db).getMessageDependents(txn1, messageId2);
+			oneOf(db).getMessageDependents(txn, messageId2);
 			will(returnValue(emptyMap()));
 		}});
 
@@ -268,7 +274,6 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 	public void testValidationContinuesAfterNoSuchMessageException()
 			throws Exception {
 		Transaction txn = new Transaction(null, true);
-		Transaction txn1 = new Transaction(null, true);
 		Transaction txn2 = new Transaction(null, false);
 
 		expectGetMessagesToValidate(messageId, messageId1);
@@ -278,11 +283,10 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
 			oneOf(db).getMessage(txn, messageId);
 			will(throwException(new NoSuchMessageException()));
-			// Load the second raw message and group
-			oneOf(db).transactionWithResult(with(true), withDbCallable(txn1));
-			oneOf(db).getMessage(txn1, messageId1);
+			// Load the second raw message and group in the same transaction
+			oneOf(db).getMessage(txn, messageId1);
 			will(returnValue(message1));
-			oneOf(db).getGroup(txn1, groupId);
+			oneOf(db).getGroup(txn, groupId);
 			will(returnValue(group));
 			// Validate the second message: invalid
 			oneOf(validator).validateMessage(message1, group);
@@ -303,13 +307,16 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 		expectGetMessagesToShare();
 
 		vm.startService();
+
+		assertEquals(0, vm.getValidationBacklog());
+		assertEquals(1, vm.getValidatedMessageCount());
+		assertEquals(0, vm.getDeliveredMessageCount());
 	}
 
 	@Test
 	public void testValidationContinuesAfterNoSuchGroupException()
 			throws Exception {
 		Transaction txn = new Transaction(null, true);
-		Transaction txn1 = new Transaction(null, true);
 		Transaction txn2 = new Transaction(null, false);
 
 		expectGetMessagesToValidate(messageId, messageId1);
@@ -322,11 +329,10 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			// Load the group - *gasp* it's gone!
 			oneOf(db).getGroup(txn, groupId);
 			will(throwException(new NoSuchGroupException()));
-			// Load the second raw message and group
-			oneOf(db).transactionWithResult(with(true), withDbCallable(txn1));
-			oneOf(db).getMessage(txn1, messageId1);
+			// Load the second raw message and group in the same transaction
+			oneOf(db).getMessage(txn, messageId1);
 			will(returnValue(message1));
-			oneOf(db).getGroup(txn1, groupId);
+			oneOf(db).getGroup(txn, groupId);
 			will(returnValue(group));
 			// Validate the second message: invalid
 			oneOf(validator).validateMessage(message1, group);
@@ -349,6 +355,58 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 		vm.startService();
 	}
 
+	@Test
+	public void testStoringContinuesAfterNoSuchGroupException()
+			throws Exception {
+		Transaction txn = new Transaction(null, true);
+		Transaction txn1 = new Transaction(null, false);
+		Group group1 = getGroup(clientId, majorVersion);
+		Message message3 = getMessage(group1.getId());
+		MessageId messageId3 = message3.getId();
+
+		// Queue the database tasks so both results are stored in one batch
+		Queue<Runnable> dbTasks = new LinkedList<>();
+		ValidationManagerImpl vm = new ValidationManagerImpl(db,
+				dbTasks::add, validationExecutor, MAX_BATCH_SIZE);
+		vm.registerMessageValidator(clientId, majorVersion, validator);
+		vm.registerIncomingMessageHook(clientId, majorVersion, hook);
+
+		context.checking(new DbExpectations() {{
+			// Load both groups
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
+			oneOf(db).getGroup(txn, groupId);
+			will(returnValue(group));
+			oneOf(db).getGroup(txn, group1.getId());
+			will(returnValue(group1));
+			// Validate both messages: valid
+			oneOf(validator).validateMessage(message, group);
+			will(returnValue(validResult));
+			oneOf(validator).validateMessage(message3, group1);
+			will(returnValue(validResult));
+			// Store the validation results - the first group's gone!
+			oneOf(db).transaction(with(false), withDbRunnable(txn1));
+			oneOf(db).mergeMessageMetadata(txn1, messageId, metadata);
+			will(throwException(new NoSuchGroupException()));
+			// Store the second result in the same transaction
+			oneOf(db).mergeMessageMetadata(txn1, messageId3, metadata);
+			// Deliver the second message
+			oneOf(hook).incomingMessage(txn1, message3, metadata);
+			will(returnValue(ACCEPT_DO_NOT_SHARE));
+			oneOf(db).setMessageState(txn1, messageId3, DELIVERED);
+			// Get any pending dependents
+			oneOf(db).getMessageDependents(txn1, messageId3);
+			will(returnValue(emptyMap()));
+		}});
+
+		vm.eventOccurred(new MessageAddedEvent(message, contactId));
+		vm.eventOccurred(new MessageAddedEvent(message3, contactId));
+		Runnable task;
+		while ((task = dbTasks.poll()) != null) task.run();
+
+		assertEquals(0, vm.getValidationBacklog());
+		assertEquals(1, vm.getDeliveredMessageCount());
+	}
+
 	@Test
 	public void testNonLocalMessagesAreValidatedWhenAdded() throws Exception {
 		Transaction txn = new Transaction(null, true);
@@ -584,10 +642,6 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 		Transaction txn = new Transaction(null, true);
 		Transaction txn1 = new Transaction(null, false);
 		Transaction txn2 = new Transaction(null, false);
-		Transaction txn3 = new Transaction(null, false);
-		Transaction txn4 = new Transaction(null, false);
-		Transaction txn5 = new Transaction(null, false);
-		Transaction txn6 = new Transaction(null, false);
 
 		context.checking(new DbExpectations() {{
 			// Load the group
@@ -607,8 +661,9 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			// The message has two pending dependents: 1 and 2
 			oneOf(db).getMessageDependents(txn1, messageId);
 			will(returnValue(twoDependents));
-			// Check whether message 1 is ready to be delivered
+			// Deliver the pending dependents in a single transaction
 			oneOf(db).transaction(with(false), withDbRunnable(txn2));
+			// Check whether message 1 is ready to be delivered
 			oneOf(db).getMessageState(txn2, messageId1);
 			will(returnValue(PENDING));
 			oneOf(db).getMessageDependencies(txn2, messageId1);
@@ -628,68 +683,64 @@ public class ValidationManagerImplTest extends BrambleMockTestCase {
 			oneOf(db).getMessageDependents(txn2, messageId1);
 			will(returnValue(singletonMap(messageId3, PENDING)));
 			// Check whether message 2 is ready to be delivered
-			oneOf(db).transaction(with(false), withDbRunnable(txn3));
-			oneOf(db).getMessageState(txn3, messageId2);
+			oneOf(db).getMessageState(txn2, messageId2);
 			will(returnValue(PENDING));
-			oneOf(db).getMessageDependencies(txn3, messageId2);
+			oneOf(db).getMessageDependencies(txn2, messageId2);
 			will(returnValue(singletonMap(messageId, DELIVERED)));
 			// Get message 2 and its metadata
-			oneOf(db).getMessage(txn3, messageId2);
+			oneOf(db).getMessage(txn2, messageId2);
 			will(returnValue(message2));
-			oneOf(db).getGroup(txn3, groupId);
+			oneOf(db).getGroup(txn2, groupId);
 			will(returnValue(group));
-			oneOf(db).getMessageMetadataForValidator(txn3, messageId2);
+			oneOf(db).getMessageMetadataForValidator(txn2, messageId2);
 			will(returnValue(metadata));
 			// Deliver message 2
-			oneOf(hook).incomingMessage(txn3, message2, metadata);
+			oneOf(hook).incomingMessage(txn2, message2, metadata);
 			will(returnValue(ACCEPT_DO_NOT_SHARE));
-			oneOf(db).setMessageState(txn3, messageId2, DELIVERED);
+			oneOf(db).setMessageState(txn2, messageId2, DELIVERED);
 			// Message 2 has one pending dependent: 3 (same dependent as 1)
-			oneOf(db).getMessageDependents(txn3, messageId2);
+			oneOf(db).getMessageDependents(txn2, messageId2);
 			will(returnValue(singletonMap(messageId3, PENDING)));
 			// Check whether message 3 is ready to be delivered (via 1)
-			oneOf(db).transaction(with(false), withDbRunnable(txn4));
-			oneOf(db).getMessageState(txn4, messageId3);
+			oneOf(db).getMessageState(txn2, messageId3);
 			will(returnValue(PENDING));
-			oneOf(db).getMessageDependencies(txn4, messageId3);
+			oneOf(db).getMessageDependencies(txn2, messageId3);
 			will(returnValue(twoDependencies));
 			// Get message 3 and its metadata
-			oneOf(db).getMessage(txn4, messageId3);
+			oneOf(db).getMessage(txn2, messageId3);
 			will(returnValue(message3));
-			oneOf(db).getGroup(txn4, groupId);
+			oneOf(db).getGroup(txn2, groupId);
 			will(returnValue(group));
-			oneOf(db).getMessageMetadataForValidator(txn4, messageId3);
+			oneOf(db).getMessageMetadataForValidator(txn2, messageId3);
 			will(returnValue(metadata));
 			// Deliver message 3
-			oneOf(hook).incomingMessage(txn4, message3, metadata);
+			oneOf(hook).incomingMessage(txn2, message3, metadata);
 			will(returnValue(ACCEPT_DO_NOT_SHARE));
-			oneOf(db).setMessageState(txn4, messageId3, DELIVERED);
+			oneOf(db).setMessageState(txn2, messageId3, DELIVERED);
 			// Message 3 has one pending dependent: 4
-			oneOf(db).getMessageDependents(txn4, messageId3);
+			oneOf(db).getMessageDependents(txn2, messageId3);
 			will(returnValue(singletonMap(messageId4, PENDING)));
 			// Check whether message 3 is ready to be delivered (again, via 2)
-			oneOf(db).transaction(with(false), withDbRunnable(txn5));
-			oneOf(db).getMessageState(txn5, messageId3);
+			oneOf(db).getMessageState(txn2, messageId3);
 			will(returnValue(DELIVERED)); // Already delivered
 			// Check whether message 4 is ready to be delivered (via 1 and 3)
-			oneOf(db).transaction(with(false), withDbRunnable(txn6));
-			oneOf(db).getMessageState(txn6, messageId4);
+			oneOf(db).getMessageState(txn2, messageId4);
 			will(returnValue(PENDING));
-			oneOf(db).getMessageDependencies(txn6, messageId4);
+			oneOf(db).getMessageDependencies(txn2, messageId4);
 			will(returnValue(singletonMap(messageId3, DELIVERED)));
 			// Get message 4 and its metadata
-			oneOf(db).getMessage(txn6, messageId4);
+			oneOf(db).getMessage(txn2, messageId4);
 			will(returnValue(message4));
-			oneOf(db).getGroup(txn6, groupId);
+			oneOf(db).getGroup(txn2, groupId);
 			will(returnValue(group));
-			oneOf(db).getMessageMetadataForValidator(txn6, messageId4);
+			oneOf(db).getMessageMetadataForValidator(txn2, messageId4);
 			will(returnValue(metadata));
 			// Deliver message 4
-			oneOf(hook).incomingMessage(txn6, message4, metadata);
+			oneOf(hook).incomingMessage(txn2, message4, metadata);
 			will(returnValue(ACCEPT_DO_NOT_SHARE));
-			oneOf(db).setMessageState(txn6, messageId4, DELIVERED);
+			oneOf(db).setMessageState(txn2, messageId4, DELIVERED);
 			// Message 4 has no pending dependents
-			oneOf(db).getMessageDependents(txn6, messageId4);
+			oneOf(db).getMessageDependents(txn2, messageId4);
 			will(returnValue(emptyMap()));
 		}});
 
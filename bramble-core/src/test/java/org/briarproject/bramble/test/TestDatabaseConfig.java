@@ -11,6 +11,8 @@ import javax.annotation.Nullable;
 @NotNullByDefault
 public class TestDatabaseConfig implements DatabaseConfig {
 
+	private static final int CONNECTION_POOL_SIZE = 4;
+
 	private final File dbDir, keyDir;
 
 	public TestDatabaseConfig(File testDir) {
@@ -33,4 +35,14 @@ public class TestDatabaseConfig implements DatabaseConfig {
 	public KeyStrengthener getKeyStrengthener() {
 		return null;
 	}
+
+	@Override
+	public int getConnectionPoolSize() {
+		return CONNECTION_POOL_SIZE;
+	}
+
+	@Override
+	public boolean isQueryProfilingEnabled() {
+		return false;
+	}
 }
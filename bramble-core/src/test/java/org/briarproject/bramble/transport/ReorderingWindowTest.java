@@ -5,9 +5,6 @@ import org.briarproject.bramble.test.TestUtils;
 import org.briarproject.bramble.transport.ReorderingWindow.Change;
 import org.junit.Test;
 
-import java.util.Arrays;
-import java.util.Collections;
-
 import static org.briarproject.bramble.api.transport.TransportConstants.REORDERING_WINDOW_SIZE;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -33,9 +30,9 @@ public class ReorderingWindowTest extends BrambleTestCase {
 		Change change = window.setSeen(0L);
 		// The window should slide by one element
 		assertEquals(1L, window.getBase());
-		assertEquals(Collections.singletonList((long) REORDERING_WINDOW_SIZE),
+		assertArrayEquals(new long[] {REORDERING_WINDOW_SIZE},
 				change.getAdded());
-		assertEquals(Collections.singletonList(0L), change.getRemoved());
+		assertArrayEquals(new long[] {0L}, change.getRemoved());
 		// All elements in the window should be unseen
 		assertArrayEquals(bitmap, window.getBitmap());
 	}
@@ -48,8 +45,8 @@ public class ReorderingWindowTest extends BrambleTestCase {
 		Change change = window.setSeen(1L);
 		// The window should not slide
 		assertEquals(0L, window.getBase());
-		assertEquals(Collections.emptyList(), change.getAdded());
-		assertEquals(Collections.singletonList(1L), change.getRemoved());
+		assertArrayEquals(new long[0], change.getAdded());
+		assertArrayEquals(new long[] {1L}, change.getRemoved());
 		// The second element in the window should be seen
 		bitmap[0] = 0x40; // 0100 0000
 		assertArrayEquals(bitmap, window.getBitmap());
@@ -64,9 +61,10 @@ public class ReorderingWindowTest extends BrambleTestCase {
 		Change change = window.setSeen(aboveMidpoint);
 		// The window should slide by one element
 		assertEquals(1L, window.getBase());
-		assertEquals(Collections.singletonList((long) REORDERING_WINDOW_SIZE),
+		assertArrayEquals(new long[] {REORDERING_WINDOW_SIZE},
 				change.getAdded());
-		assertEquals(Arrays.asList(0L, aboveMidpoint), change.getRemoved());
+		assertArrayEquals(new long[] {0L, aboveMidpoint},
+				change.getRemoved());
 		// The highest element below the midpoint should be seen
 		bitmap[bitmap.length / 2 - 1] = (byte) 0x01; // 0000 0001
 		assertArrayEquals(bitmap, window.getBitmap());
@@ -81,9 +79,9 @@ public class ReorderingWindowTest extends BrambleTestCase {
 		Change change = window.setSeen(0L);
 		// The window should slide by two elements
 		assertEquals(2L, window.getBase());
-		assertEquals(Arrays.asList((long) REORDERING_WINDOW_SIZE,
-				(long) (REORDERING_WINDOW_SIZE + 1)), change.getAdded());
-		assertEquals(Collections.singletonList(0L), change.getRemoved());
+		assertArrayEquals(new long[] {REORDERING_WINDOW_SIZE,
+				REORDERING_WINDOW_SIZE + 1}, change.getAdded());
+		assertArrayEquals(new long[] {0L}, change.getRemoved());
 		// All elements in the window should be unseen
 		assertArrayEquals(bitmap, window.getBitmap());
 	}
@@ -98,11 +96,36 @@ public class ReorderingWindowTest extends BrambleTestCase {
 		Change change = window.setSeen(aboveMidpoint);
 		// The window should slide by two elements
 		assertEquals(2L, window.getBase());
-		assertEquals(Arrays.asList((long) REORDERING_WINDOW_SIZE,
-				(long) (REORDERING_WINDOW_SIZE + 1)), change.getAdded());
-		assertEquals(Arrays.asList(0L, aboveMidpoint), change.getRemoved());
+		assertArrayEquals(new long[] {REORDERING_WINDOW_SIZE,
+				REORDERING_WINDOW_SIZE + 1}, change.getAdded());
+		assertArrayEquals(new long[] {0L, aboveMidpoint},
+				change.getRemoved());
 		// The second-highest element below the midpoint should be seen
 		bitmap[bitmap.length / 2 - 1] = (byte) 0x02; // 0000 0010
 		assertArrayEquals(bitmap, window.getBitmap());
 	}
+
+	@Test
+	public void testWindowLargerThanOneWordSlidesAcrossWordBoundary() {
+		// A window of 128 elements with the lowest 70 elements seen except
+		// element 0
+		byte[] bitmap = new byte[16];
+		for (int i = 0; i < 8; i++) bitmap[i] = (byte) 0xFF;
+		bitmap[0] = 0x7F; // 0111 1111
+		bitmap[8] = (byte) 0xFC; // 1111 1100
+		ReorderingWindow window = new ReorderingWindow(0L, bitmap);
+		assertEquals(128 - 69, window.getUnseen().length);
+		// Set the first element seen
+		Change change = window.setSeen(0L);
+		// The window should slide past all the seen elements
+		assertEquals(70L, window.getBase());
+		assertEquals(70, change.getAdded().length);
+		assertEquals(128L, change.getAdded()[0]);
+		assertEquals(197L, change.getAdded()[69]);
+		assertArrayEquals(new long[] {0L}, change.getRemoved());
+		// All elements in the window should be unseen
+		assertArrayEquals(new byte[16], window.getBitmap());
+		assertEquals(128, window.getUnseen().length);
+		assertEquals(70L, window.getUnseen()[0]);
+	}
 }
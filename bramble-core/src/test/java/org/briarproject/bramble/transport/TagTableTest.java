@@ -0,0 +1,100 @@
+package org.briarproject.bramble.transport;
+
+import org.briarproject.bramble.api.Bytes;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import static org.briarproject.bramble.api.transport.TransportConstants.TAG_LENGTH;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TagTableTest extends BrambleTestCase {
+
+	private final TagTable<Integer> table = new TagTable<>();
+
+	@Test
+	public void testPutGetAndRemove() {
+		byte[] tag = getRandomBytes(TAG_LENGTH);
+		assertNull(table.get(tag));
+		table.put(tag, 1);
+		assertEquals(Integer.valueOf(1), table.get(tag));
+		// Lookups should not depend on the identity of the array
+		assertEquals(Integer.valueOf(1), table.get(tag.clone()));
+		// Putting the same tag again should replace the value
+		table.put(tag.clone(), 2);
+		assertEquals(1, table.size());
+		assertEquals(Integer.valueOf(2), table.get(tag));
+		assertEquals(Integer.valueOf(2), table.remove(tag));
+		assertNull(table.get(tag));
+		assertNull(table.remove(tag));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void testCollidingTagsAreFoundAfterRemoval() {
+		// Tags with the same first four bytes have the same home slot
+		List<byte[]> tags = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			byte[] tag = getRandomBytes(TAG_LENGTH);
+			tag[0] = tag[1] = tag[2] = tag[3] = 0;
+			tags.add(tag);
+			table.put(tag, i);
+		}
+		// Remove every other tag
+		for (int i = 0; i < tags.size(); i += 2) {
+			assertEquals(Integer.valueOf(i), table.remove(tags.get(i)));
+		}
+		// The remaining tags should still be found
+		for (int i = 0; i < tags.size(); i++) {
+			if (i % 2 == 0) assertNull(table.get(tags.get(i)));
+			else assertEquals(Integer.valueOf(i), table.get(tags.get(i)));
+		}
+	}
+
+	@Test
+	public void testTableBehavesLikeMap() {
+		Random random = new Random();
+		Map<Bytes, Integer> map = new HashMap<>();
+		List<byte[]> tags = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			int op = random.nextInt(3);
+			if (op == 0 || tags.isEmpty()) {
+				byte[] tag = getRandomBytes(TAG_LENGTH);
+				tags.add(tag);
+				map.put(new Bytes(tag), i);
+				table.put(tag, i);
+			} else {
+				byte[] tag = tags.remove(random.nextInt(tags.size()));
+				assertEquals(map.remove(new Bytes(tag)), table.remove(tag));
+			}
+			assertEquals(map.size(), table.size());
+		}
+		for (Entry<Bytes, Integer> e : map.entrySet()) {
+			assertEquals(e.getValue(), table.get(e.getKey().getBytes()));
+		}
+	}
+
+	@Test
+	public void testRemoveIf() {
+		List<byte[]> tags = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			byte[] tag = getRandomBytes(TAG_LENGTH);
+			tags.add(tag);
+			table.put(tag, i);
+		}
+		table.removeIf(value -> value % 2 == 0);
+		assertEquals(500, table.size());
+		for (int i = 0; i < tags.size(); i++) {
+			if (i % 2 == 0) assertNull(table.get(tags.get(i)));
+			else assertEquals(Integer.valueOf(i), table.get(tags.get(i)));
+		}
+	}
+}
@@ -11,6 +11,12 @@ import javax.annotation.Nullable;
 @NotNullByDefault
 class AndroidDatabaseConfig implements DatabaseConfig {
 
+	/**
+	 * Enough connections for the UI and a few background threads to read
+	 * from the database in parallel.
+	 */
+	private static final int CONNECTION_POOL_SIZE = 4;
+
 	private final File dbDir, keyDir;
 	@Nullable
 	private final KeyStrengthener keyStrengthener;
@@ -37,4 +43,14 @@ class AndroidDatabaseConfig implements DatabaseConfig {
 	public KeyStrengthener getKeyStrengthener() {
 		return keyStrengthener;
 	}
+
+	@Override
+	public int getConnectionPoolSize() {
+		return CONNECTION_POOL_SIZE;
+	}
+
+	@Override
+	public boolean isQueryProfilingEnabled() {
+		return false;
+	}
 }
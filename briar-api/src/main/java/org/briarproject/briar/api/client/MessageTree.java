@@ -17,6 +17,11 @@ public interface MessageTree<T extends MessageTree.MessageNode> {
 
 	void clear();
 
+	/**
+	 * Returns an unmodifiable list of the nodes in depth-first order, with
+	 * siblings sorted by timestamp, and sets the level of each node. The
+	 * list is not affected by later changes to the tree.
+	 */
 	List<T> depthFirstOrder();
 
 	boolean contains(MessageId m);
@@ -13,6 +13,8 @@ import org.briarproject.briar.api.messaging.MessagingManager;
 import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @NotNullByDefault
@@ -47,6 +49,46 @@ public interface ConversationManager {
 	Collection<ConversationMessageHeader> getMessageHeaders(Transaction txn, ContactId c)
 			throws DbException;
 
+	/**
+	 * Returns the headers of up to the given number of messages in the given
+	 * private conversation with timestamps earlier than the given timestamp,
+	 * newest first. Any further messages with the same timestamp as the
+	 * oldest message returned are also included, so that the oldest
+	 * timestamp can be used to fetch the next page without skipping any
+	 * messages.
+	 */
+	List<ConversationMessageHeader> getMessageHeadersBefore(ContactId c,
+			long before, int limit) throws DbException;
+
+	/**
+	 * Returns the headers of up to the given number of messages in the given
+	 * private conversation with timestamps earlier than the given timestamp,
+	 * newest first. Any further messages with the same timestamp as the
+	 * oldest message returned are also included, so that the oldest
+	 * timestamp can be used to fetch the next page without skipping any
+	 * messages.
+	 */
+	List<ConversationMessageHeader> getMessageHeadersBefore(Transaction txn,
+			ContactId c, long before, int limit) throws DbException;
+
+	/**
+	 * Returns the headers of up to the given number of messages in the given
+	 * private conversation with timestamps later than the given timestamp,
+	 * oldest first. Any further messages with the same timestamp as the
+	 * newest message returned are also included.
+	 */
+	List<ConversationMessageHeader> getMessageHeadersAfter(ContactId c,
+			long after, int limit) throws DbException;
+
+	/**
+	 * Returns the headers of up to the given number of messages in the given
+	 * private conversation with timestamps later than the given timestamp,
+	 * oldest first. Any further messages with the same timestamp as the
+	 * newest message returned are also included.
+	 */
+	List<ConversationMessageHeader> getMessageHeadersAfter(Transaction txn,
+			ContactId c, long after, int limit) throws DbException;
+
 	/**
 	 * Returns the unified group count for all private conversation messages.
 	 */
@@ -57,6 +99,19 @@ public interface ConversationManager {
 	 */
 	GroupCount getGroupCount(Transaction txn, ContactId c) throws DbException;
 
+	/**
+	 * Returns the unified group counts for the private conversations with
+	 * all contacts, as when rendering the contact list.
+	 */
+	Map<ContactId, GroupCount> getAllGroupCounts() throws DbException;
+
+	/**
+	 * Returns the unified group counts for the private conversations with
+	 * all contacts, as when rendering the contact list.
+	 */
+	Map<ContactId, GroupCount> getAllGroupCounts(Transaction txn)
+			throws DbException;
+
 	/**
 	 * Updates the group count for the given incoming private conversation message
 	 * and broadcasts a corresponding event.
@@ -122,6 +177,26 @@ public interface ConversationManager {
 		Collection<ConversationMessageHeader> getMessageHeaders(Transaction txn,
 				ContactId contactId) throws DbException;
 
+		/**
+		 * Returns the headers of up to the given number of messages with
+		 * timestamps earlier than the given timestamp, newest first, plus
+		 * any further messages with the same timestamp as the oldest
+		 * message returned.
+		 */
+		List<ConversationMessageHeader> getMessageHeadersBefore(
+				Transaction txn, ContactId contactId, long before, int limit)
+				throws DbException;
+
+		/**
+		 * Returns the headers of up to the given number of messages with
+		 * timestamps later than the given timestamp, oldest first, plus
+		 * any further messages with the same timestamp as the newest
+		 * message returned.
+		 */
+		List<ConversationMessageHeader> getMessageHeadersAfter(
+				Transaction txn, ContactId contactId, long after, int limit)
+				throws DbException;
+
 		/**
 		 * Returns all conversation {@link MessageId}s for the given contact
 		 * this client is responsible for.
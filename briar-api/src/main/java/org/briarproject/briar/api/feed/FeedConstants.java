@@ -15,6 +15,9 @@ public interface FeedConstants {
 	/* the unit that applies to the fetch times */
 	TimeUnit FETCH_UNIT = MINUTES;
 
+	/* the maximum number of feeds that are fetched at the same time */
+	int MAX_CONCURRENT_FETCHES = 4;
+
 	// group metadata keys
 	String KEY_FEEDS = "feeds";
 	String KEY_FEED_URL = "feedURL";
@@ -28,5 +31,7 @@ public interface FeedConstants {
 	String KEY_FEED_ADDED = "feedAdded";
 	String KEY_FEED_UPDATED = "feedUpdated";
 	String KEY_FEED_LAST_ENTRY = "feedLastEntryTime";
+	String KEY_FEED_ETAG = "feedEtag";
+	String KEY_FEED_LAST_MODIFIED = "feedLastModified";
 
 }
@@ -0,0 +1,152 @@
+package org.briarproject.briar.client;
+
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.briar.api.client.MessageTree;
+import org.briarproject.briar.api.client.MessageTree.MessageNode;
+import org.briarproject.nullsafety.NotNullByDefault;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.briarproject.bramble.api.sync.MessageId.LENGTH;
+
+/**
+ * Compares {@link MessageTreeImpl} with the previous implementation,
+ * {@link SynchronizedMessageTree}, for a forum with the given number of
+ * posts. About a tenth of the posts start new threads and the rest reply to
+ * earlier posts. The posts are loaded in random order, as they would be from
+ * the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTreeBenchmark {
+
+	@Param({"1000", "50000"})
+	public int posts;
+
+	@Param({"synchronized", "incremental"})
+	public String implementation;
+
+	private final Random random = new Random();
+
+	private List<Node> nodes;
+	private MessageTree<Node> tree;
+
+	@Setup
+	public void setUp() {
+		nodes = new ArrayList<>(posts);
+		for (int i = 0; i < posts; i++) {
+			MessageId parentId = null;
+			if (i > 0 && random.nextInt(10) != 0)
+				parentId = nodes.get(random.nextInt(i)).id;
+			nodes.add(new Node(createMessageId(), parentId, i));
+		}
+		Collections.shuffle(nodes, random);
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpTree() {
+		tree = createTree();
+		tree.add(nodes);
+	}
+
+	/**
+	 * Loads all the posts and renders the forum, as when opening it.
+	 */
+	@Benchmark
+	public List<Node> load() {
+		MessageTree<Node> t = createTree();
+		t.add(nodes);
+		return t.depthFirstOrder();
+	}
+
+	/**
+	 * Adds a reply to a random post and renders the forum again, as when a
+	 * new post arrives while the forum is open.
+	 */
+	@Benchmark
+	public List<Node> addReply() {
+		MessageId parentId = nodes.get(random.nextInt(posts)).id;
+		tree.add(new Node(createMessageId(), parentId, random.nextInt(posts)));
+		return tree.depthFirstOrder();
+	}
+
+	/**
+	 * Renders the forum without any changes, as when the UI is recreated.
+	 */
+	@Benchmark
+	public List<Node> render() {
+		return tree.depthFirstOrder();
+	}
+
+	private MessageTree<Node> createTree() {
+		if (implementation.equals("synchronized"))
+			return new SynchronizedMessageTree<>();
+		return new MessageTreeImpl<>();
+	}
+
+	private MessageId createMessageId() {
+		byte[] id = new byte[LENGTH];
+		random.nextBytes(id);
+		return new MessageId(id);
+	}
+
+	@NotNullByDefault
+	static class Node implements MessageNode {
+
+		private final MessageId id;
+		@Nullable
+		private final MessageId parentId;
+		private final long timestamp;
+		private int level = 0;
+
+		private Node(MessageId id, @Nullable MessageId parentId,
+				long timestamp) {
+			this.id = id;
+			this.parentId = parentId;
+			this.timestamp = timestamp;
+		}
+
+		@Override
+		public MessageId getId() {
+			return id;
+		}
+
+		@Nullable
+		@Override
+		public MessageId getParentId() {
+			return parentId;
+		}
+
+		@Override
+		public void setLevel(int level) {
+			this.level = level;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+}
@@ -12,10 +12,16 @@ import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.briar.api.client.MessageTracker;
 import org.briarproject.briar.api.client.MessageTracker.GroupCount;
 import org.briarproject.briar.api.conversation.ConversationManager.ConversationClient;
+import org.briarproject.briar.api.conversation.ConversationMessageHeader;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.util.List;
+
 import javax.annotation.concurrent.Immutable;
 
+import static org.briarproject.briar.util.ConversationUtils.getPageAfter;
+import static org.briarproject.briar.util.ConversationUtils.getPageBefore;
+
 @Immutable
 @NotNullByDefault
 public abstract class ConversationClientImpl extends BdfIncomingMessageHook
@@ -38,4 +44,21 @@ public abstract class ConversationClientImpl extends BdfIncomingMessageHook
 		return messageTracker.getGroupCount(txn, groupId);
 	}
 
+	// Conversation clients other than private messaging only store a handful
+	// of messages per contact, so they page through all their headers
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersBefore(
+			Transaction txn, ContactId contactId, long before, int limit)
+			throws DbException {
+		return getPageBefore(getMessageHeaders(txn, contactId), before, limit);
+	}
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersAfter(
+			Transaction txn, ContactId contactId, long after, int limit)
+			throws DbException {
+		return getPageAfter(getMessageHeaders(txn, contactId), after, limit);
+	}
+
 }
@@ -7,15 +7,21 @@ import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.event.EventListener;
 import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.Message;
 import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.event.GroupRemovedEvent;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.briar.api.client.MessageTracker;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_LATEST_MSG;
@@ -24,13 +30,27 @@ import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_ST
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_UNREAD_COUNT;
 import static org.briarproject.briar.client.MessageTrackerConstants.MSG_KEY_READ;
 
-@Immutable
+/**
+ * Keeps the group counts decoded from group metadata in memory, so that
+ * rendering a list of groups or contacts doesn't decode the metadata of
+ * every group each time.
+ * <p>
+ * Read-only transactions can't run concurrently with write transactions, so
+ * counts are only cached by read-only transactions, which see committed
+ * state, and are removed from the cache whenever a write transaction stores
+ * a new count. Write transactions always read the count from the database,
+ * so an aborted write transaction never leaves a count in the cache. The
+ * counts of removed groups are dropped when the removal is broadcast.
+ */
+@ThreadSafe
 @NotNullByDefault
-class MessageTrackerImpl implements MessageTracker {
+class MessageTrackerImpl implements MessageTracker, EventListener {
 
 	private final DatabaseComponent db;
 	private final ClientHelper clientHelper;
 	private final Clock clock;
+	private final Map<GroupId, GroupCount> groupCounts =
+			new ConcurrentHashMap<>();
 
 	@Inject
 	MessageTrackerImpl(DatabaseComponent db, ClientHelper clientHelper,
@@ -111,6 +131,17 @@ class MessageTrackerImpl implements MessageTracker {
 	@Override
 	public GroupCount getGroupCount(Transaction txn, GroupId g)
 			throws DbException {
+		if (!txn.isReadOnly()) return loadGroupCount(txn, g);
+		GroupCount c = groupCounts.get(g);
+		if (c == null) {
+			c = loadGroupCount(txn, g);
+			groupCounts.put(g, c);
+		}
+		return c;
+	}
+
+	private GroupCount loadGroupCount(Transaction txn, GroupId g)
+			throws DbException {
 		try {
 			BdfDictionary d = clientHelper.getGroupMetadataAsDictionary(txn, g);
 			return new GroupCount(
@@ -125,6 +156,7 @@ class MessageTrackerImpl implements MessageTracker {
 
 	private void storeGroupCount(Transaction txn, GroupId g, GroupCount c)
 			throws DbException {
+		groupCounts.remove(g);
 		try {
 			BdfDictionary d = BdfDictionary.of(
 					new BdfEntry(GROUP_KEY_MSG_COUNT, c.getMsgCount()),
@@ -174,4 +206,11 @@ class MessageTrackerImpl implements MessageTracker {
 		storeGroupCount(txn, g, groupCount);
 	}
 
+	@Override
+	public void eventOccurred(Event e) {
+		if (e instanceof GroupRemovedEvent) {
+			GroupId g = ((GroupRemovedEvent) e).getGroup().getId();
+			groupCounts.remove(g);
+		}
+	}
 }
@@ -4,108 +4,229 @@ import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.briar.api.client.MessageTree;
 import org.briarproject.nullsafety.NotNullByDefault;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A {@link MessageTree} that keeps each node's children sorted by timestamp
+ * as nodes are added.
+ * <p>
+ * A single node is inserted into its parent's children by binary search.
+ * When a collection of nodes is added, each node is appended to its parent's
+ * children and only the lists that ended up out of order are sorted
+ * afterwards, once each.
+ * <p>
+ * Nodes may be added before their parents. They become part of the
+ * depth-first order when their parents are added.
+ * <p>
+ * The depth-first order is cached as an unmodifiable snapshot until the tree
+ * is next modified, so repeated calls to {@link #depthFirstOrder()} don't
+ * hold the lock or allocate.
+ */
 @ThreadSafe
 @NotNullByDefault
 public class MessageTreeImpl<T extends MessageTree.MessageNode>
 		implements MessageTree<T> {
 
+	private static final Comparator<Node<?>> COMPARATOR =
+			(n1, n2) -> Long.valueOf(n1.timestamp).compareTo(n2.timestamp);
+
+	/**
+	 * The parent of all nodes that don't have a parent.
+	 */
 	@GuardedBy("this")
-	private final Map<MessageId, List<T>> nodeMap = new HashMap<>();
+	private final Node<T> root = new Node<>();
 
 	@GuardedBy("this")
-	private final List<T> roots = new ArrayList<>();
+	private final Map<MessageId, Node<T>> nodeMap = new HashMap<>();
 
+	/**
+	 * The number of nodes that have been added.
+	 */
 	@GuardedBy("this")
-	private final List<List<T>> unsortedLists = new ArrayList<>();
+	private int size = 0;
 
-	@SuppressWarnings("UseCompareMethod")
-	private final Comparator<T> comparator = (o1, o2) ->
-			Long.valueOf(o1.getTimestamp()).compareTo(o2.getTimestamp());
+	@Nullable
+	private volatile List<T> snapshot = emptyList();
 
 	@Override
 	public synchronized void clear() {
-		roots.clear();
+		root.children = null;
 		nodeMap.clear();
+		size = 0;
+		snapshot = emptyList();
 	}
 
 	@Override
 	public synchronized void add(Collection<T> nodes) {
-		// add all nodes to the node map
-		for (T node : nodes) {
-			nodeMap.put(node.getId(), new ArrayList<>());
+		List<Node<T>> unsorted = new ArrayList<>();
+		for (T item : nodes) {
+			Node<T> node = getOrCreateNode(item.getId());
+			if (node.item != null) continue; // Already added
+			Node<T> parent = attach(node, item);
+			if (parent.append(node) && !parent.unsorted) {
+				parent.unsorted = true;
+				unsorted.add(parent);
+			}
 		}
-		// parse the nodes for dependencies
-		for (T node : nodes) {
-			parseNode(node);
+		for (Node<T> parent : unsorted) {
+			//noinspection Java8ListSort
+			Collections.sort(parent.getChildren(), COMPARATOR);
+			parent.unsorted = false;
 		}
-		sortUnsorted();
+		snapshot = null;
 	}
 
 	@Override
-	public synchronized void add(T node) {
-		add(Collections.singletonList(node));
+	public synchronized void add(T item) {
+		Node<T> node = getOrCreateNode(item.getId());
+		if (node.item != null) return; // Already added
+		attach(node, item).insert(node);
+		snapshot = null;
 	}
 
+	/**
+	 * Stores the given item in its node and returns the node's parent,
+	 * creating a placeholder for the parent if it hasn't been added yet.
+	 */
 	@GuardedBy("this")
-	private void markAsUnsorted(List<T> list) {
-		if (!unsortedLists.contains(list))
-			unsortedLists.add(list);
+	private Node<T> attach(Node<T> node, T item) {
+		node.item = item;
+		node.timestamp = item.getTimestamp();
+		size++;
+		MessageId parentId = item.getParentId();
+		return parentId == null ? root : getOrCreateNode(parentId);
 	}
 
 	@GuardedBy("this")
-	private void parseNode(T node) {
-		if (node.getParentId() == null) {
-			roots.add(node);
-			markAsUnsorted(roots);
-		} else {
-			// retrieve the parent's children
-			List<T> pChildren = nodeMap.get(node.getParentId());
-			pChildren.add(node);
-			markAsUnsorted(pChildren);
+	private Node<T> getOrCreateNode(MessageId m) {
+		Node<T> node = nodeMap.get(m);
+		if (node == null) {
+			node = new Node<>();
+			nodeMap.put(m, node);
 		}
+		return node;
 	}
 
-	@GuardedBy("this")
-	private void sortUnsorted() {
-		for (List<T> list : unsortedLists) {
-			//noinspection Java8ListSort
-			Collections.sort(list, comparator);
+	@Override
+	public List<T> depthFirstOrder() {
+		List<T> s = snapshot;
+		if (s != null) return s;
+		synchronized (this) {
+			s = snapshot;
+			if (s == null) {
+				s = unmodifiableList(traverse());
+				snapshot = s;
+			}
+			return s;
 		}
-		unsortedLists.clear();
 	}
 
+	/**
+	 * Traverses the tree iteratively, so that long chains of replies can't
+	 * overflow the stack, and sets the level of each node.
+	 */
 	@GuardedBy("this")
-	private void traverse(List<T> list, T node, int level) {
-		list.add(node);
-		List<T> children = nodeMap.get(node.getId());
-		node.setLevel(level);
-		for (T child : children) {
-			traverse(list, child, level + 1);
+	private List<T> traverse() {
+		List<T> orderedList = new ArrayList<>(size);
+		Deque<Node<T>> stack = new ArrayDeque<>();
+		root.level = -1;
+		pushChildren(stack, root);
+		while (!stack.isEmpty()) {
+			Node<T> node = stack.pop();
+			T item = node.item;
+			if (item == null) throw new AssertionError();
+			item.setLevel(node.level);
+			orderedList.add(item);
+			pushChildren(stack, node);
 		}
+		return orderedList;
 	}
 
-	@Override
-	public synchronized List<T> depthFirstOrder() {
-		List<T> orderedList = new ArrayList<>();
-		for (T root : roots) {
-			traverse(orderedList, root, 0);
+	@GuardedBy("this")
+	private void pushChildren(Deque<Node<T>> stack, Node<T> node) {
+		List<Node<T>> children = node.children;
+		if (children == null) return;
+		// Push in reverse order so the earliest child is popped first
+		for (int i = children.size() - 1; i >= 0; i--) {
+			Node<T> child = children.get(i);
+			child.level = node.level + 1;
+			stack.push(child);
 		}
-		return orderedList;
 	}
 
 	@Override
 	public synchronized boolean contains(MessageId m) {
-		return nodeMap.containsKey(m);
+		Node<T> node = nodeMap.get(m);
+		return node != null && node.item != null;
+	}
+
+	/**
+	 * A node in the tree. The item is null if the node is the root, or a
+	 * placeholder for a parent that hasn't been added yet. Placeholders are
+	 * never in their parents' children, so nor are their descendants.
+	 * <p>
+	 * All fields are guarded by the tree's lock.
+	 */
+	@NotNullByDefault
+	private static class Node<T> {
+
+		@Nullable
+		private T item = null;
+		private long timestamp = 0;
+		@Nullable
+		private List<Node<T>> children = null;
+		private boolean unsorted = false;
+		private int level = 0;
+
+		/**
+		 * Appends the given child to this node's children, returning true if
+		 * the children are no longer in timestamp order.
+		 */
+		private boolean append(Node<T> child) {
+			List<Node<T>> c = getChildren();
+			boolean outOfOrder = !c.isEmpty()
+					&& c.get(c.size() - 1).timestamp > child.timestamp;
+			c.add(child);
+			return outOfOrder;
+		}
+
+		/**
+		 * Inserts the given child into this node's children, after any
+		 * children with the same or earlier timestamps.
+		 */
+		private void insert(Node<T> child) {
+			List<Node<T>> c = getChildren();
+			int low = 0, high = c.size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (c.get(mid).timestamp <= child.timestamp) low = mid + 1;
+				else high = mid;
+			}
+			c.add(low, child);
+		}
+
+		private List<Node<T>> getChildren() {
+			List<Node<T>> c = children;
+			if (c == null) {
+				c = new ArrayList<>();
+				children = c;
+			}
+			return c;
+		}
 	}
 }
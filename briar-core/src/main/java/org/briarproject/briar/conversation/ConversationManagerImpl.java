@@ -1,6 +1,7 @@
 package org.briarproject.briar.conversation;
 
 import org.briarproject.bramble.api.client.ClientHelper;
+import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
@@ -20,7 +21,9 @@ import org.briarproject.nullsafety.NotNullByDefault;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -28,6 +31,8 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import static java.lang.Math.max;
+import static org.briarproject.briar.util.ConversationUtils.getPageAfter;
+import static org.briarproject.briar.util.ConversationUtils.getPageBefore;
 
 @ThreadSafe
 @NotNullByDefault
@@ -72,6 +77,47 @@ class ConversationManagerImpl implements ConversationManager {
 		return messages;
 	}
 
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersBefore(ContactId c,
+			long before, int limit) throws DbException {
+		return db.transactionWithResult(true,
+				txn -> getMessageHeadersBefore(txn, c, before, limit));
+	}
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersBefore(
+			Transaction txn, ContactId c, long before, int limit)
+			throws DbException {
+		if (limit < 1) throw new IllegalArgumentException();
+		// Each client returns a full page, so the merged page is complete
+		List<ConversationMessageHeader> messages = new ArrayList<>();
+		for (ConversationClient client : clients) {
+			messages.addAll(
+					client.getMessageHeadersBefore(txn, c, before, limit));
+		}
+		return getPageBefore(messages, before, limit);
+	}
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersAfter(ContactId c,
+			long after, int limit) throws DbException {
+		return db.transactionWithResult(true,
+				txn -> getMessageHeadersAfter(txn, c, after, limit));
+	}
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersAfter(
+			Transaction txn, ContactId c, long after, int limit)
+			throws DbException {
+		if (limit < 1) throw new IllegalArgumentException();
+		List<ConversationMessageHeader> messages = new ArrayList<>();
+		for (ConversationClient client : clients) {
+			messages.addAll(
+					client.getMessageHeadersAfter(txn, c, after, limit));
+		}
+		return getPageAfter(messages, after, limit);
+	}
+
 	@Override
 	public GroupCount getGroupCount(ContactId contactId) throws DbException {
 		return db.transactionWithResult(true,
@@ -81,10 +127,38 @@ class ConversationManagerImpl implements ConversationManager {
 	@Override
 	public GroupCount getGroupCount(Transaction txn, ContactId contactId)
 			throws DbException {
+		List<GroupCount> counts = new ArrayList<>(clients.size());
+		for (ConversationClient client : clients) {
+			counts.add(client.getGroupCount(txn, contactId));
+		}
+		return sum(counts);
+	}
+
+	@Override
+	public Map<ContactId, GroupCount> getAllGroupCounts() throws DbException {
+		return db.transactionWithResult(true, this::getAllGroupCounts);
+	}
+
+	@Override
+	public Map<ContactId, GroupCount> getAllGroupCounts(Transaction txn)
+			throws DbException {
+		// Load the contacts once rather than once per contact and client
+		Map<ContactId, GroupCount> allCounts = new HashMap<>();
+		for (Contact c : db.getContacts(txn)) {
+			List<GroupCount> counts = new ArrayList<>(clients.size());
+			for (ConversationClient client : clients) {
+				GroupId g = client.getContactGroup(c).getId();
+				counts.add(messageTracker.getGroupCount(txn, g));
+			}
+			allCounts.put(c.getId(), sum(counts));
+		}
+		return allCounts;
+	}
+
+	private GroupCount sum(List<GroupCount> counts) {
 		int msgCount = 0, unreadCount = 0;
 		long latestTime = 0;
-		for (ConversationClient client : clients) {
-			GroupCount count = client.getGroupCount(txn, contactId);
+		for (GroupCount count : counts) {
 			msgCount += count.getMsgCount();
 			unreadCount += count.getUnreadCount();
 			if (count.getLatestMsgTime() > latestTime)
@@ -18,10 +18,18 @@ interface FeedFactory {
 
 	/**
 	 * Creates a new updated feed, based on the given existing feed,
-	 * new metadata from the given {@link SyndFeed}
-	 * and the time of the last feed entry.
+	 * new metadata from the given {@link SyndFeed},
+	 * the time of the last feed entry
+	 * and the ETag and Last-Modified headers of the response, if any.
 	 */
-	Feed updateFeed(Feed feed, SyndFeed sf, long lastEntryTime);
+	Feed updateFeed(Feed feed, SyndFeed sf, long lastEntryTime,
+			@Nullable String etag, @Nullable String lastModified);
+
+	/**
+	 * Creates a new updated feed, based on the given existing feed,
+	 * for a feed that hasn't been modified since it was last fetched.
+	 */
+	Feed updateUnmodifiedFeed(Feed feed);
 
 	/**
 	 * De-serializes a {@link BdfDictionary} into a {@link Feed}.
@@ -49,14 +49,18 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
@@ -65,6 +69,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.sort;
 import static java.util.logging.Level.WARNING;
@@ -78,6 +83,7 @@ import static org.briarproject.briar.api.feed.FeedConstants.FETCH_DELAY_INITIAL;
 import static org.briarproject.briar.api.feed.FeedConstants.FETCH_INTERVAL;
 import static org.briarproject.briar.api.feed.FeedConstants.FETCH_UNIT;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEEDS;
+import static org.briarproject.briar.api.feed.FeedConstants.MAX_CONCURRENT_FETCHES;
 import static org.briarproject.briar.util.HtmlUtils.cleanAll;
 import static org.briarproject.briar.util.HtmlUtils.cleanArticle;
 
@@ -172,18 +178,22 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	@Override
 	public Feed addFeed(String url) throws DbException, IOException {
 		// fetch feed to get posts and metadata
-		SyndFeed sf = fetchAndCleanFeed(url);
-		return addFeed(url, sf);
+		Response response = getFeedResponse(url, null, null);
+		SyndFeed sf = fetchAndCleanFeed(getFeedInputStream(response));
+		return addFeed(url, sf, getHeader(response, "ETag"),
+				getHeader(response, "Last-Modified"));
 	}
 
 	@Override
 	public Feed addFeed(InputStream in) throws DbException, IOException {
 		// fetch feed to get posts and metadata
 		SyndFeed sf = fetchAndCleanFeed(in);
-		return addFeed(null, sf);
+		return addFeed(null, sf, null, null);
 	}
 
-	private Feed addFeed(@Nullable String url, SyndFeed sf) throws DbException {
+	private Feed addFeed(@Nullable String url, SyndFeed sf,
+			@Nullable String etag, @Nullable String lastModified)
+			throws DbException {
 		// extract properties from the feed
 		RssProperties properties = new RssProperties(url, sf.getTitle(),
 				sf.getDescription(), sf.getAuthor(), sf.getLink(), sf.getUri());
@@ -210,7 +220,8 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 
 		// post entries
 		long lastEntryTime = postFeedEntries(feed, sf.getEntries());
-		Feed updatedFeed = feedFactory.updateFeed(feed, sf, lastEntryTime);
+		Feed updatedFeed = feedFactory.updateFeed(feed, sf, lastEntryTime,
+				etag, lastModified);
 
 		// store feed metadata again to also store last entry time
 		updateFeeds(singletonList(updatedFeed));
@@ -310,6 +321,10 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	 * We can not do this within one database {@link Transaction},
 	 * because fetching can take a long time
 	 * and we can not block the database that long.
+	 * <p>
+	 * Up to {@code MAX_CONCURRENT_FETCHES} feeds are fetched at the same time,
+	 * on the calling thread and the {@link IoExecutor}. This method blocks
+	 * until all the fetches have finished.
 	 */
 	@Wakeful
 	void fetchFeeds() {
@@ -330,21 +345,21 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 			return;
 		}
 
-		// Fetch and update all feeds
-		List<Feed> updatedFeeds = new ArrayList<>(feeds.size());
-		for (Feed feed : feeds) {
-			try {
-				String url = feed.getProperties().getUrl();
-				if (url == null) continue;
-				// fetch and clean feed
-				SyndFeed sf = fetchAndCleanFeed(url);
-				// sort and add new entries
-				long lastEntryTime = postFeedEntries(feed, sf.getEntries());
-				updatedFeeds.add(
-						feedFactory.updateFeed(feed, sf, lastEntryTime));
-			} catch (IOException | DbException e) {
-				logException(LOG, WARNING, e);
-			}
+		// Fetch and update all feeds. The feeds are fetched on this thread
+		// and on the IO executor. If the executor discards tasks because
+		// we're shutting down, this thread fetches the remaining feeds
+		// itself, so we never wait for a task that won't run
+		FeedFetcher fetcher = new FeedFetcher(feeds);
+		int helpers = Math.min(MAX_CONCURRENT_FETCHES, feeds.size()) - 1;
+		for (int i = 0; i < helpers; i++) ioExecutor.execute(fetcher::fetch);
+		fetcher.fetch();
+		List<Feed> updatedFeeds;
+		try {
+			updatedFeeds = fetcher.awaitFetches();
+		} catch (InterruptedException e) {
+			LOG.warning("Interrupted while waiting for feeds to be fetched");
+			Thread.currentThread().interrupt();
+			return;
 		}
 
 		// Store updated feeds
@@ -356,8 +371,28 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 		LOG.info("Done updating RSS feeds");
 	}
 
-	private SyndFeed fetchAndCleanFeed(String url) throws IOException {
-		return fetchAndCleanFeed(getFeedInputStream(url));
+	/**
+	 * Fetches the given feed and posts any new entries to its blog, returning
+	 * the updated feed. If the feed has been fetched before and the server
+	 * reports that it hasn't been modified since then, the feed is not
+	 * downloaded or parsed again.
+	 */
+	private Feed fetchAndUpdateFeed(Feed feed, String url)
+			throws IOException, DbException {
+		Response response = getFeedResponse(url, feed.getEtag(),
+				feed.getLastModified());
+		if (response.code() == HTTP_NOT_MODIFIED) {
+			response.close();
+			LOG.info("Feed has not been modified");
+			return feedFactory.updateUnmodifiedFeed(feed);
+		}
+		// fetch and clean feed
+		SyndFeed sf = fetchAndCleanFeed(getFeedInputStream(response));
+		// sort and add new entries
+		long lastEntryTime = postFeedEntries(feed, sf.getEntries());
+		return feedFactory.updateFeed(feed, sf, lastEntryTime,
+				getHeader(response, "ETag"),
+				getHeader(response, "Last-Modified"));
 	}
 
 	private SyndFeed fetchAndCleanFeed(InputStream in) throws IOException {
@@ -390,20 +425,44 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 		return sf;
 	}
 
-	private InputStream getFeedInputStream(String url) throws IOException {
+	/**
+	 * Requests the feed from the given URL. If an ETag or Last-Modified value
+	 * is given, the request is conditional and the server may respond with
+	 * 304 Not Modified.
+	 */
+	private Response getFeedResponse(String url, @Nullable String etag,
+			@Nullable String lastModified) throws IOException {
 		// Build Request
-		Request request = new Request.Builder()
-				.url(url)
-				.build();
+		Request.Builder builder = new Request.Builder()
+				.url(url);
+		if (etag != null) builder.header("If-None-Match", etag);
+		if (lastModified != null)
+			builder.header("If-Modified-Since", lastModified);
 
 		// Execute Request
 		OkHttpClient client = httpClientProvider.get();
-		Response response = client.newCall(request).execute();
+		return client.newCall(builder.build()).execute();
+	}
+
+	private InputStream getFeedInputStream(Response response)
+			throws IOException {
 		ResponseBody body = response.body();
 		if (body != null) return body.byteStream();
+		response.close();
 		throw new IOException("Empty response body");
 	}
 
+	/**
+	 * Returns the value of the given header if the response was successful,
+	 * or null. Headers from unsuccessful responses aren't stored, as they
+	 * don't describe the feed.
+	 */
+	@Nullable
+	private String getHeader(Response response, String name) {
+		if (!response.isSuccessful()) return null;
+		return response.header(name);
+	}
+
 	private SyndFeed getSyndFeed(InputStream stream) throws IOException {
 
 		SyndFeedInput input = new SyndFeedInput();
@@ -417,28 +476,34 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	private long postFeedEntries(Feed feed, List<SyndEntry> entries)
 			throws DbException {
 
-		return db.transactionWithResult(false, txn -> {
-			long lastEntryTime = feed.getLastEntryTime();
-			//noinspection Java8ListSort
-			sort(entries, getEntryComparator());
-			for (SyndEntry entry : entries) {
-				long entryTime;
-				if (entry.getPublishedDate() != null) {
-					entryTime = entry.getPublishedDate().getTime();
-				} else if (entry.getUpdatedDate() != null) {
-					entryTime = entry.getUpdatedDate().getTime();
-				} else {
-					// no time information available, ignore this entry
-					LOG.warning("Entry has no date, ignored.");
-					continue;
-				}
-				if (entryTime > feed.getLastEntryTime()) {
-					postEntry(txn, feed, entry);
-					if (entryTime > lastEntryTime) lastEntryTime = entryTime;
-				}
+		// Find the entries that are newer than the last entry we posted
+		List<SyndEntry> newEntries = new ArrayList<>();
+		long lastEntryTime = feed.getLastEntryTime();
+		for (SyndEntry entry : entries) {
+			long entryTime;
+			if (entry.getPublishedDate() != null) {
+				entryTime = entry.getPublishedDate().getTime();
+			} else if (entry.getUpdatedDate() != null) {
+				entryTime = entry.getUpdatedDate().getTime();
+			} else {
+				// no time information available, ignore this entry
+				LOG.warning("Entry has no date, ignored.");
+				continue;
 			}
-			return lastEntryTime;
+			if (entryTime > feed.getLastEntryTime()) {
+				newEntries.add(entry);
+				if (entryTime > lastEntryTime) lastEntryTime = entryTime;
+			}
+		}
+		// Don't start a transaction if there's nothing to post
+		if (newEntries.isEmpty()) return lastEntryTime;
+
+		//noinspection Java8ListSort
+		sort(newEntries, getEntryComparator());
+		db.transaction(false, txn -> {
+			for (SyndEntry entry : newEntries) postEntry(txn, feed, entry);
 		});
+		return lastEntryTime;
 	}
 
 	private void postEntry(Transaction txn, Feed feed, SyndEntry entry) {
@@ -526,4 +591,59 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 		return contactGroupFactory.createLocalGroup(CLIENT_ID, MAJOR_VERSION);
 	}
 
+	/**
+	 * Fetches a list of feeds on any number of threads. Each thread that
+	 * calls {@link #fetch()} takes feeds from the list until none are left.
+	 */
+	private class FeedFetcher {
+
+		private final Object lock = new Object();
+		private final List<Feed> updatedFeeds = new CopyOnWriteArrayList<>();
+
+		@GuardedBy("lock")
+		private final Queue<Feed> queue;
+
+		@GuardedBy("lock")
+		private int active = 0;
+
+		private FeedFetcher(List<Feed> feeds) {
+			queue = new LinkedList<>(feeds);
+		}
+
+		private void fetch() {
+			while (true) {
+				Feed feed;
+				synchronized (lock) {
+					feed = queue.poll();
+					if (feed == null) return;
+					active++;
+				}
+				try {
+					String url = feed.getProperties().getUrl();
+					if (url != null) {
+						updatedFeeds.add(fetchAndUpdateFeed(feed, url));
+					}
+				} catch (IOException | DbException e) {
+					logException(LOG, WARNING, e);
+				} finally {
+					synchronized (lock) {
+						active--;
+						if (active == 0) lock.notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Waits for the feeds that are being fetched by other threads and
+		 * returns the updated feeds. This must only be called after
+		 * {@link #fetch()} has returned on the calling thread.
+		 */
+		private List<Feed> awaitFetches() throws InterruptedException {
+			synchronized (lock) {
+				while (active > 0) lock.wait();
+			}
+			return updatedFeeds;
+		}
+	}
 }
@@ -2,6 +2,9 @@ package org.briarproject.briar.introduction;
 
 interface IntroductionConstants {
 
+	// Local group metadata keys
+	String GROUP_KEY_SESSIONS_INDEXED = "sessionsIndexed";
+
 	// Message metadata keys
 	String MSG_KEY_MESSAGE_TYPE = "messageType";
 	String MSG_KEY_SESSION_ID = "sessionId";
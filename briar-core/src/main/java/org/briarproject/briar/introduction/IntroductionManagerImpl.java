@@ -9,6 +9,7 @@ import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager;
 import org.briarproject.bramble.api.contact.ContactManager.ContactHook;
 import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
@@ -66,6 +67,7 @@ import static org.briarproject.briar.introduction.IntroduceeState.REMOTE_DECLINE
 import static org.briarproject.briar.introduction.IntroducerState.A_DECLINED;
 import static org.briarproject.briar.introduction.IntroducerState.B_DECLINED;
 import static org.briarproject.briar.introduction.IntroducerState.START;
+import static org.briarproject.briar.introduction.IntroductionConstants.GROUP_KEY_SESSIONS_INDEXED;
 import static org.briarproject.briar.introduction.MessageType.ABORT;
 import static org.briarproject.briar.introduction.MessageType.ACCEPT;
 import static org.briarproject.briar.introduction.MessageType.ACTIVATE;
@@ -129,12 +131,50 @@ class IntroductionManagerImpl extends ConversationClientImpl
 	@Override
 	public void onDatabaseOpened(Transaction txn) throws DbException {
 		// Create a local group to store protocol sessions
-		if (db.containsGroup(txn, localGroup.getId())) return;
-		db.addGroup(txn, localGroup);
+		try {
+			if (db.containsGroup(txn, localGroup.getId())) {
+				// Index any sessions that were stored before sessions were
+				// indexed
+				if (!areSessionsIndexed(txn)) {
+					indexSessions(txn);
+					setSessionsIndexed(txn);
+				}
+				return;
+			}
+			db.addGroup(txn, localGroup);
+			setSessionsIndexed(txn);
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
 		// Set up groups for communication with any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
 	}
 
+	private boolean areSessionsIndexed(Transaction txn)
+			throws DbException, FormatException {
+		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn,
+				localGroup.getId());
+		return meta.getBoolean(GROUP_KEY_SESSIONS_INDEXED, false);
+	}
+
+	private void setSessionsIndexed(Transaction txn)
+			throws DbException, FormatException {
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_SESSIONS_INDEXED, true));
+		clientHelper.mergeGroupMetadata(txn, localGroup.getId(), meta);
+	}
+
+	private void indexSessions(Transaction txn)
+			throws DbException, FormatException {
+		// All messages in the local group store sessions
+		Map<MessageId, BdfDictionary> results = clientHelper
+				.getMessageMetadataAsDictionary(txn, localGroup.getId());
+		for (Entry<MessageId, BdfDictionary> e : results.entrySet()) {
+			SessionId sessionId = sessionParser.getSessionId(e.getValue());
+			db.addSession(txn, localGroup.getId(), sessionId, e.getKey());
+		}
+	}
+
 	@Override
 	public void addingContact(Transaction txn, Contact c) throws DbException {
 		// Create a group to share with the contact
@@ -197,7 +237,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 		if (ss == null) {
 			if (meta.getMessageType() != REQUEST) throw new FormatException();
 			if (newIntroduceeSession == null) throw new AssertionError();
-			storageId = createStorageId(txn);
+			storageId = createStorageId(txn, sessionId);
 			session = handleMessage(txn, m, body, meta.getMessageType(),
 					newIntroduceeSession, introduceeEngine);
 		} else {
@@ -263,19 +303,20 @@ class IntroductionManagerImpl extends ConversationClientImpl
 	private StoredSession getSession(Transaction txn,
 			@Nullable SessionId sessionId) throws DbException, FormatException {
 		if (sessionId == null) return null;
-		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, localGroup.getId(), query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId =
+				db.getSessionMessageId(txn, localGroup.getId(), sessionId);
+		if (storageId == null) return null;
+		BdfDictionary d =
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId);
+		return new StoredSession(storageId, d);
 	}
 
-	private MessageId createStorageId(Transaction txn) throws DbException {
+	private MessageId createStorageId(Transaction txn, SessionId sessionId)
+			throws DbException {
 		Message m = clientHelper
 				.createMessageForStoringMetadata(localGroup.getId());
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		db.addSession(txn, localGroup.getId(), sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -354,7 +395,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 						alice ? groupId2 : groupId1,
 						alice ? c2.getAuthor() : c1.getAuthor()
 				);
-				storageId = createStorageId(txn);
+				storageId = createStorageId(txn, sessionId);
 			} else {
 				// An earlier request exists, so we already have a session
 				session = sessionParser.parseIntroducerSession(ss.bdfSession);
@@ -10,7 +10,7 @@ import org.briarproject.nullsafety.NotNullByDefault;
 @NotNullByDefault
 interface SessionParser {
 
-	BdfDictionary getSessionQuery(SessionId s);
+	SessionId getSessionId(BdfDictionary d) throws FormatException;
 
 	Role getRole(BdfDictionary d) throws FormatException;
 
@@ -7,7 +7,6 @@ import org.briarproject.bramble.api.crypto.AgreementPublicKey;
 import org.briarproject.bramble.api.crypto.PrivateKey;
 import org.briarproject.bramble.api.crypto.PublicKey;
 import org.briarproject.bramble.api.data.BdfDictionary;
-import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.plugin.TransportId;
 import org.briarproject.bramble.api.properties.TransportProperties;
@@ -65,11 +64,6 @@ class SessionParserImpl implements SessionParser {
 		this.clientHelper = clientHelper;
 	}
 
-	@Override
-	public BdfDictionary getSessionQuery(SessionId s) {
-		return BdfDictionary.of(new BdfEntry(SESSION_KEY_SESSION_ID, s));
-	}
-
 	@Override
 	public Role getRole(BdfDictionary d) throws FormatException {
 		return Role.fromValue(d.getInt(SESSION_KEY_ROLE));
@@ -162,7 +156,8 @@ class SessionParserImpl implements SessionParser {
 		return d.getInt(SESSION_KEY_STATE);
 	}
 
-	private SessionId getSessionId(BdfDictionary d) throws FormatException {
+	@Override
+	public SessionId getSessionId(BdfDictionary d) throws FormatException {
 		byte[] b = d.getRaw(SESSION_KEY_SESSION_ID);
 		return new SessionId(b);
 	}
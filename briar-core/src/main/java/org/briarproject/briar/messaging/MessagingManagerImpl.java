@@ -57,10 +57,13 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.max;
+import static java.util.Collections.min;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.client.ContactGroupConstants.GROUP_KEY_CONTACT_ID;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_BODY_LENGTH;
@@ -84,6 +87,8 @@ import static org.briarproject.briar.messaging.MessagingConstants.MSG_KEY_HAS_TE
 import static org.briarproject.briar.messaging.MessagingConstants.MSG_KEY_LOCAL;
 import static org.briarproject.briar.messaging.MessagingConstants.MSG_KEY_MSG_TYPE;
 import static org.briarproject.briar.messaging.MessagingConstants.MSG_KEY_TIMESTAMP;
+import static org.briarproject.briar.util.ConversationUtils.getPageAfter;
+import static org.briarproject.briar.util.ConversationUtils.getPageBefore;
 
 @Immutable
 @NotNullByDefault
@@ -414,29 +419,11 @@ class MessagingManagerImpl implements MessagingManager, IncomingMessageHook,
 		}
 		Collection<ConversationMessageHeader> headers = new ArrayList<>();
 		for (MessageStatus s : statuses) {
-			MessageId id = s.getMessageId();
-			BdfDictionary meta = metadata.get(id);
+			BdfDictionary meta = metadata.get(s.getMessageId());
 			if (meta == null) continue;
 			try {
-				// Message type is null for version 0.0 private messages
-				Integer messageType = meta.getOptionalInt(MSG_KEY_MSG_TYPE);
-				if (messageType != null && messageType != PRIVATE_MESSAGE)
-					continue;
-				long timestamp = meta.getLong(MSG_KEY_TIMESTAMP);
-				boolean local = meta.getBoolean(MSG_KEY_LOCAL);
-				boolean read = meta.getBoolean(MSG_KEY_READ);
-				if (messageType == null) {
-					headers.add(new PrivateMessageHeader(id, g, timestamp,
-							local, read, s.isSent(), s.isSeen(), true,
-							emptyList(), NO_AUTO_DELETE_TIMER));
-				} else {
-					boolean hasText = meta.getBoolean(MSG_KEY_HAS_TEXT);
-					long timer = meta.getLong(MSG_KEY_AUTO_DELETE_TIMER,
-							NO_AUTO_DELETE_TIMER);
-					headers.add(new PrivateMessageHeader(id, g, timestamp,
-							local, read, s.isSent(), s.isSeen(), hasText,
-							parseAttachmentHeaders(g, meta), timer));
-				}
+				PrivateMessageHeader h = parseMessageHeader(g, meta, s);
+				if (h != null) headers.add(h);
 			} catch (FormatException e) {
 				throw new DbException(e);
 			}
@@ -444,6 +431,95 @@ class MessagingManagerImpl implements MessagingManager, IncomingMessageHook,
 		return headers;
 	}
 
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersBefore(
+			Transaction txn, ContactId c, long before, int limit)
+			throws DbException {
+		GroupId g = getContactGroup(db.getContact(txn, c)).getId();
+		List<ConversationMessageHeader> headers = new ArrayList<>();
+		// Attachments are stored in the same group as private messages, so
+		// keep reading until we have a full page or run out of messages
+		long next = before;
+		while (headers.size() < limit) {
+			Map<MessageId, Long> ids =
+					db.getMessageIdsBefore(txn, g, next, limit);
+			if (ids.isEmpty()) break;
+			loadMessageHeaders(txn, c, g, ids.keySet(), headers);
+			if (ids.size() < limit) break;
+			// Continue from the oldest message returned, even if it wasn't
+			// listed because it's an attachment or has been deleted
+			next = min(ids.values());
+		}
+		return getPageBefore(headers, before, limit);
+	}
+
+	@Override
+	public List<ConversationMessageHeader> getMessageHeadersAfter(
+			Transaction txn, ContactId c, long after, int limit)
+			throws DbException {
+		GroupId g = getContactGroup(db.getContact(txn, c)).getId();
+		List<ConversationMessageHeader> headers = new ArrayList<>();
+		long next = after;
+		while (headers.size() < limit) {
+			Map<MessageId, Long> ids =
+					db.getMessageIdsAfter(txn, g, next, limit);
+			if (ids.isEmpty()) break;
+			loadMessageHeaders(txn, c, g, ids.keySet(), headers);
+			if (ids.size() < limit) break;
+			next = max(ids.values());
+		}
+		return getPageAfter(headers, after, limit);
+	}
+
+	/**
+	 * Adds the headers of any private messages among the given messages to
+	 * the given list.
+	 */
+	private void loadMessageHeaders(Transaction txn, ContactId c, GroupId g,
+			Collection<MessageId> ids, List<ConversationMessageHeader> headers)
+			throws DbException {
+		try {
+			for (MessageId id : ids) {
+				BdfDictionary meta =
+						clientHelper.getMessageMetadataAsDictionary(txn, id);
+				// Deleted messages have no metadata
+				if (meta.isEmpty()) continue;
+				MessageStatus s = db.getMessageStatus(txn, c, id);
+				PrivateMessageHeader h = parseMessageHeader(g, meta, s);
+				if (h != null) headers.add(h);
+			}
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Returns the header of the given message, or null if the message is
+	 * not a private message.
+	 */
+	@Nullable
+	private PrivateMessageHeader parseMessageHeader(GroupId g,
+			BdfDictionary meta, MessageStatus s) throws FormatException {
+		// Message type is null for version 0.0 private messages
+		Integer messageType = meta.getOptionalInt(MSG_KEY_MSG_TYPE);
+		if (messageType != null && messageType != PRIVATE_MESSAGE) return null;
+		MessageId id = s.getMessageId();
+		long timestamp = meta.getLong(MSG_KEY_TIMESTAMP);
+		boolean local = meta.getBoolean(MSG_KEY_LOCAL);
+		boolean read = meta.getBoolean(MSG_KEY_READ);
+		if (messageType == null) {
+			return new PrivateMessageHeader(id, g, timestamp, local, read,
+					s.isSent(), s.isSeen(), true, emptyList(),
+					NO_AUTO_DELETE_TIMER);
+		}
+		boolean hasText = meta.getBoolean(MSG_KEY_HAS_TEXT);
+		long timer = meta.getLong(MSG_KEY_AUTO_DELETE_TIMER,
+				NO_AUTO_DELETE_TIMER);
+		return new PrivateMessageHeader(id, g, timestamp, local, read,
+				s.isSent(), s.isSeen(), hasText,
+				parseAttachmentHeaders(g, meta), timer);
+	}
+
 	@Override
 	public Set<MessageId> getMessageIds(Transaction txn, ContactId c)
 			throws DbException {
@@ -8,6 +8,7 @@ import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager.ContactHook;
 import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
@@ -63,6 +64,7 @@ import static org.briarproject.briar.privategroup.invitation.CreatorState.ERROR;
 import static org.briarproject.briar.privategroup.invitation.CreatorState.INVITED;
 import static org.briarproject.briar.privategroup.invitation.CreatorState.JOINED;
 import static org.briarproject.briar.privategroup.invitation.CreatorState.START;
+import static org.briarproject.briar.privategroup.invitation.GroupInvitationConstants.GROUP_KEY_SESSIONS_INDEXED;
 import static org.briarproject.briar.privategroup.invitation.MessageType.ABORT;
 import static org.briarproject.briar.privategroup.invitation.MessageType.INVITE;
 import static org.briarproject.briar.privategroup.invitation.MessageType.JOIN;
@@ -117,12 +119,55 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		// Create a local group to indicate that we've set this client up
 		Group localGroup = contactGroupFactory.createLocalGroup(CLIENT_ID,
 				MAJOR_VERSION);
-		if (db.containsGroup(txn, localGroup.getId())) return;
-		db.addGroup(txn, localGroup);
+		try {
+			if (db.containsGroup(txn, localGroup.getId())) {
+				// Index any sessions that were stored before sessions were
+				// indexed
+				if (!areSessionsIndexed(txn, localGroup.getId())) {
+					indexSessions(txn);
+					setSessionsIndexed(txn, localGroup.getId());
+				}
+				return;
+			}
+			db.addGroup(txn, localGroup);
+			setSessionsIndexed(txn, localGroup.getId());
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
 		// Set things up for any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
 	}
 
+	private boolean areSessionsIndexed(Transaction txn, GroupId localGroupId)
+			throws DbException, FormatException {
+		BdfDictionary meta =
+				clientHelper.getGroupMetadataAsDictionary(txn, localGroupId);
+		return meta.getBoolean(GROUP_KEY_SESSIONS_INDEXED, false);
+	}
+
+	private void setSessionsIndexed(Transaction txn, GroupId localGroupId)
+			throws DbException, FormatException {
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_SESSIONS_INDEXED, true));
+		clientHelper.mergeGroupMetadata(txn, localGroupId, meta);
+	}
+
+	private void indexSessions(Transaction txn)
+			throws DbException, FormatException {
+		BdfDictionary query = sessionParser.getAllSessionsQuery();
+		for (Contact c : db.getContacts(txn)) {
+			GroupId contactGroupId = getContactGroup(c).getId();
+			Map<MessageId, BdfDictionary> results = clientHelper
+					.getMessageMetadataAsDictionary(txn, contactGroupId, query);
+			for (Entry<MessageId, BdfDictionary> e : results.entrySet()) {
+				Session<?> s = sessionParser.parseSession(contactGroupId,
+						e.getValue());
+				db.addSession(txn, contactGroupId,
+						getSessionId(s.getPrivateGroupId()), e.getKey());
+			}
+		}
+	}
+
 	@Override
 	public void addingContact(Transaction txn, Contact c) throws DbException {
 		// Create a group to share with the contact
@@ -153,7 +198,8 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 				c.getAuthor().getId().equals(pg.getCreator().getId());
 		if (isOur || isTheirs) {
 			// we are creator or invitee, create a left session for each role
-			MessageId storageId = createStorageId(txn, contactGroupId);
+			MessageId storageId = createStorageId(txn, contactGroupId,
+					getSessionId(pg.getId()));
 			Session<?> session;
 			if (isOur) {
 				session = new CreatorSession(contactGroupId, pg.getId(), null,
@@ -216,7 +262,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		MessageId storageId;
 		if (ss == null) {
 			session = handleFirstMessage(txn, m, body, meta);
-			storageId = createStorageId(txn, m.getGroupId());
+			storageId = createStorageId(txn, m.getGroupId(), sessionId);
 		} else {
 			session = handleMessage(txn, m, body, meta, ss.bdfSession);
 			storageId = ss.storageId;
@@ -233,13 +279,12 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 	@Nullable
 	private StoredSession getSession(Transaction txn, GroupId contactGroupId,
 			SessionId sessionId) throws DbException, FormatException {
-		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, contactGroupId, query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId =
+				db.getSessionMessageId(txn, contactGroupId, sessionId);
+		if (storageId == null) return null;
+		BdfDictionary d =
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId);
+		return new StoredSession(storageId, d);
 	}
 
 	private Session<?> handleFirstMessage(Transaction txn, Message m,
@@ -302,10 +347,11 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		}
 	}
 
-	private MessageId createStorageId(Transaction txn, GroupId g)
-			throws DbException {
+	private MessageId createStorageId(Transaction txn, GroupId g,
+			SessionId sessionId) throws DbException {
 		Message m = clientHelper.createMessageForStoringMetadata(g);
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		db.addSession(txn, g, sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -340,7 +386,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 			if (ss == null) {
 				// This is the first invite - create a new session
 				session = new CreatorSession(contactGroupId, privateGroupId);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// An earlier invite was declined, so we already have a session
 				session = sessionParser
@@ -610,7 +656,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 						new PeerSession(contactGroupId, privateGroupId);
 				// Handle the action
 				session = peerEngine.onMemberAddedAction(txn, peerSession);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// Handle the action
 				session = handleAction(txn, LocalAction.MEMBER_ADDED,
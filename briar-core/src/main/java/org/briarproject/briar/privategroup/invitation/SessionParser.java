@@ -3,14 +3,11 @@ package org.briarproject.briar.privategroup.invitation;
 import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.data.BdfDictionary;
 import org.briarproject.bramble.api.sync.GroupId;
-import org.briarproject.briar.api.client.SessionId;
 import org.briarproject.nullsafety.NotNullByDefault;
 
 @NotNullByDefault
 interface SessionParser {
 
-	BdfDictionary getSessionQuery(SessionId s);
-
 	BdfDictionary getAllSessionsQuery();
 
 	Role getRole(BdfDictionary d) throws FormatException;
@@ -4,6 +4,9 @@ import org.briarproject.briar.client.MessageTrackerConstants;
 
 interface SharingConstants {
 
+	// Local group metadata keys
+	String GROUP_KEY_SESSIONS_INDEXED = "sessionsIndexed";
+
 	// Message metadata keys
 	String MSG_KEY_MESSAGE_TYPE = "messageType";
 	String MSG_KEY_SHAREABLE_ID = "shareableId";
@@ -8,6 +8,7 @@ import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager.ContactHook;
 import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
@@ -58,6 +59,7 @@ import static org.briarproject.briar.sharing.MessageType.ACCEPT;
 import static org.briarproject.briar.sharing.MessageType.DECLINE;
 import static org.briarproject.briar.sharing.MessageType.INVITE;
 import static org.briarproject.briar.sharing.MessageType.LEAVE;
+import static org.briarproject.briar.sharing.SharingConstants.GROUP_KEY_SESSIONS_INDEXED;
 import static org.briarproject.briar.sharing.State.LOCAL_INVITED;
 import static org.briarproject.briar.sharing.State.LOCAL_LEFT;
 import static org.briarproject.briar.sharing.State.REMOTE_HANGING;
@@ -109,12 +111,55 @@ abstract class SharingManagerImpl<S extends Shareable>
 		// Create a local group to indicate that we've set this client up
 		Group localGroup = contactGroupFactory.createLocalGroup(getClientId(),
 				getMajorVersion());
-		if (db.containsGroup(txn, localGroup.getId())) return;
-		db.addGroup(txn, localGroup);
+		try {
+			if (db.containsGroup(txn, localGroup.getId())) {
+				// Index any sessions that were stored before sessions were
+				// indexed
+				if (!areSessionsIndexed(txn, localGroup.getId())) {
+					indexSessions(txn);
+					setSessionsIndexed(txn, localGroup.getId());
+				}
+				return;
+			}
+			db.addGroup(txn, localGroup);
+			setSessionsIndexed(txn, localGroup.getId());
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
 		// Set things up for any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
 	}
 
+	private boolean areSessionsIndexed(Transaction txn, GroupId localGroupId)
+			throws DbException, FormatException {
+		BdfDictionary meta =
+				clientHelper.getGroupMetadataAsDictionary(txn, localGroupId);
+		return meta.getBoolean(GROUP_KEY_SESSIONS_INDEXED, false);
+	}
+
+	private void setSessionsIndexed(Transaction txn, GroupId localGroupId)
+			throws DbException, FormatException {
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_SESSIONS_INDEXED, true));
+		clientHelper.mergeGroupMetadata(txn, localGroupId, meta);
+	}
+
+	private void indexSessions(Transaction txn)
+			throws DbException, FormatException {
+		BdfDictionary query = sessionParser.getAllSessionsQuery();
+		for (Contact c : db.getContacts(txn)) {
+			GroupId contactGroupId = getContactGroup(c).getId();
+			Map<MessageId, BdfDictionary> results = clientHelper
+					.getMessageMetadataAsDictionary(txn, contactGroupId, query);
+			for (Entry<MessageId, BdfDictionary> e : results.entrySet()) {
+				Session s = sessionParser.parseSession(contactGroupId,
+						e.getValue());
+				db.addSession(txn, contactGroupId,
+						getSessionId(s.getShareableId()), e.getKey());
+			}
+		}
+	}
+
 	@Override
 	public void addingContact(Transaction txn, Contact c) throws DbException {
 		// Create a group to share with the contact
@@ -157,7 +202,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 		MessageId storageId;
 		if (ss == null) {
 			session = handleFirstMessage(txn, m, body, meta);
-			storageId = createStorageId(txn, m.getGroupId());
+			storageId = createStorageId(txn, m.getGroupId(), sessionId);
 		} else {
 			session = handleMessage(txn, m, body, meta, ss.bdfSession);
 			storageId = ss.storageId;
@@ -176,8 +221,9 @@ abstract class SharingManagerImpl<S extends Shareable>
 			throws DbException, FormatException {
 		// Return if a session already exists with the contact
 		GroupId contactGroupId = getContactGroup(c).getId();
+		SessionId sessionId = getSessionId(g.getId());
 		StoredSession existingSession = getSession(txn, contactGroupId,
-				getSessionId(g.getId()));
+				sessionId);
 		if (existingSession != null) return;
 
 		// Add the shareable's group
@@ -191,7 +237,8 @@ abstract class SharingManagerImpl<S extends Shareable>
 		// Initialize session in sharing state
 		Session session = new Session(SHARING, contactGroupId, g.getId(),
 				null, null, 0, 0);
-		MessageId storageId = createStorageId(txn, contactGroupId);
+		MessageId storageId =
+				createStorageId(txn, contactGroupId, sessionId);
 		storeSession(txn, storageId, session);
 	}
 
@@ -202,13 +249,12 @@ abstract class SharingManagerImpl<S extends Shareable>
 	@Nullable
 	private StoredSession getSession(Transaction txn, GroupId contactGroupId,
 			SessionId sessionId) throws DbException, FormatException {
-		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, contactGroupId, query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId =
+				db.getSessionMessageId(txn, contactGroupId, sessionId);
+		if (storageId == null) return null;
+		BdfDictionary d =
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId);
+		return new StoredSession(storageId, d);
 	}
 
 	private Session handleFirstMessage(Transaction txn, Message m, BdfList body,
@@ -249,10 +295,11 @@ abstract class SharingManagerImpl<S extends Shareable>
 		}
 	}
 
-	private MessageId createStorageId(Transaction txn, GroupId g)
-			throws DbException {
+	private MessageId createStorageId(Transaction txn, GroupId g,
+			SessionId sessionId) throws DbException {
 		Message m = clientHelper.createMessageForStoringMetadata(g);
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		db.addSession(txn, g, sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -287,7 +334,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 			if (ss == null) {
 				// This is the first invite - create a new session
 				session = new Session(contactGroupId, shareableId);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// We already have a session
 				session = sessionParser
@@ -0,0 +1,57 @@
+package org.briarproject.briar.util;
+
+import org.briarproject.briar.api.conversation.ConversationMessageHeader;
+import org.briarproject.nullsafety.NotNullByDefault;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.sort;
+
+@NotNullByDefault
+public class ConversationUtils {
+
+	/**
+	 * Returns up to the given number of headers with timestamps earlier than
+	 * the given timestamp, newest first, plus any further headers with the
+	 * same timestamp as the oldest header returned.
+	 */
+	public static List<ConversationMessageHeader> getPageBefore(
+			Collection<ConversationMessageHeader> headers, long before,
+			int limit) {
+		List<ConversationMessageHeader> page = new ArrayList<>();
+		for (ConversationMessageHeader h : headers) {
+			if (h.getTimestamp() < before) page.add(h);
+		}
+		sort(page, (a, b) ->
+				Long.valueOf(b.getTimestamp()).compareTo(a.getTimestamp()));
+		return truncate(page, limit);
+	}
+
+	/**
+	 * Returns up to the given number of headers with timestamps later than
+	 * the given timestamp, oldest first, plus any further headers with the
+	 * same timestamp as the newest header returned.
+	 */
+	public static List<ConversationMessageHeader> getPageAfter(
+			Collection<ConversationMessageHeader> headers, long after,
+			int limit) {
+		List<ConversationMessageHeader> page = new ArrayList<>();
+		for (ConversationMessageHeader h : headers) {
+			if (h.getTimestamp() > after) page.add(h);
+		}
+		sort(page, (a, b) ->
+				Long.valueOf(a.getTimestamp()).compareTo(b.getTimestamp()));
+		return truncate(page, limit);
+	}
+
+	private static List<ConversationMessageHeader> truncate(
+			List<ConversationMessageHeader> page, int limit) {
+		if (page.size() <= limit) return page;
+		long last = page.get(limit - 1).getTimestamp();
+		int end = limit;
+		while (end < page.size() && page.get(end).getTimestamp() == last) end++;
+		return new ArrayList<>(page.subList(0, end));
+	}
+}
@@ -6,7 +6,6 @@ import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.Transaction;
-import org.briarproject.bramble.api.db.TransactionManager;
 import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.Message;
 import org.briarproject.bramble.test.BrambleMockTestCase;
@@ -15,6 +14,7 @@ import org.briarproject.briar.api.attachment.Attachment;
 import org.briarproject.briar.api.attachment.AttachmentHeader;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
@@ -28,7 +28,7 @@ import static org.junit.Assert.assertArrayEquals;
 
 public class AttachmentReaderImplTest extends BrambleMockTestCase {
 
-	private final TransactionManager db = context.mock(DatabaseComponent.class);
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
 	private final ClientHelper clientHelper = context.mock(ClientHelper.class);
 
 	private final GroupId groupId = new GroupId(getRandomId());
@@ -50,8 +50,8 @@ public class AttachmentReaderImplTest extends BrambleMockTestCase {
 
 		context.checking(new DbExpectations() {{
 			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
-			oneOf(clientHelper).getMessage(txn, message.getId());
-			will(returnValue(message));
+			oneOf(db).getGroupId(txn, message.getId());
+			will(returnValue(groupId));
 		}});
 
 		attachmentReader.getAttachment(wrongGroup);
@@ -80,13 +80,36 @@ public class AttachmentReaderImplTest extends BrambleMockTestCase {
 		testInvalidMetadata(meta);
 	}
 
+	@Test(expected = NoSuchMessageException.class)
+	public void testDescriptorLongerThanBody() throws Exception {
+		int descriptorLength = message.getBody().length + 1;
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_CONTENT_TYPE, contentType),
+				new BdfEntry(MSG_KEY_DESCRIPTOR_LENGTH, descriptorLength));
+
+		Transaction txn = new Transaction(null, true);
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
+			oneOf(db).getGroupId(txn, message.getId());
+			will(returnValue(groupId));
+			oneOf(clientHelper)
+					.getMessageMetadataAsDictionary(txn, message.getId());
+			will(returnValue(meta));
+			oneOf(db).getMessageBody(txn, message.getId());
+			will(returnValue(new ByteArrayInputStream(message.getBody())));
+		}});
+
+		attachmentReader.getAttachment(header);
+	}
+
 	private void testInvalidMetadata(BdfDictionary meta) throws Exception {
 		Transaction txn = new Transaction(null, true);
 
 		context.checking(new DbExpectations() {{
 			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
-			oneOf(clientHelper).getMessage(txn, message.getId());
-			will(returnValue(message));
+			oneOf(db).getGroupId(txn, message.getId());
+			will(returnValue(groupId));
 			oneOf(clientHelper)
 					.getMessageMetadataAsDictionary(txn, message.getId());
 			will(returnValue(meta));
@@ -110,11 +133,13 @@ public class AttachmentReaderImplTest extends BrambleMockTestCase {
 
 		context.checking(new DbExpectations() {{
 			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
-			oneOf(clientHelper).getMessage(txn, message.getId());
-			will(returnValue(message));
+			oneOf(db).getGroupId(txn, message.getId());
+			will(returnValue(groupId));
 			oneOf(clientHelper)
 					.getMessageMetadataAsDictionary(txn, message.getId());
 			will(returnValue(meta));
+			oneOf(db).getMessageBody(txn, message.getId());
+			will(returnValue(new ByteArrayInputStream(body)));
 		}});
 
 		Attachment attachment = attachmentReader.getAttachment(header);
@@ -5,21 +5,27 @@ import org.briarproject.bramble.api.data.BdfDictionary;
 import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.sync.Group;
 import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.event.GroupRemovedEvent;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.bramble.test.BrambleMockTestCase;
 import org.briarproject.bramble.test.TestUtils;
-import org.briarproject.briar.api.client.MessageTracker;
+import org.briarproject.briar.api.client.MessageTracker.GroupCount;
 import org.jmock.Expectations;
 import org.junit.Test;
 
+import static org.briarproject.bramble.test.TestUtils.getClientId;
+import static org.briarproject.bramble.test.TestUtils.getGroup;
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_LATEST_MSG;
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_MSG_COUNT;
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_STORED_MESSAGE_ID;
 import static org.briarproject.briar.client.MessageTrackerConstants.GROUP_KEY_UNREAD_COUNT;
+import static org.briarproject.briar.client.MessageTrackerConstants.MSG_KEY_READ;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 public class MessageTrackerTest extends BrambleMockTestCase {
 
@@ -29,11 +35,16 @@ public class MessageTrackerTest extends BrambleMockTestCase {
 	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
 	private final Clock clock = context.mock(Clock.class);
 	private final MessageId messageId = new MessageId(TestUtils.getRandomId());
-	private final MessageTracker messageTracker =
+	private final MessageTrackerImpl messageTracker =
 			new MessageTrackerImpl(db, clientHelper, clock);
 	private final BdfDictionary dictionary = BdfDictionary.of(
 			new BdfEntry(GROUP_KEY_STORED_MESSAGE_ID, messageId)
 	);
+	private final BdfDictionary countDictionary = BdfDictionary.of(
+			new BdfEntry(GROUP_KEY_MSG_COUNT, 3),
+			new BdfEntry(GROUP_KEY_UNREAD_COUNT, 2),
+			new BdfEntry(GROUP_KEY_LATEST_MSG, 42L)
+	);
 
 	@Test
 	public void testInitializeGroupCount() throws Exception {
@@ -71,4 +82,86 @@ public class MessageTrackerTest extends BrambleMockTestCase {
 		assertEquals(messageId, loadedId);
 	}
 
+	@Test
+	public void testGroupCountIsCachedByReadOnlyTransactions()
+			throws Exception {
+		Transaction txn = new Transaction(null, true);
+		Transaction txn1 = new Transaction(null, true);
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId);
+			will(returnValue(countDictionary));
+		}});
+		GroupCount c = messageTracker.getGroupCount(txn, groupId);
+		assertEquals(3, c.getMsgCount());
+		assertEquals(2, c.getUnreadCount());
+		assertEquals(42L, c.getLatestMsgTime());
+		// The second transaction should use the cached count
+		assertSame(c, messageTracker.getGroupCount(txn1, groupId));
+	}
+
+	@Test
+	public void testGroupCountIsNotCachedByWriteTransactions()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+		Transaction txn1 = new Transaction(null, false);
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId);
+			will(returnValue(countDictionary));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn1, groupId);
+			will(returnValue(countDictionary));
+		}});
+		messageTracker.getGroupCount(txn, groupId);
+		messageTracker.getGroupCount(txn1, groupId);
+	}
+
+	@Test
+	public void testSettingReadFlagRemovesCachedGroupCount()
+			throws Exception {
+		Transaction txn = new Transaction(null, true);
+		Transaction txn1 = new Transaction(null, false);
+		Transaction txn2 = new Transaction(null, true);
+		BdfDictionary updated = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_MSG_COUNT, 3),
+				new BdfEntry(GROUP_KEY_UNREAD_COUNT, 1),
+				new BdfEntry(GROUP_KEY_LATEST_MSG, 42L)
+		);
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId);
+			will(returnValue(countDictionary));
+			// Mark a message as read
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn1,
+					messageId);
+			will(returnValue(new BdfDictionary()));
+			oneOf(clientHelper).mergeMessageMetadata(txn1, messageId,
+					BdfDictionary.of(new BdfEntry(MSG_KEY_READ, true)));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn1, groupId);
+			will(returnValue(countDictionary));
+			oneOf(clientHelper).mergeGroupMetadata(txn1, groupId, updated);
+			// The updated count should be loaded from the database
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn2, groupId);
+			will(returnValue(updated));
+		}});
+		assertEquals(2, messageTracker.getGroupCount(txn, groupId)
+				.getUnreadCount());
+		messageTracker.setReadFlag(txn1, groupId, messageId, true);
+		assertEquals(1, messageTracker.getGroupCount(txn2, groupId)
+				.getUnreadCount());
+	}
+
+	@Test
+	public void testRemovingGroupRemovesCachedGroupCount() throws Exception {
+		Group group = getGroup(getClientId(), 123);
+		GroupId g = group.getId();
+		Transaction txn = new Transaction(null, true);
+		Transaction txn1 = new Transaction(null, true);
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, g);
+			will(returnValue(countDictionary));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn1, g);
+			will(returnValue(new BdfDictionary()));
+		}});
+		messageTracker.getGroupCount(txn, g);
+		messageTracker.eventOccurred(new GroupRemovedEvent(group));
+		assertEquals(0, messageTracker.getGroupCount(txn1, g).getMsgCount());
+	}
 }
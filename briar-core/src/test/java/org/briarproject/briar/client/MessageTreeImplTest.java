@@ -6,12 +6,20 @@ import org.briarproject.briar.api.client.MessageTree;
 import org.briarproject.nullsafety.NotNullByDefault;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class MessageTreeImplTest {
 
@@ -59,6 +67,103 @@ public class MessageTreeImplTest {
 		assertEquals(nodes[3], sortedNodes[4]);
 	}
 
+	@Test
+	public void testSingleNodesAreInsertedInOrder() {
+		tree = new MessageTreeImpl<>();
+		TestNode parent = new TestNode();
+		TestNode[] children = new TestNode[4];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = new TestNode();
+			children[i].setParentId(parent.getId());
+		}
+		children[0].setTimestamp(10);
+		children[1].setTimestamp(30);
+		children[2].setTimestamp(20);
+		// Nodes with the same timestamp keep the order they were added in
+		children[3].setTimestamp(20);
+		tree.add(parent);
+		for (TestNode child : children) tree.add(child);
+
+		assertEquals(Arrays.asList(parent, children[0], children[2],
+				children[3], children[1]), tree.depthFirstOrder());
+		assertEquals(0, parent.level);
+		for (TestNode child : children) assertEquals(1, child.level);
+	}
+
+	@Test
+	public void testChildrenCanBeAddedBeforeParents() {
+		tree = new MessageTreeImpl<>();
+		TestNode root = new TestNode();
+		TestNode child = new TestNode();
+		TestNode grandchild = new TestNode();
+		child.setParentId(root.getId());
+		grandchild.setParentId(child.getId());
+
+		tree.add(grandchild);
+		// The grandchild isn't reachable until its ancestors are added
+		assertTrue(tree.contains(grandchild.getId()));
+		assertFalse(tree.contains(child.getId()));
+		assertEquals(emptyList(), tree.depthFirstOrder());
+
+		tree.add(Arrays.asList(child, root));
+		assertEquals(Arrays.asList(root, child, grandchild),
+				tree.depthFirstOrder());
+		assertEquals(2, grandchild.level);
+	}
+
+	@Test
+	public void testNodesAreNotAddedTwice() {
+		tree = new MessageTreeImpl<>();
+		TestNode root = new TestNode();
+		TestNode child = new TestNode();
+		child.setParentId(root.getId());
+		tree.add(Arrays.asList(root, child));
+		tree.add(child);
+		tree.add(Arrays.asList(root, child));
+
+		assertEquals(Arrays.asList(root, child), tree.depthFirstOrder());
+	}
+
+	@Test
+	public void testSnapshotIsReusedUntilTreeIsModified() {
+		tree = new MessageTreeImpl<>();
+		TestNode root = new TestNode();
+		tree.add(root);
+		List<TestNode> first = tree.depthFirstOrder();
+		assertSame(first, tree.depthFirstOrder());
+
+		TestNode root1 = new TestNode();
+		root1.setTimestamp(1);
+		tree.add(root1);
+		List<TestNode> second = tree.depthFirstOrder();
+		assertNotSame(first, second);
+		// The earlier snapshot isn't affected by the change
+		assertEquals(singletonList(root), first);
+		assertEquals(Arrays.asList(root, root1), second);
+
+		tree.clear();
+		assertEquals(emptyList(), tree.depthFirstOrder());
+		assertFalse(tree.contains(root.getId()));
+	}
+
+	@Test
+	public void testLongChainOfRepliesDoesNotOverflowStack() {
+		tree = new MessageTreeImpl<>();
+		List<TestNode> nodes = new ArrayList<>();
+		TestNode parent = null;
+		for (int i = 0; i < 100_000; i++) {
+			TestNode node = new TestNode();
+			if (parent != null) node.setParentId(parent.getId());
+			node.setTimestamp(i);
+			nodes.add(node);
+			parent = node;
+		}
+		tree.add(nodes);
+
+		assertEquals(nodes, tree.depthFirstOrder());
+		assertEquals(nodes.size() - 1, parent.level);
+	}
+
 	@NotNullByDefault
 	private class TestNode implements MessageTree.MessageNode {
 
@@ -66,6 +171,7 @@ public class MessageTreeImplTest {
 		@Nullable
 		private MessageId parentId;
 		private long timestamp;
+		private int level = -1;
 
 		@Override
 		public MessageId getId() {
@@ -80,7 +186,7 @@ public class MessageTreeImplTest {
 
 		@Override
 		public void setLevel(int level) {
-
+			this.level = level;
 		}
 
 		@Override
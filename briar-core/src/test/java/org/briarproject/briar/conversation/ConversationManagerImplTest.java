@@ -0,0 +1,90 @@
+package org.briarproject.briar.conversation;
+
+import org.briarproject.bramble.api.client.ClientHelper;
+import org.briarproject.bramble.api.contact.Contact;
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.sync.Group;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.DbExpectations;
+import org.briarproject.briar.api.client.MessageTracker;
+import org.briarproject.briar.api.client.MessageTracker.GroupCount;
+import org.briarproject.briar.api.conversation.ConversationManager.ConversationClient;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.briarproject.bramble.test.TestUtils.getClientId;
+import static org.briarproject.bramble.test.TestUtils.getContact;
+import static org.briarproject.bramble.test.TestUtils.getGroup;
+import static org.junit.Assert.assertEquals;
+
+public class ConversationManagerImplTest extends BrambleMockTestCase {
+
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
+	private final MessageTracker messageTracker =
+			context.mock(MessageTracker.class);
+	private final Clock clock = context.mock(Clock.class);
+	private final ClientHelper clientHelper = context.mock(ClientHelper.class);
+	private final ConversationClient client =
+			context.mock(ConversationClient.class, "client");
+	private final ConversationClient client1 =
+			context.mock(ConversationClient.class, "client1");
+
+	private final Contact contact = getContact();
+	private final Contact contact1 = getContact();
+	private final Group group = getGroup(getClientId(), 123);
+	private final Group group1 = getGroup(getClientId(), 123);
+	private final Group group2 = getGroup(getClientId(), 123);
+	private final Group group3 = getGroup(getClientId(), 123);
+
+	private final ConversationManagerImpl conversationManager =
+			new ConversationManagerImpl(db, messageTracker, clock,
+					clientHelper);
+
+	@Test
+	public void testGetAllGroupCounts() throws Exception {
+		conversationManager.registerConversationClient(client);
+		conversationManager.registerConversationClient(client1);
+		Transaction txn = new Transaction(null, true);
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
+			oneOf(db).getContacts(txn);
+			will(returnValue(asList(contact, contact1)));
+			// The first contact has messages in both clients
+			oneOf(client).getContactGroup(contact);
+			will(returnValue(group));
+			oneOf(messageTracker).getGroupCount(txn, group.getId());
+			will(returnValue(new GroupCount(3, 1, 100)));
+			oneOf(client1).getContactGroup(contact);
+			will(returnValue(group1));
+			oneOf(messageTracker).getGroupCount(txn, group1.getId());
+			will(returnValue(new GroupCount(2, 2, 200)));
+			// The second contact only has messages in one client
+			oneOf(client).getContactGroup(contact1);
+			will(returnValue(group2));
+			oneOf(messageTracker).getGroupCount(txn, group2.getId());
+			will(returnValue(new GroupCount(0, 0, 300)));
+			oneOf(client1).getContactGroup(contact1);
+			will(returnValue(group3));
+			oneOf(messageTracker).getGroupCount(txn, group3.getId());
+			will(returnValue(new GroupCount(1, 0, 50)));
+		}});
+
+		Map<ContactId, GroupCount> counts =
+				conversationManager.getAllGroupCounts();
+		assertEquals(2, counts.size());
+		GroupCount c = counts.get(contact.getId());
+		assertEquals(5, c.getMsgCount());
+		assertEquals(3, c.getUnreadCount());
+		assertEquals(200, c.getLatestMsgTime());
+		GroupCount c1 = counts.get(contact1.getId());
+		assertEquals(1, c1.getMsgCount());
+		assertEquals(0, c1.getUnreadCount());
+		assertEquals(300, c1.getLatestMsgTime());
+	}
+}
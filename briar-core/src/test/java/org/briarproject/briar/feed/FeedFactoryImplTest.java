@@ -24,7 +24,9 @@ import static org.briarproject.briar.api.blog.BlogManager.MAJOR_VERSION;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_ADDED;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_AUTHOR;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_DESC;
+import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_ETAG;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_LAST_ENTRY;
+import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_LAST_MODIFIED;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_PRIVATE_KEY;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_RSS_AUTHOR;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_RSS_LINK;
@@ -55,6 +57,8 @@ public class FeedFactoryImplTest extends BrambleMockTestCase {
 	private final String title = getRandomString(123);
 	private final String link = getRandomString(123);
 	private final String uri = getRandomString(123);
+	private final String etag = getRandomString(123);
+	private final String lastModified = getRandomString(123);
 
 	private final FeedFactoryImpl feedFactory = new FeedFactoryImpl(
 			authorFactory, blogFactory, clientHelper, clock);
@@ -103,6 +107,8 @@ public class FeedFactoryImplTest extends BrambleMockTestCase {
 		assertEquals(added, after.getAdded());
 		assertEquals(updated, after.getUpdated());
 		assertEquals(lastEntryTime, after.getLastEntryTime());
+		assertNull(after.getEtag());
+		assertNull(after.getLastModified());
 	}
 
 	@Test
@@ -111,7 +117,7 @@ public class FeedFactoryImplTest extends BrambleMockTestCase {
 		RssProperties propertiesBefore = new RssProperties(url, title,
 				description, rssAuthor, link, uri);
 		Feed before = new Feed(blog, localAuthor, propertiesBefore, added,
-				updated, lastEntryTime);
+				updated, lastEntryTime, etag, lastModified);
 
 
 		context.checking(new Expectations() {{
@@ -132,7 +138,9 @@ public class FeedFactoryImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_FEED_DESC, description),
 				new BdfEntry(KEY_FEED_RSS_AUTHOR, rssAuthor),
 				new BdfEntry(KEY_FEED_RSS_LINK, link),
-				new BdfEntry(KEY_FEED_RSS_URI, uri)
+				new BdfEntry(KEY_FEED_RSS_URI, uri),
+				new BdfEntry(KEY_FEED_ETAG, etag),
+				new BdfEntry(KEY_FEED_LAST_MODIFIED, lastModified)
 		);
 		assertEquals(expectedDict, dict);
 
@@ -155,5 +163,7 @@ public class FeedFactoryImplTest extends BrambleMockTestCase {
 		assertEquals(added, after.getAdded());
 		assertEquals(updated, after.getUpdated());
 		assertEquals(lastEntryTime, after.getLastEntryTime());
+		assertEquals(etag, after.getEtag());
+		assertEquals(lastModified, after.getLastModified());
 	}
 }
@@ -34,21 +34,27 @@ import java.util.Date;
 import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.util.Collections.singletonList;
 import static okhttp3.mockwebserver.SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY;
 import static org.briarproject.bramble.test.TestUtils.getGroup;
 import static org.briarproject.bramble.test.TestUtils.getLocalAuthor;
 import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.util.StringUtils.UTF_8;
+import static org.briarproject.bramble.util.StringUtils.getRandomString;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEEDS;
 import static org.briarproject.briar.api.feed.FeedManager.CLIENT_ID;
 import static org.briarproject.briar.api.feed.FeedManager.MAJOR_VERSION;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class FeedManagerImplTest extends BrambleMockTestCase {
 
@@ -185,6 +191,125 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		feedManager.fetchFeeds();
 	}
 
+	@Test
+	public void testFetchFeedsStoresEtagAndLastModified() throws Exception {
+		// Fetching and parsing the feed will succeed; the response includes
+		// headers for making conditional requests next time
+		String feedXml = createRssFeedXml();
+		String etag = "\"" + getRandomString(10) + "\"";
+		String lastModified = "Sat, 17 Oct 2026 12:00:00 GMT";
+
+		MockWebServer server = new MockWebServer();
+		String url = server.url("/").toString();
+		server.enqueue(new MockResponse()
+				.setHeader("ETag", etag)
+				.setHeader("Last-Modified", lastModified)
+				.setBody(feedXml));
+
+		Feed feed = createFeed(url, blog);
+
+		expectGetFeeds(feed);
+		context.checking(new Expectations() {{
+			oneOf(feedFactory).updateFeed(with(feed), with(any(SyndFeed.class)),
+					with(0L), with(etag), with(lastModified));
+			will(returnValue(feed));
+		}});
+		expectGetAndStoreFeeds(feed);
+
+		feedManager.setTorActive(true);
+		feedManager.fetchFeeds();
+
+		// The first request shouldn't be conditional
+		RecordedRequest request = server.takeRequest();
+		assertNull(request.getHeader("If-None-Match"));
+		assertNull(request.getHeader("If-Modified-Since"));
+	}
+
+	@Test
+	public void testFetchFeedsNotModified() throws Exception {
+		// The feed has been fetched before, and the server will respond to
+		// the conditional request by saying the feed hasn't been modified
+		String etag = "\"" + getRandomString(10) + "\"";
+		String lastModified = "Sat, 17 Oct 2026 12:00:00 GMT";
+
+		MockWebServer server = new MockWebServer();
+		String url = server.url("/").toString();
+		server.enqueue(new MockResponse().setResponseCode(HTTP_NOT_MODIFIED));
+
+		Feed feed = createFeed(url, blog, etag, lastModified);
+
+		expectGetFeeds(feed);
+		context.checking(new Expectations() {{
+			// The feed should be updated without being parsed
+			oneOf(feedFactory).updateUnmodifiedFeed(feed);
+			will(returnValue(feed));
+		}});
+		expectGetAndStoreFeeds(feed);
+
+		feedManager.setTorActive(true);
+		feedManager.fetchFeeds();
+
+		RecordedRequest request = server.takeRequest();
+		assertEquals(etag, request.getHeader("If-None-Match"));
+		assertEquals(lastModified, request.getHeader("If-Modified-Since"));
+	}
+
+	@Test
+	public void testFetchFeedsNoNewEntries() throws Exception {
+		// Fetching and parsing the feed will succeed; the only entry has
+		// already been posted, so no transaction should be started
+		String entryXml =
+				"<item><pubDate>" + pubDateString + "</pubDate></item>";
+		String feedXml = createRssFeedXml(entryXml);
+
+		MockWebServer server = new MockWebServer();
+		String url = server.url("/").toString();
+		server.enqueue(new MockResponse().setBody(feedXml));
+
+		RssProperties properties = new RssProperties(url,
+				null, null, null, null, null);
+		Feed feed = new Feed(blog, localAuthor, properties, 0, 0, pubDate);
+
+		expectGetFeeds(feed);
+		context.checking(new Expectations() {{
+			oneOf(feedFactory).updateFeed(with(feed), with(any(SyndFeed.class)),
+					with(pubDate), with(nullValue(String.class)),
+					with(nullValue(String.class)));
+			will(returnValue(feed));
+		}});
+		expectGetAndStoreFeeds(feed);
+
+		feedManager.setTorActive(true);
+		feedManager.fetchFeeds();
+	}
+
+	@Test
+	public void testFetchFeedsMultipleFeeds() throws Exception {
+		// Fetching the first feed will fail, the second will succeed
+		MockWebServer server = new MockWebServer();
+		String url = server.url("/").toString();
+		server.enqueue(new MockResponse()
+				.setBody("  ")
+				.setSocketPolicy(DISCONNECT_DURING_RESPONSE_BODY));
+		MockWebServer server1 = new MockWebServer();
+		String url1 = server1.url("/").toString();
+		server1.enqueue(new MockResponse().setBody(createRssFeedXml()));
+
+		Group blogGroup1 = getGroup(BlogManager.CLIENT_ID,
+				BlogManager.MAJOR_VERSION);
+		Blog blog1 = new Blog(blogGroup1, localAuthor, true);
+		Feed feed = createFeed(url, blog);
+		Feed feed1 = createFeed(url1, blog1);
+
+		expectGetFeeds(feed, feed1);
+		expectUpdateFeedNoEntries(feed1);
+		// Both feeds are still stored
+		expectGetAndStoreFeeds(feed, feed1);
+
+		feedManager.setTorActive(true);
+		feedManager.fetchFeeds();
+	}
+
 	@Test
 	public void testAddNewFeedFromUrl() throws Exception {
 		// Fetching and parsing the feed will succeed; there are no entries
@@ -309,9 +434,15 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 	}
 
 	private Feed createFeed(String url, Blog blog) {
+		return createFeed(url, blog, null, null);
+	}
+
+	private Feed createFeed(String url, Blog blog, @Nullable String etag,
+			@Nullable String lastModified) {
 		RssProperties properties = new RssProperties(url,
 				null, null, null, null, null);
-		return new Feed(blog, localAuthor, properties, 0, 0, 0);
+		return new Feed(blog, localAuthor, properties, 0, 0, 0, etag,
+				lastModified);
 	}
 
 	private String createRssFeedXml(String... entries) {
@@ -322,6 +453,39 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		return sb.toString();
 	}
 
+	@Test
+	public void testFetchFeedsWhenExecutorDiscardsTasks() throws Exception {
+		// The IO executor discards tasks, as it does during shutdown
+		Executor discardingExecutor = r -> {
+		};
+		FeedManagerImpl manager = new FeedManagerImpl(scheduler,
+				discardingExecutor, db, contactGroupFactory, clientHelper,
+				blogManager, blogPostFactory, feedFactory, feedMatcher,
+				httpClientProvider, clock);
+
+		MockWebServer server = new MockWebServer();
+		String url = server.url("/").toString();
+		server.enqueue(new MockResponse().setBody(createRssFeedXml()));
+		MockWebServer server1 = new MockWebServer();
+		String url1 = server1.url("/").toString();
+		server1.enqueue(new MockResponse().setBody(createRssFeedXml()));
+
+		Group blogGroup1 = getGroup(BlogManager.CLIENT_ID,
+				BlogManager.MAJOR_VERSION);
+		Blog blog1 = new Blog(blogGroup1, localAuthor, true);
+		Feed feed = createFeed(url, blog);
+		Feed feed1 = createFeed(url1, blog1);
+
+		// Both feeds should be fetched by the calling thread
+		expectGetFeeds(feed, feed1);
+		expectUpdateFeedNoEntries(feed);
+		expectUpdateFeedNoEntries(feed1);
+		expectGetAndStoreFeeds(feed, feed1);
+
+		manager.setTorActive(true);
+		manager.fetchFeeds();
+	}
+
 	private void expectGetLocalGroup() {
 		context.checking(new Expectations() {{
 			oneOf(contactGroupFactory).createLocalGroup(CLIENT_ID,
@@ -386,13 +550,11 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		}});
 	}
 
-	private void expectUpdateFeedNoEntries(Feed feed) throws Exception {
-		Transaction txn = new Transaction(null, false);
-
-		context.checking(new DbExpectations() {{
-			oneOf(db).transactionWithResult(with(false), withDbCallable(txn));
+	private void expectUpdateFeedNoEntries(Feed feed) {
+		context.checking(new Expectations() {{
 			oneOf(feedFactory).updateFeed(with(feed), with(any(SyndFeed.class)),
-					with(0L));
+					with(0L), with(nullValue(String.class)),
+					with(nullValue(String.class)));
 			will(returnValue(feed));
 		}});
 	}
@@ -402,7 +564,7 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		String body = "<p>(" + new Date(pubDate) + ")</p>";
 
 		context.checking(new DbExpectations() {{
-			oneOf(db).transactionWithResult(with(false), withDbCallable(txn));
+			oneOf(db).transaction(with(false), withDbRunnable(txn));
 			oneOf(clock).currentTimeMillis();
 			will(returnValue(now));
 			oneOf(blogPostFactory).createBlogPost(blogGroupId, pubDate, null,
@@ -410,7 +572,8 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(blogPost));
 			oneOf(blogManager).addLocalPost(txn, blogPost);
 			oneOf(feedFactory).updateFeed(with(feed), with(any(SyndFeed.class)),
-					with(pubDate));
+					with(pubDate), with(nullValue(String.class)),
+					with(nullValue(String.class)));
 			will(returnValue(feed));
 		}});
 	}
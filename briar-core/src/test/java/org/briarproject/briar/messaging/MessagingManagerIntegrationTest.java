@@ -20,6 +20,7 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -27,6 +28,8 @@ import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import static java.lang.Math.max;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
@@ -306,6 +309,103 @@ public class MessagingManagerIntegrationTest
 		}
 	}
 
+	@Test
+	public void testPagedConversation() throws Exception {
+		// Messages with and without attachments, which are not listed
+		Set<MessageId> sent = new HashSet<>();
+		sent.add(sendMessage(c0, c1, getRandomString(42)).getMessage().getId());
+		sent.add(sendMessage(c0, c1, null, singletonList(addAttachment(c0)))
+				.getMessage().getId());
+		sent.add(sendMessage(c1, c0, getRandomString(23)).getMessage().getId());
+		sent.add(sendMessage(c0, c1, getRandomString(5)).getMessage().getId());
+
+		// Page backwards through the conversation one message at a time
+		Set<MessageId> seen = new HashSet<>();
+		long before = Long.MAX_VALUE, newest = 0;
+		while (true) {
+			long timestamp = before;
+			List<ConversationMessageHeader> page =
+					db0.transactionWithResult(true, txn -> c0
+							.getConversationManager()
+							.getMessageHeadersBefore(txn, contactId,
+									timestamp, 1));
+			if (page.isEmpty()) break;
+			for (ConversationMessageHeader h : page) {
+				assertTrue(h.getTimestamp() < before);
+				assertTrue(seen.add(h.getId()));
+				newest = max(newest, h.getTimestamp());
+			}
+			before = page.get(page.size() - 1).getTimestamp();
+		}
+		assertEquals(sent, seen);
+
+		// Nothing is newer than the newest message
+		long after = newest;
+		assertEquals(0, db0.transactionWithResult(true, txn -> c0
+				.getConversationManager()
+				.getMessageHeadersAfter(txn, contactId, after, 10)).size());
+		// Everything is newer than the start of the conversation
+		assertEquals(sent.size(), db0.transactionWithResult(true, txn -> c0
+				.getConversationManager()
+				.getMessageHeadersAfter(txn, contactId, 0, 10)).size());
+	}
+
+	@Test
+	public void testPagingPastDeletedMessages() throws Exception {
+		PrivateMessage m0 = sendMessage(c0, c1, 1000);
+		PrivateMessage m1 = sendMessage(c0, c1, 2000);
+		PrivateMessage m2 = sendMessage(c0, c1, 3000);
+		PrivateMessage m3 = sendMessage(c0, c1, 4000);
+
+		// Delete the messages in the middle of the conversation
+		Set<MessageId> toDelete = new HashSet<>();
+		toDelete.add(m1.getMessage().getId());
+		toDelete.add(m2.getMessage().getId());
+		assertTrue(db0.transactionWithResult(false, txn ->
+				messagingManager0.deleteMessages(txn, contactId, toDelete))
+				.allDeleted());
+
+		// Pages made up of deleted messages should be skipped
+		assertEquals(singletonList(m3.getMessage().getId()),
+				getPageBefore(Long.MAX_VALUE, 1));
+		assertEquals(singletonList(m0.getMessage().getId()),
+				getPageBefore(4000, 1));
+		assertEquals(emptyList(), getPageBefore(1000, 1));
+		assertEquals(singletonList(m0.getMessage().getId()),
+				getPageAfter(0, 1));
+		assertEquals(singletonList(m3.getMessage().getId()),
+				getPageAfter(1000, 1));
+		assertEquals(emptyList(), getPageAfter(4000, 1));
+	}
+
+	@Test
+	public void testPagingWithTiesAtPageBoundary() throws Exception {
+		PrivateMessage m0 = sendMessage(c0, c1, 1000);
+		PrivateMessage m1 = sendMessage(c0, c1, 2000);
+		PrivateMessage m2 = sendMessage(c1, c0, 2000);
+		PrivateMessage m3 = sendMessage(c0, c1, 2000);
+		PrivateMessage m4 = sendMessage(c0, c1, 3000);
+		Set<MessageId> tie = new HashSet<>(asList(m1.getMessage().getId(),
+				m2.getMessage().getId(), m3.getMessage().getId()));
+
+		// A page that ends with a tie includes the whole tie
+		List<MessageId> page = getPageBefore(Long.MAX_VALUE, 2);
+		assertEquals(4, page.size());
+		assertEquals(m4.getMessage().getId(), page.get(0));
+		assertEquals(tie, new HashSet<>(page.subList(1, 4)));
+		assertEquals(tie, new HashSet<>(getPageBefore(3000, 1)));
+		assertEquals(singletonList(m0.getMessage().getId()),
+				getPageBefore(2000, 1));
+
+		page = getPageAfter(0, 2);
+		assertEquals(4, page.size());
+		assertEquals(m0.getMessage().getId(), page.get(0));
+		assertEquals(tie, new HashSet<>(page.subList(1, 4)));
+		assertEquals(tie, new HashSet<>(getPageAfter(1000, 1)));
+		assertEquals(singletonList(m4.getMessage().getId()),
+				getPageAfter(2000, 1));
+	}
+
 	@Test
 	public void testDeletingEmptySet() throws Exception {
 		assertTrue(db0.transactionWithResult(false, txn ->
@@ -337,6 +437,17 @@ public class MessagingManagerIntegrationTest
 		return m;
 	}
 
+	private PrivateMessage sendMessage(BriarIntegrationTestComponent from,
+			BriarIntegrationTestComponent to, long timestamp)
+			throws Exception {
+		GroupId g = from.getMessagingManager().getConversationId(contactId);
+		PrivateMessage m = messageFactory.createPrivateMessage(g, timestamp,
+				getRandomString(42), emptyList(), NO_AUTO_DELETE_TIMER);
+		from.getMessagingManager().addLocalMessage(m);
+		syncMessage(from, to, contactId, 1, true);
+		return m;
+	}
+
 	private AttachmentHeader addAttachment(BriarIntegrationTestComponent c)
 			throws Exception {
 		GroupId g = c.getMessagingManager().getConversationId(contactId);
@@ -364,6 +475,26 @@ public class MessagingManagerIntegrationTest
 		return messages;
 	}
 
+	private List<MessageId> getPageBefore(long before, int limit)
+			throws Exception {
+		return getIds(db0.transactionWithResult(true, txn -> c0
+				.getConversationManager()
+				.getMessageHeadersBefore(txn, contactId, before, limit)));
+	}
+
+	private List<MessageId> getPageAfter(long after, int limit)
+			throws Exception {
+		return getIds(db0.transactionWithResult(true, txn -> c0
+				.getConversationManager()
+				.getMessageHeadersAfter(txn, contactId, after, limit)));
+	}
+
+	private List<MessageId> getIds(List<ConversationMessageHeader> headers) {
+		List<MessageId> ids = new ArrayList<>();
+		for (ConversationMessageHeader h : headers) ids.add(h.getId());
+		return ids;
+	}
+
 	private void assertGroupCounts(BriarIntegrationTestComponent c,
 			long msgCount, long unreadCount) throws Exception {
 		GroupId g = c.getMessagingManager().getConversationId(contactId);
@@ -42,6 +42,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.annotation.Nullable;
 
@@ -67,6 +68,7 @@ import static org.briarproject.briar.api.sharing.SharingManager.SharingStatus.ER
 import static org.briarproject.briar.api.sharing.SharingManager.SharingStatus.INVITE_RECEIVED;
 import static org.briarproject.briar.api.sharing.SharingManager.SharingStatus.SHAREABLE;
 import static org.briarproject.briar.api.sharing.SharingManager.SharingStatus.SHARING;
+import static org.briarproject.briar.privategroup.invitation.GroupInvitationConstants.GROUP_KEY_SESSIONS_INDEXED;
 import static org.briarproject.briar.privategroup.invitation.MessageType.ABORT;
 import static org.briarproject.briar.privategroup.invitation.MessageType.INVITE;
 import static org.briarproject.briar.privategroup.invitation.MessageType.JOIN;
@@ -127,6 +129,8 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			Collections.singletonMap(storageMessage.getId(), bdfSession);
 	private final Map<MessageId, BdfDictionary> noResults =
 			Collections.emptyMap();
+	private final BdfDictionary indexedMeta = BdfDictionary.of(
+			new BdfEntry(GROUP_KEY_SESSIONS_INDEXED, true));
 
 
 	public GroupInvitationManagerImplTest() {
@@ -167,6 +171,9 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(false));
 			oneOf(db).addGroup(txn, localGroup);
+			// There are no sessions to index
+			oneOf(clientHelper).mergeGroupMetadata(txn, localGroup.getId(),
+					indexedMeta);
 			oneOf(db).getContacts(txn);
 			will(returnValue(singletonList(contact)));
 		}});
@@ -182,6 +189,47 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(localGroup));
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(true));
+			// The sessions have been indexed
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					localGroup.getId());
+			will(returnValue(indexedMeta));
+		}});
+		groupInvitationManager.onDatabaseOpened(txn);
+	}
+
+	@Test
+	public void testOpenDatabaseHookIndexesExistingSessions()
+			throws Exception {
+		BdfDictionary query = BdfDictionary.of(new BdfEntry("q", "u"));
+		context.checking(new Expectations() {{
+			oneOf(contactGroupFactory).createLocalGroup(CLIENT_ID,
+					MAJOR_VERSION);
+			will(returnValue(localGroup));
+			oneOf(db).containsGroup(txn, localGroup.getId());
+			will(returnValue(true));
+			// The sessions haven't been indexed
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					localGroup.getId());
+			will(returnValue(new BdfDictionary()));
+			oneOf(sessionParser).getAllSessionsQuery();
+			will(returnValue(query));
+			oneOf(db).getContacts(txn);
+			will(returnValue(singletonList(contact)));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					contactGroup.getId(), query);
+			will(returnValue(oneResult));
+			oneOf(sessionParser).parseSession(contactGroup.getId(),
+					bdfSession);
+			will(returnValue(creatorSession));
+			oneOf(creatorSession).getPrivateGroupId();
+			will(returnValue(privateGroup.getId()));
+			oneOf(db).addSession(txn, contactGroup.getId(), sessionId,
+					storageMessage.getId());
+			oneOf(clientHelper).mergeGroupMetadata(txn, localGroup.getId(),
+					indexedMeta);
 		}});
 		groupInvitationManager.onDatabaseOpened(txn);
 	}
@@ -221,16 +269,19 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(peerSession));
 		}});
 		expectStoreSession(peerSession, storageMessage.getId());
-		expectCreateStorageId();
+		expectCreateStorageId(new SessionId(g.getBytes()));
 	}
 
-	private void expectCreateStorageId() throws DbException {
+	private void expectCreateStorageId(SessionId sessionId)
+			throws DbException {
 		context.checking(new Expectations() {{
 			oneOf(clientHelper)
 					.createMessageForStoringMetadata(contactGroup.getId());
 			will(returnValue(storageMessage));
 			oneOf(db).addLocalMessage(txn, storageMessage, new Metadata(),
 					false, false);
+			oneOf(db).addSession(txn, contactGroup.getId(), sessionId,
+					storageMessage.getId());
 		}});
 	}
 
@@ -245,13 +296,20 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 
 	private void expectGetSession(Map<MessageId, BdfDictionary> results,
 			SessionId sessionId, GroupId contactGroupId) throws Exception {
-		BdfDictionary query = BdfDictionary.of(new BdfEntry("q", "u"));
+		if (results.size() > 1) throw new IllegalArgumentException();
 		context.checking(new Expectations() {{
-			oneOf(sessionParser).getSessionQuery(sessionId);
-			will(returnValue(query));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroupId, query);
-			will(returnValue(results));
+			if (results.isEmpty()) {
+				oneOf(db).getSessionMessageId(txn, contactGroupId, sessionId);
+				will(returnValue(null));
+			} else {
+				Entry<MessageId, BdfDictionary> e =
+						results.entrySet().iterator().next();
+				oneOf(db).getSessionMessageId(txn, contactGroupId, sessionId);
+				will(returnValue(e.getKey()));
+				oneOf(clientHelper)
+						.getMessageMetadataAsDictionary(txn, e.getKey());
+				will(returnValue(e.getValue()));
+			}
 		}});
 	}
 
@@ -292,7 +350,7 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			oneOf(privateGroupManager).isOurPrivateGroup(txn, privateGroup);
 			will(returnValue(false));
 		}});
-		expectCreateStorageId();
+		expectCreateStorageId(sessionId);
 		context.checking(new Expectations() {{
 			oneOf(sessionEncoder)
 					.encodeSession(with(any(InviteeSession.class)));
@@ -420,7 +478,7 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 		Session<?> session =
 				expectHandleFirstMessage(role, messageMetadata, type);
 		if (session != null) {
-			expectCreateStorageId();
+			expectCreateStorageId(sessionId);
 			expectStoreSession(session, storageMessage.getId());
 		}
 	}
@@ -578,7 +636,7 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 					MAJOR_VERSION, contact);
 			will(returnValue(contactGroup));
 		}});
-		expectCreateStorageId();
+		expectCreateStorageId(sessionId);
 		context.checking(new Expectations() {{
 			oneOf(creatorEngine).onInviteAction(with(txn),
 					with(any(CreatorSession.class)), with(text), with(time),
@@ -5,9 +5,9 @@ import org.briarproject.bramble.api.client.ContactGroupFactory;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
-import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.Metadata;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.identity.Author;
@@ -28,9 +28,10 @@ import org.junit.Test;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import static java.util.Collections.singletonMap;
 import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
 import static org.briarproject.bramble.test.TestUtils.getAuthor;
 import static org.briarproject.bramble.test.TestUtils.getContact;
@@ -40,6 +41,7 @@ import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
 import static org.briarproject.briar.api.blog.BlogSharingManager.CLIENT_ID;
 import static org.briarproject.briar.api.blog.BlogSharingManager.MAJOR_VERSION;
+import static org.briarproject.briar.sharing.SharingConstants.GROUP_KEY_SESSIONS_INDEXED;
 
 public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 
@@ -73,6 +75,8 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 	private final Group localBlogGroup =
 			getGroup(BlogManager.CLIENT_ID, BlogManager.MAJOR_VERSION);
 	private final Blog localBlog = new Blog(localBlogGroup, localAuthor, false);
+	private final BdfDictionary indexedMeta = BdfDictionary.of(
+			new BdfEntry(GROUP_KEY_SESSIONS_INDEXED, true));
 	@SuppressWarnings("unchecked")
 	private final ProtocolEngine<Blog> engine =
 			context.mock(ProtocolEngine.class);
@@ -104,6 +108,9 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(false));
 			oneOf(db).addGroup(txn, localGroup);
+			// There are no sessions to index
+			oneOf(clientHelper).mergeGroupMetadata(txn, localGroup.getId(),
+					indexedMeta);
 			// Get contacts
 			oneOf(db).getContacts(txn);
 			will(returnValue(contacts));
@@ -115,8 +122,6 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 	}
 
 	private void expectAddingContact(Transaction txn) throws Exception {
-		Map<MessageId, BdfDictionary> sessions = Collections.emptyMap();
-
 		context.checking(new Expectations() {{
 			// Create the contact group and share it with the contact
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
@@ -140,8 +145,8 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(blog));
 		}});
 		// Pre-share our blog with the contact and vice versa
-		expectPreShareShareable(txn, contact, localBlog, sessions);
-		expectPreShareShareable(txn, contact, blog, sessions);
+		expectPreShareShareable(txn, contact, localBlog, null);
+		expectPreShareShareable(txn, contact, blog, null);
 	}
 
 	@Test
@@ -155,6 +160,52 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(localGroup));
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(true));
+			// The sessions have been indexed
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					localGroup.getId());
+			will(returnValue(indexedMeta));
+		}});
+
+		blogSharingManager.onDatabaseOpened(txn);
+	}
+
+	@Test
+	public void testOpenDatabaseHookIndexesExistingSessions()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+		MessageId storageId = new MessageId(getRandomId());
+		BdfDictionary query = new BdfDictionary();
+		BdfDictionary sessionDict = new BdfDictionary();
+		Session session = new Session(contactGroup.getId(), blog.getId());
+
+		context.checking(new Expectations() {{
+			// The local group exists but the sessions haven't been indexed
+			oneOf(contactGroupFactory).createLocalGroup(CLIENT_ID,
+					MAJOR_VERSION);
+			will(returnValue(localGroup));
+			oneOf(db).containsGroup(txn, localGroup.getId());
+			will(returnValue(true));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					localGroup.getId());
+			will(returnValue(new BdfDictionary()));
+			// Index the session with the contact
+			oneOf(sessionParser).getAllSessionsQuery();
+			will(returnValue(query));
+			oneOf(db).getContacts(txn);
+			will(returnValue(contacts));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					contactGroup.getId(), query);
+			will(returnValue(singletonMap(storageId, sessionDict)));
+			oneOf(sessionParser)
+					.parseSession(contactGroup.getId(), sessionDict);
+			will(returnValue(session));
+			oneOf(db).addSession(txn, contactGroup.getId(),
+					new SessionId(blog.getId().getBytes()), storageId);
+			oneOf(clientHelper).mergeGroupMetadata(txn, localGroup.getId(),
+					indexedMeta);
 		}});
 
 		blogSharingManager.onDatabaseOpened(txn);
@@ -171,28 +222,17 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 
 	@Test
 	public void testRemovingBlogFreshState() throws Exception {
-		Map<MessageId, BdfDictionary> sessions = new HashMap<>(0);
-		testRemovingBlog(sessions);
+		testRemovingBlog(null);
 	}
 
 	@Test
 	public void testRemovingBlogExistingState() throws Exception {
-		Map<MessageId, BdfDictionary> sessions = new HashMap<>(1);
-		sessions.put(new MessageId(getRandomId()), new BdfDictionary());
-		testRemovingBlog(sessions);
-	}
-
-	@Test(expected = DbException.class)
-	public void testRemovingBlogMultipleSessions() throws Exception {
-		Map<MessageId, BdfDictionary> sessions = new HashMap<>(2);
-		sessions.put(new MessageId(getRandomId()), new BdfDictionary());
-		sessions.put(new MessageId(getRandomId()), new BdfDictionary());
-		testRemovingBlog(sessions);
+		testRemovingBlog(new MessageId(getRandomId()));
 	}
 
 	private void expectPreShareShareable(Transaction txn, Contact contact,
-			Blog blog, Map<MessageId, BdfDictionary> sessions)
-			throws Exception {
+			Blog blog, @Nullable MessageId storageId) throws Exception {
+		SessionId sessionId = new SessionId(blog.getId().getBytes());
 		Group contactGroup = getGroup(CLIENT_ID, MAJOR_VERSION);
 		BdfDictionary sessionDict = new BdfDictionary();
 		Message message = getMessage(contactGroup.getId());
@@ -200,13 +240,10 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
 					MAJOR_VERSION, contact);
 			will(returnValue(contactGroup));
-			oneOf(sessionParser)
-					.getSessionQuery(new SessionId(blog.getId().getBytes()));
-			will(returnValue(sessionDict));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroup.getId(), sessionDict);
-			will(returnValue(sessions));
-			if (sessions.size() == 0) {
+			oneOf(db).getSessionMessageId(txn, contactGroup.getId(),
+					sessionId);
+			will(returnValue(storageId));
+			if (storageId == null) {
 				oneOf(db).addGroup(txn, blog.getGroup());
 				oneOf(clientVersioningManager).getClientVisibility(txn,
 						contactId, BlogManager.CLIENT_ID,
@@ -219,15 +256,21 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 				will(returnValue(message));
 				oneOf(db).addLocalMessage(txn, message, new Metadata(), false,
 						false);
+				oneOf(db).addSession(txn, contactGroup.getId(), sessionId,
+						message.getId());
 				oneOf(sessionEncoder).encodeSession(with(any(Session.class)));
 				will(returnValue(sessionDict));
 				oneOf(clientHelper).mergeMessageMetadata(txn, message.getId(),
 						sessionDict);
+			} else {
+				oneOf(clientHelper)
+						.getMessageMetadataAsDictionary(txn, storageId);
+				will(returnValue(sessionDict));
 			}
 		}});
 	}
 
-	private void testRemovingBlog(Map<MessageId, BdfDictionary> sessions)
+	private void testRemovingBlog(@Nullable MessageId storageId)
 			throws Exception {
 		Transaction txn = new Transaction(null, false);
 		BdfDictionary sessionDict = new BdfDictionary();
@@ -239,13 +282,13 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
 					MAJOR_VERSION, contact);
 			will(returnValue(contactGroup));
-			oneOf(sessionParser)
-					.getSessionQuery(new SessionId(blog.getId().getBytes()));
-			will(returnValue(sessionDict));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroup.getId(), sessionDict);
-			will(returnValue(sessions));
-			if (sessions.size() == 1) {
+			oneOf(db).getSessionMessageId(txn, contactGroup.getId(),
+					new SessionId(blog.getId().getBytes()));
+			will(returnValue(storageId));
+			if (storageId != null) {
+				oneOf(clientHelper)
+						.getMessageMetadataAsDictionary(txn, storageId);
+				will(returnValue(sessionDict));
 				oneOf(sessionParser)
 						.parseSession(contactGroup.getId(), sessionDict);
 				will(returnValue(session));
@@ -253,8 +296,8 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 				will(returnValue(session));
 				oneOf(sessionEncoder).encodeSession(session);
 				will(returnValue(sessionDict));
-				oneOf(clientHelper).mergeMessageMetadata(txn,
-						sessions.keySet().iterator().next(), sessionDict);
+				oneOf(clientHelper).mergeMessageMetadata(txn, storageId,
+						sessionDict);
 			}
 		}});
 		blogSharingManager.removingBlog(txn, blog);
@@ -4,12 +4,25 @@ import org.briarproject.bramble.api.crypto.KeyStrengthener
 import org.briarproject.bramble.api.db.DatabaseConfig
 import java.io.File
 
-internal class HeadlessDatabaseConfig(private val dbDir: File, private val keyDir: File) :
-    DatabaseConfig {
+internal class HeadlessDatabaseConfig(
+    private val dbDir: File,
+    private val keyDir: File,
+    private val connectionPoolSize: Int = DEFAULT_DB_CONNECTIONS,
+    private val queryProfiling: Boolean = false
+) : DatabaseConfig {
 
     override fun getDatabaseDirectory() = dbDir
 
     override fun getDatabaseKeyDirectory() = keyDir
 
     override fun getKeyStrengthener(): KeyStrengthener? = null
+
+    override fun getConnectionPoolSize() = connectionPoolSize
+
+    override fun isQueryProfilingEnabled() = queryProfiling
 }
+
+/**
+ * By default, allow one read-only transaction per core to run in parallel.
+ */
+internal val DEFAULT_DB_CONNECTIONS = Runtime.getRuntime().availableProcessors().coerceAtLeast(2)
@@ -33,6 +33,7 @@ import org.briarproject.briar.headless.contact.HeadlessContactModule
 import org.briarproject.briar.headless.event.HeadlessEventModule
 import org.briarproject.briar.headless.forums.HeadlessForumModule
 import org.briarproject.briar.headless.messaging.HeadlessMessagingModule
+import org.briarproject.briar.headless.metrics.HeadlessMetricsModule
 import java.io.File
 import java.util.Collections.emptyList
 import javax.inject.Singleton
@@ -51,10 +52,15 @@ import javax.inject.Singleton
         HeadlessContactModule::class,
         HeadlessEventModule::class,
         HeadlessForumModule::class,
-        HeadlessMessagingModule::class
+        HeadlessMessagingModule::class,
+        HeadlessMetricsModule::class
     ]
 )
-internal class HeadlessModule(private val appDir: File) {
+internal class HeadlessModule(
+    private val appDir: File,
+    private val dbConnections: Int = DEFAULT_DB_CONNECTIONS,
+    private val profileDbQueries: Boolean = false
+) {
 
     @Provides
     @Singleton
@@ -65,7 +71,7 @@ internal class HeadlessModule(private val appDir: File) {
     internal fun provideDatabaseConfig(): DatabaseConfig {
         val dbDir = File(appDir, "db")
         val keyDir = File(appDir, "key")
-        return HeadlessDatabaseConfig(dbDir, keyDir)
+        return HeadlessDatabaseConfig(dbDir, keyDir, dbConnections, profileDbQueries)
     }
 
     @Provides
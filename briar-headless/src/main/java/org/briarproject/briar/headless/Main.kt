@@ -6,8 +6,10 @@ import com.github.ajalt.clikt.parameters.options.default
 import com.github.ajalt.clikt.parameters.options.flag
 import com.github.ajalt.clikt.parameters.options.option
 import com.github.ajalt.clikt.parameters.types.int
+import com.github.ajalt.clikt.parameters.types.restrictTo
 import org.bouncycastle.util.encoders.Base64.toBase64String
 import org.briarproject.bramble.BrambleCoreEagerSingletons
+import org.briarproject.bramble.lifecycle.LifecycleModule.VIRTUAL_THREADS_PROPERTY
 import org.briarproject.bramble.util.OsUtils.isLinux
 import org.briarproject.bramble.util.OsUtils.isMac
 import org.briarproject.briar.BriarCoreEagerSingletons
@@ -55,6 +57,29 @@ private class Main : CliktCommand(
         metavar = "PATH",
         envvar = "BRIAR_DATA_DIR"
     ).default(DEFAULT_DATA_DIR)
+    private val dbConnections by option(
+        "--db-connections",
+        help = "Maximum number of database connections, which limits the number of " +
+            "parallel read transactions. Default: $DEFAULT_DB_CONNECTIONS",
+        metavar = "N",
+        envvar = "BRIAR_DB_CONNECTIONS"
+    ).int().restrictTo(min = 1).default(DEFAULT_DB_CONNECTIONS)
+    private val profileDbQueries by option(
+        "--profile-db-queries",
+        help = "Record the latency of each database query for /v1/metrics. " +
+            "This slows down the database.",
+        envvar = "BRIAR_PROFILE_DB_QUERIES"
+    ).flag(default = false)
+    private val virtualThreads by option(
+        "--virtual-threads",
+        help = "Run network and other IO tasks on virtual threads if supported by the JVM " +
+            "(Java 21 or later). This allows holding many connections at once.",
+        envvar = "BRIAR_VIRTUAL_THREADS"
+    ).flag(default = false)
+    private val tracePinnedThreads by option(
+        "--trace-pinned-threads",
+        help = "Print a stack trace when a virtual thread blocks while pinned to its carrier thread"
+    ).flag(default = false)
 
     override fun run() {
         // logging
@@ -71,9 +96,15 @@ private class Main : CliktCommand(
         setProperty(DEFAULT_LOG_LEVEL_KEY, levelSlf4j)
         LogManager.getLogManager().getLogger("").level = level
 
+        // virtual threads, which must be configured before the IO executor is created
+        if (virtualThreads) setProperty(VIRTUAL_THREADS_PROPERTY, "true")
+        if (tracePinnedThreads) setProperty("jdk.tracePinnedThreads", "short")
+
         val dataDir = getDataDir()
         val app =
-            DaggerBriarHeadlessApp.builder().headlessModule(HeadlessModule(dataDir)).build()
+            DaggerBriarHeadlessApp.builder()
+                .headlessModule(HeadlessModule(dataDir, dbConnections, profileDbQueries))
+                .build()
         // We need to load the eager singletons directly after making the
         // dependency graphs
         BrambleCoreEagerSingletons.Helper.injectEagerSingletons(app)
@@ -1,6 +1,7 @@
 package org.briarproject.briar.headless
 
 import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.ObjectMapper
 import io.javalin.Javalin
 import io.javalin.apibuilder.ApiBuilder.delete
@@ -19,6 +20,7 @@ import org.briarproject.briar.headless.contact.ContactController
 import org.briarproject.briar.headless.event.WebSocketController
 import org.briarproject.briar.headless.forums.ForumController
 import org.briarproject.briar.headless.messaging.MessagingController
+import org.briarproject.briar.headless.metrics.MetricsController
 import java.lang.Runtime.getRuntime
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.logging.Level.INFO
@@ -41,7 +43,9 @@ constructor(
     private val contactController: ContactController,
     private val messagingController: MessagingController,
     private val forumController: ForumController,
-    private val blogController: BlogController
+    private val blogController: BlogController,
+    private val metricsController: MetricsController,
+    private val objectMapper: ObjectMapper
 ) {
 
     private val logger = getLogger(Router::javaClass.name)
@@ -109,6 +113,9 @@ constructor(
                         post { ctx -> blogController.createPost(ctx) }
                     }
                 }
+                path("/metrics") {
+                    get { ctx -> metricsController.get(ctx) }
+                }
             }
         }
         app.ws(WS) { ws ->
@@ -118,9 +125,18 @@ constructor(
             }
             ws.onMessage { ctx ->
                 val session = ctx.session
-                if (ctx.message() == authToken && !webSocketController.sessions.contains(ctx)) {
+                if (webSocketController.hasSession(ctx)) {
+                    val eventNames = getSubscription(ctx.message())
+                    if (eventNames != null) {
+                        webSocketController.subscribe(ctx, eventNames)
+                    } else {
+                        logger.info("Invalid message received: ${ctx.message()}")
+                        logger.info("Closing websocket connection with ${session.remoteAddress}")
+                        session.close(1008, "Invalid Subscription")
+                    }
+                } else if (ctx.message() == authToken) {
                     logger.info("Authenticated websocket session with ${session.remoteAddress}")
-                    webSocketController.sessions.add(ctx)
+                    webSocketController.addSession(ctx)
                 } else {
                     logger.info("Invalid message received: ${ctx.message()}")
                     logger.info("Closing websocket connection with ${session.remoteAddress}")
@@ -129,12 +145,27 @@ constructor(
             }
             ws.onClose { ctx ->
                 logger.info("Removing websocket connection with ${ctx.session.remoteAddress}")
-                webSocketController.sessions.remove(ctx)
+                webSocketController.removeSession(ctx)
             }
         }
         return app.start(port)
     }
 
+    /**
+     * Returns the event names from a subscription message
+     * such as `{"subscribe": ["ContactAddedEvent"]}`, or null if the message isn't one.
+     * Messages that can't be parsed or mapped to a JSON tree are not subscriptions.
+     */
+    private fun getSubscription(message: String): Set<String>? {
+        val names = try {
+            objectMapper.readTree(message)?.get("subscribe")
+        } catch (e: JsonProcessingException) {
+            null
+        }
+        if (names == null || !names.isArray || !names.all { it.isTextual }) return null
+        return names.map { it.asText() }.toSet()
+    }
+
     private fun serverStopped() {
         stop()
         exitProcess(1)
@@ -163,6 +194,16 @@ fun Context.getContactIdFromPathParam(): ContactId {
     return ContactId(contactInt)
 }
 
+/**
+ * Returns a Long from the given query parameter or null if the parameter is missing.
+ *
+ * @throws BadRequestResponse when the parameter is not a number.
+ */
+fun Context.getLongFromQueryParam(param: String): Long? {
+    val value = queryParam(param) ?: return null
+    return value.toLongOrNull() ?: throw BadRequestResponse("'$param' is not a number")
+}
+
 /**
  * Returns a String from the JSON field or throws [BadRequestResponse] if null or empty.
  */
@@ -79,11 +79,13 @@ constructor(
     }
 
     override fun list(ctx: Context): Context {
+        val groupCounts = conversationManager.allGroupCounts
         val contacts = contactManager.contacts.map { contact ->
-            val latestMsgTime = conversationManager.getGroupCount(contact.id).latestMsgTime
+            // The contact may have been added after the counts were loaded
+            val groupCount = groupCounts[contact.id]
+                ?: conversationManager.getGroupCount(contact.id)
             val connected = connectionRegistry.isConnected(contact.id)
-            val unreadCount = conversationManager.getGroupCount(contact.id).unreadCount
-            contact.output(latestMsgTime, connected, unreadCount)
+            contact.output(groupCount.latestMsgTime, connected, groupCount.unreadCount)
         }
         return ctx.json(contacts)
     }
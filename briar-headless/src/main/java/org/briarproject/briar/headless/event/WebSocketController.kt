@@ -8,11 +8,27 @@ import javax.annotation.concurrent.ThreadSafe
 @ThreadSafe
 interface WebSocketController {
 
-    val sessions: MutableSet<WsContext>
+    /**
+     * Adds an authenticated session, which receives all events
+     * until it subscribes to particular events.
+     */
+    fun addSession(session: WsContext)
+
+    fun removeSession(session: WsContext)
+
+    fun hasSession(session: WsContext): Boolean
 
     /**
-     * Sends an event to all open sessions using the [IoExecutor].
+     * Replaces the names of the events the given session receives.
+     */
+    fun subscribe(session: WsContext, eventNames: Set<String>)
+
+    /**
+     * Queues an event for all open sessions that receive it.
+     * Each session's events are sent in order using the [IoExecutor].
      */
     fun sendEvent(name: String, obj: JsonDict)
 
+    val stats: WebSocketStats
+
 }
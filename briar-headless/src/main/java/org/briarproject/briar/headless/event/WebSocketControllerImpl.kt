@@ -7,15 +7,39 @@ import org.briarproject.bramble.util.LogUtils.logException
 import org.briarproject.briar.headless.json.JsonDict
 import org.eclipse.jetty.websocket.api.WebSocketException
 import java.io.IOException
+import java.util.ArrayDeque
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit.SECONDS
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import java.util.logging.Level.WARNING
 import java.util.logging.Logger.getLogger
-import javax.annotation.concurrent.Immutable
+import javax.annotation.concurrent.GuardedBy
+import javax.annotation.concurrent.ThreadSafe
 import javax.inject.Inject
 import javax.inject.Singleton
 
-@Immutable
+/**
+ * The maximum number of events waiting to be sent to each session.
+ */
+internal const val MAX_QUEUED_EVENTS = 1000
+
+/**
+ * A session that can't queue this many events in a row is closed.
+ */
+internal const val MAX_DROPPED_EVENTS = 100
+
+/**
+ * A session that takes longer than this to accept an event is closed.
+ */
+internal const val SEND_TIMEOUT_SECONDS = 30L
+
+internal const val CLOSE_CODE_POLICY_VIOLATION = 1008
+
+@ThreadSafe
 @Singleton
 internal class WebSocketControllerImpl
 @Inject
@@ -23,20 +47,160 @@ constructor(@IoExecutor private val ioExecutor: Executor) : WebSocketController
 
     private val logger = getLogger(WebSocketControllerImpl::javaClass.name)
 
-    override val sessions: MutableSet<WsContext> = ConcurrentHashMap.newKeySet<WsContext>()
+    private val queues = ConcurrentHashMap<WsContext, SessionQueue>()
+
+    private val queuedEvents = AtomicInteger(0)
+    private val sentCount = AtomicLong(0)
+    private val coalescedCount = AtomicLong(0)
+    private val droppedCount = AtomicLong(0)
+    private val disconnectedCount = AtomicLong(0)
+
+    override fun addSession(session: WsContext) {
+        queues.putIfAbsent(session, SessionQueue(session))
+    }
+
+    override fun removeSession(session: WsContext) {
+        queues.remove(session)?.clear()
+    }
+
+    override fun hasSession(session: WsContext) = queues.containsKey(session)
+
+    override fun subscribe(session: WsContext, eventNames: Set<String>) {
+        queues[session]?.subscriptions = eventNames.toSet()
+    }
 
     override fun sendEvent(name: String, obj: JsonDict) {
-        val event = toJson(OutputEvent(name, obj))
-        sessions.forEach { session ->
-            ioExecutor.execute {
-                try {
-                    session.send(event)
-                } catch (e: WebSocketException) {
-                    logException(logger, WARNING, e)
-                } catch (e: IOException) {
-                    logException(logger, WARNING, e)
+        // Serialise the event once, and only if a session receives it
+        var event: String? = null
+        for (queue in queues.values) {
+            if (!queue.receives(name)) continue
+            if (event == null) event = toJson(OutputEvent(name, obj))
+            queue.add(event)
+        }
+    }
+
+    override val stats: WebSocketStats
+        get() = WebSocketStats(
+            queues.size,
+            queuedEvents.get(),
+            sentCount.get(),
+            coalescedCount.get(),
+            droppedCount.get(),
+            disconnectedCount.get()
+        )
+
+    private fun disconnect(session: WsContext, reason: String) {
+        val queue = queues.remove(session) ?: return
+        queue.clear()
+        disconnectedCount.incrementAndGet()
+        logger.warning("Closing slow websocket connection with ${session.session.remoteAddress}")
+        ioExecutor.execute { session.session.close(CLOSE_CODE_POLICY_VIOLATION, reason) }
+    }
+
+    /**
+     * Sends events to a session in the order they were queued. At most one
+     * [IoExecutor] task per session sends events at any time.
+     */
+    @ThreadSafe
+    private inner class SessionQueue(private val session: WsContext) {
+
+        private val lock = Any()
+
+        @GuardedBy("lock")
+        private val queue = ArrayDeque<String>()
+
+        @GuardedBy("lock")
+        private var scheduled = false
+
+        @GuardedBy("lock")
+        private var droppedInARow = 0
+
+        @GuardedBy("lock")
+        private var closed = false
+
+        /**
+         * The names of the events this session receives, or null if it
+         * receives all events.
+         */
+        @Volatile
+        var subscriptions: Set<String>? = null
+
+        fun receives(name: String) = subscriptions?.contains(name) ?: true
+
+        fun add(event: String) {
+            var schedule = false
+            var disconnect = false
+            synchronized(lock) {
+                if (closed) return
+                when {
+                    // Sending the same event twice in a row tells the client nothing new
+                    queue.peekLast() == event -> coalescedCount.incrementAndGet()
+                    queue.size >= MAX_QUEUED_EVENTS -> {
+                        droppedCount.incrementAndGet()
+                        droppedInARow++
+                        disconnect = droppedInARow >= MAX_DROPPED_EVENTS
+                    }
+                    else -> {
+                        queue.add(event)
+                        queuedEvents.incrementAndGet()
+                        schedule = !scheduled
+                        scheduled = true
+                    }
+                }
+            }
+            if (schedule) ioExecutor.execute(this::sendQueuedEvents)
+            else if (disconnect) disconnect(session, "Too many queued events")
+        }
+
+        fun clear() {
+            synchronized(lock) {
+                closed = true
+                queuedEvents.addAndGet(-queue.size)
+                queue.clear()
+            }
+        }
+
+        private fun sendQueuedEvents() {
+            while (true) {
+                val event = synchronized(lock) {
+                    val e = queue.poll()
+                    if (e == null) {
+                        scheduled = false
+                        return
+                    }
+                    queuedEvents.decrementAndGet()
+                    e
                 }
+                if (!send(event)) {
+                    disconnect(session, "Events not accepted in time")
+                    return
+                }
+            }
+        }
+
+        /**
+         * Sends an event and waits for the session to accept it, returning
+         * false if the session didn't accept it in time.
+         */
+        private fun send(event: String): Boolean {
+            try {
+                session.send(event).get(SEND_TIMEOUT_SECONDS, SECONDS)
+                sentCount.incrementAndGet()
+                synchronized(lock) { droppedInARow = 0 }
+            } catch (e: TimeoutException) {
+                return false
+            } catch (e: ExecutionException) {
+                logException(logger, WARNING, e)
+            } catch (e: InterruptedException) {
+                logger.warning("Interrupted while sending event")
+                Thread.currentThread().interrupt()
+                return false
+            } catch (e: WebSocketException) {
+                logException(logger, WARNING, e)
+            } catch (e: IOException) {
+                logException(logger, WARNING, e)
             }
+            return true
         }
     }
 
@@ -0,0 +1,26 @@
+package org.briarproject.briar.headless.event
+
+import javax.annotation.concurrent.Immutable
+
+/**
+ * A snapshot of the state of the [WebSocketController].
+ *
+ * @property sessions the number of open sessions.
+ * @property queuedEvents the number of events waiting to be sent.
+ * @property sentCount the number of events that have been sent.
+ * @property coalescedCount the number of events that were not queued
+ * because the same event was the last one queued for the session.
+ * @property droppedCount the number of events that were not queued
+ * because the session's queue was full.
+ * @property disconnectedCount the number of sessions that were closed
+ * because they didn't keep up with their events.
+ */
+@Immutable
+data class WebSocketStats(
+    val sessions: Int,
+    val queuedEvents: Int,
+    val sentCount: Long,
+    val coalescedCount: Long,
+    val droppedCount: Long,
+    val disconnectedCount: Long
+)
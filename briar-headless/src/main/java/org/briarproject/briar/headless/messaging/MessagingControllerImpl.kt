@@ -37,6 +37,7 @@ import org.briarproject.briar.headless.event.WebSocketController
 import org.briarproject.briar.headless.event.output
 import org.briarproject.briar.headless.getContactIdFromPathParam
 import org.briarproject.briar.headless.getFromJson
+import org.briarproject.briar.headless.getLongFromQueryParam
 import org.briarproject.briar.headless.json.JsonDict
 import java.util.concurrent.Executor
 import javax.annotation.concurrent.Immutable
@@ -47,6 +48,9 @@ internal const val EVENT_CONVERSATION_MESSAGE = "ConversationMessageReceivedEven
 internal const val EVENT_MESSAGES_ACKED = "MessagesAckedEvent"
 internal const val EVENT_MESSAGES_SENT = "MessagesSentEvent"
 
+internal const val DEFAULT_PAGE_SIZE = 100
+internal const val MAX_PAGE_SIZE = 1000
+
 @Immutable
 @Singleton
 internal class MessagingControllerImpl
@@ -64,11 +68,25 @@ constructor(
 
     override fun list(ctx: Context): Context {
         val contact = getContact(ctx)
+        val before = ctx.getLongFromQueryParam("before")
+        val after = ctx.getLongFromQueryParam("after")
+        val limit = ctx.getLongFromQueryParam("limit")
+        if (before != null && after != null)
+            throw BadRequestResponse("'before' and 'after' can't be used together")
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE))
+            throw BadRequestResponse("'limit' must be between 1 and $MAX_PAGE_SIZE")
+        val pageSize = limit?.toInt() ?: DEFAULT_PAGE_SIZE
+        val headers = when {
+            after != null ->
+                conversationManager.getMessageHeadersAfter(contact.id, after, pageSize)
+            before != null || limit != null ->
+                conversationManager.getMessageHeadersBefore(
+                    contact.id, before ?: Long.MAX_VALUE, pageSize
+                ).asReversed()
+            else -> conversationManager.getMessageHeaders(contact.id).sortedBy { it.timestamp }
+        }
         val jsonVisitor = JsonVisitor(contact.id, messagingManager)
-        val messages = conversationManager.getMessageHeaders(contact.id)
-            .sortedBy { it.timestamp }
-            .map { header -> header.accept(jsonVisitor) }
-        return ctx.json(messages)
+        return ctx.json(headers.map { header -> header.accept(jsonVisitor) })
     }
 
     override fun write(ctx: Context): Context {
@@ -0,0 +1,16 @@
+package org.briarproject.briar.headless.metrics
+
+import dagger.Module
+import dagger.Provides
+import javax.inject.Singleton
+
+@Module
+class HeadlessMetricsModule {
+
+    @Provides
+    @Singleton
+    internal fun provideMetricsController(metricsController: MetricsControllerImpl): MetricsController {
+        return metricsController
+    }
+
+}
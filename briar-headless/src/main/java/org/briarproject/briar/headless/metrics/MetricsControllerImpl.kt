@@ -0,0 +1,44 @@
+package org.briarproject.briar.headless.metrics
+
+import io.javalin.http.Context
+import org.briarproject.bramble.api.db.DatabaseComponent
+import org.briarproject.bramble.api.db.DatabaseExecutorMonitor
+import org.briarproject.bramble.api.event.EventBus
+import org.briarproject.bramble.api.lifecycle.IoExecutorMonitor
+import org.briarproject.briar.headless.event.WebSocketController
+import org.briarproject.briar.headless.json.JsonDict
+import javax.annotation.concurrent.Immutable
+import javax.inject.Inject
+import javax.inject.Singleton
+
+@Immutable
+@Singleton
+internal class MetricsControllerImpl
+@Inject
+constructor(
+    private val db: DatabaseComponent,
+    private val eventBus: EventBus,
+    private val dbExecutorMonitor: DatabaseExecutorMonitor,
+    private val ioExecutorMonitor: IoExecutorMonitor,
+    private val webSocketController: WebSocketController
+) : MetricsController {
+
+    override fun get(ctx: Context): Context {
+        val stats = db.databaseStats
+        val database = JsonDict(
+            "connectionPool" to db.connectionPoolStats.output(),
+            "transactions" to stats.outputTransactions(),
+            "queries" to stats.outputQueries()
+        )
+        return ctx.json(
+            JsonDict(
+                "database" to database,
+                "eventBus" to eventBus.stats.output(),
+                "dbExecutor" to dbExecutorMonitor.output(),
+                "ioExecutor" to ioExecutorMonitor.stats.output(),
+                "webSocket" to webSocketController.stats.output()
+            )
+        )
+    }
+
+}
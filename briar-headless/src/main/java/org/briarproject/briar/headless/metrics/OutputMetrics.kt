@@ -0,0 +1,83 @@
+package org.briarproject.briar.headless.metrics
+
+import org.briarproject.bramble.api.db.ConnectionPoolStats
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane
+import org.briarproject.bramble.api.db.DatabaseExecutorMonitor
+import org.briarproject.bramble.api.db.DatabaseExecutorStats
+import org.briarproject.bramble.api.db.DatabaseStats
+import org.briarproject.bramble.api.db.LatencyStats
+import org.briarproject.bramble.api.db.TransactionStats
+import org.briarproject.bramble.api.event.EventBusStats
+import org.briarproject.bramble.api.lifecycle.IoExecutorStats
+import org.briarproject.briar.headless.event.WebSocketStats
+import org.briarproject.briar.headless.json.JsonDict
+
+internal fun ConnectionPoolStats.output() = JsonDict(
+    "poolSize" to poolSize,
+    "openConnections" to openConnections,
+    "idleConnections" to idleConnections,
+    "borrowCount" to borrowCount,
+    "waitCount" to waitCount,
+    "totalWaitTime" to totalWaitTime
+)
+
+internal fun LatencyStats.output() = JsonDict(
+    "count" to count,
+    "totalTime" to totalTime,
+    "meanTime" to meanTime,
+    "maxTime" to maxTime,
+    "rows" to rows,
+    "histogram" to histogram.toList()
+)
+
+internal fun TransactionStats.output() = JsonDict(
+    "commitCount" to commitCount,
+    "abortCount" to abortCount,
+    "lockWait" to lockWaitStats.output(),
+    "lockHold" to lockHoldStats.output()
+)
+
+internal fun DatabaseStats.outputTransactions() = JsonDict(
+    "readOnly" to readOnlyTransactionStats.output(),
+    "readWrite" to readWriteTransactionStats.output()
+)
+
+internal fun DatabaseStats.outputQueries() = queryStats.mapValues { it.value.output() }
+
+internal fun EventBusStats.output() = JsonDict(
+    "broadcastCount" to broadcastCount,
+    "droppedCount" to droppedCount,
+    "totalDispatchLatency" to totalDispatchLatency,
+    "maxDispatchLatency" to maxDispatchLatency,
+    "queuedEvents" to queuedEvents,
+    "queuedListenerEvents" to queuedListenerEvents
+)
+
+internal fun IoExecutorStats.output() = JsonDict(
+    "virtualThreads" to usesVirtualThreads(),
+    "threadCount" to threadCount,
+    "activeTasks" to activeTasks,
+    "peakActiveTasks" to peakActiveTasks,
+    "completedTasks" to completedTasks
+)
+
+internal fun DatabaseExecutorStats.output() = JsonDict(
+    "capacity" to capacity,
+    "queuedTasks" to queuedTasks,
+    "peakQueuedTasks" to peakQueuedTasks,
+    "blockedSubmissions" to blockedSubmissions,
+    "waitTime" to waitTime.output(),
+    "runTime" to runTime.output()
+)
+
+internal fun DatabaseExecutorMonitor.output() =
+    Lane.values().associate { it.name.lowercase() to getStats(it).output() }
+
+internal fun WebSocketStats.output() = JsonDict(
+    "sessions" to sessions,
+    "queuedEvents" to queuedEvents,
+    "sentCount" to sentCount,
+    "coalescedCount" to coalescedCount,
+    "droppedCount" to droppedCount,
+    "disconnectedCount" to disconnectedCount
+)
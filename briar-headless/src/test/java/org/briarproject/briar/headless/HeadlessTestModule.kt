@@ -27,6 +27,7 @@ import org.briarproject.briar.headless.contact.HeadlessContactModule
 import org.briarproject.briar.headless.event.HeadlessEventModule
 import org.briarproject.briar.headless.forums.HeadlessForumModule
 import org.briarproject.briar.headless.messaging.HeadlessMessagingModule
+import org.briarproject.briar.headless.metrics.HeadlessMetricsModule
 import java.io.File
 import java.util.Collections.emptyList
 import javax.inject.Singleton
@@ -45,7 +46,8 @@ import javax.inject.Singleton
         HeadlessContactModule::class,
         HeadlessEventModule::class,
         HeadlessForumModule::class,
-        HeadlessMessagingModule::class
+        HeadlessMessagingModule::class,
+        HeadlessMetricsModule::class
     ]
 )
 internal class HeadlessTestModule(private val appDir: File) {
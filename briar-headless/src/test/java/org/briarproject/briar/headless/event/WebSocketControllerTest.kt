@@ -6,6 +6,7 @@ import io.mockk.CapturingSlot
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.verify
+import io.mockk.verifyOrder
 import org.briarproject.bramble.test.ImmediateExecutor
 import org.briarproject.bramble.test.TestUtils.getRandomId
 import org.briarproject.briar.api.autodelete.AutoDeleteConstants.NO_AUTO_DELETE_TIMER
@@ -17,13 +18,19 @@ import org.briarproject.briar.api.introduction.event.IntroductionRequestReceived
 import org.briarproject.briar.api.messaging.PrivateMessageHeader
 import org.briarproject.briar.api.messaging.event.PrivateMessageReceivedEvent
 import org.briarproject.briar.headless.ControllerTest
+import org.briarproject.briar.headless.contact.EVENT_CONTACT_CONNECTED
+import org.briarproject.briar.headless.contact.EVENT_CONTACT_DISCONNECTED
+import org.briarproject.briar.headless.json.JsonDict
 import org.briarproject.briar.headless.messaging.EVENT_CONVERSATION_MESSAGE
 import org.briarproject.briar.headless.messaging.output
+import org.eclipse.jetty.websocket.api.Session
 import org.eclipse.jetty.websocket.api.WebSocketException
-import org.eclipse.jetty.websocket.common.io.FutureWriteCallback
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Test
 import java.io.IOException
+import java.util.concurrent.CompletableFuture.completedFuture
+import java.util.concurrent.Executor
 
 internal class WebSocketControllerTest : ControllerTest() {
 
@@ -52,9 +59,9 @@ internal class WebSocketControllerTest : ControllerTest() {
     fun testSendEvent() {
         val slot = CapturingSlot<String>()
 
-        every { session1.send(capture(slot)) } returns FutureWriteCallback()
+        every { session1.send(capture(slot)) } returns completedFuture(null)
 
-        controller.sessions.add(session1)
+        controller.addSession(session1)
         controller.sendEvent(EVENT_CONVERSATION_MESSAGE, event.output(text))
 
         assertJsonEquals(slot.captured, outputEvent)
@@ -74,15 +81,87 @@ internal class WebSocketControllerTest : ControllerTest() {
         val slot = CapturingSlot<String>()
 
         every { session1.send(capture(slot)) } throws throwable
-        every { session2.send(capture(slot)) } returns FutureWriteCallback()
+        every { session2.send(capture(slot)) } returns completedFuture(null)
 
-        controller.sessions.add(session1)
-        controller.sessions.add(session2)
+        controller.addSession(session1)
+        controller.addSession(session2)
         controller.sendEvent(EVENT_CONVERSATION_MESSAGE, event.output(text))
 
         verify { session2.send(slot.captured) }
     }
 
+    @Test
+    fun testEventsAreSentInOrder() {
+        val tasks = ArrayList<Runnable>()
+        val controller = WebSocketControllerImpl(Executor { tasks.add(it) })
+        val connected = JsonDict("contactId" to contact.id.int)
+
+        every { session1.send(any()) } returns completedFuture(null)
+
+        controller.addSession(session1)
+        controller.sendEvent(EVENT_CONTACT_CONNECTED, connected)
+        controller.sendEvent(EVENT_CONTACT_DISCONNECTED, connected)
+        controller.sendEvent(EVENT_CONTACT_CONNECTED, connected)
+        // The same event twice in a row is only sent once
+        controller.sendEvent(EVENT_CONTACT_CONNECTED, connected)
+        assertEquals(3, controller.stats.queuedEvents)
+        assertEquals(1, controller.stats.coalescedCount)
+
+        // One task sends all the events
+        assertEquals(1, tasks.size)
+        tasks[0].run()
+        verifyOrder {
+            session1.send(toJson(OutputEvent(EVENT_CONTACT_CONNECTED, connected)))
+            session1.send(toJson(OutputEvent(EVENT_CONTACT_DISCONNECTED, connected)))
+            session1.send(toJson(OutputEvent(EVENT_CONTACT_CONNECTED, connected)))
+        }
+        assertEquals(0, controller.stats.queuedEvents)
+        assertEquals(3, controller.stats.sentCount)
+    }
+
+    @Test
+    fun testSubscribedEventsAreSent() {
+        val connected = JsonDict("contactId" to contact.id.int)
+
+        every { session1.send(any()) } returns completedFuture(null)
+        every { session2.send(any()) } returns completedFuture(null)
+
+        controller.addSession(session1)
+        controller.addSession(session2)
+        controller.subscribe(session1, setOf(EVENT_CONTACT_CONNECTED))
+        controller.sendEvent(EVENT_CONVERSATION_MESSAGE, event.output(text))
+        controller.sendEvent(EVENT_CONTACT_CONNECTED, connected)
+
+        verify(exactly = 1) { session1.send(any()) }
+        verify { session1.send(toJson(OutputEvent(EVENT_CONTACT_CONNECTED, connected))) }
+        verify(exactly = 2) { session2.send(any()) }
+    }
+
+    @Test
+    fun testSlowSessionIsDisconnected() {
+        val tasks = ArrayList<Runnable>()
+        val controller = WebSocketControllerImpl(Executor { tasks.add(it) })
+        val jettySession = mockk<Session>(relaxed = true)
+
+        every { session1.session } returns jettySession
+
+        controller.addSession(session1)
+        for (i in 0 until MAX_QUEUED_EVENTS + MAX_DROPPED_EVENTS) {
+            controller.sendEvent(EVENT_CONTACT_CONNECTED, JsonDict("contactId" to i))
+        }
+        assertEquals(MAX_DROPPED_EVENTS.toLong(), controller.stats.droppedCount)
+        assertEquals(1, controller.stats.disconnectedCount)
+        assertEquals(0, controller.stats.queuedEvents)
+        assertFalse(controller.hasSession(session1))
+
+        // The first task would have sent the events, the second closes the session
+        assertEquals(2, tasks.size)
+        tasks[1].run()
+        verify { jettySession.close(CLOSE_CODE_POLICY_VIOLATION, any()) }
+        tasks[0].run()
+        verify(exactly = 0) { session1.send(any()) }
+    }
+
     @Test
     fun testIntroductionRequestEvent() {
         val introductionRequest = IntroductionRequest(
@@ -106,9 +185,9 @@ internal class WebSocketControllerTest : ControllerTest() {
             OutputEvent(EVENT_CONVERSATION_MESSAGE, introductionRequestEvent.output())
         val slot = CapturingSlot<String>()
 
-        every { session1.send(capture(slot)) } returns FutureWriteCallback()
+        every { session1.send(capture(slot)) } returns completedFuture(null)
 
-        controller.sessions.add(session1)
+        controller.addSession(session1)
         controller.sendEvent(EVENT_CONVERSATION_MESSAGE, introductionRequestEvent.output())
         assertJsonEquals(slot.captured, introductionOutputEvent)
         assertEquals("IntroductionRequest", introductionRequestEvent.output()["type"])
@@ -78,6 +78,7 @@ internal class MessagingControllerImplTest : ControllerTest() {
     @Test
     fun list() {
         expectGetContact()
+        expectQueryParams()
         every { conversationManager.getMessageHeaders(contact.id) } returns listOf(header)
         every { messagingManager.getMessageText(message.id) } returns text
         every { ctx.json(listOf(header.output(contact.id, text))) } returns ctx
@@ -93,6 +94,7 @@ internal class MessagingControllerImplTest : ControllerTest() {
         )
 
         expectGetContact()
+        expectQueryParams()
         every { conversationManager.getMessageHeaders(contact.id) } returns listOf(request)
         every { ctx.json(listOf(request.output(contact.id))) } returns ctx
 
@@ -103,12 +105,83 @@ internal class MessagingControllerImplTest : ControllerTest() {
     fun testEmptyList() {
         every { ctx.pathParam("contactId") } returns contact.id.int.toString()
         every { contactManager.getContact(contact.id) } returns contact
+        expectQueryParams()
         every { conversationManager.getMessageHeaders(contact.id) } returns emptyList()
         every { ctx.json(emptyList<Any>()) } returns ctx
 
         controller.list(ctx)
     }
 
+    @Test
+    fun listBefore() {
+        val olderHeader = PrivateMessageHeader(
+            message.id, group.id, timestamp - 1, true, true, true, true, true, emptyList(),
+            NO_AUTO_DELETE_TIMER
+        )
+
+        expectGetContact()
+        expectQueryParams(before = "1000", limit = "2")
+        every {
+            conversationManager.getMessageHeadersBefore(contact.id, 1000, 2)
+        } returns listOf(header, olderHeader)
+        every { messagingManager.getMessageText(message.id) } returns text
+        every {
+            ctx.json(listOf(olderHeader.output(contact.id, text), header.output(contact.id, text)))
+        } returns ctx
+
+        controller.list(ctx)
+    }
+
+    @Test
+    fun listWithLimit() {
+        expectGetContact()
+        expectQueryParams(limit = "1")
+        every {
+            conversationManager.getMessageHeadersBefore(contact.id, Long.MAX_VALUE, 1)
+        } returns listOf(header)
+        every { messagingManager.getMessageText(message.id) } returns text
+        every { ctx.json(listOf(header.output(contact.id, text))) } returns ctx
+
+        controller.list(ctx)
+    }
+
+    @Test
+    fun listAfter() {
+        expectGetContact()
+        expectQueryParams(after = "1")
+        every {
+            conversationManager.getMessageHeadersAfter(contact.id, 1, DEFAULT_PAGE_SIZE)
+        } returns listOf(header)
+        every { messagingManager.getMessageText(message.id) } returns text
+        every { ctx.json(listOf(header.output(contact.id, text))) } returns ctx
+
+        controller.list(ctx)
+    }
+
+    @Test
+    fun listBeforeAndAfter() {
+        expectGetContact()
+        expectQueryParams(before = "2", after = "1")
+
+        assertThrows(BadRequestResponse::class.java) { controller.list(ctx) }
+    }
+
+    @Test
+    fun listInvalidLimit() {
+        expectGetContact()
+        expectQueryParams(limit = "0")
+
+        assertThrows(BadRequestResponse::class.java) { controller.list(ctx) }
+    }
+
+    @Test
+    fun listNonNumericBefore() {
+        expectGetContact()
+        expectQueryParams(before = "foo")
+
+        assertThrows(BadRequestResponse::class.java) { controller.list(ctx) }
+    }
+
     @Test
     fun listInvalidContactId() {
         testInvalidContactId { controller.list(ctx) }
@@ -403,6 +476,16 @@ internal class MessagingControllerImplTest : ControllerTest() {
         every { contactManager.getContact(contact.id) } returns contact
     }
 
+    private fun expectQueryParams(
+        before: String? = null,
+        after: String? = null,
+        limit: String? = null
+    ) {
+        every { ctx.queryParam("before") } returns before
+        every { ctx.queryParam("after") } returns after
+        every { ctx.queryParam("limit") } returns limit
+    }
+
     private fun testNonexistentContactId(function: () -> Context) {
         every { ctx.pathParam("contactId") } returns "42"
         every { contactManager.getContact(ContactId(42)) } throws NoSuchContactException()
@@ -0,0 +1,141 @@
+package org.briarproject.briar.headless.metrics
+
+import io.mockk.every
+import io.mockk.mockk
+import org.briarproject.bramble.api.db.ConnectionPoolStats
+import org.briarproject.bramble.api.db.DatabaseComponent
+import org.briarproject.bramble.api.db.DatabaseExecutor.Lane
+import org.briarproject.bramble.api.db.DatabaseExecutorMonitor
+import org.briarproject.bramble.api.db.DatabaseExecutorStats
+import org.briarproject.bramble.api.db.DatabaseStats
+import org.briarproject.bramble.api.db.LatencyStats
+import org.briarproject.bramble.api.db.LatencyStats.HISTOGRAM_BUCKETS
+import org.briarproject.bramble.api.db.TransactionStats
+import org.briarproject.bramble.api.event.EventBus
+import org.briarproject.bramble.api.event.EventBusStats
+import org.briarproject.bramble.api.lifecycle.IoExecutorMonitor
+import org.briarproject.bramble.api.lifecycle.IoExecutorStats
+import org.briarproject.briar.headless.ControllerTest
+import org.briarproject.briar.headless.event.WebSocketStats
+import org.briarproject.briar.headless.json.JsonDict
+import org.junit.jupiter.api.Test
+
+internal class MetricsControllerTest : ControllerTest() {
+
+    private val databaseComponent = mockk<DatabaseComponent>()
+    private val eventBus = mockk<EventBus>()
+    private val dbExecutorMonitor = mockk<DatabaseExecutorMonitor>()
+    private val ioExecutorMonitor = mockk<IoExecutorMonitor>()
+
+    private val controller = MetricsControllerImpl(
+        databaseComponent,
+        eventBus,
+        dbExecutorMonitor,
+        ioExecutorMonitor,
+        webSocketController
+    )
+
+    private val poolStats = ConnectionPoolStats(4, 2, 1, 10, 1, 5)
+    private val latencyStats = LatencyStats(2, 30, 20, 4, LongArray(HISTOGRAM_BUCKETS))
+    private val readOnly = TransactionStats(true, 3, 0, latencyStats, latencyStats)
+    private val readWrite = TransactionStats(false, 1, 1, latencyStats, latencyStats)
+    private val databaseStats =
+        DatabaseStats(mapOf("getMessageIds(GroupId)" to latencyStats), readOnly, readWrite)
+    private val eventBusStats = EventBusStats(7, 0, 100, 50, 0, 0)
+    private val ioExecutorStats = IoExecutorStats(true, 3, 3, 8, 120)
+    private val dbExecutorStats =
+        DatabaseExecutorStats(Lane.BACKGROUND, 100, 5, 100, 2, latencyStats, latencyStats)
+    private val webSocketStats = WebSocketStats(2, 3, 40, 5, 6, 1)
+
+    @Test
+    fun get() {
+        every { databaseComponent.connectionPoolStats } returns poolStats
+        every { databaseComponent.databaseStats } returns databaseStats
+        every { eventBus.stats } returns eventBusStats
+        every { dbExecutorMonitor.getStats(any()) } returns dbExecutorStats
+        every { ioExecutorMonitor.stats } returns ioExecutorStats
+        every { webSocketController.stats } returns webSocketStats
+        every {
+            ctx.json(
+                JsonDict(
+                    "database" to JsonDict(
+                        "connectionPool" to poolStats.output(),
+                        "transactions" to databaseStats.outputTransactions(),
+                        "queries" to databaseStats.outputQueries()
+                    ),
+                    "eventBus" to eventBusStats.output(),
+                    "dbExecutor" to mapOf(
+                        "interactive" to dbExecutorStats.output(),
+                        "sync" to dbExecutorStats.output(),
+                        "background" to dbExecutorStats.output()
+                    ),
+                    "ioExecutor" to ioExecutorStats.output(),
+                    "webSocket" to webSocketStats.output()
+                )
+            )
+        } returns ctx
+
+        controller.get(ctx)
+    }
+
+    @Test
+    fun latencyStatsOutput() {
+        val json = """
+            {
+                "count": 2,
+                "totalTime": 30,
+                "meanTime": 15,
+                "maxTime": 20,
+                "rows": 4,
+                "histogram": [${LongArray(HISTOGRAM_BUCKETS).joinToString()}]
+            }
+        """
+        assertJsonEquals(json, latencyStats.output())
+    }
+
+    @Test
+    fun ioExecutorStatsOutput() {
+        val json = """
+            {
+                "virtualThreads": true,
+                "threadCount": 3,
+                "activeTasks": 3,
+                "peakActiveTasks": 8,
+                "completedTasks": 120
+            }
+        """
+        assertJsonEquals(json, ioExecutorStats.output())
+    }
+
+    @Test
+    fun dbExecutorStatsOutput() {
+        val latency = objectMapper.writeValueAsString(latencyStats.output())
+        val json = """
+            {
+                "capacity": 100,
+                "queuedTasks": 5,
+                "peakQueuedTasks": 100,
+                "blockedSubmissions": 2,
+                "waitTime": $latency,
+                "runTime": $latency
+            }
+        """
+        assertJsonEquals(json, dbExecutorStats.output())
+    }
+
+    @Test
+    fun webSocketStatsOutput() {
+        val json = """
+            {
+                "sessions": 2,
+                "queuedEvents": 3,
+                "sentCount": 40,
+                "coalescedCount": 5,
+                "droppedCount": 6,
+                "disconnectedCount": 1
+            }
+        """
+        assertJsonEquals(json, webSocketStats.output())
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.briarproject.bramble.mailbox;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.mailbox.MailboxAuthToken;
+import org.briarproject.bramble.api.mailbox.MailboxFolderId;
+import org.briarproject.bramble.api.mailbox.MailboxProperties;
+import org.briarproject.bramble.api.sync.OutgoingSessionRecord;
+import org.briarproject.bramble.mailbox.MailboxApi.MailboxContact;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.mailbox.lib.TestMailbox;
+import org.briarproject.nullsafety.NotNullByDefault;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.briarproject.bramble.mailbox.AbstractMailboxIntegrationTest.URL_BASE;
+import static org.briarproject.bramble.mailbox.MailboxIntegrationTestUtils.createMailboxApi;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.briarproject.bramble.test.TestUtils.writeBytes;
+import static org.briarproject.bramble.util.IoUtils.copyAndClose;
+import static org.briarproject.bramble.util.StringUtils.toHexString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MailboxDownloadWorkerIntegrationTest extends BrambleTestCase {
+
+	private static final int NUM_FILES = 10;
+	private static final int MAX_CONCURRENT_DOWNLOADS = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Rule
+	public TemporaryFolder dataDirectory = new TemporaryFolder();
+
+	private final ExecutorService ioExecutor = newCachedThreadPool();
+
+	private TestMailbox mailbox;
+	private MailboxApi api;
+	private MailboxProperties ownerProperties;
+
+	@Before
+	public void setUp() throws Exception {
+		mailbox = new TestMailbox(dataDirectory.getRoot());
+		api = createMailboxApi(() -> mailbox.getPort());
+		mailbox.startLifecycle();
+
+		MailboxAuthToken setupToken =
+				MailboxAuthToken.fromString(mailbox.getSetupToken());
+		MailboxProperties setupProperties = new MailboxProperties(
+				URL_BASE, setupToken, new ArrayList<>());
+		ownerProperties = api.setup(setupProperties);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ioExecutor.shutdownNow();
+		ioExecutor.awaitTermination(10, SECONDS);
+		mailbox.stopLifecycle(true);
+	}
+
+	@Test
+	public void testConcurrentDownloadsAreLimited() throws Exception {
+		// Add a contact, so we can leave files in the contact's inbox
+		ContactId contactId = new ContactId(1);
+		MailboxContact contact = new MailboxContact(contactId,
+				new MailboxAuthToken(getRandomId()),
+				new MailboxFolderId(getRandomId()),
+				new MailboxFolderId(getRandomId()));
+		MailboxProperties contactProperties = new MailboxProperties(
+				ownerProperties.getOnion(), contact.token,
+				new ArrayList<>(), contact.inboxId, contact.outboxId);
+		api.addContact(ownerProperties, contact);
+
+		// Upload more files than can be downloaded concurrently
+		Set<String> uploaded = new HashSet<>();
+		for (int i = 0; i < NUM_FILES; i++) {
+			File file = folder.newFile();
+			byte[] bytes = getRandomBytes(1024);
+			writeBytes(file, bytes);
+			api.addFile(ownerProperties, contact.inboxId, file);
+			uploaded.add(toHexString(bytes));
+		}
+		assertEquals(NUM_FILES,
+				api.getFiles(contactProperties, contact.inboxId).size());
+
+		// The worker waits for Tor after its first download cycle, which
+		// means all the files have been downloaded and deleted
+		CountDownLatch firstCycleFinished = new CountDownLatch(1);
+		CountingMailboxFileManager fileManager =
+				new CountingMailboxFileManager();
+		MailboxDownloadWorker worker = new ContactMailboxDownloadWorker(
+				new ImmediateConnectivityChecker(),
+				new LatchTorReachabilityMonitor(firstCycleFinished),
+				new RetryingMailboxApiCaller(), api, fileManager,
+				contactProperties, MAX_CONCURRENT_DOWNLOADS);
+		worker.start();
+		assertTrue(firstCycleFinished.await(30, SECONDS));
+		worker.destroy();
+
+		// All the files should have been downloaded and deleted
+		assertEquals(uploaded, fileManager.getDownloaded());
+		assertEquals(emptyList(),
+				api.getFiles(contactProperties, contact.inboxId));
+
+		// Files should have been downloaded concurrently, up to the limit
+		int maxInProgress = fileManager.getMaxInProgress();
+		assertTrue(maxInProgress > 1);
+		assertTrue(maxInProgress <= MAX_CONCURRENT_DOWNLOADS);
+
+		// Owner deletes contact again to leave clean state for other tests
+		api.deleteContact(ownerProperties, contactId);
+	}
+
+	@NotNullByDefault
+	private static class ImmediateConnectivityChecker
+			implements ConnectivityChecker {
+
+		@Override
+		public void destroy() {
+		}
+
+		@Override
+		public void checkConnectivity(MailboxProperties properties,
+				ConnectivityObserver o) {
+			o.onConnectivityCheckSucceeded();
+		}
+
+		@Override
+		public void removeObserver(ConnectivityObserver o) {
+		}
+	}
+
+	@NotNullByDefault
+	private static class LatchTorReachabilityMonitor
+			implements TorReachabilityMonitor {
+
+		private final CountDownLatch latch;
+
+		private LatchTorReachabilityMonitor(CountDownLatch latch) {
+			this.latch = latch;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void destroy() {
+		}
+
+		@Override
+		public void addOneShotObserver(TorReachabilityObserver o) {
+			latch.countDown();
+		}
+
+		@Override
+		public void removeObserver(TorReachabilityObserver o) {
+		}
+	}
+
+	/**
+	 * Calls each API call on the IO executor, retrying after a short delay
+	 * until the call succeeds.
+	 */
+	@NotNullByDefault
+	private class RetryingMailboxApiCaller implements MailboxApiCaller {
+
+		@Override
+		public Cancellable retryWithBackoff(ApiCall apiCall) {
+			ioExecutor.execute(() -> {
+				while (apiCall.callApi()) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			});
+			return () -> {
+			};
+		}
+	}
+
+	/**
+	 * Reads each downloaded file, holding it for a while so that downloads
+	 * overlap, and records the maximum number of files in progress at once.
+	 */
+	@NotNullByDefault
+	private static class CountingMailboxFileManager
+			implements MailboxFileManager {
+
+		private final AtomicInteger inProgress = new AtomicInteger();
+		private final AtomicInteger maxInProgress = new AtomicInteger();
+		private final Set<String> downloaded = new HashSet<>();
+
+		@Override
+		public File createAndWriteTempFileForUpload(ContactId contactId,
+				OutgoingSessionRecord sessionRecord) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void handleDownloadedFile(File f) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long handleDownloadedStream(InputStream in)
+				throws IOException {
+			int current = inProgress.incrementAndGet();
+			maxInProgress.accumulateAndGet(current, Math::max);
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				copyAndClose(in, out);
+				Thread.sleep(500);
+				synchronized (downloaded) {
+					downloaded.add(toHexString(out.toByteArray()));
+				}
+				return out.size();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} finally {
+				inProgress.decrementAndGet();
+			}
+		}
+
+		private Set<String> getDownloaded() {
+			synchronized (downloaded) {
+				return new HashSet<>(downloaded);
+			}
+		}
+
+		private int getMaxInProgress() {
+			return maxInProgress.get();
+		}
+	}
+}
@@ -27,4 +27,9 @@ class TestMailboxConfigImpl implements MailboxConfig {
 	public long getTorReachabilityPeriod() {
 		return 10_000;
 	}
+
+	@Override
+	public int getMaxConcurrentDownloads() {
+		return MailboxDownloadWorker.MAX_CONCURRENT_DOWNLOADS;
+	}
 }